@@ -81,6 +81,8 @@ public class AppConfig implements WebMvcConfigurer {
                 .authorizeHttpRequests(auth -> auth
                         // QUAN TRỌNG: Cho phép OPTIONS request (CORS preflight) không cần authentication
                         .requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
+                        // Bảng khoảng cách gọi GraphHopper theo lô: chỉ nhân viên đã đăng nhập (đặt trước WHITELIST)
+                        .requestMatchers("/api/graphhopper/matrix").authenticated()
                         .requestMatchers(WHITELIST).permitAll()
                         .anyRequest().authenticated()
                 )
@@ -0,0 +1,47 @@
+package org.example.ptcmssbackend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "graphhopper")
+public class GraphHopperProperties {
+
+    /**
+     * API key of the GraphHopper account.
+     */
+    private String apiKey;
+
+    /**
+     * Base URL of the GraphHopper API (override to point at a local stub in tests).
+     */
+    private String baseUrl = "https://graphhopper.com/api/1";
+
+    /**
+     * Maximum time to wait for a response once connected.
+     */
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    private Circuit circuit = new Circuit();
+
+    @Getter
+    @Setter
+    public static class Circuit {
+
+        /**
+         * Consecutive failures (timeout, network error, 5xx) that open the circuit.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * How long calls are rejected before a single trial request is let through.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.ptcmssbackend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "outbound-http")
+public class OutboundHttpProperties {
+
+    /**
+     * Maximum time to open a TCP connection to an external provider.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * How long an idle pooled connection is kept open for reuse.
+     * Applied JVM-wide at startup as jdk.httpclient.keepalive.timeout (see OutboundHttpSystemProperties).
+     */
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    /**
+     * Maximum idle HTTP/1.1 connections kept in the pool (0 = unlimited).
+     * Applied JVM-wide at startup as jdk.httpclient.connectionPoolSize (see OutboundHttpSystemProperties).
+     */
+    private int maxIdleConnections = 0;
+
+    /**
+     * Default maximum concurrent requests per host; further requests wait in a queue.
+     */
+    private int maxConcurrentPerHost = 16;
+
+    /**
+     * Per-host overrides of maxConcurrentPerHost (e.g. graphhopper.com: 8).
+     */
+    private Map<String, Integer> hostLimits = new HashMap<>();
+
+    /**
+     * Maximum requests waiting per host; further requests fail immediately.
+     */
+    private int maxQueuedPerHost = 100;
+
+    /**
+     * Maximum time a request waits in the per-host queue before it fails (0 = no limit).
+     */
+    private Duration maxQueueWait = Duration.ofSeconds(5);
+}
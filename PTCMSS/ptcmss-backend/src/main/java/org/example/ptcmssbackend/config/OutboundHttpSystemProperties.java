@@ -0,0 +1,37 @@
+package org.example.ptcmssbackend.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.time.Duration;
+
+/**
+ * Đặt cấu hình pool kết nối của JDK HttpClient (outbound-http.keep-alive, outbound-http.max-idle-connections)
+ * ngay khi môi trường Spring sẵn sàng, trước khi bean nào tạo HttpClient.
+ *
+ * Đây là system property toàn JVM: áp dụng cho mọi java.net.http.HttpClient trong tiến trình và chỉ được JDK đọc
+ * một lần khi HttpClient đầu tiên được tạo, nên đặt muộn hơn (vd. trong constructor của bean) có thể không còn tác dụng.
+ * Giá trị truyền bằng -Djdk.httpclient.* khi chạy JVM được giữ nguyên.
+ */
+public class OutboundHttpSystemProperties implements EnvironmentPostProcessor {
+
+    static final String KEEP_ALIVE = "jdk.httpclient.keepalive.timeout";
+    static final String POOL_SIZE = "jdk.httpclient.connectionPoolSize";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        Binder binder = Binder.get(environment);
+        Duration keepAlive = binder.bind("outbound-http.keep-alive", Duration.class).orElse(Duration.ofSeconds(30));
+        int maxIdle = binder.bind("outbound-http.max-idle-connections", Integer.class).orElse(0);
+        setIfAbsent(KEEP_ALIVE, String.valueOf(keepAlive.toSeconds()));
+        setIfAbsent(POOL_SIZE, String.valueOf(maxIdle));
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
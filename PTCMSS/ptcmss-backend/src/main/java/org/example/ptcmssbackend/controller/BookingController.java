@@ -9,17 +9,23 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.ptcmssbackend.dto.request.Booking.CreateBookingRequest;
 import org.example.ptcmssbackend.dto.request.Booking.CreatePaymentRequest;
 import org.example.ptcmssbackend.dto.request.Booking.AssignRequest;
+import org.example.ptcmssbackend.dto.request.Booking.BatchQuoteRequest;
 import org.example.ptcmssbackend.dto.request.Booking.CheckAvailabilityRequest;
 import org.example.ptcmssbackend.dto.request.Booking.UpdateBookingRequest;
+import org.example.ptcmssbackend.dto.response.Booking.AvailabilityHeatmapResponse;
+import org.example.ptcmssbackend.dto.response.Booking.BatchQuoteResponse;
 import org.example.ptcmssbackend.dto.response.Booking.BookingListResponse;
 import org.example.ptcmssbackend.dto.response.Booking.BookingResponse;
 import org.example.ptcmssbackend.dto.response.Booking.ConsultantDashboardResponse;
 import org.example.ptcmssbackend.dto.response.Booking.PaymentResponse;
 import org.example.ptcmssbackend.dto.response.common.ApiResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.dto.response.common.PageResponse;
 import org.example.ptcmssbackend.entity.Employees;
 import org.example.ptcmssbackend.entity.Users;
 import org.example.ptcmssbackend.repository.EmployeeRepository;
+import org.example.ptcmssbackend.service.AvailabilityGridService;
+import org.example.ptcmssbackend.service.BookingQuoteService;
 import org.example.ptcmssbackend.service.BookingService;
 import org.example.ptcmssbackend.service.CustomerService;
 import org.example.ptcmssbackend.service.PaymentService;
@@ -42,6 +48,8 @@ import java.util.List;
 public class BookingController {
 
     private final BookingService bookingService;
+    private final BookingQuoteService bookingQuoteService;
+    private final AvailabilityGridService availabilityGridService;
     private final PaymentService paymentService;
     private final CustomerService customerService;
     private final EmployeeRepository employeeRepository;
@@ -170,6 +178,40 @@ public class BookingController {
         }
     }
 
+    /**
+     * Lấy danh sách bookings phân trang theo con trỏ (không OFFSET, COUNT tùy chọn)
+     */
+    @Operation(summary = "Lấy danh sách đơn hàng theo con trỏ", description = "Cùng bộ lọc với danh sách đơn hàng, sắp xếp mới nhất trước. Truyền nextCursor của trang trước để lấy trang sau; chi phí mỗi trang như nhau.")
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','CONSULTANT','ACCOUNTANT','COORDINATOR')")
+    public ResponseEntity<ApiResponse<CursorPageResponse<BookingListResponse>>> scroll(
+            @Parameter(description = "Lọc theo trạng thái") @RequestParam(required = false) String status,
+            @Parameter(description = "Lọc theo ID chi nhánh") @RequestParam(required = false) Integer branchId,
+            @Parameter(description = "Lọc theo ID tư vấn viên") @RequestParam(required = false) Integer consultantId,
+            @Parameter(description = "Ngày bắt đầu (ISO format)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant startDate,
+            @Parameter(description = "Ngày kết thúc (ISO format)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant endDate,
+            @Parameter(description = "Tìm kiếm theo mã đơn, SĐT, tên KH") @RequestParam(required = false) String keyword,
+            @Parameter(description = "Con trỏ nextCursor của trang trước (bỏ trống = trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số lượng bản ghi mỗi trang (mặc định 20, tối đa 500)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Có đếm tổng số bản ghi không (mặc định không)") @RequestParam(defaultValue = "false") boolean withTotal
+    ) {
+        try {
+            CursorPageResponse<BookingListResponse> response = bookingService.scroll(
+                    status, branchId, consultantId, startDate, endDate, keyword, cursor, size, withTotal);
+            return ResponseEntity.ok(ApiResponse.<CursorPageResponse<BookingListResponse>>builder()
+                    .success(true)
+                    .message("Lấy danh sách đơn hàng thành công")
+                    .data(response)
+                    .build());
+        } catch (Exception e) {
+            log.error("Scroll bookings failed", e);
+            return ResponseEntity.badRequest().body(ApiResponse.<CursorPageResponse<BookingListResponse>>builder()
+                    .success(false)
+                    .message("Lỗi khi lấy danh sách đơn hàng: " + e.getMessage())
+                    .build());
+        }
+    }
+
     /**
      * Lấy chi tiết booking
      */
@@ -338,6 +380,34 @@ public class BookingController {
         }
     }
 
+    /**
+     * Lưới khả dụng theo loại xe và từng giờ (lịch công suất cho các tuần tới)
+     */
+    @Operation(summary = "Lưới khả dụng xe theo giờ", description = "Số xe bận / giữ chỗ / còn trống theo loại xe và từng giờ của chi nhánh, tối đa 4 tuần tới")
+    @GetMapping("/availability-heatmap")
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','CONSULTANT')")
+    public ResponseEntity<ApiResponse<AvailabilityHeatmapResponse>> getAvailabilityHeatmap(
+            @Parameter(description = "ID chi nhánh") @RequestParam Integer branchId,
+            @Parameter(description = "ID loại xe (bỏ trống = tất cả)") @RequestParam(required = false) Integer categoryId,
+            @Parameter(description = "Từ thời điểm (ISO format, mặc định hiện tại)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @Parameter(description = "Đến thời điểm (ISO format, mặc định 7 ngày tới)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to
+    ) {
+        try {
+            var result = availabilityGridService.getHeatmap(branchId, categoryId, from, to);
+            return ResponseEntity.ok(ApiResponse.<AvailabilityHeatmapResponse>builder()
+                    .success(true)
+                    .message("OK")
+                    .data(result)
+                    .build());
+        } catch (Exception e) {
+            log.error("Get availability heatmap failed", e);
+            return ResponseEntity.badRequest().body(ApiResponse.<AvailabilityHeatmapResponse>builder()
+                    .success(false)
+                    .message("Lỗi khi lấy lưới khả dụng: " + e.getMessage())
+                    .build());
+        }
+    }
+
     /**
      * Gán tài xế / xe cho các chuyến của booking
      */
@@ -408,6 +478,31 @@ public class BookingController {
         }
     }
 
+    /**
+     * Báo giá nhiều phương án trong một lần gọi
+     */
+    @Operation(summary = "Báo giá nhiều phương án", description = "Tính giá và chi tiết theo loại xe cho tối đa 50 phương án (loại xe, số lượng, khoảng cách hoặc điểm đi/đến, loại thuê, thời gian). Mỗi tuyến chỉ tra khoảng cách một lần")
+    @PostMapping("/calculate-price/batch")
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','CONSULTANT')")
+    public ResponseEntity<ApiResponse<BatchQuoteResponse>> calculatePriceBatch(
+            @Valid @RequestBody BatchQuoteRequest request
+    ) {
+        try {
+            BatchQuoteResponse response = bookingQuoteService.quote(request);
+            return ResponseEntity.ok(ApiResponse.<BatchQuoteResponse>builder()
+                    .success(true)
+                    .message("Báo giá thành công")
+                    .data(response)
+                    .build());
+        } catch (Exception e) {
+            log.error("Batch quote failed", e);
+            return ResponseEntity.badRequest().body(ApiResponse.<BatchQuoteResponse>builder()
+                    .success(false)
+                    .message("Lỗi khi báo giá: " + e.getMessage())
+                    .build());
+        }
+    }
+
     /**
      * Tìm customer theo số điện thoại
      */
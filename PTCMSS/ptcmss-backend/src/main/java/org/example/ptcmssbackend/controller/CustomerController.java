@@ -65,6 +65,29 @@ public class CustomerController {
         }
     }
 
+    @Operation(summary = "Lấy danh sách khách hàng theo con trỏ", description = "Cùng bộ lọc với danh sách khách hàng, mới nhất trước. Truyền nextCursor của trang trước để lấy trang sau; tổng số chỉ đếm khi withTotal = true.")
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'CONSULTANT', 'COORDINATOR', 'ACCOUNTANT')")
+    public ResponseData<?> scrollCustomers(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Integer branchId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            log.info("[Customer] Scroll customers - keyword={}, branchId={}, userId={}, cursor={}, size={}",
+                    keyword, branchId, userId, cursor, size);
+            return new ResponseData<>(HttpStatus.OK.value(), "Success",
+                    customerService.scrollCustomers(keyword, branchId, userId, fromDate, toDate, cursor, size, withTotal));
+        } catch (Exception e) {
+            log.error("[Customer] Failed to scroll customers: {}", e.getMessage(), e);
+            return new ResponseError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        }
+    }
+
     @Operation(summary = "Lấy thông tin khách hàng theo ID")
     @GetMapping("/{customerId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER', 'CONSULTANT', 'COORDINATOR', 'ACCOUNTANT')")
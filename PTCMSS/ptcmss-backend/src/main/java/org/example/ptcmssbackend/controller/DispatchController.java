@@ -4,13 +4,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ptcmssbackend.dto.request.Trip.TripSearchRequest;
 import org.example.ptcmssbackend.dto.request.dispatch.AssignRequest;
+import org.example.ptcmssbackend.dto.request.dispatch.AutoDispatchCommitRequest;
 import org.example.ptcmssbackend.dto.request.dispatch.UnassignRequest;
 import org.example.ptcmssbackend.dto.response.common.ResponseData;
 import org.example.ptcmssbackend.dto.response.common.ResponseError;
 import org.example.ptcmssbackend.dto.response.dispatch.AssignRespone;
 import org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.AutoDispatchPlanResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
+import org.example.ptcmssbackend.service.DispatchDashboardService;
 import org.example.ptcmssbackend.service.DispatchService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -31,6 +34,7 @@ import java.util.List;
 public class DispatchController {
 
     private final DispatchService dispatchService;
+    private final DispatchDashboardService dispatchDashboardService;
 
     // =====================================================================
     // 1) LẤY DANH SÁCH CHUYẾN PENDING
@@ -71,15 +75,18 @@ public class DispatchController {
 
     @Operation(
             summary = "Lấy gợi ý tài xế + xe cho chuyến",
-            description = "Trả về tóm tắt chuyến cùng danh sách ứng viên hợp lệ để gán"
+            description = "Trả về tóm tắt chuyến cùng danh sách ứng viên hợp lệ để gán. Tham số top: số cặp tài xế + xe gợi ý (mặc định 10, tối đa 100)"
     )
     @PreAuthorize("hasAnyRole('ADMIN','MANAGER','CONSULTANT','COORDINATOR')")
     @GetMapping("/trips/{tripId}/suggestions")
-    public ResponseData<AssignmentSuggestionResponse> suggestions(@PathVariable Integer tripId) {
+    public ResponseData<AssignmentSuggestionResponse> suggestions(
+            @PathVariable Integer tripId,
+            @RequestParam(required = false) Integer top
+    ) {
         try {
             return new ResponseData<>(HttpStatus.OK.value(),
                     "Loaded suggestions",
-                    dispatchService.getAssignmentSuggestions(tripId));
+                    dispatchService.getAssignmentSuggestions(tripId, top));
         } catch (Exception e) {
             log.error("[Dispatch] Failed to load suggestions for trip {}", tripId, e);
             return new ResponseError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
@@ -101,7 +108,7 @@ public class DispatchController {
                     ? LocalDate.parse(date)
                     : null; // null = load all future trips
             log.info("[Dispatch] Load dashboard for branch {} on {}", branchId, targetDate != null ? targetDate : "all future");
-            DispatchDashboardResponse data = dispatchService.getDashboard(branchId, targetDate);
+            DispatchDashboardResponse data = dispatchDashboardService.getDashboard(branchId, targetDate);
             return new ResponseData<>(HttpStatus.OK.value(), "Success", data);
         } catch (Exception e) {
             log.error("[Dispatch] Failed to load dashboard", e);
@@ -162,6 +169,46 @@ public class DispatchController {
         }
     }
 
+    @Operation(
+            summary = "Lập kế hoạch điều phối tự động cả ngày",
+            description = "Ghép tài xế + xe cho toàn bộ chuyến pending của chi nhánh trong ngày theo điểm công bằng và độ vừa sức chứa. Chỉ trả về đề xuất, chưa lưu."
+    )
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','COORDINATOR')")
+    @GetMapping("/auto-plan")
+    public ResponseData<AutoDispatchPlanResponse> proposeDayPlan(
+            @RequestParam Integer branchId,
+            @RequestParam String date
+    ) {
+        try {
+            log.info("[Dispatch] Propose auto-dispatch plan for branch {} on {}", branchId, date);
+            return new ResponseData<>(HttpStatus.OK.value(),
+                    "Success",
+                    dispatchService.proposeDayPlan(branchId, LocalDate.parse(date)));
+        } catch (Exception e) {
+            log.error("[Dispatch] Failed to build auto-dispatch plan", e);
+            return new ResponseError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        }
+    }
+
+    @Operation(
+            summary = "Áp dụng kế hoạch điều phối tự động",
+            description = "Gán toàn bộ các cặp trong kế hoạch trong một transaction; một chuyến lỗi thì không chuyến nào được gán."
+    )
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','COORDINATOR')")
+    @PostMapping("/auto-plan/commit")
+    public ResponseData<List<AssignRespone>> commitDayPlan(@RequestBody AutoDispatchCommitRequest request) {
+        try {
+            log.info("[Dispatch] Commit auto-dispatch plan: {} items",
+                    request != null && request.getItems() != null ? request.getItems().size() : 0);
+            return new ResponseData<>(HttpStatus.OK.value(),
+                    "Commit plan successfully",
+                    dispatchService.commitDayPlan(request));
+        } catch (Exception e) {
+            log.error("[Dispatch] Commit auto-dispatch plan failed", e);
+            return new ResponseError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        }
+    }
+
     @Operation(summary = "Chi tiết chuyến")
     @PreAuthorize("hasAnyRole('ADMIN','MANAGER','CONSULTANT','COORDINATOR','DRIVER')")
     @GetMapping("/detail/{tripId}")
@@ -183,9 +230,11 @@ public class DispatchController {
     public ResponseData<?> search(@RequestBody TripSearchRequest req) {
         try {
             log.info("[Dispatch] Search trips: {}", req);
+            // Có cursor hoặc size: trả trang keyset kèm nextCursor/hasMore; không thì trả toàn bộ danh sách như cũ
+            boolean paged = req.getCursor() != null || req.getSize() != null;
             return new ResponseData<>(HttpStatus.OK.value(),
                     "Search successfully",
-                    dispatchService.searchTrips(req));
+                    paged ? dispatchService.scrollTrips(req) : dispatchService.searchTrips(req));
         } catch (Exception e) {
             log.error("[Dispatch] Search failed", e);
             return new ResponseError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
@@ -2,14 +2,18 @@ package org.example.ptcmssbackend.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.request.GraphHopper.DistanceMatrixRequest;
 import org.example.ptcmssbackend.dto.response.common.ApiResponse;
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceMatrixResult;
 import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
 import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
 import org.example.ptcmssbackend.dto.response.GraphHopper.RouteOption;
 import org.example.ptcmssbackend.service.GraphHopperService;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -70,6 +74,30 @@ public class GraphHopperController {
         }
     }
 
+    @PostMapping("/matrix")
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','CONSULTANT','COORDINATOR')")
+    @Operation(summary = "Tính bảng khoảng cách", description = "Tính khoảng cách và thời gian từ nhiều điểm đi tới nhiều điểm đến (N×M) trong một lượt")
+    public ResponseEntity<ApiResponse<DistanceMatrixResult>> calculateMatrix(
+            @Valid @RequestBody DistanceMatrixRequest request
+    ) {
+        try {
+            DistanceMatrixResult result = graphHopperService.calculateMatrix(request.getOrigins(), request.getDestinations());
+            return ResponseEntity.ok(ApiResponse.<DistanceMatrixResult>builder()
+                    .success(true)
+                    .message("Distance matrix calculated successfully")
+                    .data(result)
+                    .build());
+        } catch (Exception e) {
+            log.error("Distance matrix error", e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.<DistanceMatrixResult>builder()
+                            .success(false)
+                            .message("Error: " + e.getMessage())
+                            .data(null)
+                            .build());
+        }
+    }
+
     @GetMapping("/routes")
     @Operation(summary = "Lấy các tuyến đường thay thế", description = "Lấy nhiều tuyến đường khác nhau giữa 2 địa chỉ để khách chọn")
     public ResponseEntity<ApiResponse<List<RouteOption>>> getAlternativeRoutes(
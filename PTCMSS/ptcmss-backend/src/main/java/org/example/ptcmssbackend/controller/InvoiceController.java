@@ -14,6 +14,7 @@ import org.example.ptcmssbackend.dto.response.Invoice.InvoiceListResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.PaymentHistoryResponse;
 import org.example.ptcmssbackend.dto.response.common.ApiResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.service.InvoiceService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -127,6 +128,44 @@ public class InvoiceController {
         }
     }
 
+    @Operation(summary = "Danh sách hóa đơn theo con trỏ", description = "Cùng bộ lọc với danh sách hóa đơn, sắp xếp theo ngày hóa đơn mới nhất. Truyền nextCursor của trang trước để lấy trang sau; tổng số chỉ đếm khi withTotal = true.")
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN','MANAGER','ACCOUNTANT','CONSULTANT')")
+    public ResponseEntity<ApiResponse<CursorPageResponse<InvoiceListResponse>>> scrollInvoices(
+            @Parameter(description = "ID chi nhánh") @RequestParam(required = false) Integer branchId,
+            @Parameter(description = "Loại hóa đơn: INCOME, EXPENSE") @RequestParam(required = false) String type,
+            @Parameter(description = "Trạng thái: ACTIVE, CANCELLED") @RequestParam(required = false) String status,
+            @Parameter(description = "Trạng thái thanh toán: UNPAID, PAID, OVERDUE, REFUNDED") @RequestParam(required = false) String paymentStatus,
+            @Parameter(description = "Ngày bắt đầu (YYYY-MM-DD)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @Parameter(description = "Ngày kết thúc (YYYY-MM-DD)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @Parameter(description = "ID khách hàng") @RequestParam(required = false) Integer customerId,
+            @Parameter(description = "Tìm kiếm theo số HĐ, tên KH, mã đơn") @RequestParam(required = false) String keyword,
+            @Parameter(description = "Con trỏ nextCursor của trang trước (bỏ trống = trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số lượng mỗi trang (tối đa 500)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Có đếm tổng số hóa đơn không") @RequestParam(defaultValue = "false") boolean withTotal) {
+
+        log.info("[InvoiceController] Scrolling invoices - branch: {}, type: {}, status: {}, keyword: {}, cursor: {}",
+                branchId, type, status, keyword, cursor);
+
+        try {
+            CursorPageResponse<InvoiceListResponse> response = invoiceService.scrollInvoices(
+                    branchId, type, status, paymentStatus,
+                    startDate, endDate, customerId, keyword, cursor, size, withTotal);
+
+            return ResponseEntity.ok(ApiResponse.<CursorPageResponse<InvoiceListResponse>>builder()
+                    .success(true)
+                    .data(response)
+                    .build());
+        } catch (Exception e) {
+            log.error("[InvoiceController] Error scrolling invoices", e);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.<CursorPageResponse<InvoiceListResponse>>builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build());
+        }
+    }
+
     @Operation(summary = "Cập nhật hóa đơn", description = "Cập nhật thông tin hóa đơn (không thể cập nhật hóa đơn đã thanh toán)")
     @PutMapping("/{invoiceId}")
     @PreAuthorize("hasAnyRole('ADMIN','MANAGER','ACCOUNTANT')")
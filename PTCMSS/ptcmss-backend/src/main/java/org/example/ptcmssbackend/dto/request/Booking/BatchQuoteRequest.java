@@ -0,0 +1,46 @@
+package org.example.ptcmssbackend.dto.request.Booking;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class BatchQuoteRequest {
+
+    @NotEmpty(message = "Danh sách phương án không được để trống")
+    @Size(max = 50, message = "Tối đa 50 phương án mỗi lần báo giá")
+    @Valid
+    private List<QuoteScenario> scenarios;
+
+    /**
+     * Một phương án báo giá: tổ hợp loại xe, hình thức thuê và thời gian.
+     * Nếu không truyền distance thì tính theo startLocation / endLocation.
+     */
+    @Data
+    public static class QuoteScenario {
+        private String label;
+
+        @NotEmpty(message = "Danh sách loại xe không được để trống")
+        @Valid
+        private List<VehicleDetailRequest> vehicles;
+
+        private Double distance;
+
+        @Size(max = 255, message = "Điểm đi không được quá 255 ký tự")
+        private String startLocation;
+
+        @Size(max = 255, message = "Điểm đến không được quá 255 ký tự")
+        private String endLocation;
+
+        private Boolean useHighway;
+        private Integer hireTypeId;
+        private Boolean isHoliday;
+        private Boolean isWeekend;
+        private Instant startTime;
+        private Instant endTime;
+    }
+}
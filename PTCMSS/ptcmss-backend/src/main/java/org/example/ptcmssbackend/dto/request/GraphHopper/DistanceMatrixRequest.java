@@ -0,0 +1,22 @@
+package org.example.ptcmssbackend.dto.request.GraphHopper;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Mỗi địa chỉ khác nhau cần một lần geocode nên giới hạn 25 × 25 điểm mỗi lần tính
+ */
+@Data
+public class DistanceMatrixRequest {
+
+    @NotEmpty(message = "Danh sách điểm đi không được để trống")
+    @Size(max = 25, message = "Tối đa 25 điểm đi mỗi lần tính")
+    private List<String> origins;
+
+    @NotEmpty(message = "Danh sách điểm đến không được để trống")
+    @Size(max = 25, message = "Tối đa 25 điểm đến mỗi lần tính")
+    private List<String> destinations;
+}
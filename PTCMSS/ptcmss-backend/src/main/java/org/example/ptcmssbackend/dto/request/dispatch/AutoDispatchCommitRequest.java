@@ -0,0 +1,22 @@
+package org.example.ptcmssbackend.dto.request.dispatch;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AutoDispatchCommitRequest {
+
+    // Các cặp trip -> tài xế/xe lấy từ kế hoạch điều phối tự động (có thể đã được điều phối viên chỉnh sửa)
+    private List<Item> items;
+
+    private String note;
+
+    @Data
+    public static class Item {
+        private Integer tripId;
+        private Integer bookingId;
+        private Integer driverId;
+        private Integer vehicleId;
+    }
+}
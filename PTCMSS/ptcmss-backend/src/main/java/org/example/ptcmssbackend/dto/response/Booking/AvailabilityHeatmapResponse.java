@@ -0,0 +1,39 @@
+package org.example.ptcmssbackend.dto.response.Booking;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Lưới khả dụng của chi nhánh theo loại xe và từng khung giờ trong [from, to).
+ * Phần tử thứ i của các danh sách ứng với khung [from + i × bucketMinutes, from + (i + 1) × bucketMinutes).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityHeatmapResponse {
+    private Integer branchId;
+    private Instant from;
+    private Instant to;
+    private int bucketMinutes;
+    private long version;
+    private List<CategoryRow> categories;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryRow {
+        private Integer categoryId;
+        private String categoryName;
+        private int total;
+        private List<Integer> busy;
+        private List<Integer> reserved;
+        private List<Integer> available;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.ptcmssbackend.dto.response.Booking;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+public class BatchQuoteResponse {
+    private int scenarioCount;
+    private int routeLookups; // Số lần tra khoảng cách (mỗi tuyến duy nhất một lần)
+    private List<ScenarioQuote> quotes; // Cùng thứ tự với danh sách phương án gửi lên
+
+    /**
+     * Kết quả báo giá của một phương án
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ScenarioQuote {
+        private int index;
+        private String label;
+        private boolean ok;
+        private String error;
+        private Double distance;
+        private String hireTypeCode;
+        private int numberOfDays;
+        private boolean sameDayTrip;
+        private BigDecimal surchargeRate;
+        private BigDecimal totalPrice;
+        private List<QuoteLine> lines;
+    }
+
+    /**
+     * Giá theo từng loại xe trong phương án
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuoteLine {
+        private Integer vehicleCategoryId;
+        private String categoryName;
+        private int quantity;
+        private boolean active; // Loại xe không ACTIVE không tính giá
+        private BigDecimal unitPrice;
+        private BigDecimal amount;
+    }
+}
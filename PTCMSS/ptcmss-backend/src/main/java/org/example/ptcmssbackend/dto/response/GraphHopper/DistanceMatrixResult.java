@@ -0,0 +1,24 @@
+package org.example.ptcmssbackend.dto.response.GraphHopper;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Bảng khoảng cách N×M: hàng i = origins[i], cột j = destinations[j].
+ * Ô null khi không geocode được địa chỉ hoặc không có đường giữa hai điểm.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistanceMatrixResult {
+    private List<String> origins;                 // Địa chỉ điểm đi (theo thứ tự yêu cầu)
+    private List<String> destinations;            // Địa chỉ điểm đến (theo thứ tự yêu cầu)
+    private List<List<Double>> distancesKm;       // Khoảng cách (km)
+    private List<List<Double>> durationsMinutes;  // Thời gian (phút)
+    private Boolean estimated;                    // true: có ô ước lượng offline do GraphHopper không khả dụng
+}
@@ -14,4 +14,5 @@ public class DistanceResult {
     private Double durationMinutes;  // Thời gian (phút)
     private String from;             // Địa chỉ điểm đi
     private String to;               // Địa chỉ điểm đến
+    private Boolean estimated;       // true: GraphHopper không khả dụng, ước lượng offline
 }
\ No newline at end of file
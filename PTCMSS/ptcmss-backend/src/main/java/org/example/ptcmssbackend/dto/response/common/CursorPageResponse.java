@@ -0,0 +1,25 @@
+package org.example.ptcmssbackend.dto.response.common;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Trang kết quả phân trang theo con trỏ (keyset).
+ * nextCursor = null khi đã hết dữ liệu; totalElements chỉ có khi client yêu cầu (withTotal = true).
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResponse<T> implements Serializable {
+    private int pageSize;
+    private boolean hasMore;
+    private String nextCursor;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+    private List<T> items;
+}
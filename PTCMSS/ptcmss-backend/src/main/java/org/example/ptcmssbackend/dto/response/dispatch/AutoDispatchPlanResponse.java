@@ -0,0 +1,63 @@
+package org.example.ptcmssbackend.dto.response.dispatch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Kế hoạch điều phối tự động cho cả ngày của một chi nhánh (chưa lưu, điều phối viên xác nhận rồi mới commit)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AutoDispatchPlanResponse {
+
+    private Integer branchId;
+    private LocalDate date;
+
+    private Integer totalTrips;
+    private Integer plannedTrips;
+
+    // Tổng điểm công bằng tài xế + tổng độ lệch sức chứa của xe (thấp = tốt)
+    private Long totalDriverScore;
+    private Long totalVehicleScore;
+
+    private List<PlanItem> items;
+    private List<UnplannedTrip> unplanned;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PlanItem {
+        private Integer tripId;
+        private Integer bookingId;
+        private Instant startTime;
+        private Instant endTime;
+
+        private Integer driverId;
+        private String driverName;
+        private Integer driverScore;
+
+        private Integer vehicleId;
+        private String vehicleLicensePlate;
+        private Integer vehicleScore;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UnplannedTrip {
+        private Integer tripId;
+        private Integer bookingId;
+        private Instant startTime;
+        private String reason;
+    }
+}
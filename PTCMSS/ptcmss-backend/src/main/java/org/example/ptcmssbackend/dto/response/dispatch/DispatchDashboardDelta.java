@@ -0,0 +1,56 @@
+package org.example.ptcmssbackend.dto.response.dispatch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.ptcmssbackend.enums.TripStatus;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Thay đổi của dashboard điều phối một chi nhánh, đẩy qua STOMP topic /topic/dispatches/branch/{branchId}.
+ * Client nạp {@link DispatchDashboardResponse} một lần (kèm version) rồi áp các delta có version lớn hơn;
+ * nếu thấy version bị nhảy cóc hoặc reload = true thì tải lại toàn bộ.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DispatchDashboardDelta {
+
+    private String type;               // DISPATCH_DASHBOARD_DELTA
+    private Integer branchId;
+    private Long version;
+    private Boolean reload;            // true: danh sách tài xế/xe thay đổi, client cần tải lại
+
+    // Thống kê sau khi áp thay đổi
+    private Integer pendingCount;
+    private Integer assignedCount;
+    private Integer cancelledCount;
+    private Integer completedCount;
+    private Integer inProgressCount;
+
+    private List<TripChange> upserts;
+    private List<Integer> removedTripIds;
+    private List<PendingTripResponse> pendingTrips; // null = hàng đợi không đổi
+
+    private Instant timestamp;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TripChange {
+        private Integer tripId;
+        private Integer bookingId;
+        private TripStatus status;
+        private String state;          // PENDING / ASSIGNED / IN_PROGRESS / COMPLETED / CANCELLED
+        private Instant startTime;
+        private Instant endTime;
+        private String note;
+        private List<Integer> driverIds;
+        private List<Integer> vehicleIds;
+    }
+}
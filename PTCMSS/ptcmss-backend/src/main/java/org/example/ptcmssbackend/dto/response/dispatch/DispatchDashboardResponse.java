@@ -21,6 +21,9 @@ public class DispatchDashboardResponse {
     private Integer completedCount;    // Số chuyến đã hoàn thành
     private Integer inProgressCount;   // Số chuyến đang thực hiện
 
+    // Phiên bản snapshot (chỉ có ở dashboard trực tiếp, dùng để áp DispatchDashboardDelta qua WebSocket)
+    private Long version;
+
     private List<PendingTripResponse> pendingTrips;
     private List<DriverScheduleItem> driverSchedules;
     private List<VehicleScheduleItem> vehicleSchedules;
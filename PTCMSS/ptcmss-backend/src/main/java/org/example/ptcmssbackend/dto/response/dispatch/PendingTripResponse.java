@@ -1,7 +1,9 @@
 package org.example.ptcmssbackend.dto.response.dispatch;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.example.ptcmssbackend.enums.BookingStatus;
 
 import java.math.BigDecimal;
@@ -9,6 +11,8 @@ import java.time.Instant;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class PendingTripResponse {
 
     private Integer tripId;
@@ -35,5 +39,8 @@ public class PendingTripResponse {
     private String hireTypeName;
     private BigDecimal estimatedCost;
     private BookingStatus bookingStatus;
+
+    // Số ghế lớn nhất trong các loại xe của booking (ưu tiên điều phối phân khúc cao trước)
+    private Integer maxSeats;
 }
 
@@ -0,0 +1,75 @@
+package org.example.ptcmssbackend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.example.ptcmssbackend.enums.OutboxEventType;
+import org.example.ptcmssbackend.enums.OutboxStatus;
+
+import java.time.Instant;
+
+/**
+ * Outbox giao dịch cho các tác vụ phụ của booking (đẩy WebSocket...).
+ * Dòng được ghi cùng transaction với booking; BookingOutboxService gửi sau khi commit, theo thứ tự id trong từng booking.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "booking_outbox", indexes = {
+        @Index(name = "idx_booking_outbox_status_next", columnList = "status, nextAttemptAt, id"),
+        @Index(name = "idx_booking_outbox_booking", columnList = "bookingId, status, id")
+})
+public class BookingOutbox {
+    @Id
+    @Column(name = "id", nullable = false)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bookingId")
+    private Integer bookingId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "eventType", nullable = false, length = 40)
+    private OutboxEventType eventType;
+
+    @NotNull
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @NotNull
+    @Column(name = "nextAttemptAt", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Size(max = 255)
+    @Column(name = "lastError")
+    private String lastError;
+
+    @NotNull
+    @Column(name = "createdAt", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "sentAt")
+    private Instant sentAt;
+
+    public BookingOutbox(Integer bookingId, OutboxEventType eventType, String payload, Instant now) {
+        this.bookingId = bookingId;
+        this.eventType = eventType;
+        this.payload = payload;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.ptcmssbackend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Chỉ mục tìm kiếm khách hàng: mỗi dòng là một token đã chuẩn hóa (tên không dấu, hậu tố SĐT, email).
+ * Tìm theo tiền tố token (LIKE 'x%') để dùng được index thay cho LIKE '%x%' trên bảng customers.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "customer_search_tokens", indexes = {
+        @Index(name = "idx_customer_search_token", columnList = "token, customerId"),
+        @Index(name = "idx_customer_search_customer", columnList = "customerId")
+})
+public class CustomerSearchTokens {
+    @Id
+    @Column(name = "id", nullable = false)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @NotNull
+    @Column(name = "customerId", nullable = false)
+    private Integer customerId;
+
+    @Size(max = 64)
+    @NotNull
+    @Column(name = "token", nullable = false, length = 64)
+    private String token;
+
+    public CustomerSearchTokens(Integer customerId, String token) {
+        this.customerId = customerId;
+        this.token = token;
+    }
+}
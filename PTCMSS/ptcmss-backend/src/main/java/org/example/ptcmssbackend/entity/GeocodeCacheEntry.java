@@ -0,0 +1,52 @@
+package org.example.ptcmssbackend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Tầng lưu trữ của cache geocode: kết quả GraphHopper (JSON danh sách PlaceSuggestion) theo địa chỉ đã chuẩn hóa
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "geocode_cache", indexes = {
+        @Index(name = "idx_geocode_cache_expires", columnList = "expiresAt")
+})
+public class GeocodeCacheEntry {
+    @Id
+    @Column(name = "id", nullable = false)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Size(max = 255)
+    @Column(name = "queryKey", nullable = false, length = 255, unique = true)
+    private String queryKey;
+
+    @NotNull
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @NotNull
+    @Column(name = "createdAt", nullable = false)
+    private Instant createdAt;
+
+    @NotNull
+    @Column(name = "expiresAt", nullable = false)
+    private Instant expiresAt;
+
+    public GeocodeCacheEntry(String queryKey, String payload, Instant now, Instant expiresAt) {
+        this.queryKey = queryKey;
+        this.payload = payload;
+        this.createdAt = now;
+        this.expiresAt = expiresAt;
+    }
+}
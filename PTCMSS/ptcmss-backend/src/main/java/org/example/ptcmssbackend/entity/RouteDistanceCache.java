@@ -0,0 +1,58 @@
+package org.example.ptcmssbackend.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Cache khoảng cách / thời gian chạy giữa hai tọa độ theo profile của GraphHopper (car...).
+ * routeKey = profile|latĐi,lngĐi|latĐến,lngĐến với tọa độ làm tròn 5 chữ số (~1 m).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "route_distance_cache")
+public class RouteDistanceCache {
+    @Id
+    @Column(name = "id", nullable = false)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(name = "routeKey", nullable = false, length = 100, unique = true)
+    private String routeKey;
+
+    @NotNull
+    @Size(max = 20)
+    @Column(name = "profile", nullable = false, length = 20)
+    private String profile;
+
+    @Column(name = "fromLat", nullable = false)
+    private double fromLat;
+
+    @Column(name = "fromLng", nullable = false)
+    private double fromLng;
+
+    @Column(name = "toLat", nullable = false)
+    private double toLat;
+
+    @Column(name = "toLng", nullable = false)
+    private double toLng;
+
+    @Column(name = "distanceKm", nullable = false)
+    private double distanceKm;
+
+    @Column(name = "durationMinutes", nullable = false)
+    private double durationMinutes;
+
+    @NotNull
+    @Column(name = "fetchedAt", nullable = false)
+    private Instant fetchedAt;
+}
@@ -14,7 +14,9 @@ import java.time.Instant;
 @Getter
 @Setter
 @Entity
-@Table(name = "trips")
+@Table(name = "trips", indexes = {
+        @Index(name = "idx_trips_start_time_id", columnList = "startTime, tripId")
+})
 public class Trips {
     @Id
     @Column(name = "tripId", nullable = false)
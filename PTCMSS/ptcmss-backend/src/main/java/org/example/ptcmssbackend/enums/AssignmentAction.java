@@ -5,5 +5,7 @@ public enum AssignmentAction {
     REASSIGN,
     UNASSIGN,
     ACCEPT,
-    CANCEL
+    CANCEL,
+    START,
+    COMPLETE
 }
@@ -0,0 +1,8 @@
+package org.example.ptcmssbackend.enums;
+
+public enum OutboxEventType {
+    GLOBAL_NOTIFICATION,
+    USER_NOTIFICATION,
+    BOOKING_UPDATE,
+    PAYMENT_UPDATE
+}
@@ -0,0 +1,7 @@
+package org.example.ptcmssbackend.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
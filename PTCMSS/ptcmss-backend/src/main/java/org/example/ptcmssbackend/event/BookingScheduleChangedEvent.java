@@ -0,0 +1,20 @@
+package org.example.ptcmssbackend.event;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra khi lịch chuyến / số lượng xe của đơn thay đổi hoặc khi thanh toán cọc của đơn được duyệt.
+ * Lưới khả dụng lắng nghe sự kiện này sau khi transaction commit để tính lại các trip của đơn.
+ */
+@Getter
+public class BookingScheduleChangedEvent {
+
+    private final List<Integer> bookingIds;
+
+    public BookingScheduleChangedEvent(Collection<Integer> bookingIds) {
+        this.bookingIds = bookingIds != null ? List.copyOf(bookingIds) : List.of();
+    }
+}
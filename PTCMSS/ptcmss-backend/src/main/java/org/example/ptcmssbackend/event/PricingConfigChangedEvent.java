@@ -0,0 +1,17 @@
+package org.example.ptcmssbackend.event;
+
+import lombok.Getter;
+
+/**
+ * Phát ra khi cấu hình dùng để tính giá thay đổi (cài đặt hệ thống, bảng giá loại xe).
+ * Snapshot bảng giá lắng nghe sự kiện này sau khi transaction commit để dựng lại.
+ */
+@Getter
+public class PricingConfigChangedEvent {
+
+    private final String source;
+
+    public PricingConfigChangedEvent(String source) {
+        this.source = source;
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.ptcmssbackend.event;
+
+import lombok.Getter;
+import org.example.ptcmssbackend.enums.AssignmentAction;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra khi gán/hủy gán tài xế - xe hoặc khi trạng thái chuyến thay đổi
+ * (bắt đầu, hoàn thành). Các bộ nhớ đệm phục vụ điều phối lắng nghe sự kiện này
+ * sau khi transaction commit để cập nhật lại dữ liệu của các chuyến liên quan.
+ */
+@Getter
+public class TripAssignmentChangedEvent {
+
+    private final List<Integer> tripIds;
+    private final AssignmentAction action;
+
+    public TripAssignmentChangedEvent(Collection<Integer> tripIds, AssignmentAction action) {
+        this.tripIds = tripIds != null ? List.copyOf(tripIds) : List.of();
+        this.action = action;
+    }
+}
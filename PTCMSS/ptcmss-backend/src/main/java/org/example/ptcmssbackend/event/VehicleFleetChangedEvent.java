@@ -0,0 +1,23 @@
+package org.example.ptcmssbackend.event;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Phát ra khi đội xe của chi nhánh thay đổi (thêm, sửa, xóa xe, đổi trạng thái / loại xe / chi nhánh).
+ * Lưới khả dụng lắng nghe sự kiện này sau khi transaction commit để bỏ lưới của các chi nhánh liên quan.
+ */
+@Getter
+public class VehicleFleetChangedEvent {
+
+    private final List<Integer> branchIds;
+
+    public VehicleFleetChangedEvent(Collection<Integer> branchIds) {
+        this.branchIds = branchIds != null
+                ? branchIds.stream().filter(Objects::nonNull).distinct().toList()
+                : List.of();
+    }
+}
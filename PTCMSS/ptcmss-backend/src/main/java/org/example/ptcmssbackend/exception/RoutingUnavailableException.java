@@ -0,0 +1,14 @@
+package org.example.ptcmssbackend.exception;
+
+/**
+ * GraphHopper không phản hồi (timeout, lỗi mạng, 5xx) hoặc circuit breaker đang mở
+ */
+public class RoutingUnavailableException extends RuntimeException {
+    public RoutingUnavailableException(String message) {
+        super(message);
+    }
+
+    public RoutingUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.ptcmssbackend.repository;
+
+import org.example.ptcmssbackend.entity.BookingOutbox;
+import org.example.ptcmssbackend.enums.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface BookingOutboxRepository extends JpaRepository<BookingOutbox, Long> {
+
+    /**
+     * Các dòng PENDING đến hạn gửi, theo thứ tự id.
+     * Bỏ qua dòng có dòng PENDING trước nó (cùng booking) chưa đến hạn thử lại, để giữ thứ tự trong từng booking.
+     */
+    @Query("SELECT o FROM BookingOutbox o " +
+            "WHERE o.status = org.example.ptcmssbackend.enums.OutboxStatus.PENDING " +
+            "AND o.nextAttemptAt <= :now " +
+            "AND (o.bookingId IS NULL OR NOT EXISTS (" +
+            "   SELECT 1 FROM BookingOutbox p WHERE p.bookingId = o.bookingId AND p.id < o.id " +
+            "   AND p.status = org.example.ptcmssbackend.enums.OutboxStatus.PENDING " +
+            "   AND p.nextAttemptAt > :now)) " +
+            "ORDER BY o.id ASC")
+    List<BookingOutbox> findDispatchable(@Param("now") Instant now, Pageable pageable);
+
+    List<BookingOutbox> findByStatusAndSentAtBefore(OutboxStatus status, Instant before, Pageable pageable);
+}
@@ -4,13 +4,16 @@ import org.example.ptcmssbackend.entity.Bookings;
 import org.example.ptcmssbackend.enums.BookingStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Bookings, Integer> {
@@ -18,6 +21,13 @@ public interface BookingRepository extends JpaRepository<Bookings, Integer> {
     // Tìm booking theo status
     List<Bookings> findByStatus(BookingStatus status);
 
+    /**
+     * Chi tiết booking kèm các quan hệ hiển thị (khách hàng, chi nhánh, loại thuê, tư vấn viên) trong một câu
+     */
+    @EntityGraph(attributePaths = {"customer.createdBy.branch", "branch", "hireType", "consultant.user.role"})
+    @Query("SELECT b FROM Bookings b WHERE b.id = :bookingId")
+    Optional<Bookings> findDetailById(@Param("bookingId") Integer bookingId);
+
     // Tìm booking theo customer phone
     @Query("SELECT b FROM Bookings b WHERE b.customer.phone = :phone")
     List<Bookings> findByCustomerPhone(@Param("phone") String phone);
@@ -26,12 +36,18 @@ public interface BookingRepository extends JpaRepository<Bookings, Integer> {
     @Query("SELECT b FROM Bookings b WHERE b.customer.id = :customerId ORDER BY b.createdAt DESC")
     Page<Bookings> findByCustomerId(@Param("customerId") Integer customerId, Pageable pageable);
 
-    // Tìm booking theo bookingId hoặc customer phone (search)
-    @Query("SELECT b FROM Bookings b WHERE " +
-            "CAST(b.id AS string) LIKE %:keyword% OR " +
-            "b.customer.phone LIKE %:keyword% OR " +
-            "b.customer.fullName LIKE %:keyword%")
-    Page<Bookings> searchBookings(@Param("keyword") String keyword, Pageable pageable);
+    /**
+     * Tìm booking theo từ khóa đã tra chỉ mục (xem SearchIndexService):
+     * mã đơn khớp chính xác hoặc khách hàng khớp các tiền tố term1..term3 / emailTerm
+     */
+    @Query("SELECT b FROM Bookings b WHERE b.id = :keywordId OR b.customer.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS)
+    Page<Bookings> searchBookings(
+            @Param("keywordId") Integer keywordId,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm,
+            Pageable pageable);
 
     /**
      * Filter bookings với nhiều điều kiện.
@@ -42,33 +58,110 @@ public interface BookingRepository extends JpaRepository<Bookings, Integer> {
      * - Hiện tại, filter ngày dựa trên thời gian khởi hành của trips (Trips.startTime).
      *   + startDate  => tìm các booking có ít nhất 1 trip có startTime >= startDate
      *   + endDate    => tìm các booking có ít nhất 1 trip có startTime <= endDate
+     *   + có cả hai   => cùng một trip có startTime trong [startDate, endDate]
      * - Nếu một booking chưa có trip thì điều kiện ngày sẽ không áp dụng (booking đó
      *   chỉ xuất hiện khi không truyền startDate/endDate).
+     *
+     * Từ khóa được tra qua chỉ mục tìm kiếm trước (SearchIndexService): keywordSearch = false là không lọc,
+     * ngược lại khớp mã đơn keywordId hoặc khách hàng khớp chỉ mục (CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS).
+     *
+     * Khách hàng, chi nhánh và tư vấn viên (kèm user, role) được JOIN FETCH để trang danh sách
+     * không phát sinh thêm câu select theo từng đơn.
      */
-    @Query("SELECT b FROM Bookings b WHERE " +
+    @Query(value = "SELECT b FROM Bookings b JOIN FETCH b.customer JOIN FETCH b.branch " +
+            "LEFT JOIN FETCH b.consultant cons LEFT JOIN FETCH cons.user cu LEFT JOIN FETCH cu.role WHERE " +
             "(:status IS NULL OR b.status = :status) AND " +
             "(:branchId IS NULL OR b.branch.id = :branchId) AND " +
             "(:consultantId IS NULL OR b.consultant.employeeId = :consultantId) AND " +
-            "(:startDate IS NULL OR EXISTS (" +
-            "   SELECT 1 FROM Trips t WHERE t.booking = b AND t.startTime >= :startDate" +
+            "((:startDate IS NULL AND :endDate IS NULL) OR EXISTS (" +
+            "   SELECT 1 FROM Trips t WHERE t.booking = b " +
+            "   AND (:startDate IS NULL OR t.startTime >= :startDate) " +
+            "   AND (:endDate IS NULL OR t.startTime <= :endDate)" +
             ")) AND " +
-            "(:endDate IS NULL OR EXISTS (" +
-            "   SELECT 1 FROM Trips t2 WHERE t2.booking = b AND t2.startTime <= :endDate" +
+            "(:keywordSearch = false OR b.id = :keywordId OR b.customer.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ")",
+            countQuery = "SELECT COUNT(b) FROM Bookings b WHERE " +
+            "(:status IS NULL OR b.status = :status) AND " +
+            "(:branchId IS NULL OR b.branch.id = :branchId) AND " +
+            "(:consultantId IS NULL OR b.consultant.employeeId = :consultantId) AND " +
+            "((:startDate IS NULL AND :endDate IS NULL) OR EXISTS (" +
+            "   SELECT 1 FROM Trips t WHERE t.booking = b " +
+            "   AND (:startDate IS NULL OR t.startTime >= :startDate) " +
+            "   AND (:endDate IS NULL OR t.startTime <= :endDate)" +
             ")) AND " +
-            "(:keyword IS NULL OR " +
-            "  CAST(b.id AS string) LIKE %:keyword% OR " +
-            "  b.customer.phone LIKE %:keyword% OR " +
-            "  b.customer.fullName LIKE %:keyword%)")
+            "(:keywordSearch = false OR b.id = :keywordId OR b.customer.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ")")
     Page<Bookings> filterBookings(
             @Param("status") BookingStatus status,
             @Param("branchId") Integer branchId,
             @Param("consultantId") Integer consultantId,
             @Param("startDate") Instant startDate,
             @Param("endDate") Instant endDate,
-            @Param("keyword") String keyword,
+            @Param("keywordSearch") boolean keywordSearch,
+            @Param("keywordId") Integer keywordId,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm,
+            Pageable pageable
+    );
+
+    /**
+     * Phân trang keyset cho filterBookings: cùng điều kiện lọc, sắp xếp (createdAt DESC, id DESC),
+     * chỉ lấy các dòng sau vị trí (afterKey, afterId) của trang trước (afterId = null là trang đầu).
+     * Không có câu COUNT; truyền PageCursor.limit(size) để lấy size + 1 dòng.
+     * Các quan hệ hiển thị trên danh sách được JOIN FETCH như filterBookings.
+     */
+    @Query("SELECT b FROM Bookings b JOIN FETCH b.customer JOIN FETCH b.branch " +
+            "LEFT JOIN FETCH b.consultant cons LEFT JOIN FETCH cons.user cu LEFT JOIN FETCH cu.role WHERE " +
+            "(:status IS NULL OR b.status = :status) AND " +
+            "(:branchId IS NULL OR b.branch.id = :branchId) AND " +
+            "(:consultantId IS NULL OR b.consultant.employeeId = :consultantId) AND " +
+            "((:startDate IS NULL AND :endDate IS NULL) OR EXISTS (" +
+            "   SELECT 1 FROM Trips t WHERE t.booking = b " +
+            "   AND (:startDate IS NULL OR t.startTime >= :startDate) " +
+            "   AND (:endDate IS NULL OR t.startTime <= :endDate)" +
+            ")) AND " +
+            "(:keywordSearch = false OR b.id = :keywordId OR b.customer.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ") AND " +
+            "(:afterId IS NULL " +
+            "   OR (:afterKey IS NOT NULL AND (b.createdAt < :afterKey " +
+            "       OR (b.createdAt = :afterKey AND b.id < :afterId) OR b.createdAt IS NULL)) " +
+            "   OR (:afterKey IS NULL AND b.createdAt IS NULL AND b.id < :afterId)) " +
+            "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Bookings> scrollBookings(
+            @Param("status") BookingStatus status,
+            @Param("branchId") Integer branchId,
+            @Param("consultantId") Integer consultantId,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("keywordSearch") boolean keywordSearch,
+            @Param("keywordId") Integer keywordId,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm,
+            @Param("afterKey") Instant afterKey,
+            @Param("afterId") Integer afterId,
             Pageable pageable
     );
 
+    /**
+     * Dữ liệu phụ cho một trang danh sách booking trong một câu: mỗi trip một dòng (booking chưa có trip
+     * có một dòng với tripId = null), sắp xếp theo bookingId, tripId.
+     * Mỗi dòng: [bookingId (Integer), tripId (Integer), startLocation (String), endLocation (String),
+     * startTime (Instant), assigned (Boolean: trip đã có cả tài xế và xe), vehicleCount (Long: tổng quantity
+     * trong booking_vehicle_details, null nếu không có), paidAmount (BigDecimal: tổng payment CONFIRMED)]
+     */
+    @Query("SELECT b.id, t.id, t.startLocation, t.endLocation, t.startTime, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM TripDrivers td WHERE td.trip = t) " +
+            "   AND EXISTS (SELECT 1 FROM TripVehicles tv WHERE tv.trip = t) THEN true ELSE false END, " +
+            "(SELECT SUM(vd.quantity) FROM BookingVehicleDetails vd WHERE vd.booking = b), " +
+            "(SELECT COALESCE(SUM(ph.amount), 0) FROM PaymentHistory ph JOIN ph.invoice i " +
+            "   WHERE i.booking = b " +
+            "   AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED) " +
+            "FROM Bookings b LEFT JOIN Trips t ON t.booking = b " +
+            "WHERE b.id IN :bookingIds " +
+            "ORDER BY b.id, t.id")
+    List<Object[]> findListDetailsByBookingIds(@Param("bookingIds") Collection<Integer> bookingIds);
+
     // Lấy bookings theo status cho dashboard
     @Query("SELECT COUNT(b) FROM Bookings b WHERE b.status = :status " +
             "AND (:branchId IS NULL OR b.branch.id = :branchId) " +
@@ -79,6 +172,40 @@ public interface BookingRepository extends JpaRepository<Bookings, Integer> {
             @Param("consultantId") Integer consultantId
     );
 
+    /**
+     * Số booking theo trạng thái cho dashboard (một câu GROUP BY thay cho nhiều countByStatus).
+     * Mỗi dòng: [status (BookingStatus), count (Long)]
+     */
+    @Query("SELECT b.status, COUNT(b) FROM Bookings b WHERE " +
+            "(:branchId IS NULL OR b.branch.id = :branchId) " +
+            "AND (:consultantId IS NULL OR b.consultant.employeeId = :consultantId) " +
+            "GROUP BY b.status")
+    List<Object[]> countGroupByStatus(
+            @Param("branchId") Integer branchId,
+            @Param("consultantId") Integer consultantId
+    );
+
+    /**
+     * Số booking theo tháng khởi hành và trạng thái cho 3 tháng liên tiếp bắt đầu tại month0, month1, month2.
+     * Booking được tính vào một tháng nếu có ít nhất một trip khởi hành trong tháng đó (giống filterBookings).
+     * Mỗi dòng: [bucket (Integer: 0, 1, 2), status (BookingStatus), count (Long)]
+     */
+    @Query("SELECT CASE WHEN t.startTime >= :month2 THEN 2 WHEN t.startTime >= :month1 THEN 1 ELSE 0 END AS bucket, " +
+            "b.status, COUNT(DISTINCT b.id) " +
+            "FROM Trips t JOIN t.booking b WHERE " +
+            "t.startTime >= :month0 AND t.startTime <= :endDate " +
+            "AND (:branchId IS NULL OR b.branch.id = :branchId) " +
+            "AND (:consultantId IS NULL OR b.consultant.employeeId = :consultantId) " +
+            "GROUP BY bucket, b.status")
+    List<Object[]> countByMonthAndStatus(
+            @Param("branchId") Integer branchId,
+            @Param("consultantId") Integer consultantId,
+            @Param("month0") Instant month0,
+            @Param("month1") Instant month1,
+            @Param("month2") Instant month2,
+            @Param("endDate") Instant endDate
+    );
+
     // Lấy bookings chờ báo giá (PENDING)
     @Query("SELECT b FROM Bookings b WHERE b.status = 'PENDING' " +
             "AND (:branchId IS NULL OR b.branch.id = :branchId) " +
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,10 @@ public interface BookingVehicleDetailsRepository extends JpaRepository<BookingVe
     @Query("SELECT bvd FROM BookingVehicleDetails bvd WHERE bvd.booking.id = :bookingId")
     List<BookingVehicleDetails> findByBookingId(@Param("bookingId") Integer bookingId);
 
+    // Lấy vehicle details (kèm loại xe) của nhiều booking
+    @Query("SELECT bvd FROM BookingVehicleDetails bvd LEFT JOIN FETCH bvd.vehicleCategory WHERE bvd.booking.id IN :bookingIds")
+    List<BookingVehicleDetails> findByBookingIdIn(@Param("bookingIds") Collection<Integer> bookingIds);
+
     // Xóa tất cả vehicle details của một booking
     void deleteByBooking_Id(Integer bookingId);
 
@@ -93,5 +98,61 @@ public interface BookingVehicleDetailsRepository extends JpaRepository<BookingVe
             @Param("startTime") Instant startTime,
             @Param("endTime") Instant endTime
     );
-}
 
+    /**
+     * Như {@link #countReservedQuantityByDepositWithoutAssignedVehicles} nhưng trả từng khoảng giữ chỗ
+     * [startTime, endTime, quantity] chồng lấn [from, to) để quét tìm giờ rảnh
+     */
+    @Query("""
+        SELECT t.startTime, t.endTime, bvd.quantity
+        FROM BookingVehicleDetails bvd
+        JOIN bvd.booking b
+        JOIN Trips t ON t.booking.id = b.id
+        WHERE b.branch.id = :branchId
+          AND bvd.vehicleCategory.id = :categoryId
+          AND b.status != 'CANCELLED'
+          AND t.startTime < :to
+          AND t.endTime > :from
+          AND NOT EXISTS (
+            SELECT tv.id FROM TripVehicles tv
+            WHERE tv.trip.booking.id = b.id
+          )
+          AND (
+            SELECT COALESCE(SUM(ph.amount), 0)
+            FROM PaymentHistory ph
+            JOIN Invoices inv ON ph.invoice.id = inv.id
+            WHERE inv.booking.id = b.id
+              AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED
+          ) > 0
+    """)
+    List<Object[]> findReservedIntervalsByDepositWithoutAssignedVehicles(
+            @Param("branchId") Integer branchId,
+            @Param("categoryId") Integer categoryId,
+            @Param("from") Instant from,
+            @Param("to") Instant to
+    );
+
+    /**
+     * Số xe giữ chỗ theo cọc (chưa gán xe) của các đơn chỉ định: [bookingId, categoryId, quantity].
+     * Cùng điều kiện với {@link #countReservedQuantityByDepositWithoutAssignedVehicles}
+     */
+    @Query("""
+        SELECT b.id, bvd.vehicleCategory.id, bvd.quantity
+        FROM BookingVehicleDetails bvd
+        JOIN bvd.booking b
+        WHERE b.id IN :bookingIds
+          AND b.status != 'CANCELLED'
+          AND NOT EXISTS (
+            SELECT tv.id FROM TripVehicles tv
+            WHERE tv.trip.booking.id = b.id
+          )
+          AND (
+            SELECT COALESCE(SUM(ph.amount), 0)
+            FROM PaymentHistory ph
+            JOIN Invoices inv ON ph.invoice.id = inv.id
+            WHERE inv.booking.id = b.id
+              AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED
+          ) > 0
+    """)
+    List<Object[]> findReservedQuantitiesByBookingIds(@Param("bookingIds") Collection<Integer> bookingIds);
+}
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,28 +23,50 @@ public interface CustomerRepository extends JpaRepository<Customers, Integer> {
     @Query("SELECT c FROM Customers c WHERE LOWER(c.phone) = LOWER(:phone)")
     Optional<Customers> findByPhoneIgnoreCase(@Param("phone") String phone);
     
-    // Danh sách customer với filter
+    // Danh sách customer với filter; từ khóa tra chỉ mục tìm kiếm ngay trong SQL (CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS)
     @Query(value = "SELECT c FROM Customers c LEFT JOIN FETCH c.createdBy e LEFT JOIN FETCH e.branch b WHERE " +
-           "(:keyword IS NULL OR :keyword = '' OR " +
-           "LOWER(c.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(c.phone) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(c.email) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+           "(:keywordSearch = false OR c.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ") AND " +
            "(:branchId IS NULL OR b.id = :branchId) AND " +
            "(:fromDate IS NULL OR c.createdAt >= :fromDate) AND " +
            "(:toDate IS NULL OR c.createdAt <= :toDate)",
            countQuery = "SELECT COUNT(c) FROM Customers c LEFT JOIN c.createdBy e LEFT JOIN e.branch b WHERE " +
-           "(:keyword IS NULL OR :keyword = '' OR " +
-           "LOWER(c.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(c.phone) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(c.email) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+           "(:keywordSearch = false OR c.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ") AND " +
            "(:branchId IS NULL OR b.id = :branchId) AND " +
            "(:fromDate IS NULL OR c.createdAt >= :fromDate) AND " +
            "(:toDate IS NULL OR c.createdAt <= :toDate)")
     Page<Customers> findWithFilters(
-            @Param("keyword") String keyword,
+            @Param("keywordSearch") boolean keywordSearch,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm,
             @Param("branchId") Integer branchId,
             @Param("fromDate") Instant fromDate,
             @Param("toDate") Instant toDate,
             Pageable pageable);
+
+    // Phân trang keyset cho findWithFilters theo (createdAt DESC, id DESC), không COUNT; afterId = null là trang đầu
+    @Query("SELECT c FROM Customers c LEFT JOIN FETCH c.createdBy e LEFT JOIN FETCH e.branch b WHERE " +
+           "(:keywordSearch = false OR c.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ") AND " +
+           "(:branchId IS NULL OR b.id = :branchId) AND " +
+           "(:fromDate IS NULL OR c.createdAt >= :fromDate) AND " +
+           "(:toDate IS NULL OR c.createdAt <= :toDate) AND " +
+           "(:afterId IS NULL " +
+           "   OR (:afterKey IS NOT NULL AND (c.createdAt < :afterKey " +
+           "       OR (c.createdAt = :afterKey AND c.id < :afterId) OR c.createdAt IS NULL)) " +
+           "   OR (:afterKey IS NULL AND c.createdAt IS NULL AND c.id < :afterId)) " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Customers> scrollWithFilters(
+            @Param("keywordSearch") boolean keywordSearch,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm,
+            @Param("branchId") Integer branchId,
+            @Param("fromDate") Instant fromDate,
+            @Param("toDate") Instant toDate,
+            @Param("afterKey") Instant afterKey,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
 }
 
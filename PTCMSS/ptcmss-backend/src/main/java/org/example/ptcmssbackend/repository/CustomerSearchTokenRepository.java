@@ -0,0 +1,41 @@
+package org.example.ptcmssbackend.repository;
+
+import org.example.ptcmssbackend.entity.CustomerSearchTokens;
+import org.example.ptcmssbackend.entity.Customers;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CustomerSearchTokenRepository extends JpaRepository<CustomerSearchTokens, Integer> {
+
+    /**
+     * Subquery id khách hàng khớp từ khóa, ghép vào câu danh sách dạng "c.id IN " + KEYWORD_CUSTOMER_IDS
+     * để việc tra chỉ mục chạy luôn trong SQL, không nạp danh sách id về Java.
+     * Tham số (tiền tố đã gồm '%' ở cuối, ký tự đại diện thoát bằng '!', xem SearchTokens):
+     * - :term1, :term2, :term3: các tiền tố phải cùng khớp; term1 = null là không tra theo từ, term2/term3 = null là bỏ qua
+     * - :emailTerm: tiền tố email khớp thay thế (null là bỏ qua)
+     */
+    String KEYWORD_CUSTOMER_IDS = "(SELECT kt.customerId FROM CustomerSearchTokens kt WHERE " +
+            "(kt.token LIKE :term1 ESCAPE '!' " +
+            "   AND (:term2 IS NULL OR EXISTS (SELECT 1 FROM CustomerSearchTokens k2 " +
+            "       WHERE k2.customerId = kt.customerId AND k2.token LIKE :term2 ESCAPE '!')) " +
+            "   AND (:term3 IS NULL OR EXISTS (SELECT 1 FROM CustomerSearchTokens k3 " +
+            "       WHERE k3.customerId = kt.customerId AND k3.token LIKE :term3 ESCAPE '!'))) " +
+            "OR kt.token LIKE :emailTerm ESCAPE '!')";
+
+    List<CustomerSearchTokens> findByCustomerId(Integer customerId);
+
+    // Khách hàng cần (nạp lại) chỉ mục theo id tăng dần: chưa có token nào (dữ liệu cũ, import trực tiếp vào DB)
+    // hoặc có email nhưng chưa có token tên miền (chỉ mục tạo trước khi có token "e:<tên miền>")
+    @Query("SELECT c FROM Customers c WHERE c.id > :afterId AND (" +
+            "NOT EXISTS (SELECT t.id FROM CustomerSearchTokens t WHERE t.customerId = c.id) " +
+            "OR (c.email LIKE '%@_%' AND NOT EXISTS (SELECT t.id FROM CustomerSearchTokens t " +
+            "   WHERE t.customerId = c.id AND t.token LIKE 'e:%' AND t.token NOT LIKE '%@%'))) " +
+            "ORDER BY c.id")
+    List<Customers> findCustomersToIndex(@Param("afterId") Integer afterId, Pageable limit);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,10 @@ public interface DriverDayOffRepository extends JpaRepository<DriverDayOff, Inte
     @Query("SELECT d FROM DriverDayOff d WHERE d.driver.id = :driverId AND d.status = :status AND d.startDate <= :date AND d.endDate >= :date")
     List<DriverDayOff> findApprovedDayOffOnDate(Integer driverId, DriverDayOffStatus status, LocalDate date);
 
+    // Id các tài xế (trong danh sách) có đơn nghỉ theo status trùng ngày date
+    @Query("SELECT DISTINCT d.driver.id FROM DriverDayOff d WHERE d.driver.id IN :driverIds AND d.status = :status AND d.startDate <= :date AND d.endDate >= :date")
+    List<Integer> findDriverIdsOffOnDate(Collection<Integer> driverIds, DriverDayOffStatus status, LocalDate date);
+
     // Tìm tất cả đơn nghỉ theo status
     List<DriverDayOff> findByStatus(DriverDayOffStatus status);
 }
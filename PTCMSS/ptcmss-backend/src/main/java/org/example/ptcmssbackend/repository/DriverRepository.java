@@ -24,6 +24,11 @@ public interface DriverRepository extends JpaRepository<Drivers, Integer> {
     @Query("SELECT d FROM Drivers d WHERE d.branch.id = :branchId")
     List<Drivers> findByBranchId(Integer branchId);
 
+    // Như findByBranchId nhưng nạp sẵn employee/user (tên, SĐT) để tránh N+1 khi build danh sách ứng viên;
+    // LEFT JOIN để tài xế chưa liên kết employee/user vẫn được trả về
+    @Query("SELECT d FROM Drivers d JOIN FETCH d.branch LEFT JOIN FETCH d.employee e LEFT JOIN FETCH e.user WHERE d.branch.id = :branchId")
+    List<Drivers> findByBranchIdWithUser(Integer branchId);
+
     @Query("SELECT new org.example.ptcmssbackend.dto.response.Driver.DriverResponse(d) FROM Drivers d WHERE d.branch.id = :branchId")
     List<DriverResponse> findAllByBranchId(Integer branchId);
 
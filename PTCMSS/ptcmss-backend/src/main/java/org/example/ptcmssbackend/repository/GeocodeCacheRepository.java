@@ -0,0 +1,22 @@
+package org.example.ptcmssbackend.repository;
+
+import org.example.ptcmssbackend.entity.GeocodeCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GeocodeCacheRepository extends JpaRepository<GeocodeCacheEntry, Long> {
+
+    Optional<GeocodeCacheEntry> findByQueryKey(String queryKey);
+
+    // Dòng đã hết hạn, xóa theo lô
+    List<GeocodeCacheEntry> findByExpiresAtBefore(Instant before, Pageable pageable);
+
+    // Dòng lưu lâu nhất trước, xóa theo lô khi bảng vượt giới hạn
+    List<GeocodeCacheEntry> findAllByOrderByCreatedAtAsc(Pageable pageable);
+}
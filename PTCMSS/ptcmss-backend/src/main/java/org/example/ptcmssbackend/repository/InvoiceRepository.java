@@ -4,6 +4,7 @@ import org.example.ptcmssbackend.entity.Invoices;
 import org.example.ptcmssbackend.enums.InvoiceStatus;
 import org.example.ptcmssbackend.enums.InvoiceType;
 import org.example.ptcmssbackend.enums.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -87,6 +88,31 @@ public interface InvoiceRepository extends JpaRepository<Invoices, Integer> {
             @Param("endDate") Instant endDate
     );
 
+    /**
+     * Doanh số (payment CONFIRMED) theo tháng cho 3 tháng liên tiếp bắt đầu tại month0, month1, month2;
+     * cùng điều kiện với sumConfirmedPaymentsForConsultantAndBranchAndDateRange.
+     * Mỗi dòng: [bucket (Integer: 0, 1, 2), revenue (BigDecimal)]
+     */
+    @Query("SELECT CASE WHEN ph.paymentDate >= :month2 THEN 2 WHEN ph.paymentDate >= :month1 THEN 1 ELSE 0 END AS bucket, " +
+            "COALESCE(SUM(ph.amount), 0) FROM PaymentHistory ph " +
+            "JOIN ph.invoice i " +
+            "LEFT JOIN i.booking b " +
+            "LEFT JOIN b.consultant c " +
+            "WHERE ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED " +
+            "AND ph.paymentDate >= :month0 " +
+            "AND ph.paymentDate <= :endDate " +
+            "AND (:branchId IS NULL OR i.branch.id = :branchId) " +
+            "AND (:consultantEmployeeId IS NULL OR c.employeeId = :consultantEmployeeId) " +
+            "GROUP BY bucket")
+    List<Object[]> sumConfirmedPaymentsByMonthForConsultantAndBranch(
+            @Param("branchId") Integer branchId,
+            @Param("consultantEmployeeId") Integer consultantEmployeeId,
+            @Param("month0") Instant month0,
+            @Param("month1") Instant month1,
+            @Param("month2") Instant month2,
+            @Param("endDate") Instant endDate
+    );
+
     /**
      * Tính tổng amount theo branchId, type và khoảng thời gian
      */
@@ -139,6 +165,87 @@ public interface InvoiceRepository extends JpaRepository<Invoices, Integer> {
             @Param("customerId") Integer customerId,
             @Param("paymentStatus") PaymentStatus paymentStatus);
 
+    /**
+     * Phân trang keyset cho danh sách hóa đơn theo (invoiceDate DESC, id DESC), không COUNT.
+     * Điều kiện "ẩn hóa đơn chỉ có thanh toán PENDING" và từ khóa được lọc trong SQL thay vì từng dòng trong Java:
+     * keywordSearch = false là không lọc, ngược lại khớp số HĐ (LIKE), mã đơn keywordId hoặc khách hàng khớp chỉ mục (CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS).
+     */
+    @Query("SELECT i FROM Invoices i " +
+            "JOIN FETCH i.branch " +
+            "LEFT JOIN FETCH i.customer c " +
+            "LEFT JOIN FETCH i.booking bk " +
+            "WHERE (:branchId IS NULL OR i.branch.id = :branchId) " +
+            "AND (:type IS NULL OR i.type = :type) " +
+            "AND (:status IS NULL OR i.status = :status) " +
+            "AND (:startDate IS NULL OR i.invoiceDate >= :startDate) " +
+            "AND (:endDate IS NULL OR i.invoiceDate <= :endDate) " +
+            "AND (:customerId IS NULL OR i.customer.id = :customerId) " +
+            "AND (:paymentStatus IS NULL OR i.paymentStatus = :paymentStatus) " +
+            "AND (NOT EXISTS (SELECT 1 FROM PaymentHistory ph WHERE ph.invoice = i " +
+            "       AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.PENDING) " +
+            "   OR EXISTS (SELECT 1 FROM PaymentHistory pc WHERE pc.invoice = i " +
+            "       AND pc.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED " +
+            "       AND pc.amount > 0)) " +
+            "AND (:keywordSearch = false OR LOWER(i.invoiceNumber) LIKE :invoiceNumberPattern " +
+            "   OR bk.id = :keywordId OR c.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ") " +
+            "AND (:afterId IS NULL " +
+            "   OR (:afterKey IS NOT NULL AND (i.invoiceDate < :afterKey " +
+            "       OR (i.invoiceDate = :afterKey AND i.id < :afterId) OR i.invoiceDate IS NULL)) " +
+            "   OR (:afterKey IS NULL AND i.invoiceDate IS NULL AND i.id < :afterId)) " +
+            "ORDER BY i.invoiceDate DESC, i.id DESC")
+    List<Invoices> scrollInvoicesWithFilters(
+            @Param("branchId") Integer branchId,
+            @Param("type") InvoiceType type,
+            @Param("status") InvoiceStatus status,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("customerId") Integer customerId,
+            @Param("paymentStatus") PaymentStatus paymentStatus,
+            @Param("keywordSearch") boolean keywordSearch,
+            @Param("invoiceNumberPattern") String invoiceNumberPattern,
+            @Param("keywordId") Integer keywordId,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm,
+            @Param("afterKey") Instant afterKey,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
+
+    // Tổng số dòng của scrollInvoicesWithFilters, chỉ chạy khi client yêu cầu
+    @Query("SELECT COUNT(i) FROM Invoices i " +
+            "LEFT JOIN i.customer c " +
+            "LEFT JOIN i.booking bk " +
+            "WHERE (:branchId IS NULL OR i.branch.id = :branchId) " +
+            "AND (:type IS NULL OR i.type = :type) " +
+            "AND (:status IS NULL OR i.status = :status) " +
+            "AND (:startDate IS NULL OR i.invoiceDate >= :startDate) " +
+            "AND (:endDate IS NULL OR i.invoiceDate <= :endDate) " +
+            "AND (:customerId IS NULL OR i.customer.id = :customerId) " +
+            "AND (:paymentStatus IS NULL OR i.paymentStatus = :paymentStatus) " +
+            "AND (NOT EXISTS (SELECT 1 FROM PaymentHistory ph WHERE ph.invoice = i " +
+            "       AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.PENDING) " +
+            "   OR EXISTS (SELECT 1 FROM PaymentHistory pc WHERE pc.invoice = i " +
+            "       AND pc.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED " +
+            "       AND pc.amount > 0)) " +
+            "AND (:keywordSearch = false OR LOWER(i.invoiceNumber) LIKE :invoiceNumberPattern " +
+            "   OR bk.id = :keywordId OR c.id IN " + CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS + ")")
+    long countInvoicesWithFilters(
+            @Param("branchId") Integer branchId,
+            @Param("type") InvoiceType type,
+            @Param("status") InvoiceStatus status,
+            @Param("startDate") Instant startDate,
+            @Param("endDate") Instant endDate,
+            @Param("customerId") Integer customerId,
+            @Param("paymentStatus") PaymentStatus paymentStatus,
+            @Param("keywordSearch") boolean keywordSearch,
+            @Param("invoiceNumberPattern") String invoiceNumberPattern,
+            @Param("keywordId") Integer keywordId,
+            @Param("term1") String term1,
+            @Param("term2") String term2,
+            @Param("term3") String term3,
+            @Param("emailTerm") String emailTerm);
+
     @Query("SELECT i FROM Invoices i WHERE i.type = 'INCOME' " +
             "AND i.paymentStatus IN ('UNPAID', 'OVERDUE') " +
             "AND (:branchId IS NULL OR i.branch.id = :branchId) " +
@@ -0,0 +1,20 @@
+package org.example.ptcmssbackend.repository;
+
+import org.example.ptcmssbackend.entity.RouteDistanceCache;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RouteDistanceCacheRepository extends JpaRepository<RouteDistanceCache, Long> {
+
+    Optional<RouteDistanceCache> findByRouteKey(String routeKey);
+
+    List<RouteDistanceCache> findByRouteKeyIn(Collection<String> routeKeys);
+
+    List<RouteDistanceCache> findAllByOrderByFetchedAtDesc(Pageable pageable);
+}
@@ -7,7 +7,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import org.example.ptcmssbackend.enums.TripStatus;
+
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -66,4 +69,72 @@ public interface TripDriverRepository extends JpaRepository<TripDrivers, TripDri
     TripDrivers findFirstMainDriverByTripId(@Param("tripId") Integer tripId);
 
     List<TripDrivers> findByDriver_Id(Integer driverId);
+
+    /**
+     * Các phân công tài xế còn hiệu lực (theo trạng thái chuyến) của toàn bộ tài xế thuộc chi nhánh
+     */
+    @Query("SELECT td FROM TripDrivers td JOIN FETCH td.trip t JOIN FETCH t.booking b " +
+           "WHERE td.driver.branch.id = :branchId AND t.status IN :statuses")
+    List<TripDrivers> findByDriverBranchIdAndTripStatusIn(
+            @Param("branchId") Integer branchId,
+            @Param("statuses") Collection<TripStatus> statuses);
+
+    /**
+     * Lấy phân công tài xế theo nhiều tripIds (kèm driver, trip, booking)
+     */
+    @Query("SELECT td FROM TripDrivers td JOIN FETCH td.driver JOIN FETCH td.trip t JOIN FETCH t.booking " +
+           "WHERE t.id IN :tripIds")
+    List<TripDrivers> findByTripIdIn(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Phân công tài xế theo nhiều tripIds, kèm thông tin tài xế (employee, user) để hiển thị tên
+     */
+    @Query("SELECT td FROM TripDrivers td JOIN FETCH td.driver d LEFT JOIN FETCH d.employee e LEFT JOIN FETCH e.user " +
+           "WHERE td.trip.id IN :tripIds")
+    List<TripDrivers> findWithDriverUserByTripIdIn(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Dòng sổ khối lượng công việc tài xế: [driverId, tripId, startTime, bookingId] của các phân công
+     * có chuyến bắt đầu từ from, bỏ qua chuyến/booking đã hủy
+     */
+    @Query("SELECT td.driver.id, t.id, t.startTime, b.id FROM TripDrivers td JOIN td.trip t JOIN t.booking b " +
+           "WHERE t.startTime >= :from " +
+           "AND (t.status IS NULL OR t.status <> org.example.ptcmssbackend.enums.TripStatus.CANCELLED) " +
+           "AND (b.status IS NULL OR b.status <> org.example.ptcmssbackend.enums.BookingStatus.CANCELLED)")
+    List<Object[]> findWorkloadRowsFrom(@Param("from") Instant from);
+
+    /**
+     * Như {@link #findWorkloadRowsFrom} nhưng chỉ cho các trip chỉ định (cập nhật sổ sau khi gán/hủy/hoàn thành)
+     */
+    @Query("SELECT td.driver.id, t.id, t.startTime, b.id FROM TripDrivers td JOIN td.trip t JOIN t.booking b " +
+           "WHERE t.id IN :tripIds AND t.startTime IS NOT NULL " +
+           "AND (t.status IS NULL OR t.status <> org.example.ptcmssbackend.enums.TripStatus.CANCELLED) " +
+           "AND (b.status IS NULL OR b.status <> org.example.ptcmssbackend.enums.BookingStatus.CANCELLED)")
+    List<Object[]> findWorkloadRowsByTripIdIn(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Như {@link #findWorkloadRowsFrom} nhưng cho mọi trip của các đơn chỉ định (cập nhật sổ sau khi đổi lịch đơn)
+     */
+    @Query("SELECT td.driver.id, t.id, t.startTime, b.id FROM TripDrivers td JOIN td.trip t JOIN t.booking b " +
+           "WHERE b.id IN :bookingIds AND t.startTime IS NOT NULL " +
+           "AND (t.status IS NULL OR t.status <> org.example.ptcmssbackend.enums.TripStatus.CANCELLED) " +
+           "AND (b.status IS NULL OR b.status <> org.example.ptcmssbackend.enums.BookingStatus.CANCELLED)")
+    List<Object[]> findWorkloadRowsByBookingIdIn(@Param("bookingIds") Collection<Integer> bookingIds);
+
+    /**
+     * Trong các tài xế cho trước, những ai đã hoàn thành chuyến cho khách hàng này
+     */
+    @Query("SELECT DISTINCT td.driver.id FROM TripDrivers td " +
+           "WHERE td.driver.id IN :driverIds AND td.trip.status = :status " +
+           "AND td.trip.booking.customer.id = :customerId")
+    List<Integer> findDriverIdsWithTripForCustomer(
+            @Param("driverIds") Collection<Integer> driverIds,
+            @Param("customerId") Integer customerId,
+            @Param("status") TripStatus status);
+
+    /**
+     * Cặp [tripId, driverId] của các trip chỉ định (dựng lịch tài xế cho dashboard điều phối)
+     */
+    @Query("SELECT td.trip.id, td.driver.id FROM TripDrivers td WHERE td.trip.id IN :tripIds")
+    List<Object[]> findTripDriverIdPairs(@Param("tripIds") Collection<Integer> tripIds);
 }
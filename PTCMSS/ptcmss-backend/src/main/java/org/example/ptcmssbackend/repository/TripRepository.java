@@ -1,17 +1,21 @@
 package org.example.ptcmssbackend.repository;
 
+import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
 import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.enums.BookingStatus;
 import org.example.ptcmssbackend.enums.TripStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface TripRepository extends JpaRepository<Trips, Integer> {
+public interface TripRepository extends JpaRepository<Trips, Integer>, JpaSpecificationExecutor<Trips> {
 
     List<Trips> findByStatus(TripStatus status);
 
@@ -29,6 +33,36 @@ public interface TripRepository extends JpaRepository<Trips, Integer> {
     // Methods needed by DispatchServiceImpl
     List<Trips> findByBooking_Id(Integer bookingId);
 
+    List<Trips> findByBooking_IdIn(Collection<Integer> bookingIds);
+
+    /**
+     * Hàng đợi điều phối trong một truy vấn: trip chưa gán tài xế/xe, booking ở trạng thái điều phối được
+     * và đã có thanh toán cọc được xác nhận (booking COMPLETED bỏ qua điều kiện cọc).
+     * branchId = null -> tất cả chi nhánh.
+     */
+    @Query("SELECT new org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse(" +
+            "t.id, b.id, br.id, br.branchName, c.fullName, c.phone, t.startLocation, t.endLocation, " +
+            "t.startTime, t.endTime, t.useHighway, ht.name, b.estimatedCost, b.status, " +
+            "(SELECT MAX(vc.seats) FROM BookingVehicleDetails bvd JOIN bvd.vehicleCategory vc WHERE bvd.booking = b)) " +
+            "FROM Trips t JOIN t.booking b JOIN b.branch br JOIN b.customer c LEFT JOIN b.hireType ht " +
+            "WHERE (:branchId IS NULL OR br.id = :branchId) " +
+            "AND t.status IN :tripStatuses " +
+            "AND t.startTime BETWEEN :from AND :to " +
+            "AND b.status IN :bookingStatuses " +
+            "AND NOT EXISTS (SELECT 1 FROM TripDrivers td WHERE td.trip = t) " +
+            "AND NOT EXISTS (SELECT 1 FROM TripVehicles tv WHERE tv.trip = t) " +
+            "AND (b.status = org.example.ptcmssbackend.enums.BookingStatus.COMPLETED OR EXISTS (" +
+            "   SELECT 1 FROM PaymentHistory ph JOIN ph.invoice inv " +
+            "   WHERE inv.booking = b AND inv.isDeposit = true " +
+            "   AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED)) " +
+            "ORDER BY t.startTime ASC, t.id ASC")
+    List<PendingTripResponse> findPendingQueue(
+            @Param("branchId") Integer branchId,
+            @Param("tripStatuses") Collection<TripStatus> tripStatuses,
+            @Param("bookingStatuses") Collection<BookingStatus> bookingStatuses,
+            @Param("from") Instant from,
+            @Param("to") Instant to);
+
     List<Trips> findByBooking_Branch_IdAndStatusAndStartTimeBetween(
             Integer branchId,
             TripStatus status,
@@ -48,5 +82,18 @@ public interface TripRepository extends JpaRepository<Trips, Integer> {
             Instant endTime
     );
 
+    // Nạp trip kèm booking (để biết chi nhánh) khi cập nhật dashboard điều phối theo sự kiện
+    @Query("SELECT t FROM Trips t JOIN FETCH t.booking WHERE t.id IN :tripIds")
+    List<Trips> findWithBookingByIdIn(@Param("tripIds") Collection<Integer> tripIds);
 
+    /**
+     * Id các trip chồng lấn [from, to) thuộc đơn của chi nhánh hoặc đang dùng xe của chi nhánh (dựng lưới khả dụng)
+     */
+    @Query("SELECT t.id FROM Trips t WHERE t.startTime < :to AND t.endTime > :from " +
+            "AND (t.booking.branch.id = :branchId OR EXISTS (" +
+            "SELECT tv.id FROM TripVehicles tv WHERE tv.trip.id = t.id AND tv.vehicle.branch.id = :branchId))")
+    List<Integer> findIdsByBranchOverlapping(
+            @Param("branchId") Integer branchId,
+            @Param("from") Instant from,
+            @Param("to") Instant to);
 }
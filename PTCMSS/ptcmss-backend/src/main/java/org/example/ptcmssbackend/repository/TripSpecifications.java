@@ -0,0 +1,118 @@
+package org.example.ptcmssbackend.repository;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.example.ptcmssbackend.dto.request.Trip.TripSearchRequest;
+import org.example.ptcmssbackend.entity.Bookings;
+import org.example.ptcmssbackend.entity.Customers;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.enums.TripStatus;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Điều kiện tìm kiếm chuyến đẩy xuống SQL (thay cho lọc trong bộ nhớ).
+ * Thứ tự cố định (startTime, tripId) tăng dần để phân trang keyset theo idx_trips_start_time_id.
+ * Không ghi NULLS FIRST (Hibernate sinh biểu thức sắp xếp khiến MySQL bỏ qua index);
+ * MySQL vốn xếp startTime null đứng đầu khi ASC, khớp với điều kiện keyset bên dưới.
+ */
+public final class TripSpecifications {
+
+    public static final Sort KEYSET_ORDER = Sort.by(
+            Sort.Order.asc("startTime"),
+            Sort.Order.asc("id"));
+
+    private TripSpecifications() {
+    }
+
+    public static Specification<Trips> search(TripSearchRequest request) {
+        return search(request, null, null);
+    }
+
+    /**
+     * @param afterStartTime startTime của dòng cuối trang trước (null nếu dòng đó không có startTime)
+     * @param afterTripId    tripId của dòng cuối trang trước; null cho trang đầu
+     */
+    @SuppressWarnings("unchecked")
+    public static Specification<Trips> search(TripSearchRequest request, Instant afterStartTime, Integer afterTripId) {
+        return (root, query, cb) -> {
+            Join<Trips, Bookings> booking;
+            Join<Bookings, Customers> customer;
+            if (Long.class != query.getResultType() && long.class != query.getResultType()) {
+                // Lấy luôn booking/khách/chi nhánh/hình thức thuê trong cùng truy vấn
+                booking = (Join<Trips, Bookings>) root.<Trips, Bookings>fetch("booking");
+                customer = (Join<Bookings, Customers>) booking.<Bookings, Customers>fetch("customer");
+                booking.fetch("branch");
+                booking.fetch("hireType", JoinType.LEFT);
+            } else {
+                booking = root.join("booking");
+                customer = booking.join("customer");
+            }
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (request == null) {
+                return cb.conjunction();
+            }
+
+            TripStatus status = parseStatus(request.getStatus());
+            if (status != null) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            if (request.getBranchId() != null) {
+                predicates.add(cb.equal(booking.get("branch").get("id"), request.getBranchId()));
+            }
+            if (request.getStartFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("startTime"), request.getStartFrom()));
+            }
+            if (request.getStartTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("startTime"), request.getStartTo()));
+            }
+            if (request.getKeyword() != null && !request.getKeyword().isBlank()) {
+                String pattern = "%" + escapeLike(request.getKeyword().trim().toLowerCase()) + "%";
+                predicates.add(cb.or(
+                        cb.like(booking.get("id").as(String.class), pattern, '\\'),
+                        cb.like(cb.lower(customer.get("fullName")), pattern, '\\'),
+                        cb.like(cb.lower(customer.get("phone")), pattern, '\\')
+                ));
+            }
+
+            // Keyset: chỉ lấy các dòng đứng sau (afterStartTime, afterTripId)
+            if (afterTripId != null) {
+                if (afterStartTime != null) {
+                    predicates.add(cb.or(
+                            cb.greaterThan(root.get("startTime"), afterStartTime),
+                            cb.and(
+                                    cb.equal(root.get("startTime"), afterStartTime),
+                                    cb.greaterThan(root.get("id"), afterTripId))));
+                } else {
+                    predicates.add(cb.or(
+                            cb.isNotNull(root.get("startTime")),
+                            cb.greaterThan(root.get("id"), afterTripId)));
+                }
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Trạng thái không hợp lệ thì bỏ qua điều kiện (giữ hành vi cũ).
+     */
+    static TripStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) return null;
+        try {
+            return TripStatus.valueOf(status.trim().toUpperCase().replace("-", "_"));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
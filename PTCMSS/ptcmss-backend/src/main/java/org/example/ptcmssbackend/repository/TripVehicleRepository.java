@@ -6,7 +6,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import org.example.ptcmssbackend.enums.TripStatus;
+
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -68,5 +71,44 @@ public interface TripVehicleRepository extends JpaRepository<TripVehicles, Integ
      */
     @Query("SELECT tv FROM TripVehicles tv JOIN FETCH tv.vehicle JOIN FETCH tv.trip WHERE tv.trip.id IN :tripIds")
     List<TripVehicles> findByTrip_IdIn(@Param("tripIds") List<Integer> tripIds);
-}
 
+    /**
+     * Các phân công xe còn hiệu lực (theo trạng thái chuyến) của toàn bộ xe thuộc chi nhánh
+     */
+    @Query("SELECT tv FROM TripVehicles tv JOIN FETCH tv.vehicle v JOIN FETCH tv.trip t " +
+            "JOIN FETCH t.booking b LEFT JOIN FETCH b.hireType " +
+            "WHERE v.branch.id = :branchId AND t.status IN :statuses")
+    List<TripVehicles> findByVehicleBranchIdAndTripStatusIn(
+            @Param("branchId") Integer branchId,
+            @Param("statuses") Collection<TripStatus> statuses);
+
+    /**
+     * Cặp [tripId, vehicleId] của các trip chỉ định (dựng lịch xe cho dashboard điều phối)
+     */
+    @Query("SELECT tv.trip.id, tv.vehicle.id FROM TripVehicles tv WHERE tv.trip.id IN :tripIds")
+    List<Object[]> findTripVehicleIdPairs(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Xe AVAILABLE đang gán cho các trip chỉ định: [tripId, vehicleId, categoryId, branchId] (lưới khả dụng)
+     */
+    @Query("SELECT tv.trip.id, tv.vehicle.id, tv.vehicle.category.id, tv.vehicle.branch.id FROM TripVehicles tv " +
+            "WHERE tv.trip.id IN :tripIds AND tv.vehicle.status = org.example.ptcmssbackend.enums.VehicleStatus.AVAILABLE")
+    List<Object[]> findAssignedVehicleCategories(@Param("tripIds") Collection<Integer> tripIds);
+
+    /**
+     * Khoảng bận [vehicleId, startTime, endTime] của các xe AVAILABLE thuộc chi nhánh/loại xe
+     * có chuyến SCHEDULED/ASSIGNED/ONGOING chồng lấn [from, to) (dùng cho quét tìm giờ rảnh)
+     */
+    @Query("SELECT v.id, t.startTime, t.endTime FROM TripVehicles tv JOIN tv.vehicle v JOIN tv.trip t " +
+            "WHERE (:branchId IS NULL OR v.branch.id = :branchId) " +
+            "AND v.category.id = :categoryId " +
+            "AND v.status = org.example.ptcmssbackend.enums.VehicleStatus.AVAILABLE " +
+            "AND t.status IN (org.example.ptcmssbackend.enums.TripStatus.SCHEDULED, org.example.ptcmssbackend.enums.TripStatus.ASSIGNED, org.example.ptcmssbackend.enums.TripStatus.ONGOING) " +
+            "AND t.startTime < :to AND t.endTime > :from")
+    List<Object[]> findBusyIntervals(
+            @Param("branchId") Integer branchId,
+            @Param("categoryId") Integer categoryId,
+            @Param("from") Instant from,
+            @Param("to") Instant to
+    );
+}
@@ -2,6 +2,60 @@ package org.example.ptcmssbackend.repository;
 
 import org.example.ptcmssbackend.entity.VehicleCategoryPricing;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
 
 public interface VehicleCategoryPricingRepository extends JpaRepository<VehicleCategoryPricing, Integer> {
+
+    /**
+     * Tình trạng xe của một chi nhánh trong khoảng thời gian cho mọi loại xe, một lần truy vấn:
+     * [categoryId, categoryName, seats, pricePerKm, status, total, busy, reserved]
+     * - total: số xe AVAILABLE của chi nhánh
+     * - busy: số xe đã gán vào chuyến SCHEDULED/ASSIGNED/ONGOING chồng lấn khoảng thời gian
+     * - reserved: số lượng xe giữ chỗ theo booking đã cọc (thanh toán CONFIRMED) nhưng chưa gán xe
+     * Cùng điều kiện với filterVehicles, findBusyVehicleIds và countReservedQuantityByDepositWithoutAssignedVehicles.
+     */
+    @Query("""
+        SELECT c.id, c.categoryName, c.seats, c.pricePerKm, c.status,
+          (SELECT COUNT(v) FROM Vehicles v
+            WHERE v.category.id = c.id
+              AND (:branchId IS NULL OR v.branch.id = :branchId)
+              AND v.status = org.example.ptcmssbackend.enums.VehicleStatus.AVAILABLE),
+          (SELECT COUNT(DISTINCT tv.vehicle.id) FROM TripVehicles tv JOIN tv.trip t
+            WHERE tv.vehicle.category.id = c.id
+              AND (:branchId IS NULL OR tv.vehicle.branch.id = :branchId)
+              AND t.status IN (org.example.ptcmssbackend.enums.TripStatus.SCHEDULED, org.example.ptcmssbackend.enums.TripStatus.ASSIGNED, org.example.ptcmssbackend.enums.TripStatus.ONGOING)
+              AND (:start IS NULL OR t.endTime > :start)
+              AND (:end IS NULL OR t.startTime < :end)),
+          (SELECT COALESCE(SUM(bvd.quantity), 0)
+            FROM BookingVehicleDetails bvd
+            JOIN bvd.booking b
+            JOIN Trips rt ON rt.booking.id = b.id
+            WHERE b.branch.id = :branchId
+              AND bvd.vehicleCategory.id = c.id
+              AND b.status != 'CANCELLED'
+              AND rt.startTime < :end
+              AND rt.endTime > :start
+              AND NOT EXISTS (
+                SELECT atv.id FROM TripVehicles atv
+                WHERE atv.trip.booking.id = b.id
+              )
+              AND (
+                SELECT COALESCE(SUM(ph.amount), 0)
+                FROM PaymentHistory ph
+                JOIN Invoices inv ON ph.invoice.id = inv.id
+                WHERE inv.booking.id = b.id
+                  AND ph.confirmationStatus = org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED
+              ) > 0)
+        FROM VehicleCategoryPricing c
+        ORDER BY c.id
+    """)
+    List<Object[]> findAvailabilityByBranch(
+            @Param("branchId") Integer branchId,
+            @Param("start") Instant start,
+            @Param("end") Instant end
+    );
 }
@@ -52,4 +52,12 @@ public interface VehicleRepository extends JpaRepository<Vehicles, Integer> {
     @Query("SELECT COUNT(v) FROM Vehicles v WHERE v.category.id = :categoryId")
     long countByCategoryId(@Param("categoryId") Integer categoryId);
 
+    /**
+     * Số xe AVAILABLE theo loại xe của chi nhánh: [categoryId, categoryName, count]
+     */
+    @Query("SELECT v.category.id, v.category.categoryName, COUNT(v) FROM Vehicles v " +
+            "WHERE v.branch.id = :branchId AND v.status = 'AVAILABLE' " +
+            "GROUP BY v.category.id, v.category.categoryName")
+    List<Object[]> countAvailableByBranchGroupByCategory(@Param("branchId") Integer branchId);
+
 }
@@ -0,0 +1,34 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.Booking.AvailabilityHeatmapResponse;
+import org.example.ptcmssbackend.service.impl.AvailabilityGrid;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Lưới khả dụng theo chi nhánh × loại xe × giờ cho các tuần tới.
+ *
+ * Mỗi chi nhánh được nạp một lần khi dùng lần đầu rồi giữ trong bộ nhớ; sự kiện gán/hủy/bắt đầu/hoàn thành chuyến
+ * và sự kiện đổi lịch/duyệt cọc của đơn chỉ tính lại các trip liên quan, thêm/sửa/xóa xe bỏ lưới của chi nhánh.
+ * Đồng bộ toàn bộ mỗi 10 phút để bắt các thay đổi không phát sự kiện và dời khung thời gian.
+ * Kiểm tra xe trống khi đặt đơn chỉ tin lưới khi lưới báo đủ xe; còn lại tính chính xác từ DB.
+ */
+public interface AvailabilityGridService {
+
+    /**
+     * Lưới của chi nhánh trong [from, to) (mặc định từ giờ hiện tại đến 7 ngày tới), categoryId = null lấy mọi loại xe
+     */
+    AvailabilityHeatmapResponse getHeatmap(Integer branchId, Integer categoryId, Instant from, Instant to);
+
+    /**
+     * Số xe của loại xe trong [from, to) đọc từ lưới (xấp xỉ, làm tròn theo giờ); null nếu khoảng thời gian nằm ngoài lưới
+     */
+    AvailabilityGrid.Counts getCounts(Integer branchId, Integer categoryId, Instant from, Instant to);
+
+    void refreshTrips(Collection<Integer> tripIds);
+
+    void refreshBookings(Collection<Integer> bookingIds);
+
+    void evictBranch(Integer branchId);
+}
@@ -0,0 +1,23 @@
+package org.example.ptcmssbackend.service;
+
+/**
+ * Outbox giao dịch cho tác vụ phụ của booking.
+ * Các hàm enqueue chỉ ghi một dòng outbox trong transaction hiện tại; việc đẩy WebSocket chạy nền sau khi commit.
+ */
+public interface BookingOutboxService {
+
+    void enqueueGlobalNotification(Integer bookingId, String title, String message, String type);
+
+    void enqueueUserNotification(Integer bookingId, Integer userId, String title, String message, String type);
+
+    void enqueueBookingUpdate(Integer bookingId, String status, String message);
+
+    void enqueuePaymentUpdate(Integer bookingId, Integer invoiceId, String status, String message);
+
+    /**
+     * Gửi một lô dòng đến hạn; dòng lỗi được thử lại với backoff, dòng sau cùng booking chờ dòng lỗi
+     *
+     * @return số dòng đã gửi
+     */
+    int dispatchPending();
+}
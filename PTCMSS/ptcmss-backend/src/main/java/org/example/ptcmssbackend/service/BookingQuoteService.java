@@ -0,0 +1,16 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.request.Booking.BatchQuoteRequest;
+import org.example.ptcmssbackend.dto.response.Booking.BatchQuoteResponse;
+
+/**
+ * Báo giá nhiều phương án (tổ hợp loại xe, hình thức thuê, tuyến đường, thời gian) trong một lần gọi.
+ */
+public interface BookingQuoteService {
+
+    /**
+     * Tính giá và chi tiết cho từng phương án trên cùng một snapshot bảng giá.
+     * Khoảng cách của mỗi tuyến duy nhất chỉ tra một lần. Phương án lỗi không làm hỏng các phương án khác.
+     */
+    BatchQuoteResponse quote(BatchQuoteRequest request);
+}
@@ -9,6 +9,7 @@ import org.example.ptcmssbackend.dto.response.Booking.BookingListResponse;
 import org.example.ptcmssbackend.dto.response.Booking.BookingResponse;
 import org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse;
 import org.example.ptcmssbackend.dto.response.Booking.ConsultantDashboardResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.dto.response.common.PageResponse;
 
 import java.time.Instant;
@@ -45,6 +46,22 @@ public interface BookingService {
             String sortBy
     );
 
+    /**
+     * Danh sách bookings phân trang theo con trỏ (createdAt DESC, id DESC), cùng bộ lọc với getAll.
+     * cursor = null là trang đầu; withTotal = true mới chạy thêm câu COUNT.
+     */
+    CursorPageResponse<BookingListResponse> scroll(
+            String status,
+            Integer branchId,
+            Integer consultantId,
+            Instant startDate,
+            Instant endDate,
+            String keyword,
+            String cursor,
+            int size,
+            boolean withTotal
+    );
+
     /**
      * Xóa booking (soft delete - chuyển status sang CANCELLED)
      */
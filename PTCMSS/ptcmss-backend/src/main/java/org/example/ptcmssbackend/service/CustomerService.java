@@ -2,6 +2,7 @@ package org.example.ptcmssbackend.service;
 
 import org.example.ptcmssbackend.dto.request.Booking.CustomerRequest;
 import org.example.ptcmssbackend.dto.response.Booking.CustomerResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.entity.Customers;
 import org.springframework.data.domain.Page;
 
@@ -40,5 +41,12 @@ public interface CustomerService {
      * Nếu userId được cung cấp và user là MANAGER, tự động filter theo chi nhánh của manager
      */
     Page<CustomerResponse> listCustomers(String keyword, Integer branchId, Integer userId, LocalDate fromDate, LocalDate toDate, int page, int size);
+
+    /**
+     * Danh sách customer phân trang theo con trỏ (createdAt DESC, id DESC), cùng bộ lọc với listCustomers.
+     * cursor = null là trang đầu; withTotal = true mới chạy thêm câu COUNT.
+     */
+    CursorPageResponse<CustomerResponse> scrollCustomers(String keyword, Integer branchId, Integer userId, LocalDate fromDate, LocalDate toDate,
+                                                         String cursor, int size, boolean withTotal);
 }
 
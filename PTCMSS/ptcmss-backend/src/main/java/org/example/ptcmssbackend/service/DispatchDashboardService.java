@@ -0,0 +1,32 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Dashboard điều phối theo chi nhánh.
+ *
+ * Không truyền ngày: trả về snapshot giữ trong bộ nhớ (từ đầu hôm nay đến 1 năm tới), được cập nhật theo
+ * sự kiện gán/hủy/bắt đầu/hoàn thành chuyến và sự kiện sửa/đổi lịch/duyệt cọc của đơn.
+ * Mỗi thay đổi được đẩy dưới dạng {@link org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardDelta}
+ * lên topic của chi nhánh.
+ * Có ngày: dựng dashboard của ngày đó với số truy vấn cố định, không lưu lại.
+ */
+public interface DispatchDashboardService {
+
+    DispatchDashboardResponse getDashboard(Integer branchId, LocalDate date);
+
+    /**
+     * Nạp lại các trip trong snapshot của những chi nhánh đang giữ và đẩy delta nếu có thay đổi.
+     */
+    void refreshTrips(Collection<Integer> tripIds);
+
+    /**
+     * Nạp lại mọi trip của các đơn (kể cả trip đã bị xóa khỏi đơn) trong snapshot đang giữ và đẩy delta nếu có thay đổi.
+     */
+    void refreshBookings(Collection<Integer> bookingIds);
+
+    void evictBranch(Integer branchId);
+}
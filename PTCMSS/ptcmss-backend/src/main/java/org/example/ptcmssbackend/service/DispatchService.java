@@ -2,11 +2,13 @@ package org.example.ptcmssbackend.service;
 
 import org.example.ptcmssbackend.dto.request.Trip.TripSearchRequest;
 import org.example.ptcmssbackend.dto.request.dispatch.AssignRequest;
+import org.example.ptcmssbackend.dto.request.dispatch.AutoDispatchCommitRequest;
 import org.example.ptcmssbackend.dto.response.Trip.TripDetailResponse;
 import org.example.ptcmssbackend.dto.response.Trip.TripListItemResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.AssignRespone;
 import org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse;
-import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.AutoDispatchPlanResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
 
 import java.time.Instant;
@@ -23,7 +25,10 @@ public interface DispatchService {
 
     AssignmentSuggestionResponse getAssignmentSuggestions(Integer tripId);
 
-    DispatchDashboardResponse getDashboard(Integer branchId, LocalDate date);
+    /**
+     * @param topPairs số cặp tài xế + xe gợi ý tối đa (null = mặc định)
+     */
+    AssignmentSuggestionResponse getAssignmentSuggestions(Integer tripId, Integer topPairs);
 
     AssignRespone assign(AssignRequest request);
 
@@ -35,6 +40,24 @@ public interface DispatchService {
 
     TripDetailResponse getTripDetail(Integer tripId);
 
+    /**
+     * Toàn bộ chuyến khớp điều kiện, sắp theo (startTime, tripId)
+     */
     List<TripListItemResponse> searchTrips(TripSearchRequest request);
 
+    /**
+     * Như {@link #searchTrips} nhưng phân trang keyset: trả nextCursor/hasMore để client đọc trang tiếp theo
+     */
+    CursorPageResponse<TripListItemResponse> scrollTrips(TripSearchRequest request);
+
+    /**
+     * Lập kế hoạch gán tài xế/xe cho toàn bộ chuyến pending của chi nhánh trong ngày (chỉ đề xuất, chưa lưu)
+     */
+    AutoDispatchPlanResponse proposeDayPlan(Integer branchId, LocalDate date);
+
+    /**
+     * Áp dụng kế hoạch điều phối trong một transaction (lỗi một chuyến thì không gán chuyến nào)
+     */
+    List<AssignRespone> commitDayPlan(AutoDispatchCommitRequest request);
+
 }
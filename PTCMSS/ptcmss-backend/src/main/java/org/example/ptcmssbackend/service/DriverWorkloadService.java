@@ -0,0 +1,51 @@
+package org.example.ptcmssbackend.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Sổ khối lượng công việc tài xế: số chuyến theo từng ngày của mỗi tài xế (chuyến/booking đã hủy không tính).
+ * Dùng cho điểm công bằng khi điều phối thay vì duyệt toàn bộ lịch sử chuyến của tài xế.
+ */
+public interface DriverWorkloadService {
+
+    /**
+     * Số chuyến của tài xế tính theo ngày của chuyến cần gán:
+     * trong ngày, trong tuần (thứ 2 - CN) và từ 3 ngày trước trở đi.
+     */
+    Workload getWorkload(Integer driverId, LocalDate tripDate);
+
+    /**
+     * Nạp lại phân công của các chuyến từ DB (sau khi gán/hủy gán/hủy đơn/hoàn thành chuyến).
+     */
+    void refreshTrips(Collection<Integer> tripIds);
+
+    /**
+     * Nạp lại phân công của mọi chuyến thuộc các đơn từ DB (sau khi đổi lịch/sửa đơn).
+     */
+    void refreshBookings(Collection<Integer> bookingIds);
+
+    /**
+     * Dựng lại toàn bộ sổ từ trip_drivers.
+     */
+    void rebuild();
+
+    /**
+     * Đối chiếu sổ với trip_drivers, thay bằng bản dựng mới nếu lệch.
+     * @return số tài xế có số liệu lệch
+     */
+    int verifyAndRepair();
+
+    @Getter
+    @AllArgsConstructor
+    class Workload {
+        public static final Workload EMPTY = new Workload(0, 0, 0);
+
+        private final int tripsToday;
+        private final int tripsThisWeek;
+        private final int recentAssignments;
+    }
+}
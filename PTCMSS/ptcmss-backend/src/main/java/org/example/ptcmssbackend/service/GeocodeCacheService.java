@@ -0,0 +1,32 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
+
+import java.util.List;
+
+/**
+ * Cache kết quả geocode hai tầng: bộ nhớ (LRU có giới hạn) và bảng geocode_cache (có giới hạn số dòng),
+ * khóa là địa chỉ đã chuẩn hóa
+ */
+public interface GeocodeCacheService {
+
+    /**
+     * @return null nếu chưa có hoặc đã hết hạn
+     */
+    List<PlaceSuggestion> get(String query);
+
+    /**
+     * Lưu kết quả geocode vào cả hai tầng (không lưu danh sách rỗng); dùng cho địa chỉ đã chọn để tính quãng đường/tuyến
+     */
+    void put(String query, List<PlaceSuggestion> places);
+
+    /**
+     * Chỉ lưu vào tầng bộ nhớ; dùng cho gợi ý khi đang gõ để mỗi phím gõ không thêm một dòng vào bảng
+     */
+    void putInMemory(String query, List<PlaceSuggestion> places);
+
+    /**
+     * Xóa các dòng đã hết hạn và các dòng cũ nhất khi bảng vượt giới hạn số dòng
+     */
+    void purgeExpired();
+}
@@ -1,5 +1,6 @@
 package org.example.ptcmssbackend.service;
 
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceMatrixResult;
 import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
 import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
 import org.example.ptcmssbackend.dto.response.GraphHopper.RouteOption;
@@ -10,6 +11,9 @@ public interface GraphHopperService {
 
     /**
      * Autocomplete địa chỉ (Geocoding)
+     *
+     * @return danh sách rỗng nếu không tìm thấy địa chỉ
+     * @throws org.example.ptcmssbackend.exception.RoutingUnavailableException nếu GraphHopper lỗi / không khả dụng
      */
     List<PlaceSuggestion> autocompletePlaces(String query);
 
@@ -18,6 +22,11 @@ public interface GraphHopperService {
      */
     DistanceResult calculateDistance(String from, String to);
 
+    /**
+     * Tính bảng khoảng cách từ mọi điểm đi tới mọi điểm đến trong một lượt (Matrix API, có cache)
+     */
+    DistanceMatrixResult calculateMatrix(List<String> origins, List<String> destinations);
+
     /**
      * Lấy nhiều tuyến đường thay thế
      */
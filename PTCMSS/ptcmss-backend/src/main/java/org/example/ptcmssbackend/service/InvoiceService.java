@@ -7,6 +7,7 @@ import org.example.ptcmssbackend.dto.request.Invoice.VoidInvoiceRequest;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceListResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.PaymentHistoryResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -30,6 +31,23 @@ public interface InvoiceService {
             String keyword,
             Pageable pageable
     );
+    /**
+     * Danh sách hóa đơn phân trang theo con trỏ (invoiceDate DESC, id DESC), cùng bộ lọc với getInvoices
+     * nhưng lọc hoàn toàn trong SQL. cursor = null là trang đầu; withTotal = true mới chạy thêm câu COUNT.
+     */
+    CursorPageResponse<InvoiceListResponse> scrollInvoices(
+            Integer branchId,
+            String type,
+            String status,
+            String paymentStatus,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer customerId,
+            String keyword,
+            String cursor,
+            int size,
+            boolean withTotal
+    );
     InvoiceResponse updateInvoice(Integer invoiceId, CreateInvoiceRequest request);
     void voidInvoice(Integer invoiceId, VoidInvoiceRequest request);
 
@@ -0,0 +1,54 @@
+package org.example.ptcmssbackend.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Chỉ mục trong bộ nhớ (theo chi nhánh) các khoảng thời gian tài xế/xe đang bị chiếm
+ * bởi các chuyến SCHEDULED/ASSIGNED/ONGOING. Dùng cho kiểm tra trùng lịch khi điều phối
+ * thay vì đọc lại toàn bộ lịch sử chuyến của từng tài xế/xe.
+ */
+public interface OccupancyIndexService {
+
+    /**
+     * Các chuyến của tài xế giao với khoảng [start, end).
+     * Khoảng của tài xế là [startTime, endTime] của chuyến; chuyến thiếu thời gian không được tính.
+     */
+    List<Slot> findDriverOverlaps(Integer branchId, Integer driverId, Instant start, Instant end);
+
+    /**
+     * Các chuyến của xe giao với khoảng [start, busyUntil).
+     * Khoảng của xe là [startTime, busy-until] theo {@link TripOccupancyService};
+     * chuyến không xác định được thời gian luôn được trả về (coi như bận).
+     */
+    List<Slot> findVehicleOverlaps(Integer branchId, Integer vehicleId, Instant start, Instant busyUntil);
+
+    /**
+     * Nạp lại phân công của các chuyến từ DB (gọi sau khi gán/hủy gán/đổi trạng thái chuyến).
+     */
+    void refreshTrips(Collection<Integer> tripIds);
+
+    /**
+     * Nạp lại các chuyến của đơn (gọi sau khi sửa lịch/hủy đơn), kể cả chuyến đã bị xóa khỏi đơn.
+     */
+    void refreshBookings(Collection<Integer> bookingIds);
+
+    /**
+     * Xoá snapshot của chi nhánh, lần truy vấn tiếp theo sẽ nạp lại từ DB.
+     */
+    void evictBranch(Integer branchId);
+
+    @Getter
+    @AllArgsConstructor
+    class Slot {
+        private final Integer tripId;
+        private final Integer bookingId;
+        /** null nếu không xác định được thời gian (coi như bận) */
+        private final Instant start;
+        private final Instant end;
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.PricingSnapshot;
+
+/**
+ * Giữ snapshot bất biến của dữ liệu tính giá (phụ phí, hệ số khứ hồi, hình thức thuê, bảng giá loại xe).
+ * Tính giá trên snapshot không cần truy cập DB.
+ */
+public interface PricingService {
+
+    /**
+     * Snapshot hiện tại, dựng từ DB ở lần gọi đầu tiên nếu chưa có.
+     */
+    PricingSnapshot getSnapshot();
+
+    /**
+     * Dựng lại snapshot từ DB và thay thế bản cũ trong một bước.
+     */
+    void rebuild();
+}
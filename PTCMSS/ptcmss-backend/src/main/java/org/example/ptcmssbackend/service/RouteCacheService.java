@@ -0,0 +1,44 @@
+package org.example.ptcmssbackend.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache tuyến đường (khoảng cách, thời gian) theo cặp tọa độ và profile, lưu trong bảng route_distance_cache.
+ * Các lượt tra cùng tuyến đồng thời chỉ gọi API một lần (single-flight).
+ */
+public interface RouteCacheService {
+
+    record RouteLeg(double distanceKm, double durationMinutes) {
+    }
+
+    /**
+     * Một tuyến vừa tính (vd. từ Matrix API) cần lưu vào cache
+     */
+    record RouteEntry(double fromLat, double fromLng, double toLat, double toLng, RouteLeg leg) {
+    }
+
+    /**
+     * Trả tuyến trong cache nếu còn mới; ngược lại gọi loader (một lần cho mọi request đang chờ cùng tuyến) và lưu lại.
+     * Nếu loader lỗi mà cache có bản đã cũ thì trả bản cũ (khi bật serve-stale-on-error).
+     */
+    RouteLeg getOrFetch(double fromLat, double fromLng, double toLat, double toLng, String profile,
+                        Supplier<RouteLeg> loader);
+
+    /**
+     * Tra nhiều tuyến một lượt theo routeKey; chỉ trả các tuyến còn mới
+     */
+    Map<String, RouteLeg> findFresh(Collection<String> routeKeys);
+
+    /**
+     * Tuyến đã cũ dùng thay khi API lỗi; rỗng nếu tắt serve-stale-on-error
+     */
+    Map<String, RouteLeg> findFallback(Collection<String> routeKeys);
+
+    /**
+     * Lưu (hoặc cập nhật) nhiều tuyến cùng profile
+     */
+    void putAll(String profile, List<RouteEntry> entries);
+}
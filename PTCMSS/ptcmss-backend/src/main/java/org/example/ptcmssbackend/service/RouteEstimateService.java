@@ -0,0 +1,16 @@
+package org.example.ptcmssbackend.service;
+
+/**
+ * Ước lượng tuyến đường khi không gọi được GraphHopper:
+ * khoảng cách chim bay (haversine) × hệ số đường bộ, thời gian theo vận tốc trung bình.
+ * Hệ số và vận tốc được hiệu chỉnh từ các tuyến thật đã lưu trong route_distance_cache.
+ */
+public interface RouteEstimateService {
+
+    RouteCacheService.RouteLeg estimate(double fromLat, double fromLng, double toLat, double toLng);
+
+    /**
+     * Tính lại hệ số đường bộ và vận tốc từ các tuyến mới nhất trong cache
+     */
+    void calibrate();
+}
@@ -0,0 +1,53 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.Customers;
+
+import java.util.List;
+
+/**
+ * Chỉ mục tìm kiếm khách hàng / đơn hàng theo từ khóa (tên không dấu, SĐT, email, mã đơn).
+ * Được cập nhật mỗi khi khách hàng được tạo / sửa; danh sách đơn và khách hàng tra chỉ mục thay cho LIKE '%x%'.
+ */
+public interface SearchIndexService {
+
+    /**
+     * Ghi lại token của khách hàng (gọi sau khi lưu khách hàng, cùng transaction)
+     */
+    void indexCustomer(Customers customer);
+
+    /**
+     * Phân tích từ khóa thành các tiền tố cần tra; việc tra chỉ mục chạy trong câu SQL danh sách
+     * (CustomerSearchTokenRepository.KEYWORD_CUSTOMER_IDS), không nạp danh sách id khách hàng về Java.
+     *
+     * @return null nếu từ khóa rỗng (không lọc)
+     */
+    KeywordMatch match(String keyword);
+
+    /**
+     * Từ khóa đã phân tích: mã đơn khớp chính xác (nếu từ khóa là số), tối đa MAX_TERMS tiền tố token phải cùng khớp
+     * (từ dài nhất trước; từ khóa nhiều từ hơn thì các từ ngắn nhất được bỏ qua) và tiền tố email khớp thay thế.
+     * Tiền tố không dùng là null, truyền thẳng vào :term1..:term3, :emailTerm của câu danh sách.
+     */
+    record KeywordMatch(Integer exactId, List<String> terms, String emailTerm) {
+
+        public static final int MAX_TERMS = 3;
+
+        /** Tham số cho câu danh sách khi không lọc theo từ khóa (keywordSearch = false) */
+        public static final KeywordMatch NONE = new KeywordMatch(null, List.of(), null);
+
+        /** Tiền tố thứ index (0..MAX_TERMS-1), null nếu không có */
+        public String term(int index) {
+            return index < terms.size() ? terms.get(index) : null;
+        }
+
+        /** Không có tiền tố nào để tra: không khách hàng nào khớp */
+        public boolean matchesNoCustomer() {
+            return terms.isEmpty() && emailTerm == null;
+        }
+
+        /** Không có mã đơn lẫn tiền tố nào: danh sách theo từ khóa chắc chắn rỗng */
+        public boolean matchesNothing() {
+            return exactId == null && matchesNoCustomer();
+        }
+    }
+}
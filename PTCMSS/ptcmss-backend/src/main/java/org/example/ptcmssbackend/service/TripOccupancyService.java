@@ -1,5 +1,7 @@
 package org.example.ptcmssbackend.service;
 
+import org.example.ptcmssbackend.entity.Trips;
+
 import java.time.Instant;
 
 /**
@@ -21,7 +23,8 @@ public interface TripOccupancyService {
      *                - ONE_WAY: có thể là endTime do user nhập (nếu có)
      *                - ROUND_TRIP: được hiểu là thời gian "bắt đầu về" (return start)
      *                - MULTI_DAY: có thể là endTime do user nhập (nếu có)
-     * @param distanceKm khoảng cách (km). Nếu null/<=0 có thể fallback theo logic implement.
+     * @param distanceKm khoảng cách (km). Nếu null/<=0 thì tính qua GraphHopper; không tính được thì giả định
+     *                   một quãng đường dài để xe không bị coi là rảnh quá sớm.
      * @param startLocation điểm đi (để fallback tính distance nếu cần)
      * @param endLocation điểm đến (để fallback tính distance nếu cần)
      */
@@ -33,6 +36,12 @@ public interface TripOccupancyService {
             String startLocation,
             String endLocation
     );
-}
-
 
+    /**
+     * Busy-until của một trip đã lưu, được nhớ theo tripId.
+     * Chỉ tính lại khi giờ đi/về, quãng đường, điểm đi/đến, hình thức thuê hoặc vận tốc trung bình thay đổi.
+     *
+     * @return null nếu trip chưa có startTime
+     */
+    Instant computeBusyUntil(Trips trip);
+}
@@ -2,6 +2,7 @@ package org.example.ptcmssbackend.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardDelta;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
@@ -80,6 +81,14 @@ public class WebSocketNotificationService {
         log.info("Sent dispatch update for dispatch {}: {}", dispatchId, status);
     }
 
+    /**
+     * Send dispatch dashboard delta to the branch topic
+     */
+    public void sendDispatchDashboardDelta(Integer branchId, DispatchDashboardDelta delta) {
+        messagingTemplate.convertAndSend("/topic/dispatches/branch/" + branchId, delta);
+        log.debug("Sent dispatch dashboard delta v{} for branch {}", delta.getVersion(), branchId);
+    }
+
     private Map<String, Object> buildNotification(String title, String message, String type, Integer userId) {
         Map<String, Object> notification = new HashMap<>();
         notification.put("id", System.currentTimeMillis());
@@ -0,0 +1,249 @@
+package org.example.ptcmssbackend.service.impl;
+
+import org.example.ptcmssbackend.dto.response.Booking.AvailabilityHeatmapResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Lưới khả dụng của một chi nhánh: số xe bận và giữ chỗ theo loại xe và từng giờ trong [origin, origin + buckets giờ).
+ *
+ * Mỗi trip đóng góp các {@link Piece}: xe đã gán (bận) hoặc số lượng giữ chỗ theo cọc (chưa gán xe).
+ * {@link #apply} trừ phần đóng góp cũ của trip rồi cộng phần mới, nên cập nhật theo sự kiện chỉ chạm các giờ
+ * của trip đó. Xe bận được đếm theo từng xe (một xe có hai trip chồng nhau vẫn là 1 xe bận).
+ * Trip được làm tròn ra ngoài theo giờ nên lưới luôn thận trọng hơn truy vấn chính xác ở mép giờ.
+ */
+public final class AvailabilityGrid {
+
+    public static final Duration BUCKET = Duration.ofHours(1);
+    private static final long BUCKET_SECONDS = BUCKET.getSeconds();
+
+    /** Đóng góp của một trip: vehicleId != null là xe bận, ngược lại là {@code weight} xe giữ chỗ */
+    public record Piece(Integer categoryId, Integer vehicleId, int weight, Instant start, Instant end) {
+    }
+
+    /** Số xe trong một khoảng thời gian: busy là số xe khác nhau bận, reserved là số giữ chỗ lớn nhất cùng lúc */
+    public record Counts(int total, int busy, int reserved) {
+        public int available() {
+            return Math.max(0, total - busy - reserved);
+        }
+    }
+
+    private final Integer branchId;
+    private final Instant origin;
+    private final int buckets;
+    private final Map<Integer, Integer> totals;
+    private final Map<Integer, String> categoryNames;
+    private final Map<Integer, int[]> busy = new HashMap<>();
+    private final Map<Integer, int[]> reserved = new HashMap<>();
+    private final Map<Integer, int[]> vehicleRefs = new HashMap<>();
+    private final Map<Integer, Integer> vehicleCategory = new HashMap<>();
+    private final Map<Integer, List<Piece>> pieces = new HashMap<>();
+    private final Map<Integer, Integer> tripBooking = new HashMap<>();
+    private long version;
+
+    /**
+     * @param from         đầu lưới (làm tròn xuống theo giờ)
+     * @param buckets      số giờ
+     * @param totals       số xe AVAILABLE theo loại xe
+     * @param categoryNames tên loại xe
+     */
+    public AvailabilityGrid(Integer branchId, Instant from, int buckets,
+                            Map<Integer, Integer> totals, Map<Integer, String> categoryNames) {
+        this.branchId = branchId;
+        this.origin = from.truncatedTo(ChronoUnit.HOURS);
+        this.buckets = buckets;
+        this.totals = new HashMap<>(totals);
+        this.categoryNames = new HashMap<>(categoryNames);
+    }
+
+    public Integer getBranchId() {
+        return branchId;
+    }
+
+    public Instant getFrom() {
+        return origin;
+    }
+
+    public Instant getTo() {
+        return origin.plus(BUCKET.multipliedBy(buckets));
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public boolean covers(Instant from, Instant to) {
+        return from != null && to != null && !from.isBefore(origin) && !to.isAfter(getTo()) && to.isAfter(from);
+    }
+
+    public synchronized boolean contains(Integer tripId) {
+        return pieces.containsKey(tripId);
+    }
+
+    /**
+     * Các trip đang có đóng góp thuộc những đơn chỉ định (để bỏ đóng góp của trip đã bị xóa khỏi đơn)
+     */
+    public synchronized Set<Integer> tripIdsOfBookings(Collection<Integer> bookingIds) {
+        Set<Integer> result = new HashSet<>();
+        tripBooking.forEach((tripId, bookingId) -> {
+            if (bookingIds.contains(bookingId)) {
+                result.add(tripId);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Thay đóng góp của trip; danh sách rỗng = trip không còn chiếm xe của chi nhánh.
+     *
+     * @return true nếu lưới thay đổi
+     */
+    public synchronized boolean apply(Integer tripId, Integer bookingId, List<Piece> fresh) {
+        List<Piece> old = pieces.getOrDefault(tripId, List.of());
+        if (old.equals(fresh)) {
+            return false;
+        }
+        old.forEach(p -> add(p, -1));
+        fresh.forEach(p -> add(p, 1));
+        if (fresh.isEmpty()) {
+            pieces.remove(tripId);
+            tripBooking.remove(tripId);
+        } else {
+            pieces.put(tripId, List.copyOf(fresh));
+            tripBooking.put(tripId, bookingId);
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Số xe của loại xe trong [from, to): O(số giờ × số xe bận của loại xe)
+     */
+    public synchronized Counts counts(Integer categoryId, Instant from, Instant to) {
+        int total = totals.getOrDefault(categoryId, 0);
+        int b0 = Math.max(0, floorBucket(from));
+        int b1 = Math.min(buckets, ceilBucket(to));
+
+        int busyVehicles = 0;
+        for (Map.Entry<Integer, int[]> entry : vehicleRefs.entrySet()) {
+            if (!categoryId.equals(vehicleCategory.get(entry.getKey()))) {
+                continue;
+            }
+            int[] refs = entry.getValue();
+            for (int b = b0; b < b1; b++) {
+                if (refs[b] > 0) {
+                    busyVehicles++;
+                    break;
+                }
+            }
+        }
+
+        int maxReserved = 0;
+        int[] reservedRow = reserved.get(categoryId);
+        if (reservedRow != null) {
+            for (int b = b0; b < b1; b++) {
+                maxReserved = Math.max(maxReserved, reservedRow[b]);
+            }
+        }
+        return new Counts(total, busyVehicles, maxReserved);
+    }
+
+    /**
+     * Cắt lưới theo [from, to) (làm tròn theo giờ), categoryId = null lấy tất cả loại xe
+     */
+    public synchronized AvailabilityHeatmapResponse toResponse(Integer categoryId, Instant from, Instant to) {
+        int b0 = Math.max(0, floorBucket(from));
+        int b1 = Math.min(buckets, Math.max(b0, ceilBucket(to)));
+
+        Set<Integer> categoryIds = new TreeSet<>(totals.keySet());
+        categoryIds.addAll(busy.keySet());
+        categoryIds.addAll(reserved.keySet());
+        if (categoryId != null) {
+            categoryIds.retainAll(Set.of(categoryId));
+        }
+
+        List<AvailabilityHeatmapResponse.CategoryRow> rows = new ArrayList<>();
+        for (Integer id : categoryIds) {
+            int total = totals.getOrDefault(id, 0);
+            int[] busyRow = busy.get(id);
+            int[] reservedRow = reserved.get(id);
+            List<Integer> busyList = new ArrayList<>(b1 - b0);
+            List<Integer> reservedList = new ArrayList<>(b1 - b0);
+            List<Integer> availableList = new ArrayList<>(b1 - b0);
+            for (int b = b0; b < b1; b++) {
+                int busyCount = busyRow != null ? busyRow[b] : 0;
+                int reservedCount = reservedRow != null ? reservedRow[b] : 0;
+                busyList.add(busyCount);
+                reservedList.add(reservedCount);
+                availableList.add(Math.max(0, total - busyCount - reservedCount));
+            }
+            rows.add(AvailabilityHeatmapResponse.CategoryRow.builder()
+                    .categoryId(id)
+                    .categoryName(categoryNames.get(id))
+                    .total(total)
+                    .busy(busyList)
+                    .reserved(reservedList)
+                    .available(availableList)
+                    .build());
+        }
+
+        return AvailabilityHeatmapResponse.builder()
+                .branchId(branchId)
+                .from(origin.plus(BUCKET.multipliedBy(b0)))
+                .to(origin.plus(BUCKET.multipliedBy(b1)))
+                .bucketMinutes((int) BUCKET.toMinutes())
+                .version(version)
+                .categories(rows)
+                .build();
+    }
+
+    private void add(Piece piece, int sign) {
+        if (piece.categoryId() == null || piece.start() == null || piece.end() == null) {
+            return;
+        }
+        int b0 = Math.max(0, floorBucket(piece.start()));
+        int b1 = Math.min(buckets, ceilBucket(piece.end()));
+        if (b0 >= b1) {
+            return;
+        }
+        if (piece.vehicleId() == null) {
+            int[] row = reserved.computeIfAbsent(piece.categoryId(), k -> new int[buckets]);
+            for (int b = b0; b < b1; b++) {
+                row[b] += sign * piece.weight();
+            }
+            return;
+        }
+        int[] refs = vehicleRefs.computeIfAbsent(piece.vehicleId(), k -> new int[buckets]);
+        vehicleCategory.put(piece.vehicleId(), piece.categoryId());
+        int[] row = busy.computeIfAbsent(piece.categoryId(), k -> new int[buckets]);
+        for (int b = b0; b < b1; b++) {
+            int before = refs[b];
+            refs[b] += sign;
+            if (before == 0 && refs[b] > 0) {
+                row[b]++;
+            } else if (before > 0 && refs[b] == 0) {
+                row[b]--;
+            }
+        }
+    }
+
+    private int floorBucket(Instant instant) {
+        return (int) Math.max(Integer.MIN_VALUE,
+                Math.floorDiv(Duration.between(origin, instant).getSeconds(), BUCKET_SECONDS));
+    }
+
+    private int ceilBucket(Instant instant) {
+        long seconds = Duration.between(origin, instant).getSeconds();
+        return (int) Math.min(Integer.MAX_VALUE, Math.floorDiv(seconds + BUCKET_SECONDS - 1, BUCKET_SECONDS));
+    }
+}
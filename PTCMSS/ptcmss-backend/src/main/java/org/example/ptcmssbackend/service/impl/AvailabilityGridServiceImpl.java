@@ -0,0 +1,342 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.response.Booking.AvailabilityHeatmapResponse;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.event.VehicleFleetChangedEvent;
+import org.example.ptcmssbackend.repository.BookingVehicleDetailsRepository;
+import org.example.ptcmssbackend.repository.TripRepository;
+import org.example.ptcmssbackend.repository.TripVehicleRepository;
+import org.example.ptcmssbackend.repository.VehicleRepository;
+import org.example.ptcmssbackend.service.AvailabilityGridService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưới khả dụng theo chi nhánh (xem {@link AvailabilityGridService}).
+ *
+ * Nạp lưới: 5 truy vấn cố định (số xe theo loại, id trip chồng lấn, trip kèm đơn, xe đã gán, giữ chỗ theo cọc).
+ * Cập nhật theo sự kiện dùng lại đúng các truy vấn đó cho các trip liên quan, nên lưới và lần nạp lại luôn khớp nhau.
+ *
+ * Mọi thay đổi {@link #live} (áp sự kiện, bỏ lưới, thay lưới khi nạp/đồng bộ) đi qua {@link #lock}. Nạp từ DB chạy
+ * ngoài khóa; chỉ thay lưới nếu trong lúc nạp không có sự kiện nào chạm vào, nếu không giữ lưới cũ (đã được sự kiện
+ * cập nhật) và để lần sau nạp lại.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class AvailabilityGridServiceImpl implements AvailabilityGridService {
+
+    static final int HORIZON_DAYS = 28;
+    private static final int DEFAULT_VIEW_DAYS = 7;
+    // Cùng trạng thái với findBusyVehicleIds
+    private static final Set<TripStatus> BUSY_STATUSES =
+            EnumSet.of(TripStatus.SCHEDULED, TripStatus.ASSIGNED, TripStatus.ONGOING);
+
+    private final TripRepository tripRepository;
+    private final TripVehicleRepository tripVehicleRepository;
+    private final BookingVehicleDetailsRepository bookingVehicleDetailsRepository;
+    private final VehicleRepository vehicleRepository;
+
+    private final Map<Integer, AvailabilityGrid> live = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    // Tăng mỗi khi có sự kiện hoặc bỏ lưới: lưới nạp trong lúc đó có thể đã cũ
+    private final AtomicLong changes = new AtomicLong();
+
+    @Override
+    public AvailabilityHeatmapResponse getHeatmap(Integer branchId, Integer categoryId, Instant from, Instant to) {
+        if (branchId == null) {
+            throw new IllegalArgumentException("Mã chi nhánh là bắt buộc");
+        }
+        Instant viewFrom = from != null ? from : Instant.now();
+        Instant viewTo = to != null ? to : viewFrom.plus(Duration.ofDays(DEFAULT_VIEW_DAYS));
+        if (!viewTo.isAfter(viewFrom)) {
+            throw new IllegalArgumentException("Thời gian kết thúc phải sau thời gian bắt đầu");
+        }
+        return liveGrid(branchId).toResponse(categoryId, viewFrom, viewTo);
+    }
+
+    @Override
+    public AvailabilityGrid.Counts getCounts(Integer branchId, Integer categoryId, Instant from, Instant to) {
+        if (branchId == null || categoryId == null) {
+            return null;
+        }
+        AvailabilityGrid grid = liveGrid(branchId);
+        return grid.covers(from, to) ? grid.counts(categoryId, from, to) : null;
+    }
+
+    @Override
+    public void refreshTrips(Collection<Integer> tripIds) {
+        if (tripIds == null || tripIds.isEmpty()) {
+            return;
+        }
+        changes.incrementAndGet();
+        if (live.isEmpty()) {
+            return;
+        }
+        Set<Integer> ids = new LinkedHashSet<>(tripIds);
+        List<Trips> trips = new ArrayList<>(tripRepository.findWithBookingByIdIn(new ArrayList<>(ids)));
+        // Giữ chỗ theo cọc tính cho cả đơn (đơn chưa có xe nào được gán), nên gán/hủy một trip
+        // đổi đóng góp của mọi trip cùng đơn
+        Set<Integer> bookingIds = new LinkedHashSet<>();
+        trips.forEach(t -> {
+            if (bookingIdOf(t) != null) {
+                bookingIds.add(bookingIdOf(t));
+            }
+        });
+        if (!bookingIds.isEmpty()) {
+            for (Trips sibling : tripRepository.findByBooking_IdIn(bookingIds)) {
+                if (ids.add(sibling.getId())) {
+                    trips.add(sibling);
+                }
+            }
+            live.values().forEach(grid -> ids.addAll(grid.tripIdsOfBookings(bookingIds)));
+        }
+        refresh(ids, trips);
+    }
+
+    @Override
+    public void refreshBookings(Collection<Integer> bookingIds) {
+        if (bookingIds == null || bookingIds.isEmpty()) {
+            return;
+        }
+        changes.incrementAndGet();
+        if (live.isEmpty()) {
+            return;
+        }
+        List<Trips> trips = tripRepository.findByBooking_IdIn(bookingIds);
+        // Gồm cả trip đã bị xóa khỏi đơn để bỏ phần đóng góp cũ
+        Set<Integer> ids = new LinkedHashSet<>();
+        trips.forEach(t -> ids.add(t.getId()));
+        live.values().forEach(grid -> ids.addAll(grid.tripIdsOfBookings(bookingIds)));
+        refresh(ids, trips);
+    }
+
+    @Override
+    public void evictBranch(Integer branchId) {
+        if (branchId != null) {
+            synchronized (lock) {
+                changes.incrementAndGet();
+                live.remove(branchId);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onTripAssignmentChanged(TripAssignmentChangedEvent event) {
+        try {
+            refreshTrips(event.getTripIds());
+        } catch (Exception e) {
+            // Không cập nhật được: bỏ lưới, lần đọc sau sẽ nạp lại từ DB
+            log.warn("[AvailabilityGrid] Cannot refresh trips {} ({}), dropping grids: {}",
+                    event.getTripIds(), event.getAction(), e.getMessage());
+            dropAll();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onBookingScheduleChanged(BookingScheduleChangedEvent event) {
+        try {
+            refreshBookings(event.getBookingIds());
+        } catch (Exception e) {
+            log.warn("[AvailabilityGrid] Cannot refresh bookings {}, dropping grids: {}",
+                    event.getBookingIds(), e.getMessage());
+            dropAll();
+        }
+    }
+
+    /**
+     * Số xe theo loại đổi: bỏ lưới của chi nhánh, lần đọc sau nạp lại từ DB
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleFleetChanged(VehicleFleetChangedEvent event) {
+        event.getBranchIds().forEach(this::evictBranch);
+    }
+
+    /**
+     * Đồng bộ toàn bộ định kỳ: bắt thay đổi không phát sự kiện và dời khung sang giờ hiện tại.
+     */
+    @Scheduled(fixedDelay = 600000) // 10 phút
+    public void resyncGrids() {
+        for (Map.Entry<Integer, AvailabilityGrid> entry : new ArrayList<>(live.entrySet())) {
+            Integer branchId = entry.getKey();
+            AvailabilityGrid current = entry.getValue();
+            long version = current.getVersion();
+            try {
+                AvailabilityGrid fresh = load(branchId, Instant.now());
+                synchronized (lock) {
+                    // Lưới đã bị bỏ (đổi số xe) hoặc đã nhận sự kiện trong lúc nạp: giữ nguyên, lần sau đồng bộ lại
+                    if (live.get(branchId) == current && current.getVersion() == version) {
+                        live.put(branchId, fresh);
+                    } else {
+                        log.debug("[AvailabilityGrid] Branch {} changed during resync, keeping current grid", branchId);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("[AvailabilityGrid] Cannot resync branch {}: {}", branchId, e.getMessage());
+            }
+        }
+    }
+
+    private AvailabilityGrid liveGrid(Integer branchId) {
+        AvailabilityGrid grid = live.get(branchId);
+        if (grid != null) {
+            return grid;
+        }
+        long seen = changes.get();
+        grid = load(branchId, Instant.now());
+        synchronized (lock) {
+            AvailabilityGrid existing = live.get(branchId);
+            if (existing != null) {
+                return existing;
+            }
+            // Có sự kiện trong lúc nạp: lưới có thể thiếu thay đổi đó, chỉ dùng cho lần đọc này
+            if (changes.get() == seen) {
+                live.put(branchId, grid);
+            }
+        }
+        return grid;
+    }
+
+    private void dropAll() {
+        synchronized (lock) {
+            changes.incrementAndGet();
+            live.clear();
+        }
+    }
+
+    private AvailabilityGrid load(Integer branchId, Instant now) {
+        Instant from = now.truncatedTo(ChronoUnit.HOURS);
+        int buckets = (int) Duration.ofDays(HORIZON_DAYS).dividedBy(AvailabilityGrid.BUCKET);
+
+        Map<Integer, Integer> totals = new HashMap<>();
+        Map<Integer, String> names = new HashMap<>();
+        for (Object[] row : vehicleRepository.countAvailableByBranchGroupByCategory(branchId)) {
+            totals.put((Integer) row[0], ((Number) row[2]).intValue());
+            names.put((Integer) row[0], (String) row[1]);
+        }
+        AvailabilityGrid grid = new AvailabilityGrid(branchId, from, buckets, totals, names);
+
+        List<Integer> tripIds = tripRepository.findIdsByBranchOverlapping(branchId, grid.getFrom(), grid.getTo());
+        List<Trips> trips = tripIds.isEmpty() ? List.of() : tripRepository.findWithBookingByIdIn(tripIds);
+        Map<Integer, Map<Integer, List<AvailabilityGrid.Piece>>> pieces = loadPieces(trips);
+        for (Trips trip : trips) {
+            grid.apply(trip.getId(), bookingIdOf(trip), piecesFor(grid, pieces.get(trip.getId())));
+        }
+        log.info("[AvailabilityGrid] Loaded branch {} from {} to {}: {} categories, {} trips",
+                branchId, grid.getFrom(), grid.getTo(), totals.size(), trips.size());
+        return grid;
+    }
+
+    private void refresh(Collection<Integer> tripIds, List<Trips> trips) {
+        Map<Integer, Trips> byId = new HashMap<>();
+        trips.forEach(t -> byId.put(t.getId(), t));
+        Map<Integer, Map<Integer, List<AvailabilityGrid.Piece>>> pieces = loadPieces(trips);
+
+        synchronized (lock) {
+            for (AvailabilityGrid grid : live.values()) {
+                for (Integer tripId : tripIds) {
+                    Trips trip = byId.get(tripId);
+                    grid.apply(tripId, trip != null ? bookingIdOf(trip) : null, piecesFor(grid, pieces.get(tripId)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Đóng góp của từng trip theo chi nhánh: tripId -> branchId -> pieces.
+     * Xe bận tính vào chi nhánh của xe, giữ chỗ theo cọc tính vào chi nhánh của đơn.
+     */
+    private Map<Integer, Map<Integer, List<AvailabilityGrid.Piece>>> loadPieces(List<Trips> trips) {
+        Map<Integer, Map<Integer, List<AvailabilityGrid.Piece>>> result = new HashMap<>();
+        if (trips.isEmpty()) {
+            return result;
+        }
+        Map<Integer, Trips> byId = new HashMap<>();
+        Map<Integer, List<Trips>> byBooking = new HashMap<>();
+        for (Trips trip : trips) {
+            byId.put(trip.getId(), trip);
+            Integer bookingId = bookingIdOf(trip);
+            if (bookingId != null) {
+                byBooking.computeIfAbsent(bookingId, k -> new ArrayList<>()).add(trip);
+            }
+        }
+
+        for (Object[] row : tripVehicleRepository.findAssignedVehicleCategories(byId.keySet())) {
+            Trips trip = byId.get((Integer) row[0]);
+            if (trip == null || !BUSY_STATUSES.contains(trip.getStatus())) {
+                continue;
+            }
+            add(result, trip.getId(), (Integer) row[3],
+                    new AvailabilityGrid.Piece((Integer) row[2], (Integer) row[1], 1, trip.getStartTime(), trip.getEndTime()));
+        }
+
+        if (!byBooking.isEmpty()) {
+            for (Object[] row : bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(byBooking.keySet())) {
+                int quantity = row[2] != null ? ((Number) row[2]).intValue() : 0;
+                if (quantity <= 0) {
+                    continue;
+                }
+                for (Trips trip : byBooking.getOrDefault((Integer) row[0], List.of())) {
+                    add(result, trip.getId(), branchIdOf(trip),
+                            new AvailabilityGrid.Piece((Integer) row[1], null, quantity, trip.getStartTime(), trip.getEndTime()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void add(Map<Integer, Map<Integer, List<AvailabilityGrid.Piece>>> result,
+                            Integer tripId, Integer branchId, AvailabilityGrid.Piece piece) {
+        if (branchId == null || piece.start() == null || piece.end() == null) {
+            return;
+        }
+        result.computeIfAbsent(tripId, k -> new HashMap<>())
+                .computeIfAbsent(branchId, k -> new ArrayList<>())
+                .add(piece);
+    }
+
+    private static List<AvailabilityGrid.Piece> piecesFor(AvailabilityGrid grid,
+                                                         Map<Integer, List<AvailabilityGrid.Piece>> byBranch) {
+        if (byBranch == null) {
+            return List.of();
+        }
+        // Chỉ giữ phần chồng lấn khung của lưới
+        return byBranch.getOrDefault(grid.getBranchId(), List.of()).stream()
+                .filter(p -> p.start().isBefore(grid.getTo()) && p.end().isAfter(grid.getFrom()))
+                .toList();
+    }
+
+    private static Integer bookingIdOf(Trips trip) {
+        return trip.getBooking() != null ? trip.getBooking().getId() : null;
+    }
+
+    private static Integer branchIdOf(Trips trip) {
+        return trip.getBooking() != null && trip.getBooking().getBranch() != null
+                ? trip.getBooking().getBranch().getId() : null;
+    }
+}
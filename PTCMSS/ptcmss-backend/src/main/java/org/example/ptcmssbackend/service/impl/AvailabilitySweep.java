@@ -0,0 +1,135 @@
+package org.example.ptcmssbackend.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Quét đường thẳng (sweep line) trên trục thời gian để tìm các khoảng có ít nhất {@code needed} xe cùng rảnh.
+ *
+ * Mỗi khoảng bận [start, end) trừ {@code weight} xe khỏi số xe rảnh. Khoảng bận của cùng một xe được gộp trước
+ * để hai chuyến chồng nhau không bị trừ hai lần. Giữ chỗ chưa gán xe (vehicleId = null) trừ theo số lượng.
+ * Chi phí O(k · log k) với k là số khoảng bận trong cửa sổ quét, không phụ thuộc lịch sử chuyến của từng xe.
+ */
+public final class AvailabilitySweep {
+
+    private AvailabilitySweep() {
+    }
+
+    /**
+     * Khoảng bận [start, end) của một xe (vehicleId != null, weight = 1) hoặc giữ chỗ theo số lượng (vehicleId = null)
+     */
+    public record Interval(Integer vehicleId, Instant start, Instant end, int weight) {
+    }
+
+    /**
+     * Khoảng có đủ xe rảnh; until = null nghĩa là còn rảnh đến hết cửa sổ quét
+     */
+    public record Window(Instant from, Instant until, int freeCount) {
+    }
+
+    /**
+     * @param capacity  tổng số xe
+     * @param busy      các khoảng bận
+     * @param from      đầu cửa sổ quét
+     * @param to        cuối cửa sổ quét
+     * @param needed    số xe cần cùng lúc
+     * @param minLength độ dài tối thiểu của khoảng rảnh (null = không giới hạn)
+     * @param limit     số khoảng tối đa trả về
+     * @return các khoảng có ít nhất {@code needed} xe rảnh, bắt đầu sau {@code from}, theo thời gian tăng dần
+     */
+    public static List<Window> findWindows(int capacity, Collection<Interval> busy, Instant from, Instant to,
+                                           int needed, Duration minLength, int limit) {
+        List<Window> windows = new ArrayList<>();
+        if (capacity < needed || limit <= 0 || !to.isAfter(from)) {
+            return windows;
+        }
+
+        // Biến thiên số xe rảnh theo thời điểm
+        TreeMap<Instant, Integer> deltas = new TreeMap<>();
+        deltas.put(from, 0);
+        for (Interval interval : mergePerVehicle(busy)) {
+            Instant start = interval.start().isBefore(from) ? from : interval.start();
+            if (!interval.end().isAfter(start) || !start.isBefore(to)) {
+                continue;
+            }
+            deltas.merge(start, -interval.weight(), Integer::sum);
+            // Bận đến hết cửa sổ thì không cần điểm trả xe
+            if (interval.end().isBefore(to)) {
+                deltas.merge(interval.end(), interval.weight(), Integer::sum);
+            }
+        }
+
+        int free = capacity;
+        Instant openAt = null;
+        int openFree = 0;
+        for (Map.Entry<Instant, Integer> event : deltas.entrySet()) {
+            free += event.getValue();
+            if (free >= needed) {
+                if (openAt == null) {
+                    openAt = event.getKey();
+                    openFree = free;
+                }
+            } else if (openAt != null) {
+                if (accept(openAt, event.getKey(), from, minLength)) {
+                    windows.add(new Window(openAt, event.getKey(), openFree));
+                    if (windows.size() >= limit) {
+                        return windows;
+                    }
+                }
+                openAt = null;
+            }
+        }
+        if (openAt != null && accept(openAt, null, from, minLength)) {
+            windows.add(new Window(openAt, null, openFree));
+        }
+        return windows;
+    }
+
+    private static boolean accept(Instant openAt, Instant until, Instant from, Duration minLength) {
+        // Khoảng mở ngay tại thời điểm yêu cầu không phải gợi ý "giờ khác"
+        if (!openAt.isAfter(from)) {
+            return false;
+        }
+        return until == null || minLength == null || Duration.between(openAt, until).compareTo(minLength) >= 0;
+    }
+
+    /**
+     * Gộp các khoảng chồng nhau của cùng một xe; giữ chỗ (vehicleId = null) giữ nguyên
+     */
+    static List<Interval> mergePerVehicle(Collection<Interval> intervals) {
+        List<Interval> result = new ArrayList<>(intervals.size());
+        Map<Integer, List<Interval>> byVehicle = new HashMap<>();
+        for (Interval interval : intervals) {
+            if (interval.start() == null || interval.end() == null || !interval.end().isAfter(interval.start())) {
+                continue;
+            }
+            if (interval.vehicleId() == null) {
+                result.add(interval);
+            } else {
+                byVehicle.computeIfAbsent(interval.vehicleId(), k -> new ArrayList<>()).add(interval);
+            }
+        }
+        for (List<Interval> list : byVehicle.values()) {
+            list.sort(Comparator.comparing(Interval::start));
+            Interval current = list.get(0);
+            for (int i = 1; i < list.size(); i++) {
+                Interval next = list.get(i);
+                if (next.start().isAfter(current.end())) {
+                    result.add(current);
+                    current = next;
+                } else if (next.end().isAfter(current.end())) {
+                    current = new Interval(current.vehicleId(), current.start(), next.end(), current.weight());
+                }
+            }
+            result.add(current);
+        }
+        return result;
+    }
+}
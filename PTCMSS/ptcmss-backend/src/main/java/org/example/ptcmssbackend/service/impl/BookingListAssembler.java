@@ -0,0 +1,83 @@
+package org.example.ptcmssbackend.service.impl;
+
+import org.example.ptcmssbackend.dto.response.Booking.BookingListResponse;
+import org.example.ptcmssbackend.entity.Bookings;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dựng BookingListResponse cho cả trang từ hai nguồn: các booking (đã JOIN FETCH khách hàng, chi nhánh,
+ * tư vấn viên) và các dòng của BookingRepository.findListDetailsByBookingIds.
+ * Không truy cập repository hay quan hệ LAZY nào khác, nên một trang chỉ tốn đúng hai câu truy vấn.
+ */
+public final class BookingListAssembler {
+
+    private BookingListAssembler() {
+    }
+
+    /**
+     * @param bookings   booking của trang, giữ nguyên thứ tự
+     * @param detailRows [bookingId, tripId, startLocation, endLocation, startTime, assigned, vehicleCount, paidAmount]
+     */
+    public static List<BookingListResponse> assemble(List<Bookings> bookings, List<Object[]> detailRows) {
+        Map<Integer, Details> detailsByBooking = new HashMap<>();
+        for (Object[] row : detailRows) {
+            Details details = detailsByBooking.computeIfAbsent((Integer) row[0], id -> new Details());
+            details.vehicleCount = row[6] != null ? ((Number) row[6]).intValue() : null;
+            details.paidAmount = row[7] != null ? (BigDecimal) row[7] : BigDecimal.ZERO;
+            if (row[1] == null) {
+                continue;
+            }
+            details.routes.add((row[2] != null ? row[2] : "?") + " → " + (row[3] != null ? row[3] : "?"));
+            Instant startTime = (Instant) row[4];
+            if (startTime != null && (details.startDate == null || startTime.isBefore(details.startDate))) {
+                details.startDate = startTime;
+            }
+            // Đã gắn chuyến khi có ít nhất một trip đủ tài xế + xe
+            if (Boolean.TRUE.equals(row[5])) {
+                details.assigned = true;
+            }
+        }
+
+        List<BookingListResponse> items = new ArrayList<>(bookings.size());
+        for (Bookings booking : bookings) {
+            items.add(toResponse(booking, detailsByBooking.getOrDefault(booking.getId(), new Details())));
+        }
+        return items;
+    }
+
+    private static BookingListResponse toResponse(Bookings booking, Details details) {
+        return BookingListResponse.builder()
+                .id(booking.getId())
+                .customerName(booking.getCustomer().getFullName())
+                .customerPhone(booking.getCustomer().getPhone())
+                .routeSummary(details.routes.isEmpty() ? "Chưa có lịch trình" : String.join(", ", details.routes))
+                .startDate(details.startDate)
+                .totalCost(booking.getTotalCost())
+                .depositAmount(booking.getDepositAmount())
+                .paidAmount(details.paidAmount)
+                .vehicleCount(details.vehicleCount != null && details.vehicleCount > 0 ? details.vehicleCount : null)
+                .status(booking.getStatus() != null ? booking.getStatus().name() : null)
+                .isAssigned(details.assigned)
+                .createdAt(booking.getCreatedAt())
+                .consultantId(booking.getConsultant() != null ? booking.getConsultant().getEmployeeId() : null)
+                .consultantName(booking.getConsultant() != null && booking.getConsultant().getUser() != null
+                        ? booking.getConsultant().getUser().getFullName() : null)
+                .branchId(booking.getBranch() != null ? booking.getBranch().getId() : null)
+                .branchName(booking.getBranch() != null ? booking.getBranch().getBranchName() : null)
+                .build();
+    }
+
+    private static final class Details {
+        private final List<String> routes = new ArrayList<>();
+        private Instant startDate;
+        private boolean assigned;
+        private Integer vehicleCount;
+        private BigDecimal paidAmount = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.ptcmssbackend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.entity.BookingOutbox;
+import org.example.ptcmssbackend.enums.OutboxEventType;
+import org.example.ptcmssbackend.enums.OutboxStatus;
+import org.example.ptcmssbackend.repository.BookingOutboxRepository;
+import org.example.ptcmssbackend.service.BookingOutboxService;
+import org.example.ptcmssbackend.service.WebSocketNotificationService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingOutboxServiceImpl implements BookingOutboxService {
+
+    static final int BATCH_SIZE = 100;
+    static final int MAX_ATTEMPTS = 8;
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+    private static final Duration SENT_RETENTION = Duration.ofDays(7);
+
+    private final BookingOutboxRepository outboxRepository;
+    private final WebSocketNotificationService webSocketNotificationService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    @Transactional
+    public void enqueueGlobalNotification(Integer bookingId, String title, String message, String type) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("title", title);
+        payload.put("message", message);
+        payload.put("type", type);
+        enqueue(bookingId, OutboxEventType.GLOBAL_NOTIFICATION, payload);
+    }
+
+    @Override
+    @Transactional
+    public void enqueueUserNotification(Integer bookingId, Integer userId, String title, String message, String type) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", userId);
+        payload.put("title", title);
+        payload.put("message", message);
+        payload.put("type", type);
+        enqueue(bookingId, OutboxEventType.USER_NOTIFICATION, payload);
+    }
+
+    @Override
+    @Transactional
+    public void enqueueBookingUpdate(Integer bookingId, String status, String message) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("status", status);
+        payload.put("message", message);
+        enqueue(bookingId, OutboxEventType.BOOKING_UPDATE, payload);
+    }
+
+    @Override
+    @Transactional
+    public void enqueuePaymentUpdate(Integer bookingId, Integer invoiceId, String status, String message) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("invoiceId", invoiceId);
+        payload.put("status", status);
+        payload.put("message", message);
+        enqueue(bookingId, OutboxEventType.PAYMENT_UPDATE, payload);
+    }
+
+    private void enqueue(Integer bookingId, OutboxEventType eventType, Map<String, Object> payload) {
+        try {
+            outboxRepository.save(new BookingOutbox(bookingId, eventType,
+                    objectMapper.writeValueAsString(payload), Instant.now()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không thể ghi sự kiện outbox: " + eventType, e);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 2000) // 2 giây
+    @Transactional
+    public int dispatchPending() {
+        Instant now = Instant.now();
+        List<BookingOutbox> batch = outboxRepository.findDispatchable(now, PageRequest.of(0, BATCH_SIZE));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Booking có dòng lỗi trong lô này: các dòng sau của nó chờ lần thử lại
+        Set<Integer> blockedBookings = new HashSet<>();
+        int sent = 0;
+        for (BookingOutbox row : batch) {
+            if (row.getBookingId() != null && blockedBookings.contains(row.getBookingId())) {
+                continue;
+            }
+            try {
+                publish(row);
+                row.setStatus(OutboxStatus.SENT);
+                row.setSentAt(now);
+                row.setLastError(null);
+                sent++;
+            } catch (Exception e) {
+                int attempts = row.getAttempts() + 1;
+                row.setAttempts(attempts);
+                row.setLastError(truncate(e.getMessage()));
+                if (attempts >= MAX_ATTEMPTS) {
+                    // Bỏ qua hẳn để không chặn các sự kiện sau của booking
+                    row.setStatus(OutboxStatus.FAILED);
+                    log.error("[BookingOutbox] Giving up event {} ({}) for booking {} after {} attempts",
+                            row.getId(), row.getEventType(), row.getBookingId(), attempts, e);
+                } else {
+                    row.setNextAttemptAt(now.plus(backoff(attempts)));
+                    if (row.getBookingId() != null) {
+                        blockedBookings.add(row.getBookingId());
+                    }
+                    log.warn("[BookingOutbox] Event {} ({}) failed, attempt {}: {}",
+                            row.getId(), row.getEventType(), attempts, e.getMessage());
+                }
+            }
+        }
+        outboxRepository.saveAll(batch);
+        return sent;
+    }
+
+    /**
+     * Dọn các dòng đã gửi quá 7 ngày
+     */
+    @Scheduled(cron = "0 30 3 * * *") // Chạy mỗi ngày lúc 3:30 sáng
+    @Transactional
+    public void purgeSent() {
+        Instant before = Instant.now().minus(SENT_RETENTION);
+        List<BookingOutbox> old;
+        do {
+            old = outboxRepository.findByStatusAndSentAtBefore(OutboxStatus.SENT, before, PageRequest.of(0, 500));
+            outboxRepository.deleteAll(old);
+        } while (old.size() == 500);
+    }
+
+    private void publish(BookingOutbox row) throws JsonProcessingException {
+        Map<?, ?> payload = objectMapper.readValue(row.getPayload(), Map.class);
+        String message = (String) payload.get("message");
+        switch (row.getEventType()) {
+            case GLOBAL_NOTIFICATION -> webSocketNotificationService.sendGlobalNotification(
+                    (String) payload.get("title"), message, (String) payload.get("type"));
+            case USER_NOTIFICATION -> webSocketNotificationService.sendUserNotification(
+                    (Integer) payload.get("userId"), (String) payload.get("title"), message, (String) payload.get("type"));
+            case BOOKING_UPDATE -> webSocketNotificationService.sendBookingUpdate(
+                    row.getBookingId(), (String) payload.get("status"), message);
+            case PAYMENT_UPDATE -> webSocketNotificationService.sendPaymentUpdate(
+                    (Integer) payload.get("invoiceId"), row.getBookingId(), (String) payload.get("status"), message);
+        }
+    }
+
+    /**
+     * 2^attempts giây, tối đa 10 phút
+     */
+    static Duration backoff(int attempts) {
+        Duration delay = Duration.ofSeconds(1L << Math.min(attempts, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 255 ? error.substring(0, 255) : error;
+    }
+}
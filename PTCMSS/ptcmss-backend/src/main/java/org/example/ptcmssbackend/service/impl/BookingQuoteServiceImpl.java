@@ -0,0 +1,189 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.request.Booking.BatchQuoteRequest;
+import org.example.ptcmssbackend.dto.response.Booking.BatchQuoteResponse;
+import org.example.ptcmssbackend.service.BookingQuoteService;
+import org.example.ptcmssbackend.service.GraphHopperService;
+import org.example.ptcmssbackend.service.PricingService;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+
+/**
+ * Báo giá hàng loạt (xem {@link BookingQuoteService}).
+ *
+ * Hai bước: tra khoảng cách cho các tuyến duy nhất song song trên virtual thread (giới hạn số lời gọi
+ * GraphHopper đồng thời), rồi tính giá các phương án song song trên một {@link PricingSnapshot} duy nhất.
+ * Tính giá là hàm thuần nên không cần transaction hay kết nối DB.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingQuoteServiceImpl implements BookingQuoteService {
+
+    static final int MAX_SCENARIOS = 50;
+    static final int MAX_CONCURRENT_ROUTE_LOOKUPS = 8;
+    // Ít phương án thì tính tuần tự, chi phí chia việc lớn hơn lợi ích
+    private static final int MIN_PARALLEL_SCENARIOS = 8;
+
+    private final PricingService pricingService;
+    private final GraphHopperService graphHopperService;
+
+    @Override
+    public BatchQuoteResponse quote(BatchQuoteRequest request) {
+        List<BatchQuoteRequest.QuoteScenario> scenarios = request != null ? request.getScenarios() : null;
+        if (scenarios == null || scenarios.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách phương án không được để trống");
+        }
+        if (scenarios.size() > MAX_SCENARIOS) {
+            throw new IllegalArgumentException("Tối đa " + MAX_SCENARIOS + " phương án mỗi lần báo giá");
+        }
+
+        PricingSnapshot snapshot = pricingService.getSnapshot();
+        Map<String, RouteDistance> distances = lookupDistances(scenarios);
+
+        IntStream indexes = IntStream.range(0, scenarios.size());
+        if (scenarios.size() >= MIN_PARALLEL_SCENARIOS) {
+            indexes = indexes.parallel();
+        }
+        List<BatchQuoteResponse.ScenarioQuote> quotes = indexes
+                .mapToObj(i -> quoteScenario(i, scenarios.get(i), snapshot, distances))
+                .toList();
+
+        return BatchQuoteResponse.builder()
+                .scenarioCount(scenarios.size())
+                .routeLookups(distances.size())
+                .quotes(quotes)
+                .build();
+    }
+
+    private BatchQuoteResponse.ScenarioQuote quoteScenario(int index,
+                                                           BatchQuoteRequest.QuoteScenario scenario,
+                                                           PricingSnapshot snapshot,
+                                                           Map<String, RouteDistance> distances) {
+        try {
+            if (scenario == null || scenario.getVehicles() == null || scenario.getVehicles().isEmpty()) {
+                throw new IllegalArgumentException("Danh sách loại xe không được để trống");
+            }
+            Double distance = scenario.getDistance();
+            if (distance == null) {
+                String key = routeKey(scenario);
+                if (key == null) {
+                    throw new IllegalArgumentException("Cần khoảng cách hoặc điểm đi / điểm đến");
+                }
+                RouteDistance route = distances.get(key);
+                if (route.error() != null) {
+                    throw new IllegalArgumentException(route.error());
+                }
+                distance = route.distanceKm();
+            }
+
+            BatchQuoteResponse.ScenarioQuote quote = snapshot.quote(scenario.getVehicles(), distance,
+                    scenario.getUseHighway(), scenario.getHireTypeId(), scenario.getIsHoliday(),
+                    scenario.getIsWeekend(), scenario.getStartTime(), scenario.getEndTime());
+            quote.setIndex(index);
+            quote.setLabel(scenario.getLabel());
+            return quote;
+        } catch (Exception e) {
+            log.debug("[BatchQuote] Scenario {} failed: {}", index, e.getMessage());
+            return BatchQuoteResponse.ScenarioQuote.builder()
+                    .index(index)
+                    .label(scenario != null ? scenario.getLabel() : null)
+                    .ok(false)
+                    .error(e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Tra khoảng cách cho các tuyến duy nhất của những phương án không truyền sẵn distance.
+     */
+    private Map<String, RouteDistance> lookupDistances(List<BatchQuoteRequest.QuoteScenario> scenarios) {
+        Map<String, String[]> routes = new HashMap<>();
+        Set<String> keys = new LinkedHashSet<>();
+        for (BatchQuoteRequest.QuoteScenario scenario : scenarios) {
+            if (scenario == null || scenario.getDistance() != null) {
+                continue;
+            }
+            String key = routeKey(scenario);
+            if (key != null && keys.add(key)) {
+                routes.put(key, new String[]{scenario.getStartLocation().trim(), scenario.getEndLocation().trim()});
+            }
+        }
+        Map<String, RouteDistance> distances = new HashMap<>();
+        if (keys.isEmpty()) {
+            return distances;
+        }
+        if (keys.size() == 1) {
+            String key = keys.iterator().next();
+            distances.put(key, lookup(routes.get(key)));
+            return distances;
+        }
+
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_ROUTE_LOOKUPS);
+        List<String> ordered = new ArrayList<>(keys);
+        List<Future<RouteDistance>> futures = new ArrayList<>(ordered.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String key : ordered) {
+                String[] route = routes.get(key);
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return lookup(route);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (int i = 0; i < ordered.size(); i++) {
+                distances.put(ordered.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bị gián đoạn khi tính khoảng cách", e);
+        } catch (ExecutionException e) {
+            // lookup() đã tự bắt lỗi, chỉ còn lỗi ngoài dự kiến
+            throw new RuntimeException("Lỗi khi tính khoảng cách: " + e.getCause().getMessage(), e.getCause());
+        }
+        return distances;
+    }
+
+    private RouteDistance lookup(String[] route) {
+        try {
+            var result = graphHopperService.calculateDistance(route[0], route[1]);
+            if (result == null || result.getDistanceKm() == null) {
+                return new RouteDistance(null, "Không tính được khoảng cách: " + route[0] + " → " + route[1]);
+            }
+            return new RouteDistance(result.getDistanceKm(), null);
+        } catch (Exception e) {
+            log.warn("[BatchQuote] Distance lookup failed for {} → {}: {}", route[0], route[1], e.getMessage());
+            return new RouteDistance(null, e.getMessage());
+        }
+    }
+
+    private static String routeKey(BatchQuoteRequest.QuoteScenario scenario) {
+        if (!StringUtils.hasText(scenario.getStartLocation()) || !StringUtils.hasText(scenario.getEndLocation())) {
+            return null;
+        }
+        return scenario.getStartLocation().trim().toLowerCase(Locale.ROOT)
+                + "\n" + scenario.getEndLocation().trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record RouteDistance(Double distanceKm, String error) {
+    }
+}
@@ -10,14 +10,21 @@ import org.example.ptcmssbackend.dto.request.Booking.VehicleDetailRequest;
 import org.example.ptcmssbackend.dto.request.Booking.AssignRequest;
 import org.example.ptcmssbackend.dto.request.Booking.CheckAvailabilityRequest;
 import org.example.ptcmssbackend.dto.response.Booking.*;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.dto.response.common.PageResponse;
 import org.example.ptcmssbackend.entity.*;
 import org.example.ptcmssbackend.enums.*;
 import org.example.ptcmssbackend.repository.*;
+import org.example.ptcmssbackend.service.AvailabilityGridService;
+import org.example.ptcmssbackend.service.BookingOutboxService;
 import org.example.ptcmssbackend.service.BookingService;
 import org.example.ptcmssbackend.service.CustomerService;
+import org.example.ptcmssbackend.service.PricingService;
+import org.example.ptcmssbackend.service.SearchIndexService;
 import org.example.ptcmssbackend.service.SystemSettingService;
 import org.example.ptcmssbackend.service.TripOccupancyService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -30,9 +37,14 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -40,6 +52,13 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BookingServiceImpl implements BookingService {
 
+    // Gợi ý giờ khác: quét tối đa 7 ngày sau giờ yêu cầu, trả về 5 khoảng sớm nhất
+    private static final int SLOT_LOOKAHEAD_DAYS = 7;
+    private static final int MAX_NEXT_SLOTS = 5;
+    // Dashboard tư vấn viên: số tháng thống kê và số đơn tối đa mỗi danh sách
+    private static final int DASHBOARD_MONTHS = 3;
+    private static final int DASHBOARD_LIST_LIMIT = 50;
+
     private final BookingRepository bookingRepository;
     private final CustomerService customerService;
     private final BranchesRepository branchesRepository;
@@ -55,7 +74,19 @@ public class BookingServiceImpl implements BookingService {
     private final InvoiceRepository invoiceRepository;
     private final DriverRepository driverRepository;
     private final VehicleRepository vehicleRepository;
-    private final org.example.ptcmssbackend.service.WebSocketNotificationService webSocketNotificationService;
+    private final BookingOutboxService bookingOutboxService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PricingService pricingService;
+    private final AvailabilityGridService availabilityGridService;
+    private final SearchIndexService searchIndexService;
+
+    // Cache ngắn hạn dashboard theo (tư vấn viên, chi nhánh); 0 = tắt cache
+    @Value("${booking.consultant-dashboard.cache-ttl-seconds:30}")
+    private long dashboardCacheTtlSeconds;
+    private final Map<String, CachedDashboard> dashboardCache = new ConcurrentHashMap<>();
+
+    private record CachedDashboard(ConsultantDashboardResponse response, Instant expiresAt) {
+    }
 
     @Override
     @Transactional
@@ -188,28 +219,23 @@ public class BookingServiceImpl implements BookingService {
         booking = bookingRepository.save(booking);
         log.info("[BookingService] Created booking: {}", booking.getId());
 
-        // Send WebSocket notification for new booking
-        try {
-            String customerName = customer.getFullName() != null ? customer.getFullName() : "Khách hàng";
-            String bookingCode = "ORD-" + booking.getId();
-
-            webSocketNotificationService.sendGlobalNotification(
-                    "Đơn hàng mới",
-                    String.format("Đơn %s - %s (%.0f km)",
-                            bookingCode,
-                            customerName,
-                            request.getDistance() != null ? request.getDistance() : 0),
-                    "INFO"
-            );
-
-            webSocketNotificationService.sendBookingUpdate(
-                    booking.getId(),
-                    "CREATED",
-                    String.format("Đơn hàng %s đã được tạo thành công", bookingCode)
-            );
-        } catch (Exception e) {
-            log.warn("Failed to send WebSocket notification for new booking", e);
-        }
+        // WebSocket notification cho đơn mới: ghi outbox cùng transaction, gửi sau khi commit
+        String newCustomerName = customer.getFullName() != null ? customer.getFullName() : "Khách hàng";
+        String newBookingCode = "ORD-" + booking.getId();
+        bookingOutboxService.enqueueGlobalNotification(
+                booking.getId(),
+                "Đơn hàng mới",
+                String.format("Đơn %s - %s (%.0f km)",
+                        newBookingCode,
+                        newCustomerName,
+                        request.getDistance() != null ? request.getDistance() : 0),
+                "INFO"
+        );
+        bookingOutboxService.enqueueBookingUpdate(
+                booking.getId(),
+                "CREATED",
+                String.format("Đơn hàng %s đã được tạo thành công", newBookingCode)
+        );
 
         // 6. Tạo trips
         // VALIDATION: Kiểm tra số lượng tài xế rảnh trước khi tạo booking
@@ -486,39 +512,34 @@ public class BookingServiceImpl implements BookingService {
 
         booking = bookingRepository.save(booking);
 
-        // Send WebSocket notification for booking update
-        try {
-            String customerName = booking.getCustomer() != null ? booking.getCustomer().getFullName() : "Khách hàng";
-            String bookingCode = "ORD-" + bookingId;
-            BookingStatus newStatus = booking.getStatus();
-
-            if (oldStatus != newStatus) {
-                // Status changed
-                webSocketNotificationService.sendGlobalNotification(
-                        "Cập nhật trạng thái đơn hàng",
-                        String.format("Đơn %s - %s: %s → %s",
-                                bookingCode,
-                                customerName,
-                                oldStatus.name(),
-                                newStatus.name()),
-                        "INFO"
-                );
-
-                webSocketNotificationService.sendBookingUpdate(
-                        bookingId,
-                        newStatus.name(),
-                        String.format("Trạng thái đơn hàng đã được cập nhật thành %s", newStatus.name())
-                );
-            } else {
-                // General update
-                webSocketNotificationService.sendBookingUpdate(
-                        bookingId,
-                        "UPDATED",
-                        String.format("Đơn hàng %s đã được cập nhật", bookingCode)
-                );
-            }
-        } catch (Exception e) {
-            log.warn("Failed to send WebSocket notification for booking update", e);
+        // WebSocket notification cho cập nhật đơn: ghi outbox cùng transaction
+        String updatedCustomerName = booking.getCustomer() != null ? booking.getCustomer().getFullName() : "Khách hàng";
+        String updatedBookingCode = "ORD-" + bookingId;
+        BookingStatus newStatus = booking.getStatus();
+        if (oldStatus != newStatus) {
+            // Status changed
+            bookingOutboxService.enqueueGlobalNotification(
+                    bookingId,
+                    "Cập nhật trạng thái đơn hàng",
+                    String.format("Đơn %s - %s: %s → %s",
+                            updatedBookingCode,
+                            updatedCustomerName,
+                            oldStatus.name(),
+                            newStatus.name()),
+                    "INFO"
+            );
+            bookingOutboxService.enqueueBookingUpdate(
+                    bookingId,
+                    newStatus.name(),
+                    String.format("Trạng thái đơn hàng đã được cập nhật thành %s", newStatus.name())
+            );
+        } else {
+            // General update
+            bookingOutboxService.enqueueBookingUpdate(
+                    bookingId,
+                    "UPDATED",
+                    String.format("Đơn hàng %s đã được cập nhật", updatedBookingCode)
+            );
         }
 
         // Update trips (xóa cũ, tạo mới)
@@ -581,12 +602,15 @@ public class BookingServiceImpl implements BookingService {
             }
         }
 
+        // Lịch chuyến / số lượng xe có thể đã đổi: lưới khả dụng tính lại các trip của đơn
+        eventPublisher.publishEvent(new org.example.ptcmssbackend.event.BookingScheduleChangedEvent(List.of(booking.getId())));
+
         return toResponse(booking);
     }
 
     @Override
     public BookingResponse getById(Integer bookingId) {
-        Bookings booking = bookingRepository.findById(bookingId)
+        Bookings booking = bookingRepository.findDetailById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng: " + bookingId));
         return toResponse(booking);
     }
@@ -625,13 +649,11 @@ public class BookingServiceImpl implements BookingService {
                 ? parseBookingStatus(status)
                 : null;
 
-        Page<Bookings> bookingPage = bookingRepository.filterBookings(
+        Page<Bookings> bookingPage = filterBookings(
                 statusEnum, branchId, consultantId, startDate, endDate, keyword, pageable
         );
 
-        List<BookingListResponse> items = bookingPage.getContent().stream()
-                .map(this::toListResponse)
-                .collect(Collectors.toList());
+        List<BookingListResponse> items = toListResponses(bookingPage.getContent());
 
         return PageResponse.builder()
                 .pageNo(pageNo + 1)
@@ -642,6 +664,47 @@ public class BookingServiceImpl implements BookingService {
                 .build();
     }
 
+    @Override
+    public CursorPageResponse<BookingListResponse> scroll(
+            String status,
+            Integer branchId,
+            Integer consultantId,
+            Instant startDate,
+            Instant endDate,
+            String keyword,
+            String cursor,
+            int size,
+            boolean withTotal
+    ) {
+        int pageSize = PageCursor.normalizeSize(size);
+        PageCursor.Position after = PageCursor.decode(cursor);
+        BookingStatus statusEnum = status != null && !status.isBlank()
+                ? parseBookingStatus(status)
+                : null;
+
+        SearchIndexService.KeywordMatch match = searchIndexService.match(keyword);
+        if (match != null && match.matchesNothing()) {
+            return PageCursor.empty(pageSize, withTotal);
+        }
+        boolean keywordSearch = match != null;
+        SearchIndexService.KeywordMatch terms = keywordSearch ? match : SearchIndexService.KeywordMatch.NONE;
+
+        List<Bookings> rows = bookingRepository.scrollBookings(
+                statusEnum, branchId, consultantId, startDate, endDate,
+                keywordSearch, terms.exactId(), terms.term(0), terms.term(1), terms.term(2), terms.emailTerm(),
+                after != null ? after.sortKey() : null,
+                after != null ? after.id() : null,
+                PageCursor.limit(pageSize));
+
+        // Tổng số chỉ tính khi được yêu cầu; trang 1 dòng để Spring Data chạy câu COUNT
+        return PageCursor.pageBatch(rows, pageSize, Bookings::getCreatedAt, Bookings::getId, this::toListResponses,
+                withTotal
+                        ? () -> bookingRepository.filterBookings(statusEnum, branchId, consultantId, startDate, endDate,
+                                keywordSearch, terms.exactId(), terms.term(0), terms.term(1), terms.term(2),
+                                terms.emailTerm(), PageRequest.of(0, 1)).getTotalElements()
+                        : null);
+    }
+
     @Override
     @Transactional
     public void delete(Integer bookingId) {
@@ -657,6 +720,16 @@ public class BookingServiceImpl implements BookingService {
         booking.setStatus(BookingStatus.CANCELLED);
         bookingRepository.save(booking);
 
+        // Các trip của đơn đã hủy không còn tính vào khối lượng công việc tài xế
+        List<Integer> cancelledTripIds = tripRepository.findByBooking_Id(bookingId).stream()
+                .map(Trips::getId)
+                .toList();
+        if (!cancelledTripIds.isEmpty()) {
+            eventPublisher.publishEvent(new org.example.ptcmssbackend.event.TripAssignmentChangedEvent(
+                    cancelledTripIds, org.example.ptcmssbackend.enums.AssignmentAction.CANCEL));
+        }
+        eventPublisher.publishEvent(new org.example.ptcmssbackend.event.BookingScheduleChangedEvent(List.of(bookingId)));
+
         // Ghi nhận mất cọc nếu có
         if (depositLossAmount != null && depositLossAmount.compareTo(BigDecimal.ZERO) > 0) {
             try {
@@ -683,28 +756,14 @@ public class BookingServiceImpl implements BookingService {
             }
         }
 
-        // Send WebSocket notification for cancellation
-        try {
-            String customerName = booking.getCustomer() != null ? booking.getCustomer().getFullName() : "Khách hàng";
-            String bookingCode = "ORD-" + bookingId;
-            String message = depositLossAmount != null && depositLossAmount.compareTo(BigDecimal.ZERO) > 0
-                    ? String.format("Đơn %s - %s đã bị hủy. Mất cọc: %,.0f VNĐ", bookingCode, customerName, depositLossAmount)
-                    : String.format("Đơn %s - %s đã bị hủy", bookingCode, customerName);
-
-            webSocketNotificationService.sendGlobalNotification(
-                    "Đơn hàng bị hủy",
-                    message,
-                    "WARNING"
-            );
-
-            webSocketNotificationService.sendBookingUpdate(
-                    bookingId,
-                    "CANCELLED",
-                    "Đơn hàng đã bị hủy"
-            );
-        } catch (Exception e) {
-            log.warn("Failed to send WebSocket notification for booking cancellation", e);
-        }
+        // WebSocket notification cho hủy đơn: ghi outbox cùng transaction
+        String customerName = booking.getCustomer() != null ? booking.getCustomer().getFullName() : "Khách hàng";
+        String bookingCode = "ORD-" + bookingId;
+        String message = depositLossAmount != null && depositLossAmount.compareTo(BigDecimal.ZERO) > 0
+                ? String.format("Đơn %s - %s đã bị hủy. Mất cọc: %,.0f VNĐ", bookingCode, customerName, depositLossAmount)
+                : String.format("Đơn %s - %s đã bị hủy", bookingCode, customerName);
+        bookingOutboxService.enqueueGlobalNotification(bookingId, "Đơn hàng bị hủy", message, "WARNING");
+        bookingOutboxService.enqueueBookingUpdate(bookingId, "CANCELLED", "Đơn hàng đã bị hủy");
     }
 
     /**
@@ -819,157 +878,18 @@ public class BookingServiceImpl implements BookingService {
             Instant startTime,
             Instant endTime
     ) {
-        if (vehicleCategoryIds == null || vehicleCategoryIds.isEmpty()) {
-            return BigDecimal.ZERO;
-        }
-
-        // ===== System settings =====
-        BigDecimal holidaySurchargeRate = getSystemSettingDecimal("HOLIDAY_SURCHARGE_RATE", new BigDecimal("0.25"));
-        BigDecimal weekendSurchargeRate = getSystemSettingDecimal("WEEKEND_SURCHARGE_RATE", new BigDecimal("0.20"));
-        BigDecimal roundTripMultiplier = getSystemSettingDecimal("ROUND_TRIP_MULTIPLIER", new BigDecimal("1.5"));
-        int interProvinceDistanceKm = getSystemSettingInt("INTER_PROVINCE_DISTANCE_KM", 10);
-
-        int numberOfDays = calculateNumberOfDays(startTime, endTime);
-        boolean isSameDayTrip = isSameDayTrip(startTime, endTime);
-
-        // ===== Hire type =====
-        HireTypes hireType = hireTypesRepository.findById(hireTypeId)
-                .orElseThrow(() -> new RuntimeException("HireType not found: " + hireTypeId));
-        String hireTypeCode = hireType.getCode();
-
-        // ===== Surcharge rate =====
-        BigDecimal surchargeRate = BigDecimal.ZERO;
-        if (Boolean.TRUE.equals(isHoliday)) surchargeRate = surchargeRate.add(holidaySurchargeRate);
-        if (Boolean.TRUE.equals(isWeekend)) surchargeRate = surchargeRate.add(weekendSurchargeRate);
-
-        BigDecimal totalPrice = BigDecimal.ZERO;
-
-        for (int i = 0; i < vehicleCategoryIds.size(); i++) {
-            Integer categoryId = vehicleCategoryIds.get(i);
-            int quantity = i < quantities.size() ? quantities.get(i) : 1;
-
-            VehicleCategoryPricing category = vehicleCategoryRepository.findById(categoryId)
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy loại xe: " + categoryId));
-
-            if (category.getStatus() != VehicleCategoryStatus.ACTIVE) continue;
-
-            BigDecimal pricePerKm = defaultZero(category.getPricePerKm());
-            BigDecimal baseFee = defaultZero(category.getBaseFare());
-            BigDecimal highwayFee = defaultZero(category.getHighwayFee());
-            BigDecimal sameDayFixedPrice = defaultZero(category.getSameDayFixedPrice());
-
-            BigDecimal basePrice;
-
-            // =====================================================
-            // 1️⃣ ONE WAY
-            // =====================================================
-            if ("ONE_WAY".equals(hireTypeCode)) {
-                BigDecimal kmCost = pricePerKm.multiply(BigDecimal.valueOf(distance));
-                basePrice = kmCost.add(baseFee);
-            }
-
-            // =====================================================
-            // 2️⃣ ROUND TRIP
-            // =====================================================
-            else if ("ROUND_TRIP".equals(hireTypeCode)) {
-                if (isSameDayTrip) {
-                    // km × PricePerKm × 1.5 + baseFee
-                    BigDecimal kmCost = pricePerKm
-                            .multiply(BigDecimal.valueOf(distance))
-                            .multiply(roundTripMultiplier);
-                    basePrice = kmCost.add(baseFee);
-                } else {
-                    // 2 × km × PricePerKm + baseFee
-                    BigDecimal kmCost = pricePerKm
-                            .multiply(BigDecimal.valueOf(distance))
-                            .multiply(BigDecimal.valueOf(2));
-                    basePrice = kmCost.add(baseFee);
-                }
-            }
-
-            // =====================================================
-            // 3️⃣ DAILY
-            // =====================================================
-            else if ("DAILY".equals(hireTypeCode)) {
-                int days = Math.max(1, numberOfDays);
-
-                if (days == 1 && distance <= interProvinceDistanceKm) {
-                    // SameDayFixedPrice + BaseFee (NO km)
-                    basePrice = sameDayFixedPrice.add(baseFee);
-                } else {
-                    BigDecimal kmCost = pricePerKm
-                            .multiply(BigDecimal.valueOf(distance))
-                            .multiply(roundTripMultiplier);
-                    BigDecimal dailyCost = sameDayFixedPrice.multiply(BigDecimal.valueOf(days));
-                    basePrice = kmCost.add(dailyCost).add(baseFee);
-                }
-            }
-
-//            // =====================================================
-//            // 4️⃣ MULTI DAY
-//            // =====================================================
-//            else if ("MULTI_DAY".equals(hireTypeCode)) {
-//                BigDecimal kmCost = pricePerKm
-//                        .multiply(BigDecimal.valueOf(distance))
-//                        .multiply(roundTripMultiplier);
-//                BigDecimal dailyCost = sameDayFixedPrice.multiply(BigDecimal.valueOf(numberOfDays));
-//                basePrice = kmCost.add(dailyCost).add(baseFee);
-//            }
-            else {
-                throw new IllegalStateException("Unsupported hire type: " + hireTypeCode);
-            }
-
-            // ===== Highway fee =====
-            if (Boolean.TRUE.equals(useHighway)) {
-                basePrice = basePrice.add(highwayFee);
-            }
-
-            // ===== Premium surcharge =====
-            if (Boolean.TRUE.equals(category.getIsPremium())) {
-                BigDecimal premiumFee = defaultZero(category.getPremiumSurcharge());
-                basePrice = basePrice.add(premiumFee);
-            }
-
-            // ===== Holiday / weekend surcharge =====
-            if (surchargeRate.compareTo(BigDecimal.ZERO) > 0) {
-                basePrice = basePrice.add(basePrice.multiply(surchargeRate));
-            }
-
-            totalPrice = totalPrice.add(basePrice.multiply(BigDecimal.valueOf(quantity)));
-        }
-
-        return totalPrice.setScale(2, RoundingMode.HALF_UP);
-    }
-
-    // Helper
-    private BigDecimal defaultZero(BigDecimal value) {
-        return value != null ? value : BigDecimal.ZERO;
-    }
-
-
-    /**
-     * Helper method: Tính số ngày giữa startTime và endTime
-     */
-    private int calculateNumberOfDays(Instant startTime, Instant endTime) {
-        if (startTime == null || endTime == null) {
-            return 1;
-        }
-
-        try {
-            java.time.ZonedDateTime startZoned = startTime.atZone(java.time.ZoneId.systemDefault());
-            java.time.ZonedDateTime endZoned = endTime.atZone(java.time.ZoneId.systemDefault());
-
-            long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(
-                    startZoned.toLocalDate(),
-                    endZoned.toLocalDate()
-            );
-
-            // Tối thiểu 1 ngày
-            return Math.max(1, (int) daysBetween + 1);
-        } catch (Exception e) {
-            log.warn("Error calculating number of days: {}", e.getMessage());
-            return 1;
-        }
+        // Tính trên snapshot bảng giá trong bộ nhớ, không truy vấn DB
+        return pricingService.getSnapshot().price(
+                vehicleCategoryIds,
+                quantities,
+                distance,
+                useHighway,
+                hireTypeId,
+                isHoliday,
+                isWeekend,
+                startTime,
+                endTime
+        );
     }
 
     /**
@@ -1326,14 +1246,7 @@ public class BookingServiceImpl implements BookingService {
                 if (t.getStatus() == TripStatus.CANCELLED || t.getStatus() == TripStatus.COMPLETED) continue;
                 if (t.getStartTime() == null) continue;
 
-                Instant tBusyUntil = tripOccupancyService.computeBusyUntil(
-                        t.getBooking().getHireType() != null ? t.getBooking().getHireType().getCode() : null,
-                        t.getStartTime(),
-                        t.getEndTime(),
-                        t.getDistance() != null ? t.getDistance().doubleValue() : null,
-                        t.getStartLocation(),
-                        t.getEndLocation()
-                );
+                Instant tBusyUntil = tripOccupancyService.computeBusyUntil(t);
                 if (tBusyUntil == null) continue;
 
                 boolean overlaps = t.getStartTime().isBefore(newEndTime) && newStartTime.isBefore(tBusyUntil);
@@ -1363,14 +1276,7 @@ public class BookingServiceImpl implements BookingService {
                 }
 
                 if (trip.getStartTime() == null) continue;
-                Instant tripBusyUntil = tripOccupancyService.computeBusyUntil(
-                        trip.getBooking() != null && trip.getBooking().getHireType() != null ? trip.getBooking().getHireType().getCode() : null,
-                        trip.getStartTime(),
-                        trip.getEndTime(),
-                        trip.getDistance() != null ? trip.getDistance().doubleValue() : null,
-                        trip.getStartLocation(),
-                        trip.getEndLocation()
-                );
+                Instant tripBusyUntil = tripOccupancyService.computeBusyUntil(trip);
                 if (tripBusyUntil == null) continue;
 
                 boolean overlaps = trip.getStartTime().isBefore(newEndTime) && newStartTime.isBefore(tripBusyUntil);
@@ -1444,113 +1350,147 @@ public class BookingServiceImpl implements BookingService {
 
     @Override
     public ConsultantDashboardResponse getConsultantDashboard(Integer consultantEmployeeId, Integer branchId) {
-        // Lấy danh sách bookings theo status
-        List<Bookings> pendingBookings = bookingRepository.findPendingBookings(branchId, consultantEmployeeId);
-        List<Bookings> sentQuotations = bookingRepository.filterBookings(
-                BookingStatus.QUOTATION_SENT, branchId, consultantEmployeeId, null, null, null, Pageable.unpaged()
-        ).getContent();
-        List<Bookings> confirmedBookings = bookingRepository.findConfirmedBookings(branchId, consultantEmployeeId);
-
-        // Đếm số lượng
-        Long totalPendingCount = bookingRepository.countByStatus(BookingStatus.PENDING, branchId, consultantEmployeeId);
-        Long totalSentCount = bookingRepository.countByStatus(BookingStatus.QUOTATION_SENT, branchId, consultantEmployeeId);
-        Long totalConfirmedCount = bookingRepository.countByStatus(BookingStatus.CONFIRMED, branchId, consultantEmployeeId);
-
-        // Tính doanh số trong tháng
-        YearMonth currentMonth = YearMonth.now();
-        LocalDate monthStart = currentMonth.atDay(1);
-        LocalDate monthEnd = currentMonth.atEndOfMonth();
-        Instant startInstant = monthStart.atStartOfDay(ZoneId.systemDefault()).toInstant();
-        Instant endInstant = monthEnd.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant();
+        if (dashboardCacheTtlSeconds <= 0) {
+            return buildConsultantDashboard(consultantEmployeeId, branchId);
+        }
+        String key = consultantEmployeeId + ":" + branchId;
+        Instant now = Instant.now();
+        CachedDashboard cached = dashboardCache.get(key);
+        if (cached != null && cached.expiresAt().isAfter(now)) {
+            return cached.response();
+        }
+        ConsultantDashboardResponse response = buildConsultantDashboard(consultantEmployeeId, branchId);
+        dashboardCache.put(key, new CachedDashboard(response, now.plusSeconds(dashboardCacheTtlSeconds)));
+        return response;
+    }
 
-        // Doanh số tháng = tổng tiền đã thu (payments CONFIRMED) trong tháng,
-        // bao gồm cả tiền cọc và thanh toán còn lại.
-        BigDecimal monthlyRevenue = invoiceRepository
-                .sumConfirmedPaymentsForConsultantAndBranchAndDateRange(
-                        branchId,
-                        consultantEmployeeId,
-                        startInstant,
-                        endInstant
-                );
-        if (monthlyRevenue == null) {
-            monthlyRevenue = BigDecimal.ZERO;
+    /**
+     * Dashboard dựng từ các câu GROUP BY (số đơn theo trạng thái, theo tháng và doanh số theo tháng)
+     * cùng các danh sách giới hạn DASHBOARD_LIST_LIMIT đơn mới nhất, nên chi phí không tăng theo lịch sử đơn.
+     */
+    private ConsultantDashboardResponse buildConsultantDashboard(Integer consultantEmployeeId, Integer branchId) {
+        // Danh sách bookings theo status (mới nhất trước)
+        List<Bookings> pendingBookings = latestBookings(BookingStatus.PENDING, branchId, consultantEmployeeId);
+        List<Bookings> sentQuotations = latestBookings(BookingStatus.QUOTATION_SENT, branchId, consultantEmployeeId);
+        List<Bookings> confirmedBookings = latestBookings(BookingStatus.CONFIRMED, branchId, consultantEmployeeId);
+
+        // Đếm số lượng theo trạng thái
+        Map<BookingStatus, Long> statusCounts = new EnumMap<>(BookingStatus.class);
+        for (Object[] row : bookingRepository.countGroupByStatus(branchId, consultantEmployeeId)) {
+            statusCounts.put((BookingStatus) row[0], ((Number) row[1]).longValue());
         }
+        Long totalPendingCount = statusCounts.getOrDefault(BookingStatus.PENDING, 0L);
+        Long totalSentCount = statusCounts.getOrDefault(BookingStatus.QUOTATION_SENT, 0L);
+        Long totalConfirmedCount = statusCounts.getOrDefault(BookingStatus.CONFIRMED, 0L);
 
         // Tính tỷ lệ chuyển đổi
-        Long totalBookings = bookingRepository.countByStatus(null, branchId, consultantEmployeeId);
+        long totalBookings = statusCounts.values().stream().mapToLong(Long::longValue).sum();
         Double conversionRate = totalBookings > 0
                 ? (double) totalConfirmedCount / totalBookings * 100
                 : 0.0;
 
-        // Thống kê theo tháng (3 tháng gần nhất)
-        List<ConsultantDashboardResponse.MonthlyStatistic> monthlyStatistics = new ArrayList<>();
-        for (int i = 2; i >= 0; i--) {
-            YearMonth month = currentMonth.minusMonths(i);
-            LocalDate mStart = month.atDay(1);
-            LocalDate mEnd = month.atEndOfMonth();
-            Instant mStartInstant = mStart.atStartOfDay(ZoneId.systemDefault()).toInstant();
-            Instant mEndInstant = mEnd.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant();
-
-            Page<Bookings> monthBookings = bookingRepository.filterBookings(
-                    null, branchId, consultantEmployeeId, mStartInstant, mEndInstant, null, Pageable.unpaged()
-            );
-
-            Long monthTotal = (long) monthBookings.getContent().size();
-            Long monthConfirmed = monthBookings.getContent().stream()
-                    .filter(b -> b.getStatus() == BookingStatus.CONFIRMED || b.getStatus() == BookingStatus.COMPLETED)
-                    .count();
+        // Ranh giới các tháng (3 tháng gần nhất, tháng hiện tại ở cuối)
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth[] months = new YearMonth[DASHBOARD_MONTHS];
+        Instant[] monthStarts = new Instant[DASHBOARD_MONTHS];
+        for (int i = 0; i < DASHBOARD_MONTHS; i++) {
+            months[i] = currentMonth.minusMonths(DASHBOARD_MONTHS - 1 - i);
+            monthStarts[i] = months[i].atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        }
+        Instant endInstant = currentMonth.atEndOfMonth().atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant();
 
-            BigDecimal monthRevenue = invoiceRepository
-                    .sumConfirmedPaymentsForConsultantAndBranchAndDateRange(
-                            branchId,
-                            consultantEmployeeId,
-                            mStartInstant,
-                            mEndInstant
-                    );
-            if (monthRevenue == null) {
-                monthRevenue = BigDecimal.ZERO;
+        long[] monthTotals = new long[DASHBOARD_MONTHS];
+        long[] monthConfirmed = new long[DASHBOARD_MONTHS];
+        for (Object[] row : bookingRepository.countByMonthAndStatus(branchId, consultantEmployeeId,
+                monthStarts[0], monthStarts[1], monthStarts[2], endInstant)) {
+            int bucket = ((Number) row[0]).intValue();
+            long count = ((Number) row[2]).longValue();
+            monthTotals[bucket] += count;
+            if (row[1] == BookingStatus.CONFIRMED || row[1] == BookingStatus.COMPLETED) {
+                monthConfirmed[bucket] += count;
             }
+        }
 
-            Double monthConversionRate = monthTotal > 0 ? (double) monthConfirmed / monthTotal * 100 : 0.0;
+        // Doanh số tháng = tổng tiền đã thu (payments CONFIRMED) trong tháng,
+        // bao gồm cả tiền cọc và thanh toán còn lại.
+        BigDecimal[] monthRevenues = new BigDecimal[DASHBOARD_MONTHS];
+        Arrays.fill(monthRevenues, BigDecimal.ZERO);
+        for (Object[] row : invoiceRepository.sumConfirmedPaymentsByMonthForConsultantAndBranch(branchId,
+                consultantEmployeeId, monthStarts[0], monthStarts[1], monthStarts[2], endInstant)) {
+            if (row[1] != null) {
+                monthRevenues[((Number) row[0]).intValue()] = (BigDecimal) row[1];
+            }
+        }
 
+        // Thống kê theo tháng (3 tháng gần nhất)
+        List<ConsultantDashboardResponse.MonthlyStatistic> monthlyStatistics = new ArrayList<>();
+        for (int i = 0; i < DASHBOARD_MONTHS; i++) {
+            Double monthConversionRate = monthTotals[i] > 0 ? (double) monthConfirmed[i] / monthTotals[i] * 100 : 0.0;
             monthlyStatistics.add(ConsultantDashboardResponse.MonthlyStatistic.builder()
-                    .month(month.toString())
-                    .totalBookings(monthTotal)
-                    .confirmedBookings(monthConfirmed)
-                    .revenue(monthRevenue)
+                    .month(months[i].toString())
+                    .totalBookings(monthTotals[i])
+                    .confirmedBookings(monthConfirmed[i])
+                    .revenue(monthRevenues[i])
                     .conversionRate(monthConversionRate)
                     .build());
         }
 
+        // Dữ liệu phụ của cả ba danh sách được nạp trong một câu
+        List<Bookings> listed = new ArrayList<>(pendingBookings);
+        listed.addAll(sentQuotations);
+        listed.addAll(confirmedBookings);
+        List<BookingListResponse> listItems = toListResponses(listed);
+        int sentFrom = pendingBookings.size();
+        int confirmedFrom = sentFrom + sentQuotations.size();
+
         return ConsultantDashboardResponse.builder()
-                .pendingBookings(pendingBookings.stream().map(this::toListResponse).collect(Collectors.toList()))
-                .sentQuotations(sentQuotations.stream().map(this::toListResponse).collect(Collectors.toList()))
-                .confirmedBookings(confirmedBookings.stream().map(this::toListResponse).collect(Collectors.toList()))
+                .pendingBookings(new ArrayList<>(listItems.subList(0, sentFrom)))
+                .sentQuotations(new ArrayList<>(listItems.subList(sentFrom, confirmedFrom)))
+                .confirmedBookings(new ArrayList<>(listItems.subList(confirmedFrom, listItems.size())))
                 .totalPendingCount(totalPendingCount)
                 .totalSentCount(totalSentCount)
                 .totalConfirmedCount(totalConfirmedCount)
-                .monthlyRevenue(monthlyRevenue)
+                .monthlyRevenue(monthRevenues[DASHBOARD_MONTHS - 1])
                 .conversionRate(conversionRate)
                 .monthlyStatistics(monthlyStatistics)
                 .build();
     }
 
+    private List<Bookings> latestBookings(BookingStatus status, Integer branchId, Integer consultantId) {
+        return bookingRepository.scrollBookings(status, branchId, consultantId, null, null,
+                false, null, null, null, null, null, null, null,
+                PageRequest.of(0, DASHBOARD_LIST_LIMIT));
+    }
+
     @Override
     public List<BookingListResponse> getBookingList(String status, Integer branchId, Integer consultantId) {
         BookingStatus statusEnum = status != null && !status.isBlank()
                 ? parseBookingStatus(status)
                 : null;
 
-        Page<Bookings> bookings = bookingRepository.filterBookings(
+        Page<Bookings> bookings = filterBookings(
                 statusEnum, branchId, consultantId, null, null, null, Pageable.unpaged()
         );
 
-        return bookings.getContent().stream()
-                .map(this::toListResponse)
-                .collect(Collectors.toList());
+        return toListResponses(bookings.getContent());
     }
 
     // Helper methods
+    /**
+     * Lọc đơn hàng; từ khóa (mã đơn, SĐT, tên khách) được tra qua chỉ mục tìm kiếm trước
+     */
+    private Page<Bookings> filterBookings(BookingStatus status, Integer branchId, Integer consultantId,
+                                          Instant startDate, Instant endDate, String keyword, Pageable pageable) {
+        SearchIndexService.KeywordMatch match = searchIndexService.match(keyword);
+        if (match != null && match.matchesNothing()) {
+            return Page.empty(pageable);
+        }
+        SearchIndexService.KeywordMatch terms = match != null ? match : SearchIndexService.KeywordMatch.NONE;
+        return bookingRepository.filterBookings(status, branchId, consultantId, startDate, endDate,
+                match != null, terms.exactId(), terms.term(0), terms.term(1), terms.term(2), terms.emailTerm(),
+                pageable);
+    }
+
     private BookingStatus parseBookingStatus(String status) {
         if (status == null || status.isBlank()) {
             return BookingStatus.PENDING;
@@ -1609,6 +1549,8 @@ public class BookingServiceImpl implements BookingService {
             }
         }
         invoiceRepository.save(inv);
+        bookingOutboxService.enqueuePaymentUpdate(bookingId, inv.getId(), "PAID",
+                String.format("Đơn hàng ORD-%d đã ghi nhận thanh toán %,.0f VNĐ", bookingId, request.getAmount()));
 
         // return updated booking response with new totals
         return getById(bookingId);
@@ -1838,15 +1780,7 @@ public class BookingServiceImpl implements BookingService {
             if (!trips.isEmpty()) {
                 Trips firstTrip = trips.get(0);
                 if (firstTrip.getStartTime() != null) {
-                    final String hireTypeCode = booking.getHireType() != null ? booking.getHireType().getCode() : null;
-                    Instant tripBusyUntilTmp = tripOccupancyService.computeBusyUntil(
-                            hireTypeCode,
-                            firstTrip.getStartTime(),
-                            firstTrip.getEndTime(),
-                            firstTrip.getDistance() != null ? firstTrip.getDistance().doubleValue() : null,
-                            firstTrip.getStartLocation(),
-                            firstTrip.getEndLocation()
-                    );
+                    Instant tripBusyUntilTmp = tripOccupancyService.computeBusyUntil(firstTrip);
                     final Instant tripBusyUntil = (tripBusyUntilTmp != null)
                             ? tripBusyUntilTmp
                             : firstTrip.getStartTime().plusSeconds(3600);
@@ -1861,14 +1795,7 @@ public class BookingServiceImpl implements BookingService {
                         if (targetTripIds.contains(overlapTrip.getId())) return false;
                         if (overlapTrip.getStartTime() == null) return true; // unknown -> treat as busy
 
-                        Instant overlapBusyUntil = tripOccupancyService.computeBusyUntil(
-                                overlapTrip.getBooking().getHireType() != null ? overlapTrip.getBooking().getHireType().getCode() : null,
-                                overlapTrip.getStartTime(),
-                                overlapTrip.getEndTime(),
-                                overlapTrip.getDistance() != null ? overlapTrip.getDistance().doubleValue() : null,
-                                overlapTrip.getStartLocation(),
-                                overlapTrip.getEndLocation()
-                        );
+                        Instant overlapBusyUntil = tripOccupancyService.computeBusyUntil(overlapTrip);
                         if (overlapBusyUntil == null) return true;
                         return overlapTrip.getStartTime().isBefore(tripBusyUntil) && firstTrip.getStartTime().isBefore(overlapBusyUntil);
                     });
@@ -1948,15 +1875,7 @@ public class BookingServiceImpl implements BookingService {
 
                     Vehicles selectedVehicle = null;
                     if (currentTrip != null && currentTrip.getStartTime() != null) {
-                        final String hireTypeCode = booking.getHireType() != null ? booking.getHireType().getCode() : null;
-                        Instant tripBusyUntilTmp = tripOccupancyService.computeBusyUntil(
-                                hireTypeCode,
-                                currentTrip.getStartTime(),
-                                currentTrip.getEndTime(),
-                                currentTrip.getDistance() != null ? currentTrip.getDistance().doubleValue() : null,
-                                currentTrip.getStartLocation(),
-                                currentTrip.getEndLocation()
-                        );
+                        Instant tripBusyUntilTmp = tripOccupancyService.computeBusyUntil(currentTrip);
                         final Instant tripBusyUntil = (tripBusyUntilTmp != null)
                                 ? tripBusyUntilTmp
                                 : currentTrip.getStartTime().plusSeconds(3600);
@@ -1972,14 +1891,7 @@ public class BookingServiceImpl implements BookingService {
                                 if (targetTripIds.contains(overlapTrip.getId())) return false;
                                 if (overlapTrip.getStartTime() == null) return true;
 
-                                Instant overlapBusyUntil = tripOccupancyService.computeBusyUntil(
-                                        overlapTrip.getBooking().getHireType() != null ? overlapTrip.getBooking().getHireType().getCode() : null,
-                                        overlapTrip.getStartTime(),
-                                        overlapTrip.getEndTime(),
-                                        overlapTrip.getDistance() != null ? overlapTrip.getDistance().doubleValue() : null,
-                                        overlapTrip.getStartLocation(),
-                                        overlapTrip.getEndLocation()
-                                );
+                                Instant overlapBusyUntil = tripOccupancyService.computeBusyUntil(overlapTrip);
                                 if (overlapBusyUntil == null) return true;
                                 return overlapTrip.getStartTime().isBefore(tripBusyUntil) && currentTrip.getStartTime().isBefore(overlapBusyUntil);
                             });
@@ -2115,28 +2027,28 @@ public class BookingServiceImpl implements BookingService {
             }
         }
 
-        // Send notification to driver when assigned
+        eventPublisher.publishEvent(new org.example.ptcmssbackend.event.TripAssignmentChangedEvent(
+                targetTripIds, org.example.ptcmssbackend.enums.AssignmentAction.ASSIGN));
+
+        // Notification cho tài xế được gán: ghi outbox cùng transaction
         if (request.getDriverId() != null) {
-            try {
-                Drivers driver = driverRepository.findById(request.getDriverId()).orElse(null);
-                if (driver != null && driver.getEmployee() != null && driver.getEmployee().getUser() != null) {
-                    Integer userId = driver.getEmployee().getUser().getId();
-                    String bookingCode = "ORD-" + booking.getId();
-                    String customerName = booking.getCustomer() != null ? booking.getCustomer().getFullName() : "Khách hàng";
-
-                    webSocketNotificationService.sendUserNotification(
-                            userId,
-                            "Chuyến mới được gán",
-                            String.format("Bạn được gán %d chuyến cho đơn %s - %s",
-                                    targetTripIds.size(),
-                                    bookingCode,
-                                    customerName),
-                            "INFO"
-                    );
-                    log.info("[Booking] Sent notification to driver {} for assigned trips", request.getDriverId());
-                }
-            } catch (Exception e) {
-                log.warn("[Booking] Failed to send notification to driver: {}", e.getMessage());
+            Drivers driver = driverRepository.findById(request.getDriverId()).orElse(null);
+            if (driver != null && driver.getEmployee() != null && driver.getEmployee().getUser() != null) {
+                Integer userId = driver.getEmployee().getUser().getId();
+                String bookingCode = "ORD-" + booking.getId();
+                String customerName = booking.getCustomer() != null ? booking.getCustomer().getFullName() : "Khách hàng";
+
+                bookingOutboxService.enqueueUserNotification(
+                        booking.getId(),
+                        userId,
+                        "Chuyến mới được gán",
+                        String.format("Bạn được gán %d chuyến cho đơn %s - %s",
+                                targetTripIds.size(),
+                                bookingCode,
+                                customerName),
+                        "INFO"
+                );
+                log.info("[Booking] Queued notification to driver {} for assigned trips", request.getDriverId());
             }
         }
 
@@ -2219,25 +2131,35 @@ public class BookingServiceImpl implements BookingService {
             // ignore, giữ isFullDayHire = false
         }
 
-        // Total candidates available by branch/category/status
-        java.util.List<Vehicles> candidates = vehicleRepository.filterVehicles(categoryId, branchId, VehicleStatus.AVAILABLE);
-        int total = candidates != null ? candidates.size() : 0;
+        // Đọc lưới khả dụng theo giờ trước: lưới làm tròn chuyến ra ngoài theo giờ và bị bỏ khi số xe của chi nhánh đổi,
+        // nên nếu lưới đã đủ xe thì chắc chắn đủ. Không đủ (có thể do làm tròn) hoặc ngoài khung lưới -> tính chính xác
+        // từ DB bên dưới kèm gợi ý
+        AvailabilityGrid.Counts gridCounts = availabilityGridService.getCounts(branchId, categoryId, start, end);
+        if (gridCounts != null && gridCounts.available() >= needed) {
+            return org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.builder()
+                    .ok(true)
+                    .availableCount(gridCounts.available())
+                    .needed(needed)
+                    .totalCandidates(gridCounts.total())
+                    .busyCount(gridCounts.busy() + gridCounts.reserved())
+                    .build();
+        }
+
+        // Tổng xe / xe bận / xe giữ chỗ của mọi loại xe trong chi nhánh: một truy vấn gom nhóm,
+        // dùng chung cho loại xe được yêu cầu và các loại xe thay thế
+        List<CategoryAvailability> availabilities = loadCategoryAvailability(branchId, start, end);
+        CategoryAvailability requested = availabilities.stream()
+                .filter(a -> a.categoryId().equals(categoryId))
+                .findFirst()
+                .orElse(null);
 
+        int total = requested != null ? requested.total() : 0;
         // Busy vehicles in window (đã gán TripVehicles)
-        java.util.List<Integer> busyIds = tripVehicleRepository.findBusyVehicleIds(branchId, categoryId, start, end);
-        int busy = busyIds != null ? busyIds.size() : 0;
-
+        int busy = requested != null ? requested.busy() : 0;
         // Reserved quantity by bookings đã cọc nhưng CHƯA gán xe
         // Tính từ các booking đã đặt cọc (paidAmount > 0) bất kể status (trừ CANCELLED)
         // Điều này đảm bảo các đơn đã đặt cọc được giữ xe, kể cả khi status vẫn là PENDING/QUOTATION_SENT
-        Integer reservedQtyByDeposit = bookingVehicleDetailsRepository.countReservedQuantityByDepositWithoutAssignedVehicles(
-                branchId,
-                categoryId,
-                start,
-                end
-        );
-
-        int reserved = (reservedQtyByDeposit != null ? reservedQtyByDeposit : 0);
+        int reserved = requested != null ? requested.reserved() : 0;
 
         int available = Math.max(0, total - busy - reserved);
         boolean ok = available >= needed;
@@ -2251,7 +2173,7 @@ public class BookingServiceImpl implements BookingService {
                     branchId, categoryId, needed, available, total, busy, reserved);
 
             // 1. Tìm loại xe thay thế có sẵn tại thời điểm yêu cầu
-            alternativeCategories = findAlternativeCategories(branchId, categoryId, start, end, needed);
+            alternativeCategories = findAlternativeCategories(availabilities, categoryId, needed);
             log.info("🟡 [BACKEND] Alternative categories found: {}",
                     alternativeCategories != null ? alternativeCategories.size() : 0);
             if (alternativeCategories != null && !alternativeCategories.isEmpty()) {
@@ -2264,7 +2186,11 @@ public class BookingServiceImpl implements BookingService {
             //    Chỉ áp dụng cho thuê theo khung giờ. Với thuê theo ngày (isFullDayHire),
             //    không gợi ý "giờ khác" vì vẫn không đặt được xe mong muốn trong cùng ngày.
             if (!isFullDayHire) {
-                nextAvailableSlots = findNextAvailableSlots(branchId, categoryId, start, needed, candidates);
+                // Danh sách xe chỉ cần khi gợi ý giờ rảnh
+                List<Vehicles> candidates = total > 0
+                        ? vehicleRepository.filterVehicles(categoryId, branchId, VehicleStatus.AVAILABLE)
+                        : null;
+                nextAvailableSlots = findNextAvailableSlots(branchId, categoryId, start, end, needed, candidates);
                 log.info("🟢 [BACKEND] Next available slots found: {}",
                         nextAvailableSlots != null ? nextAvailableSlots.size() : 0);
             } else {
@@ -2288,45 +2214,27 @@ public class BookingServiceImpl implements BookingService {
      * Tìm các loại xe thay thế có sẵn tại thời điểm yêu cầu
      */
     private List<org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.AlternativeCategory> findAlternativeCategories(
-            Integer branchId, Integer excludeCategoryId, Instant start, Instant end, int needed) {
+            List<CategoryAvailability> availabilities, Integer excludeCategoryId, int needed) {
 
         List<org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.AlternativeCategory> alternatives = new ArrayList<>();
 
-        // Lấy tất cả loại xe active
-        List<VehicleCategoryPricing> allCategories = vehicleCategoryRepository.findAll().stream()
-                .filter(c -> c.getStatus() == VehicleCategoryStatus.ACTIVE)
-                .filter(c -> !c.getId().equals(excludeCategoryId))
-                .collect(Collectors.toList());
-
-        for (VehicleCategoryPricing category : allCategories) {
-            // Đếm xe available cho loại này
-            List<Vehicles> catVehicles = vehicleRepository.filterVehicles(category.getId(), branchId, VehicleStatus.AVAILABLE);
-            int totalInCategory = catVehicles != null ? catVehicles.size() : 0;
-
-            // Đếm xe busy trong khoảng thời gian (đã gán TripVehicles)
-            List<Integer> busyInCategory = tripVehicleRepository.findBusyVehicleIds(branchId, category.getId(), start, end);
-            int busyCount = busyInCategory != null ? busyInCategory.size() : 0;
-
-            // Đếm xe reserved (đã đặt cọc nhưng chưa gán xe)
-            Integer reservedInCategory = bookingVehicleDetailsRepository.countReservedQuantityByDepositWithoutAssignedVehicles(
-                    branchId,
-                    category.getId(),
-                    start,
-                    end
-            );
-            int reservedCount = reservedInCategory != null ? reservedInCategory : 0;
+        for (CategoryAvailability category : availabilities) {
+            // Chỉ xét loại xe active, khác loại đang yêu cầu
+            if (category.status() != VehicleCategoryStatus.ACTIVE || category.categoryId().equals(excludeCategoryId)) {
+                continue;
+            }
 
             // Tính số xe thực sự available (trừ busy và reserved)
-            int availableInCategory = Math.max(0, totalInCategory - busyCount - reservedCount);
+            int availableInCategory = category.available();
 
             // Chỉ suggest nếu có đủ xe thực sự available VÀ availableCount > 0
             if (availableInCategory >= needed && availableInCategory > 0) {
                 alternatives.add(org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.AlternativeCategory.builder()
-                        .categoryId(category.getId())
-                        .categoryName(category.getCategoryName())
-                        .seats(category.getSeats())
+                        .categoryId(category.categoryId())
+                        .categoryName(category.categoryName())
+                        .seats(category.seats())
                         .availableCount(availableInCategory)
-                        .pricePerKm(category.getPricePerKm())
+                        .pricePerKm(category.pricePerKm())
                         .estimatedPrice(null) // Có thể tính nếu biết distance
                         .build());
             }
@@ -2343,127 +2251,95 @@ public class BookingServiceImpl implements BookingService {
     }
 
     /**
-     * Tìm thời gian rảnh tiếp theo của loại xe được yêu cầu
+     * Đọc kết quả {@link VehicleCategoryPricingRepository#findAvailabilityByBranch}
      */
-    private List<org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.NextAvailableSlot> findNextAvailableSlots(
-            Integer branchId, Integer categoryId, Instant requestedStart, int needed, List<Vehicles> candidates) {
+    private List<CategoryAvailability> loadCategoryAvailability(Integer branchId, Instant start, Instant end) {
+        List<Object[]> rows = vehicleCategoryRepository.findAvailabilityByBranch(branchId, start, end);
+        List<CategoryAvailability> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new CategoryAvailability(
+                    (Integer) row[0],
+                    (String) row[1],
+                    (Integer) row[2],
+                    (BigDecimal) row[3],
+                    (VehicleCategoryStatus) row[4],
+                    row[5] != null ? ((Number) row[5]).intValue() : 0,
+                    row[6] != null ? ((Number) row[6]).intValue() : 0,
+                    row[7] != null ? ((Number) row[7]).intValue() : 0));
+        }
+        return result;
+    }
 
-        if (candidates == null || candidates.isEmpty()) {
-            return null;
+    /**
+     * Tình trạng xe của một loại xe trong khoảng thời gian: tổng xe, xe đã gán chuyến, xe giữ chỗ theo cọc
+     */
+    private record CategoryAvailability(Integer categoryId, String categoryName, Integer seats, BigDecimal pricePerKm,
+                                        VehicleCategoryStatus status, int total, int busy, int reserved) {
+        int available() {
+            return Math.max(0, total - busy - reserved);
         }
+    }
 
-        List<org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.NextAvailableSlot> slots = new ArrayList<>();
-
-        // Tìm thời gian rảnh tiếp theo cho mỗi xe
-        for (Vehicles vehicle : candidates) {
-            // Lấy tất cả trips của xe này
-            List<TripVehicles> allTrips = tripVehicleRepository.findAllByVehicleId(vehicle.getId());
-
-            // Lọc các trip active (SCHEDULED, ASSIGNED, ONGOING) và có thời gian hợp lệ
-            List<Trips> activeTrips = new ArrayList<>();
-            for (TripVehicles tv : allTrips) {
-                Trips trip = tv.getTrip();
-                if (trip == null || trip.getStatus() == null) continue;
-
-                // Chỉ xét SCHEDULED, ASSIGNED hoặc ONGOING
-                if (trip.getStatus() != TripStatus.SCHEDULED &&
-                        trip.getStatus() != TripStatus.ASSIGNED &&
-                        trip.getStatus() != TripStatus.ONGOING) {
-                    continue;
-                }
-
-                Instant tripStart = trip.getStartTime();
-                Instant tripEnd = trip.getEndTime();
-
-                if (tripStart != null && tripEnd != null && tripEnd.isAfter(tripStart)) {
-                    activeTrips.add(trip);
-                }
-            }
-
-            // Sắp xếp trips theo startTime
-            activeTrips.sort((a, b) -> {
-                if (a.getStartTime() == null) return 1;
-                if (b.getStartTime() == null) return -1;
-                return a.getStartTime().compareTo(b.getStartTime());
-            });
-
-            // Kiểm tra xem xe có bị block tại thời điểm requestedStart không
-            boolean isBlockedAtRequestedTime = false;
-            Instant earliestAvailable = null;
-            Instant availableUntil = null;
-
-            for (Trips trip : activeTrips) {
-                Instant tripStart = trip.getStartTime();
-                Instant tripEnd = trip.getEndTime();
-
-                // Kiểm tra xem trip này có block thời gian yêu cầu không
-                if (tripStart.isBefore(requestedStart) && tripEnd.isAfter(requestedStart)) {
-                    isBlockedAtRequestedTime = true;
-                    // Xe sẽ rảnh sau khi trip này kết thúc
-                    if (earliestAvailable == null || tripEnd.isAfter(earliestAvailable)) {
-                        earliestAvailable = tripEnd;
-                    }
-                }
-            }
+    /**
+     * Tìm thời gian rảnh tiếp theo của loại xe được yêu cầu: các thời điểm sớm nhất (sau giờ yêu cầu,
+     * trong {@link #SLOT_LOOKAHEAD_DAYS} ngày) mà ít nhất {@code needed} xe cùng rảnh đủ thời lượng chuyến.
+     * Chỉ nạp các chuyến / giữ chỗ chồng lấn cửa sổ quét (2 truy vấn cho cả loại xe) rồi quét một lượt.
+     */
+    private List<org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.NextAvailableSlot> findNextAvailableSlots(
+            Integer branchId, Integer categoryId, Instant requestedStart, Instant requestedEnd, int needed, List<Vehicles> candidates) {
 
-            // Nếu xe không bị block tại thời điểm yêu cầu → xe rảnh ngay từ requestedStart
-            if (!isBlockedAtRequestedTime) {
-                earliestAvailable = requestedStart;
-            }
+        if (candidates == null || candidates.size() < needed || requestedStart == null) {
+            return null;
+        }
 
-            // Tìm trip tiếp theo sau earliestAvailable để biết availableUntil
-            if (earliestAvailable != null) {
-                for (Trips trip : activeTrips) {
-                    Instant tripStart = trip.getStartTime();
-                    if (tripStart != null && tripStart.isAfter(earliestAvailable)) {
-                        availableUntil = tripStart;
-                        break; // Lấy trip đầu tiên sau earliestAvailable
-                    }
-                }
-            }
+        Instant horizon = requestedStart.plus(Duration.ofDays(SLOT_LOOKAHEAD_DAYS));
+        Duration tripLength = requestedEnd != null && requestedEnd.isAfter(requestedStart)
+                ? Duration.between(requestedStart, requestedEnd)
+                : null;
 
-            // Nếu tìm được thời gian rảnh (và không phải ngay tại thời điểm yêu cầu)
-            if (earliestAvailable != null && earliestAvailable.isAfter(requestedStart)) {
-                slots.add(org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.NextAvailableSlot.builder()
-                        .vehicleId(vehicle.getId())
-                        .vehicleLicensePlate(vehicle.getLicensePlate())
-                        .availableFrom(earliestAvailable)
-                        .availableUntil(availableUntil)
-                        .availableCount(1)
-                        .build());
+        // Khoảng bận của từng xe (đã gán chuyến) và khoảng giữ chỗ theo cọc chưa gán xe
+        List<AvailabilitySweep.Interval> busy = new ArrayList<>();
+        for (Object[] row : tripVehicleRepository.findBusyIntervals(branchId, categoryId, requestedStart, horizon)) {
+            busy.add(new AvailabilitySweep.Interval((Integer) row[0], (Instant) row[1], (Instant) row[2], 1));
+        }
+        for (Object[] row : bookingVehicleDetailsRepository.findReservedIntervalsByDepositWithoutAssignedVehicles(
+                branchId, categoryId, requestedStart, horizon)) {
+            int quantity = row[2] != null ? ((Number) row[2]).intValue() : 0;
+            if (quantity > 0) {
+                busy.add(new AvailabilitySweep.Interval(null, (Instant) row[0], (Instant) row[1], quantity));
             }
         }
 
-        // Sắp xếp theo thời gian rảnh sớm nhất
-        slots.sort((a, b) -> {
-            if (a.getAvailableFrom() == null) return 1;
-            if (b.getAvailableFrom() == null) return -1;
-            return a.getAvailableFrom().compareTo(b.getAvailableFrom());
-        });
+        List<AvailabilitySweep.Window> windows = AvailabilitySweep.findWindows(
+                candidates.size(), busy, requestedStart, horizon, needed, tripLength, MAX_NEXT_SLOTS);
 
-        // Gộp các slot cùng thời gian và chỉ trả về top 5
         List<org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.NextAvailableSlot> result = new ArrayList<>();
-        for (var slot : slots) {
-            // Kiểm tra xem đã có slot với thời gian tương tự chưa (trong vòng 30 phút)
-            boolean merged = false;
-            for (var existing : result) {
-                if (existing.getAvailableFrom() != null && slot.getAvailableFrom() != null) {
-                    long diffMinutes = java.time.Duration.between(existing.getAvailableFrom(), slot.getAvailableFrom()).abs().toMinutes();
-                    if (diffMinutes <= 30) {
-                        existing.setAvailableCount(existing.getAvailableCount() + 1);
-                        merged = true;
-                        break;
-                    }
-                }
-            }
-            if (!merged && result.size() < 5) {
-                result.add(slot);
-            }
+        for (AvailabilitySweep.Window window : windows) {
+            // Cần 1 xe thì chỉ rõ xe nào rảnh
+            Vehicles freeVehicle = needed == 1 ? firstFreeVehicle(candidates, busy, window.from()) : null;
+            result.add(org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse.NextAvailableSlot.builder()
+                    .vehicleId(freeVehicle != null ? freeVehicle.getId() : null)
+                    .vehicleLicensePlate(freeVehicle != null ? freeVehicle.getLicensePlate() : null)
+                    .availableFrom(window.from())
+                    .availableUntil(window.until())
+                    .availableCount(window.freeCount())
+                    .build());
         }
 
         return result.isEmpty() ? null : result;
     }
 
+    private Vehicles firstFreeVehicle(List<Vehicles> candidates, List<AvailabilitySweep.Interval> busy, Instant at) {
+        Set<Integer> busyAt = busy.stream()
+                .filter(i -> i.vehicleId() != null && !i.start().isAfter(at) && i.end().isAfter(at))
+                .map(AvailabilitySweep.Interval::vehicleId)
+                .collect(Collectors.toSet());
+        return candidates.stream()
+                .filter(v -> !busyAt.contains(v.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+
     private BookingResponse toResponse(Bookings booking) {
         // Load trips
         List<Trips> trips = tripRepository.findByBooking_Id(booking.getId());
@@ -2471,7 +2347,19 @@ public class BookingServiceImpl implements BookingService {
         // Load vehicle details
         List<BookingVehicleDetails> vehicleDetails = bookingVehicleDetailsRepository.findByBookingId(booking.getId());
 
-        // Load trip drivers và vehicles (nếu đã gán)
+        // Load trip drivers và vehicles (nếu đã gán) cho tất cả trips trong hai câu
+        List<Integer> tripIds = trips.stream().map(Trips::getId).toList();
+        Map<Integer, TripDrivers> driverByTrip = new HashMap<>();
+        Map<Integer, TripVehicles> vehicleByTrip = new HashMap<>();
+        if (!tripIds.isEmpty()) {
+            for (TripDrivers td : tripDriverRepository.findWithDriverUserByTripIdIn(tripIds)) {
+                driverByTrip.putIfAbsent(td.getTrip().getId(), td); // Lấy driver đầu tiên
+            }
+            for (TripVehicles tv : tripVehicleRepository.findByTrip_IdIn(tripIds)) {
+                vehicleByTrip.putIfAbsent(tv.getTrip().getId(), tv); // Lấy vehicle đầu tiên
+            }
+        }
+
         List<TripResponse> tripResponses = trips.stream().map(trip -> {
             // Tìm driver và vehicle cho trip này
             Integer driverId = null;
@@ -2482,9 +2370,8 @@ public class BookingServiceImpl implements BookingService {
             String driverPhone = null;
 
             // Tìm driver và vehicle từ TripDrivers và TripVehicles
-            List<TripDrivers> tripDrivers = tripDriverRepository.findByTripId(trip.getId());
-            if (!tripDrivers.isEmpty()) {
-                TripDrivers td = tripDrivers.get(0); // Lấy driver đầu tiên
+            TripDrivers td = driverByTrip.get(trip.getId());
+            if (td != null) {
                 driverId = td.getDriver().getId();
                 if (td.getDriver().getEmployee() != null && td.getDriver().getEmployee().getUser() != null) {
                     driverName = td.getDriver().getEmployee().getUser().getFullName();
@@ -2492,9 +2379,8 @@ public class BookingServiceImpl implements BookingService {
                 }
             }
 
-            List<TripVehicles> tripVehicles = tripVehicleRepository.findByTripId(trip.getId());
-            if (!tripVehicles.isEmpty()) {
-                TripVehicles tv = tripVehicles.get(0); // Lấy vehicle đầu tiên
+            TripVehicles tv = vehicleByTrip.get(trip.getId());
+            if (tv != null) {
                 vehicleId = tv.getVehicle().getId();
                 vehicleLicensePlate = tv.getVehicle().getLicensePlate();
             }
@@ -2608,72 +2494,15 @@ public class BookingServiceImpl implements BookingService {
                 .build();
     }
 
-    private BookingListResponse toListResponse(Bookings booking) {
-        // Tạo route summary từ trips
-        List<Trips> trips = tripRepository.findByBooking_Id(booking.getId());
-
-        String routeSummary = trips.isEmpty() ? "Chưa có lịch trình" :
-                trips.stream()
-                        .map(t -> (t.getStartLocation() != null ? t.getStartLocation() : "?") +
-                                " → " +
-                                (t.getEndLocation() != null ? t.getEndLocation() : "?"))
-                        .collect(Collectors.joining(", "));
-
-        Instant startDate = trips.stream()
-                .map(Trips::getStartTime)
-                .filter(java.util.Objects::nonNull)
-                .min(Instant::compareTo)
-                .orElse(null);
-
-        // Tính paidAmount từ payment_history đã CONFIRMED
-        BigDecimal paidAmount = invoiceRepository.calculateConfirmedPaidAmountByBookingId(booking.getId());
-        if (paidAmount == null) paidAmount = BigDecimal.ZERO;
-
-        // Check if booking has *any* trip assigned (at least one trip có đủ driver + vehicle)
-        // Business view cho điều phối: chỉ cần đã gán chuyến nào cho đơn là coi là "Đã gắn chuyến".
-        boolean isAssigned = !trips.isEmpty() && trips.stream().anyMatch(trip -> {
-            List<TripDrivers> drivers = tripDriverRepository.findByTripId(trip.getId());
-            List<TripVehicles> vehicles = tripVehicleRepository.findByTripId(trip.getId());
-            return !drivers.isEmpty() && !vehicles.isEmpty();
-        });
-
-        // Tính tổng số xe trong booking từ BookingVehicleDetails (quantity)
-        Integer vehicleCount = null;
-        try {
-            List<BookingVehicleDetails> vehicleDetails = bookingVehicleDetailsRepository.findByBookingId(booking.getId());
-            if (vehicleDetails != null && !vehicleDetails.isEmpty()) {
-                int total = vehicleDetails.stream()
-                        .map(BookingVehicleDetails::getQuantity)
-                        .filter(java.util.Objects::nonNull)
-                        .mapToInt(Integer::intValue)
-                        .sum();
-                if (total > 0) {
-                    vehicleCount = total;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("[BookingService] Cannot calculate vehicleCount for booking {}: {}", booking.getId(), e.getMessage());
+    /**
+     * Chuyển một trang booking sang BookingListResponse: booking đã JOIN FETCH các quan hệ hiển thị,
+     * trips, trạng thái gán chuyến, số xe và tiền đã thu được nạp chung trong một câu cho cả trang.
+     */
+    private List<BookingListResponse> toListResponses(List<Bookings> bookings) {
+        if (bookings.isEmpty()) {
+            return new ArrayList<>();
         }
-
-        return BookingListResponse.builder()
-                .id(booking.getId())
-                .customerName(booking.getCustomer().getFullName())
-                .customerPhone(booking.getCustomer().getPhone())
-                .routeSummary(routeSummary)
-                .startDate(startDate)
-                .totalCost(booking.getTotalCost())
-                .depositAmount(booking.getDepositAmount())
-                .paidAmount(paidAmount)
-                .vehicleCount(vehicleCount)
-                .status(booking.getStatus() != null ? booking.getStatus().name() : null)
-                .isAssigned(isAssigned)
-                .createdAt(booking.getCreatedAt())
-                .consultantId(booking.getConsultant() != null ? booking.getConsultant().getEmployeeId() : null)
-                .consultantName(booking.getConsultant() != null && booking.getConsultant().getUser() != null
-                        ? booking.getConsultant().getUser().getFullName() : null)
-                .branchId(booking.getBranch() != null ? booking.getBranch().getId() : null)
-                .branchName(booking.getBranch() != null ? booking.getBranch().getBranchName() : null)
-                .build();
+        List<Integer> bookingIds = bookings.stream().map(Bookings::getId).distinct().toList();
+        return BookingListAssembler.assemble(bookings, bookingRepository.findListDetailsByBookingIds(bookingIds));
     }
 }
-
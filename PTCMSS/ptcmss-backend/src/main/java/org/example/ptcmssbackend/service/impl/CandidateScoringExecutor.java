@@ -0,0 +1,116 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Chấm điểm ứng viên điều phối (tài xế/xe) song song trên virtual thread.
+ *
+ * Mỗi ứng viên được chấm độc lập (chỉ đọc snapshot lịch bận, sổ khối lượng công việc...), nên có thể
+ * tách ra nhiều luồng. Số ứng viên chấm đồng thời bị giới hạn theo kích thước Hikari pool: luồng gọi
+ * đang giữ một kết nối, các luồng chấm điểm có thể phải mở transaction riêng khi cache bị xoá.
+ *
+ * Kết quả luôn trả về theo đúng thứ tự đầu vào, nên sau khi sắp xếp (sort ổn định) danh sách ứng viên
+ * giống hệt chế độ tuần tự. Mặc định tắt ({@code dispatch.scoring.parallel.enabled}).
+ */
+@Slf4j
+@Component
+public class CandidateScoringExecutor {
+
+    /** Danh sách ngắn hơn ngưỡng này chấm tuần tự, tạo luồng không đáng. */
+    static final int MIN_PARALLEL_SIZE = 8;
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final int concurrency;
+
+    public CandidateScoringExecutor(
+            @Value("${dispatch.scoring.parallel.enabled:false}") boolean enabled,
+            @Value("${dispatch.scoring.parallel.max-concurrency:0}") int maxConcurrency,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        this.enabled = enabled;
+        // Chừa lại kết nối của luồng gọi; cấu hình 0 = tự tính theo pool
+        int poolLimit = Math.max(1, poolSize - 1);
+        this.concurrency = maxConcurrency > 0 ? Math.min(maxConcurrency, poolLimit) : poolLimit;
+        if (enabled) {
+            log.info("[Dispatch] Parallel candidate scoring enabled, concurrency {}", concurrency);
+        }
+    }
+
+    /**
+     * Áp dụng {@code scorer} cho từng phần tử, trả về danh sách (có thể sửa) cùng thứ tự với {@code items}.
+     * Lỗi ở bất kỳ ứng viên nào được ném lại nguyên vẹn cho luồng gọi.
+     */
+    public <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> scorer) {
+        if (!enabled || concurrency <= 1 || items.size() < MIN_PARALLEL_SIZE) {
+            return mapSequential(items, scorer);
+        }
+
+        List<R> results = new ArrayList<>(items.size());
+        // Ứng viên đầu tiên chấm ngay trên luồng gọi để nạp sẵn các snapshot/cache lười trong transaction hiện tại,
+        // tránh nhiều luồng cùng nạp một lúc
+        results.add(scorer.apply(items.get(0)));
+
+        Semaphore permits = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<R>> futures = new ArrayList<>(items.size() - 1);
+            for (T item : items.subList(1, items.size())) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return scorer.apply(item);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            try {
+                for (Future<R> future : futures) {
+                    results.add(await(future));
+                }
+            } catch (RuntimeException | Error e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    static <T, R> List<R> mapSequential(List<T> items, Function<? super T, ? extends R> scorer) {
+        List<R> results = new ArrayList<>(items.size());
+        for (T item : items) {
+            results.add(scorer.apply(item));
+        }
+        return results;
+    }
+
+    private static <R> R await(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bị gián đoạn khi chấm điểm ứng viên", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new RuntimeException("Lỗi khi chấm điểm ứng viên: " + cause.getMessage(), cause);
+        }
+    }
+}
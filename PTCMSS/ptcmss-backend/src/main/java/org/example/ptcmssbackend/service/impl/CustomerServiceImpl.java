@@ -4,12 +4,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ptcmssbackend.dto.request.Booking.CustomerRequest;
 import org.example.ptcmssbackend.dto.response.Booking.CustomerResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.entity.Customers;
 import org.example.ptcmssbackend.entity.Employees;
 import org.example.ptcmssbackend.enums.CustomerStatus;
 import org.example.ptcmssbackend.repository.CustomerRepository;
 import org.example.ptcmssbackend.repository.EmployeeRepository;
 import org.example.ptcmssbackend.service.CustomerService;
+import org.example.ptcmssbackend.service.SearchIndexService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -19,6 +21,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -27,6 +30,7 @@ public class CustomerServiceImpl implements CustomerService {
 
     private final CustomerRepository customerRepository;
     private final EmployeeRepository employeeRepository;
+    private final SearchIndexService searchIndexService;
 
     @Override
     @Transactional
@@ -52,6 +56,7 @@ public class CustomerServiceImpl implements CustomerService {
                 }
                 if (updated) {
                     existing = customerRepository.save(existing);
+                    searchIndexService.indexCustomer(existing);
                     log.info("[CustomerService] Updated customer info: {}", existing.getId());
                 }
                 return existing;
@@ -85,7 +90,9 @@ public class CustomerServiceImpl implements CustomerService {
             customer.setCreatedBy(createdBy);
         }
 
-        return customerRepository.save(customer);
+        Customers saved = customerRepository.save(customer);
+        searchIndexService.indexCustomer(saved);
+        return saved;
     }
 
     @Override
@@ -125,8 +132,63 @@ public class CustomerServiceImpl implements CustomerService {
         log.info("[CustomerService] List customers - keyword={}, branchId={}, userId={}, from={}, to={}, page={}, size={}",
                 keyword, branchId, userId, fromDate, toDate, page, size);
 
-        // Nếu có userId, kiểm tra xem user có phải là MANAGER hoặc CONSULTANT không
-        // Nếu là MANAGER hoặc CONSULTANT, tự động filter theo chi nhánh của họ
+        Integer effectiveBranchId = resolveBranchId(branchId, userId);
+
+        Instant fromInstant = fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+        Instant toInstant = toDate != null ? toDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+
+        PageRequest pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+        // Từ khóa (tên, SĐT, email) tra qua chỉ mục tìm kiếm thay cho LIKE '%x%'
+        SearchIndexService.KeywordMatch match = searchIndexService.match(keyword);
+        if (match != null && match.matchesNoCustomer()) {
+            return Page.empty(pageable);
+        }
+        SearchIndexService.KeywordMatch terms = match != null ? match : SearchIndexService.KeywordMatch.NONE;
+        Page<Customers> customersPage = customerRepository.findWithFilters(
+                match != null, terms.term(0), terms.term(1), terms.term(2), terms.emailTerm(),
+                effectiveBranchId, fromInstant, toInstant, pageable);
+
+        return customersPage.map(this::toResponse);
+    }
+
+    @Override
+    public CursorPageResponse<CustomerResponse> scrollCustomers(String keyword, Integer branchId, Integer userId, LocalDate fromDate, LocalDate toDate,
+                                                                String cursor, int size, boolean withTotal) {
+        int pageSize = PageCursor.normalizeSize(size);
+        PageCursor.Position after = PageCursor.decode(cursor);
+        Integer effectiveBranchId = resolveBranchId(branchId, userId);
+
+        Instant fromInstant = fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+        Instant toInstant = toDate != null ? toDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+
+        SearchIndexService.KeywordMatch match = searchIndexService.match(keyword);
+        if (match != null && match.matchesNoCustomer()) {
+            return PageCursor.empty(pageSize, withTotal);
+        }
+        boolean keywordSearch = match != null;
+        SearchIndexService.KeywordMatch terms = keywordSearch ? match : SearchIndexService.KeywordMatch.NONE;
+
+        List<Customers> rows = customerRepository.scrollWithFilters(
+                keywordSearch, terms.term(0), terms.term(1), terms.term(2), terms.emailTerm(),
+                effectiveBranchId, fromInstant, toInstant,
+                after != null ? after.sortKey() : null,
+                after != null ? after.id() : null,
+                PageCursor.limit(pageSize));
+
+        // Tổng số chỉ tính khi được yêu cầu; trang 1 dòng để Spring Data chạy câu COUNT
+        return PageCursor.page(rows, pageSize, Customers::getCreatedAt, Customers::getId, this::toResponse,
+                withTotal
+                        ? () -> customerRepository.findWithFilters(keywordSearch, terms.term(0), terms.term(1),
+                                terms.term(2), terms.emailTerm(), effectiveBranchId, fromInstant, toInstant,
+                                PageRequest.of(0, 1)).getTotalElements()
+                        : null);
+    }
+
+    /**
+     * Nếu có userId và user là MANAGER hoặc CONSULTANT, tự động filter theo chi nhánh của họ
+     */
+    private Integer resolveBranchId(Integer branchId, Integer userId) {
         Integer effectiveBranchId = branchId;
         if (userId != null && effectiveBranchId == null) {
             log.info("[CustomerService] Checking user role for userId={}", userId);
@@ -153,15 +215,7 @@ public class CustomerServiceImpl implements CustomerService {
         } else {
             log.info("[CustomerService] Skipping role check - userId={}, effectiveBranchId={}", userId, effectiveBranchId);
         }
-
-        Instant fromInstant = fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
-        Instant toInstant = toDate != null ? toDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
-
-        PageRequest pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-
-        Page<Customers> customersPage = customerRepository.findWithFilters(keyword, effectiveBranchId, fromInstant, toInstant, pageable);
-
-        return customersPage.map(this::toResponse);
+        return effectiveBranchId;
     }
 }
 
@@ -0,0 +1,340 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardDelta;
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
+import org.example.ptcmssbackend.entity.Drivers;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.entity.Vehicles;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.repository.DriverRepository;
+import org.example.ptcmssbackend.repository.TripDriverRepository;
+import org.example.ptcmssbackend.repository.TripRepository;
+import org.example.ptcmssbackend.repository.TripVehicleRepository;
+import org.example.ptcmssbackend.repository.VehicleRepository;
+import org.example.ptcmssbackend.service.DispatchDashboardService;
+import org.example.ptcmssbackend.service.DispatchService;
+import org.example.ptcmssbackend.service.WebSocketNotificationService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot dashboard điều phối theo chi nhánh (xem {@link DispatchDashboardService}).
+ *
+ * Nạp snapshot: 6 truy vấn cố định (trip trong khoảng, cặp trip-tài xế, cặp trip-xe, tài xế, xe, hàng đợi).
+ * Sự kiện {@link TripAssignmentChangedEvent} (gán/hủy/bắt đầu/hoàn thành chuyến) và {@link BookingScheduleChangedEvent}
+ * (sửa đơn, đổi lịch, duyệt cọc) chỉ nạp lại các trip liên quan và hàng đợi của chi nhánh bị ảnh hưởng.
+ * Những thay đổi không phát sự kiện (tạo đơn mới...) được bắt bởi lượt quét hàng đợi 30 giây
+ * và lượt đồng bộ toàn bộ 10 phút.
+ *
+ * Mọi lượt đọc DB rồi áp lên snapshot (sự kiện, quét hàng đợi, đồng bộ, nạp lần đầu) chạy trong {@link #lock},
+ * nên các thay đổi được áp đúng thứ tự đọc và bản đọc cũ không ghi đè bản mới hơn.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class DispatchDashboardServiceImpl implements DispatchDashboardService {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final TripRepository tripRepository;
+    private final TripDriverRepository tripDriverRepository;
+    private final TripVehicleRepository tripVehicleRepository;
+    private final DriverRepository driverRepository;
+    private final VehicleRepository vehicleRepository;
+    private final DispatchService dispatchService;
+    private final WebSocketNotificationService webSocketNotificationService;
+
+    private final Map<Integer, DispatchDashboardSnapshot> live = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+
+    @Override
+    public DispatchDashboardResponse getDashboard(Integer branchId, LocalDate date) {
+        if (branchId == null) {
+            throw new IllegalArgumentException("Mã chi nhánh là bắt buộc");
+        }
+        if (date != null) {
+            // Dashboard theo ngày: dựng mới, không giữ lại
+            DispatchDashboardResponse response = load(branchId, date,
+                    date.atStartOfDay(ZONE).toInstant(), date.plusDays(1).atStartOfDay(ZONE).toInstant()).toResponse();
+            response.setVersion(null);
+            return response;
+        }
+        return liveSnapshot(branchId).toResponse();
+    }
+
+    @Override
+    public void refreshTrips(Collection<Integer> tripIds) {
+        if (tripIds == null || tripIds.isEmpty() || live.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(tripIds));
+            refresh(ids, tripRepository.findWithBookingByIdIn(ids));
+        }
+    }
+
+    @Override
+    public void refreshBookings(Collection<Integer> bookingIds) {
+        if (bookingIds == null || bookingIds.isEmpty() || live.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            List<Trips> trips = tripRepository.findByBooking_IdIn(bookingIds);
+            // Gồm cả trip đã bị xóa khỏi đơn để gỡ khỏi snapshot
+            Set<Integer> ids = new LinkedHashSet<>();
+            trips.forEach(t -> ids.add(t.getId()));
+            live.values().forEach(snapshot -> ids.addAll(snapshot.tripIdsOfBookings(bookingIds)));
+            refresh(new ArrayList<>(ids), trips);
+        }
+    }
+
+    @Override
+    public void evictBranch(Integer branchId) {
+        if (branchId != null) {
+            synchronized (lock) {
+                live.remove(branchId);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onTripAssignmentChanged(TripAssignmentChangedEvent event) {
+        try {
+            refreshTrips(event.getTripIds());
+        } catch (Exception e) {
+            // Không cập nhật được: bỏ snapshot và báo client tải lại, lần truy vấn sau sẽ nạp lại từ DB
+            log.warn("[DispatchDashboard] Cannot refresh trips {} ({}), dropping snapshots: {}",
+                    event.getTripIds(), event.getAction(), e.getMessage());
+            dropAll();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onBookingScheduleChanged(BookingScheduleChangedEvent event) {
+        try {
+            refreshBookings(event.getBookingIds());
+        } catch (Exception e) {
+            log.warn("[DispatchDashboard] Cannot refresh bookings {}, dropping snapshots: {}",
+                    event.getBookingIds(), e.getMessage());
+            dropAll();
+        }
+    }
+
+    /**
+     * Hàng đợi thay đổi cả khi không có sự kiện (đơn mới tạo...):
+     * so danh sách trip chờ với snapshot và chỉ nạp lại các trip vào/ra hàng đợi.
+     */
+    @Scheduled(fixedDelay = 30000) // 30 giây
+    public void refreshPendingQueues() {
+        for (DispatchDashboardSnapshot snapshot : live.values()) {
+            try {
+                synchronized (lock) {
+                    if (live.get(snapshot.getBranchId()) == snapshot) {
+                        refreshPendingQueue(snapshot);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("[DispatchDashboard] Cannot refresh pending queue for branch {}: {}",
+                        snapshot.getBranchId(), e.getMessage());
+            }
+        }
+    }
+
+    private void refreshPendingQueue(DispatchDashboardSnapshot snapshot) {
+        List<PendingTripResponse> pending =
+                dispatchService.getPendingTrips(snapshot.getBranchId(), snapshot.getFrom(), snapshot.getTo());
+        Set<Integer> changed = snapshot.pendingTripIds();
+        Set<Integer> current = pendingIds(pending);
+        Set<Integer> common = new HashSet<>(changed);
+        common.retainAll(current);
+        changed.addAll(current);
+        changed.removeAll(common);
+
+        List<Integer> ids = new ArrayList<>(changed);
+        Map<Integer, DispatchDashboardDelta.TripChange> fresh = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Assignments assignments = loadAssignments(ids);
+            for (Trips trip : tripRepository.findWithBookingByIdIn(ids)) {
+                if (snapshot.getBranchId().equals(branchIdOf(trip)) && snapshot.covers(trip.getStartTime())) {
+                    fresh.put(trip.getId(), assignments.entry(trip));
+                }
+            }
+        }
+        publish(snapshot.apply(ids, fresh, pending));
+    }
+
+    /**
+     * Đồng bộ toàn bộ định kỳ (và chuyển khoảng thời gian khi sang ngày mới), đẩy phần chênh lệch nếu có.
+     */
+    @Scheduled(fixedDelay = 600000) // 10 phút
+    public void resyncSnapshots() {
+        for (DispatchDashboardSnapshot snapshot : live.values()) {
+            try {
+                resync(snapshot, LocalDate.now(ZONE));
+            } catch (Exception e) {
+                log.warn("[DispatchDashboard] Cannot resync branch {}: {}", snapshot.getBranchId(), e.getMessage());
+            }
+        }
+    }
+
+    private DispatchDashboardSnapshot liveSnapshot(Integer branchId) {
+        LocalDate today = LocalDate.now(ZONE);
+        DispatchDashboardSnapshot snapshot = live.get(branchId);
+        if (snapshot != null && today.equals(snapshot.getTargetDate())) {
+            return snapshot;
+        }
+        synchronized (lock) {
+            // Nạp trong lock: sự kiện đến lúc này chờ rồi áp lên snapshot vừa nạp
+            snapshot = live.get(branchId);
+            if (snapshot == null) {
+                snapshot = loadLive(branchId, today);
+                live.put(branchId, snapshot);
+            } else if (!today.equals(snapshot.getTargetDate())) {
+                resync(snapshot, today);
+            }
+            return snapshot;
+        }
+    }
+
+    private void resync(DispatchDashboardSnapshot snapshot, LocalDate today) {
+        // Nạp lại trong lock: cập nhật theo sự kiện chờ xong lượt nạp rồi áp dụng lên bản mới
+        synchronized (lock) {
+            if (live.get(snapshot.getBranchId()) != snapshot) {
+                return;
+            }
+            publish(snapshot.replaceWith(loadLive(snapshot.getBranchId(), today)));
+        }
+    }
+
+    /**
+     * Áp trạng thái mới của các trip lên mọi snapshot chứa hoặc nên chứa chúng (gọi trong lock).
+     */
+    private void refresh(List<Integer> ids, List<Trips> trips) {
+        Assignments assignments = loadAssignments(ids);
+        for (DispatchDashboardSnapshot snapshot : live.values()) {
+            boolean touched = ids.stream().anyMatch(snapshot::contains);
+            Map<Integer, DispatchDashboardDelta.TripChange> fresh = new HashMap<>();
+            for (Trips trip : trips) {
+                if (snapshot.getBranchId().equals(branchIdOf(trip)) && snapshot.covers(trip.getStartTime())) {
+                    fresh.put(trip.getId(), assignments.entry(trip));
+                    touched = true;
+                }
+            }
+            if (!touched) {
+                continue;
+            }
+            List<PendingTripResponse> pending =
+                    dispatchService.getPendingTrips(snapshot.getBranchId(), snapshot.getFrom(), snapshot.getTo());
+            publish(snapshot.apply(ids, fresh, pending));
+        }
+    }
+
+    private DispatchDashboardSnapshot loadLive(Integer branchId, LocalDate today) {
+        // Từ đầu hôm nay đến 1 năm tới (giống dashboard không truyền ngày trước đây)
+        return load(branchId, today, today.atStartOfDay(ZONE).toInstant(), today.plusYears(1).atStartOfDay(ZONE).toInstant());
+    }
+
+    private DispatchDashboardSnapshot load(Integer branchId, LocalDate targetDate, Instant from, Instant to) {
+        List<Trips> trips = tripRepository.findByBooking_Branch_IdAndStartTimeBetween(branchId, from, to);
+        Assignments assignments = loadAssignments(trips.stream().map(Trips::getId).toList());
+        List<DispatchDashboardDelta.TripChange> entries = trips.stream().map(assignments::entry).toList();
+
+        List<PendingTripResponse> pending = dispatchService.getPendingTrips(branchId, from, to);
+        List<Drivers> drivers = driverRepository.findByBranchIdWithUser(branchId);
+        List<Vehicles> vehicles = vehicleRepository.filterVehicles(null, branchId, null);
+        if (vehicles == null) {
+            vehicles = new ArrayList<>();
+        }
+        log.info("[DispatchDashboard] Loaded branch {} from {} to {}: {} trips, {} pending",
+                branchId, from, to, entries.size(), pending.size());
+        return new DispatchDashboardSnapshot(branchId, targetDate, from, to, drivers, vehicles, entries, pending);
+    }
+
+    private Assignments loadAssignments(List<Integer> tripIds) {
+        Assignments assignments = new Assignments();
+        if (tripIds.isEmpty()) {
+            return assignments;
+        }
+        for (Object[] row : tripDriverRepository.findTripDriverIdPairs(tripIds)) {
+            assignments.drivers.computeIfAbsent((Integer) row[0], k -> new ArrayList<>()).add((Integer) row[1]);
+        }
+        for (Object[] row : tripVehicleRepository.findTripVehicleIdPairs(tripIds)) {
+            assignments.vehicles.computeIfAbsent((Integer) row[0], k -> new ArrayList<>()).add((Integer) row[1]);
+        }
+        return assignments;
+    }
+
+    private void publish(DispatchDashboardDelta delta) {
+        if (delta == null) {
+            return;
+        }
+        try {
+            webSocketNotificationService.sendDispatchDashboardDelta(delta.getBranchId(), delta);
+        } catch (Exception e) {
+            log.warn("[DispatchDashboard] Cannot push delta v{} for branch {}: {}",
+                    delta.getVersion(), delta.getBranchId(), e.getMessage());
+        }
+    }
+
+    private void dropAll() {
+        synchronized (lock) {
+            for (Integer branchId : new ArrayList<>(live.keySet())) {
+                live.remove(branchId);
+                publish(DispatchDashboardDelta.builder()
+                        .type(DispatchDashboardSnapshot.DELTA_TYPE)
+                        .branchId(branchId)
+                        .reload(true)
+                        .timestamp(Instant.now())
+                        .build());
+            }
+        }
+    }
+
+    private static Set<Integer> pendingIds(List<PendingTripResponse> pending) {
+        Set<Integer> ids = new HashSet<>();
+        pending.forEach(p -> ids.add(p.getTripId()));
+        return ids;
+    }
+
+    private static Integer branchIdOf(Trips trip) {
+        return trip.getBooking() != null && trip.getBooking().getBranch() != null
+                ? trip.getBooking().getBranch().getId() : null;
+    }
+
+    /** Tài xế/xe đang gán theo trip, id sắp tăng dần để so sánh trạng thái ổn định. */
+    private static final class Assignments {
+        private final Map<Integer, List<Integer>> drivers = new HashMap<>();
+        private final Map<Integer, List<Integer>> vehicles = new HashMap<>();
+
+        DispatchDashboardDelta.TripChange entry(Trips trip) {
+            return DispatchDashboardSnapshot.entry(trip, sorted(drivers.get(trip.getId())), sorted(vehicles.get(trip.getId())));
+        }
+
+        private static List<Integer> sorted(List<Integer> ids) {
+            return ids == null ? List.of() : ids.stream().distinct().sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package org.example.ptcmssbackend.service.impl;
+
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardDelta;
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
+import org.example.ptcmssbackend.entity.Drivers;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.entity.Vehicles;
+import org.example.ptcmssbackend.enums.TripStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Dashboard điều phối của một chi nhánh trong khoảng [from, to], giữ theo từng trip.
+ *
+ * Thống kê được cộng/trừ dần khi trip thay đổi, lịch tài xế/xe dựng lại từ các trip khi cần trả về.
+ * {@link #apply} và {@link #replaceWith} trả về {@link DispatchDashboardDelta} chỉ gồm các trip thực sự đổi
+ * (null nếu không có gì đổi) và tăng version để client biết thứ tự áp.
+ */
+public final class DispatchDashboardSnapshot {
+
+    public static final String DELTA_TYPE = "DISPATCH_DASHBOARD_DELTA";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final int SHIFT_START = 6;
+    private static final int SHIFT_END = 22;
+    private static final Comparator<DispatchDashboardDelta.TripChange> BLOCK_ORDER =
+            Comparator.comparing(DispatchDashboardDelta.TripChange::getStartTime)
+                    .thenComparing(DispatchDashboardDelta.TripChange::getTripId);
+
+    /** Nhóm thống kê của trip; trip không thuộc nhóm nào (thiếu trạng thái) không được đếm. */
+    enum State {
+        PENDING, ASSIGNED, IN_PROGRESS, COMPLETED, CANCELLED
+    }
+
+    private record DriverRow(Integer id, String name, String phone) {
+    }
+
+    private record VehicleRow(Integer id, String plate, String model) {
+    }
+
+    private final Integer branchId;
+    private LocalDate targetDate;
+    private Instant from;
+    private Instant to;
+    private List<DriverRow> drivers;
+    private List<VehicleRow> vehicles;
+    private final Map<Integer, DispatchDashboardDelta.TripChange> trips = new HashMap<>();
+    private final int[] counts = new int[State.values().length];
+    private List<PendingTripResponse> pendingTrips;
+    private long version;
+
+    public DispatchDashboardSnapshot(Integer branchId, LocalDate targetDate, Instant from, Instant to,
+                                     List<Drivers> drivers, List<Vehicles> vehicles,
+                                     Collection<DispatchDashboardDelta.TripChange> trips,
+                                     List<PendingTripResponse> pendingTrips) {
+        this.branchId = branchId;
+        this.targetDate = targetDate;
+        this.from = from;
+        this.to = to;
+        this.drivers = drivers.stream().map(DispatchDashboardSnapshot::driverRow).toList();
+        this.vehicles = vehicles.stream()
+                .map(v -> new VehicleRow(v.getId(), v.getLicensePlate(), v.getModel()))
+                .toList();
+        this.pendingTrips = List.copyOf(pendingTrips);
+        for (DispatchDashboardDelta.TripChange trip : trips) {
+            put(trip);
+        }
+    }
+
+    /**
+     * Trạng thái dashboard của một trip: trạng thái, thời gian, ghi chú tuyến và tài xế/xe đang gán.
+     */
+    public static DispatchDashboardDelta.TripChange entry(Trips trip, List<Integer> driverIds, List<Integer> vehicleIds) {
+        boolean assigned = !driverIds.isEmpty() || !vehicleIds.isEmpty();
+        State state = state(trip.getStatus(), assigned);
+        return DispatchDashboardDelta.TripChange.builder()
+                .tripId(trip.getId())
+                .bookingId(trip.getBooking() != null ? trip.getBooking().getId() : null)
+                .status(trip.getStatus())
+                .state(state != null ? state.name() : null)
+                .startTime(trip.getStartTime())
+                .endTime(trip.getEndTime())
+                .note(routeLabel(trip))
+                .driverIds(List.copyOf(driverIds))
+                .vehicleIds(List.copyOf(vehicleIds))
+                .build();
+    }
+
+    static State state(TripStatus status, boolean assigned) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status) {
+            case CANCELLED -> State.CANCELLED;
+            case COMPLETED -> State.COMPLETED;
+            case ONGOING -> State.IN_PROGRESS;
+            case ASSIGNED -> State.ASSIGNED;
+            // Trip SCHEDULED: đã gán driver/vehicle thì tính là đã gắn lịch
+            case SCHEDULED -> assigned ? State.ASSIGNED : State.PENDING;
+        };
+    }
+
+    public Integer getBranchId() {
+        return branchId;
+    }
+
+    public synchronized LocalDate getTargetDate() {
+        return targetDate;
+    }
+
+    public synchronized Instant getFrom() {
+        return from;
+    }
+
+    public synchronized Instant getTo() {
+        return to;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized boolean contains(Integer tripId) {
+        return trips.containsKey(tripId);
+    }
+
+    /** Các trip trong snapshot thuộc những đơn chỉ định (để gỡ trip đã bị xóa khỏi đơn) */
+    public synchronized Set<Integer> tripIdsOfBookings(Collection<Integer> bookingIds) {
+        Set<Integer> ids = new HashSet<>();
+        trips.values().forEach(t -> {
+            if (bookingIds.contains(t.getBookingId())) {
+                ids.add(t.getTripId());
+            }
+        });
+        return ids;
+    }
+
+    public synchronized Set<Integer> pendingTripIds() {
+        Set<Integer> ids = new HashSet<>();
+        pendingTrips.forEach(p -> ids.add(p.getTripId()));
+        return ids;
+    }
+
+    /** Trip bắt đầu trong khoảng của snapshot (cùng điều kiện BETWEEN với truy vấn nạp ban đầu). */
+    public synchronized boolean covers(Instant startTime) {
+        return startTime != null && !startTime.isBefore(from) && !startTime.isAfter(to);
+    }
+
+    public synchronized DispatchDashboardResponse toResponse() {
+        Map<Integer, List<DispatchDashboardDelta.TripChange>> byDriver = new HashMap<>();
+        Map<Integer, List<DispatchDashboardDelta.TripChange>> byVehicle = new HashMap<>();
+        for (DispatchDashboardDelta.TripChange trip : trips.values()) {
+            if (trip.getStartTime() == null || trip.getEndTime() == null) {
+                continue;
+            }
+            trip.getDriverIds().forEach(id -> byDriver.computeIfAbsent(id, k -> new ArrayList<>()).add(trip));
+            trip.getVehicleIds().forEach(id -> byVehicle.computeIfAbsent(id, k -> new ArrayList<>()).add(trip));
+        }
+
+        DispatchDashboardResponse.ScheduleWindow shift = DispatchDashboardResponse.ScheduleWindow.builder()
+                .start(targetDate.atTime(SHIFT_START, 0).atZone(ZONE).toInstant())
+                .end(targetDate.atTime(SHIFT_END, 0).atZone(ZONE).toInstant())
+                .build();
+
+        List<DispatchDashboardResponse.DriverScheduleItem> driverSchedules = drivers.stream()
+                .map(d -> DispatchDashboardResponse.DriverScheduleItem.builder()
+                        .driverId(d.id())
+                        .driverName(d.name())
+                        .driverPhone(d.phone())
+                        .shift(shift)
+                        .items(blocks(byDriver.get(d.id())))
+                        .build())
+                .toList();
+        List<DispatchDashboardResponse.VehicleScheduleItem> vehicleSchedules = vehicles.stream()
+                .map(v -> DispatchDashboardResponse.VehicleScheduleItem.builder()
+                        .vehicleId(v.id())
+                        .licensePlate(v.plate())
+                        .model(v.model())
+                        .shift(shift)
+                        .items(blocks(byVehicle.get(v.id())))
+                        .build())
+                .toList();
+
+        return DispatchDashboardResponse.builder()
+                .pendingCount(counts[State.PENDING.ordinal()])
+                .assignedCount(counts[State.ASSIGNED.ordinal()])
+                .cancelledCount(counts[State.CANCELLED.ordinal()])
+                .completedCount(counts[State.COMPLETED.ordinal()])
+                .inProgressCount(counts[State.IN_PROGRESS.ordinal()])
+                .version(version)
+                .pendingTrips(new ArrayList<>(pendingTrips))
+                .driverSchedules(new ArrayList<>(driverSchedules))
+                .vehicleSchedules(new ArrayList<>(vehicleSchedules))
+                .build();
+    }
+
+    /**
+     * Cập nhật các trip chỉ định.
+     *
+     * @param tripIds      các trip cần xét lại
+     * @param fresh        trạng thái mới của những trip trong {@code tripIds} còn thuộc snapshot; trip vắng mặt bị gỡ
+     * @param pendingTrips hàng đợi mới, hoặc null nếu không nạp lại
+     */
+    public synchronized DispatchDashboardDelta apply(Collection<Integer> tripIds,
+                                                     Map<Integer, DispatchDashboardDelta.TripChange> fresh,
+                                                     List<PendingTripResponse> pendingTrips) {
+        List<DispatchDashboardDelta.TripChange> upserts = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        for (Integer tripId : new LinkedHashSet<>(tripIds)) {
+            diff(tripId, fresh.get(tripId), upserts, removed);
+        }
+        boolean pendingChanged = pendingTrips != null && !pendingTrips.equals(this.pendingTrips);
+        if (pendingChanged) {
+            this.pendingTrips = List.copyOf(pendingTrips);
+        }
+        return delta(upserts, removed, pendingChanged, false);
+    }
+
+    /**
+     * Thay toàn bộ nội dung bằng snapshot vừa nạp lại (đồng bộ định kỳ, sang ngày mới), giữ nguyên chuỗi version.
+     */
+    public synchronized DispatchDashboardDelta replaceWith(DispatchDashboardSnapshot fresh) {
+        Map<Integer, DispatchDashboardDelta.TripChange> freshTrips;
+        synchronized (fresh) {
+            freshTrips = new HashMap<>(fresh.trips);
+            targetDate = fresh.targetDate;
+            from = fresh.from;
+            to = fresh.to;
+        }
+        boolean reload = !drivers.equals(fresh.drivers) || !vehicles.equals(fresh.vehicles);
+        drivers = fresh.drivers;
+        vehicles = fresh.vehicles;
+
+        Set<Integer> ids = new LinkedHashSet<>(trips.keySet());
+        ids.addAll(freshTrips.keySet());
+        List<DispatchDashboardDelta.TripChange> upserts = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        for (Integer tripId : ids) {
+            diff(tripId, freshTrips.get(tripId), upserts, removed);
+        }
+        boolean pendingChanged = !fresh.pendingTrips.equals(pendingTrips);
+        pendingTrips = fresh.pendingTrips;
+        return delta(upserts, removed, pendingChanged, reload);
+    }
+
+    private void diff(Integer tripId, DispatchDashboardDelta.TripChange next,
+                      List<DispatchDashboardDelta.TripChange> upserts, List<Integer> removed) {
+        DispatchDashboardDelta.TripChange previous = trips.get(tripId);
+        if (Objects.equals(previous, next)) {
+            return;
+        }
+        if (previous != null) {
+            remove(previous);
+        }
+        if (next != null) {
+            put(next);
+            upserts.add(next);
+        } else {
+            removed.add(tripId);
+        }
+    }
+
+    private DispatchDashboardDelta delta(List<DispatchDashboardDelta.TripChange> upserts, List<Integer> removed,
+                                         boolean pendingChanged, boolean reload) {
+        if (upserts.isEmpty() && removed.isEmpty() && !pendingChanged && !reload) {
+            return null;
+        }
+        version++;
+        return DispatchDashboardDelta.builder()
+                .type(DELTA_TYPE)
+                .branchId(branchId)
+                .version(version)
+                .reload(reload)
+                .pendingCount(counts[State.PENDING.ordinal()])
+                .assignedCount(counts[State.ASSIGNED.ordinal()])
+                .cancelledCount(counts[State.CANCELLED.ordinal()])
+                .completedCount(counts[State.COMPLETED.ordinal()])
+                .inProgressCount(counts[State.IN_PROGRESS.ordinal()])
+                .upserts(upserts)
+                .removedTripIds(removed)
+                .pendingTrips(pendingChanged ? new ArrayList<>(pendingTrips) : null)
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private void put(DispatchDashboardDelta.TripChange trip) {
+        DispatchDashboardDelta.TripChange previous = trips.put(trip.getTripId(), trip);
+        if (previous != null) {
+            count(previous, -1);
+        }
+        count(trip, 1);
+    }
+
+    private void remove(DispatchDashboardDelta.TripChange trip) {
+        if (trips.remove(trip.getTripId()) != null) {
+            count(trip, -1);
+        }
+    }
+
+    private void count(DispatchDashboardDelta.TripChange trip, int delta) {
+        if (trip.getState() != null) {
+            counts[State.valueOf(trip.getState()).ordinal()] += delta;
+        }
+    }
+
+    private static List<DispatchDashboardResponse.ScheduleBlock> blocks(List<DispatchDashboardDelta.TripChange> trips) {
+        if (trips == null) {
+            return new ArrayList<>();
+        }
+        List<DispatchDashboardResponse.ScheduleBlock> blocks = new ArrayList<>(trips.size());
+        trips.stream().sorted(BLOCK_ORDER).forEach(trip -> blocks.add(DispatchDashboardResponse.ScheduleBlock.builder()
+                .start(trip.getStartTime())
+                .end(trip.getEndTime())
+                .type("BUSY")
+                .ref("TRIP-" + trip.getTripId())
+                .note(trip.getNote())
+                .build()));
+        return blocks;
+    }
+
+    private static DriverRow driverRow(Drivers driver) {
+        if (driver.getEmployee() != null && driver.getEmployee().getUser() != null) {
+            return new DriverRow(driver.getId(), driver.getEmployee().getUser().getFullName(),
+                    driver.getEmployee().getUser().getPhone());
+        }
+        return new DriverRow(driver.getId(), driver.getId() != null ? "Driver #" + driver.getId() : null, null);
+    }
+
+    private static String routeLabel(Trips trip) {
+        String start = trip.getStartLocation();
+        String end = trip.getEndLocation();
+        if (start == null && end == null) {
+            return "";
+        }
+        if (start == null) {
+            return end;
+        }
+        if (end == null) {
+            return start;
+        }
+        return start + " -> " + end;
+    }
+}
@@ -4,22 +4,31 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ptcmssbackend.dto.request.Trip.TripSearchRequest;
 import org.example.ptcmssbackend.dto.request.dispatch.AssignRequest;
+import org.example.ptcmssbackend.dto.request.dispatch.AutoDispatchCommitRequest;
 import org.example.ptcmssbackend.dto.response.Trip.TripDetailResponse;
 import org.example.ptcmssbackend.dto.response.Trip.TripListItemResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.AssignRespone;
-import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.AutoDispatchPlanResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
 import org.example.ptcmssbackend.entity.*;
 import org.example.ptcmssbackend.entity.TripDriverId;
+import org.example.ptcmssbackend.enums.AssignmentAction;
 import org.example.ptcmssbackend.enums.BookingStatus;
 import org.example.ptcmssbackend.enums.DriverDayOffStatus;
 import org.example.ptcmssbackend.enums.TripStatus;
 import org.example.ptcmssbackend.enums.VehicleStatus;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
 import org.example.ptcmssbackend.repository.*;
 import org.example.ptcmssbackend.service.BookingService;
 import org.example.ptcmssbackend.service.DispatchService;
+import org.example.ptcmssbackend.service.DriverWorkloadService;
+import org.example.ptcmssbackend.service.OccupancyIndexService;
 import org.example.ptcmssbackend.service.SystemSettingService;
 import org.example.ptcmssbackend.service.TripOccupancyService;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -42,9 +51,6 @@ import java.util.stream.Collectors;
 @Transactional
 public class DispatchServiceImpl implements DispatchService {
 
-    private static final ZoneId DEFAULT_ZONE = ZoneId.systemDefault();
-    private static final int DEFAULT_SHIFT_START = 6;
-    private static final int DEFAULT_SHIFT_END = 22;
     /**
      * Các trạng thái booking được phép xuất hiện trên bảng điều phối.
      * Lưu ý: ĐƠN NHÁP (DRAFT) không nên hiển thị cho điều phối,
@@ -59,6 +65,15 @@ public class DispatchServiceImpl implements DispatchService {
                     BookingStatus.COMPLETED
             );
 
+    private static final int DEFAULT_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_PAGE_SIZE = 500;
+    // Số cặp tài xế + xe gợi ý mặc định / tối đa cho một lần gọi
+    private static final int DEFAULT_TOP_PAIRS = 10;
+    private static final int MAX_TOP_PAIRS = 100;
+
+    // Trip ASSIGNED có thể mới gán 1 phần nên vẫn xét trong hàng đợi
+    private static final EnumSet<TripStatus> PENDING_TRIP_STATUSES = EnumSet.of(TripStatus.SCHEDULED, TripStatus.ASSIGNED);
+
     private final TripRepository tripRepository;
     private final BookingRepository bookingRepository;
     private final TripDriverRepository tripDriverRepository;
@@ -75,6 +90,14 @@ public class DispatchServiceImpl implements DispatchService {
     private final org.example.ptcmssbackend.repository.InvoiceRepository invoiceRepository;
     private final org.example.ptcmssbackend.repository.PaymentHistoryRepository paymentHistoryRepository;
     private final DriverRatingsRepository driverRatingsRepository;
+    private final OccupancyIndexService occupancyIndexService;
+    private final DriverWorkloadService driverWorkloadService;
+    private final CandidateScoringExecutor candidateScoringExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Bật để log lý do từng trip bị loại khỏi hàng đợi điều phối (nhiều truy vấn, chỉ dùng khi debug)
+    @Value("${dispatch.pending.debug:false}")
+    private boolean pendingDebug;
 
     // =========================================================
     // 1) PENDING TRIPS (QUEUE)
@@ -92,104 +115,19 @@ public class DispatchServiceImpl implements DispatchService {
     public List<PendingTripResponse> getPendingTrips(Integer branchId, Instant from, Instant to) {
         log.info("[Dispatch] Loading pending trips for branch {} from {} to {}", branchId, from, to);
 
-        // Lấy các trip có status SCHEDULED hoặc ASSIGNED (ASSIGNED có thể có 1 phần đã gán)
-        List<Trips> scheduledTrips = tripRepository.findByBooking_Branch_IdAndStatusAndStartTimeBetween(branchId, TripStatus.SCHEDULED, from, to);
-        List<Trips> assignedTrips = tripRepository.findByBooking_Branch_IdAndStatusAndStartTimeBetween(branchId, TripStatus.ASSIGNED, from, to);
-
-        log.info("[Dispatch] Found {} SCHEDULED trips and {} ASSIGNED trips", scheduledTrips.size(), assignedTrips.size());
-
-        List<Trips> trips = new ArrayList<>();
-        trips.addAll(scheduledTrips);
-        trips.addAll(assignedTrips);
-
-        List<PendingTripResponse> result = new ArrayList<>();
-        int skippedAlreadyAssigned = 0;
-        int skippedInvalidStatus = 0;
-        int skippedNoDeposit = 0;
-
-        for (Trips t : trips) {
-            // Chỉ lấy các trip CHƯA gán driver và CHƯA gán vehicle
-            List<TripDrivers> tripDrivers = tripDriverRepository.findByTripId(t.getId());
-            List<TripVehicles> tripVehicles = tripVehicleRepository.findByTripId(t.getId());
-            if (!tripDrivers.isEmpty() || !tripVehicles.isEmpty()) {
-                skippedAlreadyAssigned++;
-                continue; // đã gán rồi -> không nằm trong pending queue
-            }
-
-            Bookings b = t.getBooking();
-            // Skip bookings that are not eligible for dispatch (e.g. cancelled)
-            if (!DISPATCHABLE_BOOKING_STATUSES.contains(b.getStatus())) {
-                skippedInvalidStatus++;
-                log.info("[Dispatch] Skipping trip {} - booking {} has invalid status: {} (allowed: {})",
-                        t.getId(), b.getId(), b.getStatus(), DISPATCHABLE_BOOKING_STATUSES);
-                continue;
-            }
-
-            // CHỈ HIỂN THỊ CÁC TRIPS CÓ BOOKING ĐÃ ĐẶT CỌC
-            // Lý do: Tránh hiển thị các đơn chưa cọc, chỉ điều phối các đơn đã cọc
-            boolean depositPaid = hasDepositPaid(b);
-            if (!depositPaid) {
-                skippedNoDeposit++;
-                log.info("[Dispatch] Skipping trip {} - booking {} has no confirmed deposit (booking status: {}, trip status: {})",
-                        t.getId(), b.getId(), b.getStatus(), t.getStatus());
-                // Debug: Log chi tiết về invoice và payment để debug
-                try {
-                    var invoices = invoiceRepository.findByBooking_IdOrderByCreatedAtDesc(b.getId());
-                    log.info("[Dispatch]   Booking {} has {} invoices", b.getId(), invoices != null ? invoices.size() : 0);
-                    if (invoices != null && !invoices.isEmpty()) {
-                        for (var inv : invoices) {
-                            boolean isDeposit = Boolean.TRUE.equals(inv.getIsDeposit());
-                            var payments = paymentHistoryRepository.findByInvoice_IdOrderByPaymentDateDesc(inv.getId());
-                            int confirmedCount = 0;
-                            if (payments != null) {
-                                confirmedCount = (int) payments.stream()
-                                        .filter(p -> p.getConfirmationStatus() ==
-                                                org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED)
-                                        .count();
-                            }
-                            log.info("[Dispatch]     Invoice {}: isDeposit={}, totalPayments={}, confirmedPayments={}",
-                                    inv.getId(), isDeposit, payments != null ? payments.size() : 0, confirmedCount);
-                        }
-                    } else {
-                        log.info("[Dispatch]     Booking {} has NO invoices at all", b.getId());
-                    }
-                } catch (Exception e) {
-                    log.warn("[Dispatch] Error checking invoice details for booking {}", b.getId(), e);
-                }
-                continue;
-            }
+        // Một truy vấn: trip SCHEDULED/ASSIGNED chưa gán driver/vehicle, booking điều phối được, đã cọc
+        List<PendingTripResponse> result = new ArrayList<>(tripRepository.findPendingQueue(
+                branchId, PENDING_TRIP_STATUSES, DISPATCHABLE_BOOKING_STATUSES, from, to));
 
-            result.add(PendingTripResponse.builder()
-                    .tripId(t.getId())
-                    .bookingId(b.getId())
-                    .branchId(b.getBranch().getId())
-                    .branchName(b.getBranch().getBranchName())
-                    .customerName(b.getCustomer().getFullName())
-                    .customerPhone(b.getCustomer().getPhone())
-                    .startTime(t.getStartTime())
-                    .endTime(t.getEndTime())
-                    .startLocation(t.getStartLocation())
-                    .endLocation(t.getEndLocation())
-                    .bookingStatus(b.getStatus())
-                    .build()
-            );
+        if (pendingDebug) {
+            logPendingSkips(branchId, from, to, result);
         }
-
-        log.info("[Dispatch] Pending trips filter results: total trips={}, skipped (already assigned)={}, skipped (invalid status)={}, skipped (no deposit)={}, final pending={}",
-                trips.size(), skippedAlreadyAssigned, skippedInvalidStatus, skippedNoDeposit, result.size());
+        log.info("[Dispatch] Found {} pending trips for branch {}", result.size(), branchId);
 
         // Ưu tiên các chuyến có phân khúc cao hơn (nhiều chỗ ngồi hơn) trước, sau đó mới tới thời gian
-        result.sort((a, b) -> {
-            Integer seatsA = getMaxSeatsFromBooking(bookingRepository.findById(a.getBookingId()).orElse(null));
-            Integer seatsB = getMaxSeatsFromBooking(bookingRepository.findById(b.getBookingId()).orElse(null));
-            int sa = seatsA != null ? seatsA : 0;
-            int sb = seatsB != null ? seatsB : 0;
-            if (sa != sb) {
-                return Integer.compare(sb, sa); // nhiều chỗ hơn trước
-            }
-            // Nếu cùng phân khúc, sort theo startTime tăng dần
-            return a.getStartTime().compareTo(b.getStartTime());
-        });
+        result.sort(Comparator
+                .comparing((PendingTripResponse p) -> p.getMaxSeats() != null ? p.getMaxSeats() : 0, Comparator.reverseOrder())
+                .thenComparing(PendingTripResponse::getStartTime));
         return result;
     }
 
@@ -201,57 +139,52 @@ public class DispatchServiceImpl implements DispatchService {
         Instant from = today.atStartOfDay(ZoneId.systemDefault()).toInstant();
         Instant to = today.plusDays(7).atStartOfDay(ZoneId.systemDefault()).toInstant(); // 7 ngày tới
 
-        // Lấy tất cả trips SCHEDULED và ASSIGNED trong khoảng thời gian
-        List<Trips> scheduledTrips = tripRepository.findByStatusAndStartTimeBetween(TripStatus.SCHEDULED, from, to);
-        List<Trips> assignedTrips = tripRepository.findByStatusAndStartTimeBetween(TripStatus.ASSIGNED, from, to);
+        // branchId = null -> tất cả chi nhánh; kết quả đã sắp theo startTime
+        return tripRepository.findPendingQueue(null, PENDING_TRIP_STATUSES, DISPATCHABLE_BOOKING_STATUSES, from, to);
+    }
 
+    /**
+     * Chỉ chạy khi bật dispatch.pending.debug: giải thích vì sao các trip trong khoảng thời gian
+     * không nằm trong hàng đợi (đã gán / booking không hợp lệ / chưa cọc). Tốn nhiều truy vấn, không bật ở production.
+     */
+    private void logPendingSkips(Integer branchId, Instant from, Instant to, List<PendingTripResponse> pending) {
+        Set<Integer> pendingIds = pending.stream().map(PendingTripResponse::getTripId).collect(Collectors.toSet());
         List<Trips> trips = new ArrayList<>();
-        trips.addAll(scheduledTrips);
-        trips.addAll(assignedTrips);
-
-        List<PendingTripResponse> result = new ArrayList<>();
+        trips.addAll(tripRepository.findByBooking_Branch_IdAndStatusAndStartTimeBetween(branchId, TripStatus.SCHEDULED, from, to));
+        trips.addAll(tripRepository.findByBooking_Branch_IdAndStatusAndStartTimeBetween(branchId, TripStatus.ASSIGNED, from, to));
 
         for (Trips t : trips) {
-            // Chỉ lấy các trip CHƯA gán driver và CHƯA gán vehicle
-            List<TripDrivers> tripDrivers = tripDriverRepository.findByTripId(t.getId());
-            List<TripVehicles> tripVehicles = tripVehicleRepository.findByTripId(t.getId());
-            if (!tripDrivers.isEmpty() || !tripVehicles.isEmpty()) {
-                continue;
-            }
-
+            if (pendingIds.contains(t.getId())) continue;
             Bookings b = t.getBooking();
-            if (!DISPATCHABLE_BOOKING_STATUSES.contains(b.getStatus())) {
-                continue;
-            }
-
-            // CHỈ HIỂN THỊ CÁC TRIPS CÓ BOOKING ĐÃ ĐẶT CỌC
-            if (!hasDepositPaid(b)) {
-                log.debug("[Dispatch] Skipping trip {} - booking {} has no confirmed deposit", t.getId(), b.getId());
-                continue;
+            if (!tripDriverRepository.findByTripId(t.getId()).isEmpty() || !tripVehicleRepository.findByTripId(t.getId()).isEmpty()) {
+                log.debug("[Dispatch] Skipping trip {} - already assigned", t.getId());
+            } else if (!DISPATCHABLE_BOOKING_STATUSES.contains(b.getStatus())) {
+                log.debug("[Dispatch] Skipping trip {} - booking {} has invalid status: {} (allowed: {})",
+                        t.getId(), b.getId(), b.getStatus(), DISPATCHABLE_BOOKING_STATUSES);
+            } else {
+                log.debug("[Dispatch] Skipping trip {} - booking {} has no confirmed deposit (booking status: {}, trip status: {})",
+                        t.getId(), b.getId(), b.getStatus(), t.getStatus());
+                var invoices = invoiceRepository.findByBooking_IdOrderByCreatedAtDesc(b.getId());
+                for (var inv : invoices) {
+                    var payments = paymentHistoryRepository.findByInvoice_IdOrderByPaymentDateDesc(inv.getId());
+                    long confirmedCount = payments.stream()
+                            .filter(p -> p.getConfirmationStatus() ==
+                                    org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED)
+                            .count();
+                    log.debug("[Dispatch]     Invoice {}: isDeposit={}, totalPayments={}, confirmedPayments={}",
+                            inv.getId(), Boolean.TRUE.equals(inv.getIsDeposit()), payments.size(), confirmedCount);
+                }
             }
-
-            result.add(PendingTripResponse.builder()
-                    .tripId(t.getId())
-                    .bookingId(b.getId())
-                    .branchId(b.getBranch().getId())
-                    .branchName(b.getBranch().getBranchName())
-                    .customerName(b.getCustomer().getFullName())
-                    .customerPhone(b.getCustomer().getPhone())
-                    .startTime(t.getStartTime())
-                    .endTime(t.getEndTime())
-                    .startLocation(t.getStartLocation())
-                    .endLocation(t.getEndLocation())
-                    .bookingStatus(b.getStatus())
-                    .build()
-            );
         }
-
-        result.sort(Comparator.comparing(PendingTripResponse::getStartTime));
-        return result;
     }
 
     @Override
     public org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse getAssignmentSuggestions(Integer tripId) {
+        return getAssignmentSuggestions(tripId, null);
+    }
+
+    @Override
+    public org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse getAssignmentSuggestions(Integer tripId, Integer topPairs) {
         log.info("[Dispatch] Getting assignment suggestions for trip {}", tripId);
 
         Trips trip = tripRepository.findById(tripId)
@@ -264,45 +197,16 @@ public class DispatchServiceImpl implements DispatchService {
         // Booking có thể có nhiều loại xe khác nhau (ví dụ: 1 xe 9 chỗ + 1 xe 45 chỗ)
         List<BookingVehicleDetails> bookingVehicles = bookingVehicleDetailsRepository.findByBookingId(booking.getId());
 
-        // Xác định trip này là trip thứ mấy trong booking (sắp xếp theo startTime hoặc ID)
         List<Trips> allBookingTrips = tripRepository.findByBooking_Id(booking.getId());
-        allBookingTrips.sort(Comparator.comparing((Trips t) -> t.getStartTime() != null ? t.getStartTime() : Instant.EPOCH)
-                .thenComparing(Trips::getId));
-
-        int tripIndex = -1;
-        for (int i = 0; i < allBookingTrips.size(); i++) {
-            if (allBookingTrips.get(i).getId().equals(trip.getId())) {
-                tripIndex = i;
-                break;
-            }
-        }
-
-        // Map loại xe cho trip này: expand quantity thành list categoryIds
-        List<Integer> requiredCategoryIds = new ArrayList<>();
-        if (bookingVehicles != null && !bookingVehicles.isEmpty()) {
-            for (BookingVehicleDetails bv : bookingVehicles) {
-                Integer catId = bv.getVehicleCategory() != null ? bv.getVehicleCategory().getId() : null;
-                int qty = bv.getQuantity() != null ? bv.getQuantity() : 1;
-                for (int q = 0; q < qty; q++) {
-                    if (catId != null) {
-                        requiredCategoryIds.add(catId);
-                    }
-                }
-            }
-        }
-
-        // Lấy categoryId cho trip này (nếu tripIndex hợp lệ)
-        Integer requiredCategoryId = (tripIndex >= 0 && tripIndex < requiredCategoryIds.size())
-                ? requiredCategoryIds.get(tripIndex)
-                : (requiredCategoryIds.isEmpty() ? null : requiredCategoryIds.get(0));
+        Integer requiredCategoryId = resolveRequiredCategoryId(trip, allBookingTrips, bookingVehicles);
 
         // Lấy vehicle type name để hiển thị
         String vehicleType = null;
-        if (requiredCategoryId != null) {
-            VehicleCategoryPricing category = vehicleCategoryRepository.findById(requiredCategoryId).orElse(null);
-            if (category != null) {
-                vehicleType = category.getCategoryName();
-            }
+        VehicleCategoryPricing requiredCategory = requiredCategoryId != null
+                ? vehicleCategoryRepository.findById(requiredCategoryId).orElse(null)
+                : null;
+        if (requiredCategory != null) {
+            vehicleType = requiredCategory.getCategoryName();
         }
         // Fallback: lấy loại đầu tiên nếu không map được
         if (vehicleType == null && bookingVehicles != null && !bookingVehicles.isEmpty()) {
@@ -329,15 +233,15 @@ public class DispatchServiceImpl implements DispatchService {
                         .build();
 
         // Get all drivers and vehicles in branch
-        List<Drivers> allDrivers = driverRepository.findByBranchId(branchId);
+        List<Drivers> allDrivers = driverRepository.findByBranchIdWithUser(branchId);
         log.info("[Dispatch] Found {} drivers in branch {} for trip {}", allDrivers.size(), branchId, trip.getId());
 
         // QUAN TRỌNG: Chỉ lấy xe đúng loại cho trip này
         List<Vehicles> allVehicles;
         if (requiredCategoryId != null) {
             allVehicles = vehicleRepository.filterVehicles(requiredCategoryId, branchId, VehicleStatus.AVAILABLE);
-            log.info("[Dispatch] Filtering vehicles by category {} for trip {} (trip index: {}), found {} vehicles",
-                    requiredCategoryId, trip.getId(), tripIndex, allVehicles.size());
+            log.info("[Dispatch] Filtering vehicles by category {} for trip {}, found {} vehicles",
+                    requiredCategoryId, trip.getId(), allVehicles.size());
         } else {
             allVehicles = vehicleRepository.findByBranch_IdAndStatus(branchId, VehicleStatus.AVAILABLE);
             log.warn("[Dispatch] No category mapping found for trip {}, using all available vehicles, found {}",
@@ -346,9 +250,13 @@ public class DispatchServiceImpl implements DispatchService {
 
         LocalDate tripDate = trip.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
 
+        // Nạp trước toàn bộ dữ liệu cần cho việc chấm điểm bằng một số truy vấn cố định (không phụ thuộc số tài xế/xe)
+        SuggestionContext ctx = prefetchSuggestionContext(trip, allBookingTrips, bookingVehicles,
+                requiredCategoryId, requiredCategory, allDrivers, tripDate);
+
         // Evaluate driver candidates with fairness scoring
         List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate> driverCandidates =
-                evaluateDriverCandidates(allDrivers, trip, tripDate);
+                evaluateDriverCandidates(allDrivers, trip, tripDate, ctx);
 
         long eligibleCount = driverCandidates.stream().filter(d -> d.isEligible()).count();
         log.info("[Dispatch] Evaluated {} drivers, {} eligible for trip {}",
@@ -360,11 +268,11 @@ public class DispatchServiceImpl implements DispatchService {
 
         // Evaluate vehicle candidates - chỉ lấy xe đúng loại
         List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate> vehicleCandidates =
-                evaluateVehicleCandidates(allVehicles, trip, requiredCategoryId);
+                evaluateVehicleCandidates(allVehicles, trip, ctx);
 
         // Build pair suggestions (top eligible combinations)
         List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion> pairSuggestions =
-                buildPairSuggestions(driverCandidates, vehicleCandidates);
+                buildPairSuggestions(driverCandidates, vehicleCandidates, topPairs);
 
         // Recommend best pair
         Integer recommendedDriverId = null;
@@ -386,175 +294,11 @@ public class DispatchServiceImpl implements DispatchService {
     }
 
     private List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate>
-    evaluateDriverCandidates(List<Drivers> drivers, Trips trip, LocalDate tripDate) {
-
-        List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate> candidates = new ArrayList<>();
-
-        // Lấy customerId từ booking
-        Integer customerId = trip.getBooking() != null && trip.getBooking().getCustomer() != null
-                ? trip.getBooking().getCustomer().getId()
-                : null;
-
-        for (Drivers d : drivers) {
-            // Kiểm tra lịch sử chuyến đi với khách hàng này
-            boolean hasHistoryWithCustomer = false;
-            if (customerId != null) {
-                // Tìm các chuyến đã hoàn thành của tài xế này với khách hàng
-                List<TripDrivers> driverTrips = tripDriverRepository.findAllByDriverId(d.getId());
-                hasHistoryWithCustomer = driverTrips.stream().anyMatch(td -> {
-                    Trips t = td.getTrip();
-                    if (t.getStatus() != TripStatus.COMPLETED) return false;
-                    if (t.getBooking() == null || t.getBooking().getCustomer() == null) return false;
-                    return t.getBooking().getCustomer().getId().equals(customerId);
-                });
-            }
-            List<String> reasons = new ArrayList<>();
-            boolean eligible = true;
-            int score = 0;
-
-            // 1) Check day-off (nghỉ phép)
-            boolean dayOff = !driverDayOffRepository
-                    .findApprovedDayOffOnDate(d.getId(), DriverDayOffStatus.APPROVED, tripDate)
-                    .isEmpty();
-            if (dayOff) {
-                eligible = false;
-                reasons.add("Đang nghỉ phép");
-            } else {
-                reasons.add("Không nghỉ phép");
-            }
-
-            // 2) Check license expiry
-            if (d.getLicenseExpiry() != null && d.getLicenseExpiry().isBefore(tripDate)) {
-                eligible = false;
-                reasons.add("Bằng lái hết hạn");
-            } else {
-                reasons.add("Bằng lái còn hạn");
-            }
-
-            // 3) Check license class vs vehicle capacity
-            // Hạng D: Lái xe từ 10-30 chỗ
-            // Hạng E: Lái xe trên 30 chỗ
-            // Hạng B1/B2: Lái xe dưới 9 chỗ
-            Integer maxSeatsRequired = getMaxSeatsFromBooking(trip.getBooking());
-            String licenseClass = d.getLicenseClass() != null ? d.getLicenseClass().toUpperCase() : "";
-            boolean licenseClassValid = isLicenseClassValidForSeats(licenseClass, maxSeatsRequired);
-            if (!licenseClassValid) {
-                eligible = false;
-                reasons.add(String.format("Bằng %s không đủ hạng cho xe %d chỗ", licenseClass, maxSeatsRequired));
-            } else {
-                reasons.add(String.format("Bằng %s phù hợp xe %d chỗ", licenseClass, maxSeatsRequired != null ? maxSeatsRequired : 0));
-            }
-
-            // 4) Check if driver already assigned to another trip in the same booking
-            // Rule: Mỗi trip trong cùng booking phải có tài xế khác nhau
-            Bookings booking = trip.getBooking();
-            if (booking != null) {
-                List<Trips> allBookingTrips = tripRepository.findByBooking_Id(booking.getId());
-                boolean alreadyAssignedToOtherTrip = allBookingTrips.stream()
-                        .filter(t -> !t.getId().equals(trip.getId())) // Bỏ qua trip hiện tại
-                        .anyMatch(otherTrip -> {
-                            List<TripDrivers> otherTripDrivers = tripDriverRepository.findByTripId(otherTrip.getId());
-                            return otherTripDrivers.stream()
-                                    .anyMatch(td -> td.getDriver() != null && td.getDriver().getId().equals(d.getId()));
-                        });
-
-                if (alreadyAssignedToOtherTrip) {
-                    eligible = false;
-                    reasons.add("Đã được gán cho chuyến khác trong cùng đơn hàng");
-                } else {
-                    reasons.add("Chưa được gán cho chuyến khác trong đơn hàng này");
-                }
-            }
-
-            // 5) Check time overlap
-            List<TripDrivers> driverTrips = tripDriverRepository.findAllByDriverId(d.getId());
-            boolean overlap = driverTrips.stream().anyMatch(td -> {
-                Trips t = td.getTrip();
-                if (t.getId().equals(trip.getId())) return false;
-                if (t.getStatus() == TripStatus.CANCELLED || t.getStatus() == TripStatus.COMPLETED) return false;
-                Instant s1 = t.getStartTime();
-                Instant e1 = t.getEndTime();
-                Instant s2 = trip.getStartTime();
-                Instant e2 = trip.getEndTime();
-                if (s1 == null || e1 == null || s2 == null || e2 == null) return false;
-                return s1.isBefore(e2) && s2.isBefore(e1);
-            });
-            if (overlap) {
-                eligible = false;
-                reasons.add("Trùng giờ với chuyến khác");
-            } else {
-                reasons.add("Rảnh tại thời điểm này");
-            }
-
-            // 6) Fairness scoring: số chuyến trong ngày
-            long tripsToday = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return dDate.equals(tripDate);
-            }).count();
-
-            // 7) Fairness: số chuyến trong tuần
-            LocalDate weekStart = tripDate.minusDays(tripDate.getDayOfWeek().getValue() - 1);
-            LocalDate weekEnd = weekStart.plusDays(6);
-            long tripsThisWeek = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !dDate.isBefore(weekStart) && !dDate.isAfter(weekEnd);
-            }).count();
-
-            // 8) Fairness: mức độ được gán gần đây (recent assignment)
-            long recentAssignments = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !dDate.isBefore(tripDate.minusDays(3)); // 3 ngày gần đây
-            }).count();
-
-            // Calculate fairness score (lower is better)
-            // Trọng số: ngày (40%), tuần (30%), gần đây (30%)
-            score = (int) (tripsToday * 40 + tripsThisWeek * 30 + recentAssignments * 30);
-
-            if (eligible) {
-                // Thêm thông tin lịch sử với khách hàng
-                if (hasHistoryWithCustomer) {
-                    reasons.add("✓ Đã từng phục vụ khách hàng này");
-                }
-
-                reasons.add(String.format("Số chuyến hôm nay: %d", tripsToday));
-                reasons.add(String.format("Số chuyến tuần này: %d", tripsThisWeek));
-                reasons.add(String.format("Số chuyến 3 ngày gần: %d", recentAssignments));
-                if (score == 0) {
-                    reasons.add("Điểm: 0 (chưa có chuyến nào - ưu tiên cao)");
-                } else {
-                    reasons.add(String.format("Điểm công bằng: %d (thấp = ưu tiên)", score));
-                }
+    evaluateDriverCandidates(List<Drivers> drivers, Trips trip, LocalDate tripDate, SuggestionContext ctx) {
 
-                // Chỉ hiển thị rating nếu có lịch sử với khách hàng
-                if (hasHistoryWithCustomer && d.getRating() != null && d.getRating().compareTo(BigDecimal.ZERO) > 0) {
-                    reasons.add(String.format("Đánh giá: %.1f⭐", d.getRating().doubleValue()));
-                }
-            }
-
-            String driverName = extractDriverName(d);
-            String phone = d.getEmployee() != null && d.getEmployee().getUser() != null
-                    ? d.getEmployee().getUser().getPhone() : null;
-
-            candidates.add(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate.builder()
-                    .id(d.getId())
-                    .name(driverName)
-                    .phone(phone)
-                    .branchName(d.getBranch() != null ? d.getBranch().getBranchName() : null)
-                    .licenseClass(d.getLicenseClass())
-                    .rating(d.getRating())
-                    .tripsToday((int) tripsToday)
-                    .score(score)
-                    .eligible(eligible)
-                    .reasons(reasons)
-                    .hasHistoryWithCustomer(hasHistoryWithCustomer)
-                    .build());
-        }
+        // Mỗi tài xế được chấm độc lập; kết quả giữ thứ tự đầu vào nên sắp xếp bên dưới cho kết quả ổn định
+        List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate> candidates =
+                candidateScoringExecutor.map(drivers, d -> evaluateDriver(d, trip, tripDate, ctx));
 
         // Sort: eligible first, then by score (ascending)
         candidates.sort((a, b) -> {
@@ -576,168 +320,139 @@ public class DispatchServiceImpl implements DispatchService {
         return candidates;
     }
 
-    private List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate>
-    evaluateVehicleCandidates(List<Vehicles> vehicles, Trips trip, Integer requiredCategoryId) {
-
-        List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate> candidates = new ArrayList<>();
-
-        // QUAN TRỌNG: Lấy số ghế yêu cầu từ category của trip này, không phải max của booking
-        Integer requiredSeats = null;
-        if (requiredCategoryId != null) {
-            VehicleCategoryPricing category = vehicleCategoryRepository.findById(requiredCategoryId).orElse(null);
-            if (category != null && category.getSeats() != null) {
-                requiredSeats = category.getSeats();
-            }
-        }
-        // Fallback: nếu không có category, lấy max từ booking
-        if (requiredSeats == null) {
-            requiredSeats = getMaxSeatsFromBooking(trip.getBooking());
+    private org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate
+    evaluateDriver(Drivers d, Trips trip, LocalDate tripDate, SuggestionContext ctx) {
+        Integer maxSeatsRequired = ctx.maxSeatsRequired;
+
+        // Kiểm tra lịch sử chuyến đi với khách hàng này (đã hoàn thành)
+        boolean hasHistoryWithCustomer = ctx.driverIdsWithCustomerHistory.contains(d.getId());
+        List<String> reasons = new ArrayList<>();
+        boolean eligible = true;
+        int score = 0;
+
+        // 1) Check day-off (nghỉ phép)
+        boolean dayOff = ctx.dayOffDriverIds.contains(d.getId());
+        if (dayOff) {
+            eligible = false;
+            reasons.add("Đang nghỉ phép");
+        } else {
+            reasons.add("Không nghỉ phép");
         }
 
-        // QUAN TRỌNG: Lấy danh sách xe đã được gán cho trips khác trong cùng booking
-        // Mỗi trip trong cùng booking phải có xe riêng
-        Bookings booking = trip.getBooking();
-        Set<Integer> bookedVehicleIds = new java.util.HashSet<>();
-        if (booking != null) {
-            List<Trips> allBookingTrips = tripRepository.findByBooking_Id(booking.getId());
-            for (Trips otherTrip : allBookingTrips) {
-                if (otherTrip.getId().equals(trip.getId())) continue; // Bỏ qua trip hiện tại
-                List<TripVehicles> otherTripVehicles = tripVehicleRepository.findByTripId(otherTrip.getId());
-                for (TripVehicles tv : otherTripVehicles) {
-                    if (tv.getVehicle() != null) {
-                        bookedVehicleIds.add(tv.getVehicle().getId());
-                    }
-                }
-            }
+        // 2) Check license expiry
+        if (d.getLicenseExpiry() != null && d.getLicenseExpiry().isBefore(tripDate)) {
+            eligible = false;
+            reasons.add("Bằng lái hết hạn");
+        } else {
+            reasons.add("Bằng lái còn hạn");
+        }
+
+        // 3) Check license class vs vehicle capacity
+        // Hạng D: Lái xe từ 10-30 chỗ
+        // Hạng E: Lái xe trên 30 chỗ
+        // Hạng B1/B2: Lái xe dưới 9 chỗ
+        String licenseClass = d.getLicenseClass() != null ? d.getLicenseClass().toUpperCase() : "";
+        boolean licenseClassValid = isLicenseClassValidForSeats(licenseClass, maxSeatsRequired);
+        if (!licenseClassValid) {
+            eligible = false;
+            reasons.add(String.format("Bằng %s không đủ hạng cho xe %d chỗ", licenseClass, maxSeatsRequired));
+        } else {
+            reasons.add(String.format("Bằng %s phù hợp xe %d chỗ", licenseClass, maxSeatsRequired != null ? maxSeatsRequired : 0));
         }
 
-        for (Vehicles v : vehicles) {
-            List<String> reasons = new ArrayList<>();
-            boolean eligible = true;
-            int score = 0;
-
-            // 1) Check status
-            if (v.getStatus() != VehicleStatus.AVAILABLE) {
-                eligible = false;
-                reasons.add("Xe không sẵn sàng: " + v.getStatus());
-            } else {
-                reasons.add("Xe sẵn sàng");
-            }
+        // 4) Check if driver already assigned to another trip in the same booking
+        // Rule: Mỗi trip trong cùng booking phải có tài xế khác nhau
+        if (trip.getBooking() != null) {
+            boolean alreadyAssignedToOtherTrip = ctx.siblingDriverIds.contains(d.getId());
 
-            // 2) QUAN TRỌNG: Không chọn xe đã được gán cho trips khác trong cùng booking
-            // Mỗi trip trong cùng booking phải có xe riêng
-            if (bookedVehicleIds.contains(v.getId())) {
+            if (alreadyAssignedToOtherTrip) {
                 eligible = false;
                 reasons.add("Đã được gán cho chuyến khác trong cùng đơn hàng");
             } else {
                 reasons.add("Chưa được gán cho chuyến khác trong đơn hàng này");
             }
+        }
 
-            // 2.5) QUAN TRỌNG: Chỉ chọn xe đúng loại (category) với trip này
-            // Ví dụ: Trip cần xe 9 chỗ → chỉ gợi ý xe có category "Xe 9 chỗ", không gợi ý xe 45 chỗ
-            if (requiredCategoryId != null) {
-                VehicleCategoryPricing vehicleCategory = v.getCategory();
-                if (vehicleCategory == null || !vehicleCategory.getId().equals(requiredCategoryId)) {
-                    eligible = false;
-                    String vehicleCategoryName = vehicleCategory != null ? vehicleCategory.getCategoryName() : "N/A";
-                    VehicleCategoryPricing requiredCategory = vehicleCategoryRepository.findById(requiredCategoryId).orElse(null);
-                    String requiredCategoryName = requiredCategory != null ? requiredCategory.getCategoryName() : "ID " + requiredCategoryId;
-                    reasons.add(String.format("Không đúng loại xe: xe này là '%s', cần '%s'", vehicleCategoryName, requiredCategoryName));
-                } else {
-                    reasons.add("Đúng loại xe yêu cầu");
-                }
-            }
+        // 5) Check time overlap (tra chỉ mục lịch bận theo chi nhánh, không quét lịch sử chuyến)
+        boolean overlap = occupancyIndexService
+                .findDriverOverlaps(branchIdOf(d), d.getId(), trip.getStartTime(), trip.getEndTime())
+                .stream()
+                .anyMatch(slot -> !slot.getTripId().equals(trip.getId()));
+        if (overlap) {
+            eligible = false;
+            reasons.add("Trùng giờ với chuyến khác");
+        } else {
+            reasons.add("Rảnh tại thời điểm này");
+        }
 
-            // 3) Check time overlap với các trips khác (ngoài cùng booking)
-            // IMPORTANT: dùng "busy-until" ước lượng theo distance + vận tốc trung bình + buffer
-            if (trip.getStartTime() == null) {
-                eligible = false;
-                reasons.add("Thiếu thời gian khởi hành");
-            } else {
-                final Instant targetStart = trip.getStartTime();
-                Instant targetBusyUntilTmp = tripOccupancyService.computeBusyUntil(
-                        trip.getBooking() != null && trip.getBooking().getHireType() != null ? trip.getBooking().getHireType().getCode() : null,
-                        trip.getStartTime(),
-                        trip.getEndTime(),
-                        trip.getDistance() != null ? trip.getDistance().doubleValue() : null,
-                        trip.getStartLocation(),
-                        trip.getEndLocation()
-                );
-                final Instant targetBusyUntil = targetBusyUntilTmp != null ? targetBusyUntilTmp : targetStart.plusSeconds(3600);
-
-                List<TripVehicles> vehicleTrips = tripVehicleRepository.findAllByVehicleId(v.getId());
-                boolean busy = vehicleTrips.stream().anyMatch(tv -> {
-                    Trips other = tv.getTrip();
-                    if (other == null || other.getBooking() == null) return false;
-                    if (other.getStatus() == TripStatus.CANCELLED || other.getStatus() == TripStatus.COMPLETED) return false;
-                    if (other.getId().equals(trip.getId())) return false;
-                    // Nếu cùng booking thì đã bị chặn ở bước 2) nên không cần tính overlap ở đây
-                    if (trip.getBooking() != null && other.getBooking().getId().equals(trip.getBooking().getId())) return false;
-                    if (other.getStartTime() == null) return true;
-
-                    Instant otherBusyUntil = tripOccupancyService.computeBusyUntil(
-                            other.getBooking().getHireType() != null ? other.getBooking().getHireType().getCode() : null,
-                            other.getStartTime(),
-                            other.getEndTime(),
-                            other.getDistance() != null ? other.getDistance().doubleValue() : null,
-                            other.getStartLocation(),
-                            other.getEndLocation()
-                    );
-                    if (otherBusyUntil == null) return true;
-                    return other.getStartTime().isBefore(targetBusyUntil) && targetStart.isBefore(otherBusyUntil);
-                });
+        // 6) Fairness scoring: số chuyến trong ngày / trong tuần / 3 ngày gần đây (tra sổ khối lượng công việc)
+        DriverWorkloadService.Workload workload = driverWorkloadService.getWorkload(d.getId(), tripDate);
+        long tripsToday = workload.getTripsToday();
+        long tripsThisWeek = workload.getTripsThisWeek();
+        long recentAssignments = workload.getRecentAssignments();
 
-                if (busy) {
-                    eligible = false;
-                    reasons.add("Trùng lịch (ước lượng theo km/vận tốc)");
-                } else {
-                    reasons.add("Rảnh tại thời điểm này (ước lượng theo km/vận tốc)");
-                }
-            }
+        // Calculate fairness score (lower is better)
+        score = fairnessScore(tripsToday, tripsThisWeek, recentAssignments);
 
-            // 4) Check capacity vs required seats của trip này (từ category, không phải max của booking)
-            Integer capacity = v.getCapacity();
-            if (requiredSeats != null && requiredSeats > 0 && capacity != null) {
-                if (capacity < requiredSeats) {
-                    eligible = false;
-                    reasons.add(String.format("Sức chứa %d chỗ < yêu cầu %d chỗ của chuyến này", capacity, requiredSeats));
-                } else {
-                    reasons.add(String.format("Đủ sức chứa: %d/%d chỗ", capacity, requiredSeats));
-                }
+        if (eligible) {
+            // Thêm thông tin lịch sử với khách hàng
+            if (hasHistoryWithCustomer) {
+                reasons.add("✓ Đã từng phục vụ khách hàng này");
             }
 
-            // 5) Score based on capacity (ưu tiên xe có sức chứa gần với yêu cầu, tránh dùng xe lớn cho đơn nhỏ)
-            if (requiredSeats != null && requiredSeats > 0 && capacity != null && capacity >= requiredSeats) {
-                // Chênh lệch càng nhỏ thì điểm càng thấp (ưu tiên)
-                int diff = capacity - requiredSeats;
-                score = diff;
+            reasons.add(String.format("Số chuyến hôm nay: %d", tripsToday));
+            reasons.add(String.format("Số chuyến tuần này: %d", tripsThisWeek));
+            reasons.add(String.format("Số chuyến 3 ngày gần: %d", recentAssignments));
+            if (score == 0) {
+                reasons.add("Điểm: 0 (chưa có chuyến nào - ưu tiên cao)");
             } else {
-                score = 0; // fallback đơn giản
+                reasons.add(String.format("Điểm công bằng: %d (thấp = ưu tiên)", score));
             }
 
-            if (eligible) {
-                reasons.add("Đủ điều kiện gán");
+            // Chỉ hiển thị rating nếu có lịch sử với khách hàng
+            if (hasHistoryWithCustomer && d.getRating() != null && d.getRating().compareTo(BigDecimal.ZERO) > 0) {
+                reasons.add(String.format("Đánh giá: %.1f⭐", d.getRating().doubleValue()));
             }
+        }
 
-            // Lấy categoryName để frontend có thể filter
-            String categoryName = null;
-            VehicleCategoryPricing vehicleCategory = v.getCategory();
-            if (vehicleCategory != null) {
-                categoryName = vehicleCategory.getCategoryName();
-            }
-
-            candidates.add(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate.builder()
-                    .id(v.getId())
-                    .plate(v.getLicensePlate())
-                    .model(v.getModel())
-                    .capacity(v.getCapacity())
-                    .status(v.getStatus())
-                    .score(score)
-                    .eligible(eligible)
-                    .reasons(reasons)
-                    .categoryName(categoryName)
-                    .build());
+        String driverName = extractDriverName(d);
+        String phone = d.getEmployee() != null && d.getEmployee().getUser() != null
+                ? d.getEmployee().getUser().getPhone() : null;
+
+        return org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate.builder()
+                .id(d.getId())
+                .name(driverName)
+                .phone(phone)
+                .branchName(d.getBranch() != null ? d.getBranch().getBranchName() : null)
+                .licenseClass(d.getLicenseClass())
+                .rating(d.getRating())
+                .tripsToday((int) tripsToday)
+                .score(score)
+                .eligible(eligible)
+                .reasons(reasons)
+                .hasHistoryWithCustomer(hasHistoryWithCustomer)
+                .build();
+    }
+
+    private List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate>
+    evaluateVehicleCandidates(List<Vehicles> vehicles, Trips trip, SuggestionContext ctx) {
+
+        // QUAN TRỌNG: Lấy số ghế yêu cầu từ category của trip này, không phải max của booking
+        Integer requiredSeats = ctx.requiredCategory != null ? ctx.requiredCategory.getSeats() : null;
+        // Fallback: nếu không có category, lấy max từ booking
+        if (requiredSeats == null) {
+            requiredSeats = ctx.maxSeatsRequired;
         }
+        final Integer seats = requiredSeats;
+
+        // busy-until của chuyến đang xét không phụ thuộc xe nên chỉ tính một lần
+        Instant targetBusyUntilTmp = tripOccupancyService.computeBusyUntil(trip);
+
+        // Nạp category trên luồng hiện tại: khi chấm song song, luồng khác không được dùng session Hibernate
+        vehicles.forEach(v -> Hibernate.initialize(v.getCategory()));
+
+        List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate> candidates =
+                candidateScoringExecutor.map(vehicles, v -> evaluateVehicle(v, trip, ctx, seats, targetBusyUntilTmp));
 
         // Sort: eligible first, then by score (ít dư sức chứa hơn được ưu tiên)
         candidates.sort((a, b) -> {
@@ -750,150 +465,165 @@ public class DispatchServiceImpl implements DispatchService {
         return candidates;
     }
 
-    private List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion>
-    buildPairSuggestions(
-            List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate> drivers,
-            List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate> vehicles) {
-
-        List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion> pairs = new ArrayList<>();
-
-        // Only pair eligible candidates
-        var eligibleDrivers = drivers.stream().filter(d -> d.isEligible()).limit(5).collect(Collectors.toList());
-        var eligibleVehicles = vehicles.stream().filter(v -> v.isEligible()).limit(5).collect(Collectors.toList());
-
-        for (var driver : eligibleDrivers) {
-            for (var vehicle : eligibleVehicles) {
-                int pairScore = driver.getScore() + vehicle.getScore();
-                List<String> pairReasons = new ArrayList<>();
-                pairReasons.add(String.format("Tài xế: %s (điểm: %d)", driver.getName(), driver.getScore()));
-                pairReasons.add(String.format("Xe: %s (điểm: %d)", vehicle.getPlate(), vehicle.getScore()));
-                pairReasons.add(String.format("Tổng điểm: %d", pairScore));
-
-                pairs.add(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion.builder()
-                        .driver(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverBrief.builder()
-                                .id(driver.getId())
-                                .name(driver.getName())
-                                .phone(driver.getPhone())
-                                .hasHistoryWithCustomer(driver.getHasHistoryWithCustomer())
-                                .build())
-                        .vehicle(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleBrief.builder()
-                                .id(vehicle.getId())
-                                .plate(vehicle.getPlate())
-                                .model(vehicle.getModel())
-                                .build())
-                        .score(pairScore)
-                        .reasons(pairReasons)
-                        .build());
-            }
-        }
+    private org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate
+    evaluateVehicle(Vehicles v, Trips trip, SuggestionContext ctx, Integer requiredSeats, Instant targetBusyUntilTmp) {
+        Integer requiredCategoryId = ctx.requiredCategoryId;
+        // QUAN TRỌNG: Danh sách xe đã được gán cho trips khác trong cùng booking
+        // Mỗi trip trong cùng booking phải có xe riêng
+        Set<Integer> bookedVehicleIds = ctx.siblingVehicleIds;
 
-        // Sort by score (ascending - lower is better)
-        pairs.sort(Comparator.comparingInt(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion::getScore));
+        List<String> reasons = new ArrayList<>();
+        boolean eligible = true;
+        int score = 0;
 
-        // Return top 10 suggestions
-        return pairs.stream().limit(10).collect(Collectors.toList());
-    }
-
-    @Override
-    public DispatchDashboardResponse getDashboard(Integer branchId, LocalDate date) {
-        log.info("[Dispatch] ===== getDashboard START - branchId: {}, date: {} =====", branchId, date);
+        // 1) Check status
+        if (v.getStatus() != VehicleStatus.AVAILABLE) {
+            eligible = false;
+            reasons.add("Xe không sẵn sàng: " + v.getStatus());
+        } else {
+            reasons.add("Xe sẵn sàng");
+        }
 
-        if (branchId == null) {
-            log.error("[Dispatch] BranchId is null!");
-            throw new IllegalArgumentException("Mã chi nhánh là bắt buộc");
+        // 2) QUAN TRỌNG: Không chọn xe đã được gán cho trips khác trong cùng booking
+        // Mỗi trip trong cùng booking phải có xe riêng
+        if (bookedVehicleIds.contains(v.getId())) {
+            eligible = false;
+            reasons.add("Đã được gán cho chuyến khác trong cùng đơn hàng");
+        } else {
+            reasons.add("Chưa được gán cho chuyến khác trong đơn hàng này");
         }
 
-        Instant from;
-        Instant to;
-        LocalDate targetDate;
+        // 2.5) QUAN TRỌNG: Chỉ chọn xe đúng loại (category) với trip này
+        // Ví dụ: Trip cần xe 9 chỗ → chỉ gợi ý xe có category "Xe 9 chỗ", không gợi ý xe 45 chỗ
+        if (requiredCategoryId != null) {
+            VehicleCategoryPricing vehicleCategory = v.getCategory();
+            if (vehicleCategory == null || !vehicleCategory.getId().equals(requiredCategoryId)) {
+                eligible = false;
+                String vehicleCategoryName = vehicleCategory != null ? vehicleCategory.getCategoryName() : "N/A";
+                String requiredCategoryName = ctx.requiredCategory != null ? ctx.requiredCategory.getCategoryName() : "ID " + requiredCategoryId;
+                reasons.add(String.format("Không đúng loại xe: xe này là '%s', cần '%s'", vehicleCategoryName, requiredCategoryName));
+            } else {
+                reasons.add("Đúng loại xe yêu cầu");
+            }
+        }
 
-        if (date != null) {
-            // Nếu có date cụ thể: lấy trong ngày đó
-            targetDate = date;
-            from = targetDate.atStartOfDay(DEFAULT_ZONE).toInstant();
-            to = targetDate.plusDays(1).atStartOfDay(DEFAULT_ZONE).toInstant();
-            log.info("[Dispatch] getDashboard - Using specific date: {} (from {} to {})", targetDate, from, to);
+        // 3) Check time overlap với các trips khác (ngoài cùng booking)
+        // IMPORTANT: dùng "busy-until" ước lượng theo distance + vận tốc trung bình + buffer
+        if (trip.getStartTime() == null) {
+            eligible = false;
+            reasons.add("Thiếu thời gian khởi hành");
         } else {
-            // Nếu không có date: lấy từ hiện tại đến tương lai (1 năm)
-            // Bắt đầu từ đầu ngày hôm nay để bao gồm các chuyến trong ngày
-            targetDate = LocalDate.now(DEFAULT_ZONE);
-            from = targetDate.atStartOfDay(DEFAULT_ZONE).toInstant();
-            to = targetDate.plusYears(1).atStartOfDay(DEFAULT_ZONE).toInstant();
-            log.info("[Dispatch] getDashboard - Loading trips from {} (start of today) to {} (1 year future)", from, to);
-        }
-
-        log.info("[Dispatch] getDashboard - Querying trips for branch {} from {} to {}", branchId, from, to);
-
-        // Debug: Kiểm tra tổng số trips trong khoảng thời gian (không filter status)
-        List<Trips> allTripsInRange = tripRepository.findByBooking_Branch_IdAndStartTimeBetween(branchId, from, to);
-        log.info("[Dispatch] getDashboard - Found {} total trips in time range (any status)", allTripsInRange.size());
-        if (!allTripsInRange.isEmpty()) {
-            log.info("[Dispatch] getDashboard - Trip statuses breakdown:");
-            Map<TripStatus, Long> statusCount = allTripsInRange.stream()
-                    .collect(Collectors.groupingBy(Trips::getStatus, Collectors.counting()));
-            statusCount.forEach((status, count) ->
-                    log.info("[Dispatch]   - {}: {} trips", status, count));
-        }
-
-        List<PendingTripResponse> pending = getPendingTrips(branchId, from, to);
-        List<Drivers> drivers = driverRepository.findByBranchId(branchId);
-        List<Vehicles> vehicles = vehicleRepository.filterVehicles(null, branchId, null);
-        if (vehicles == null) {
-            vehicles = new ArrayList<>();
-        }
-        List<Trips> tripsInDay = tripRepository.findByBooking_Branch_IdAndStartTimeBetween(branchId, from, to);
-
-        // ===== THỐNG KÊ =====
-        int pendingCount = 0;
-        int assignedCount = 0;
-        int cancelledCount = 0;
-        int completedCount = 0;
-        int inProgressCount = 0;
-
-        for (Trips trip : tripsInDay) {
-            TripStatus status = trip.getStatus();
-            if (status == TripStatus.CANCELLED) {
-                cancelledCount++;
-            } else if (status == TripStatus.COMPLETED) {
-                completedCount++;
-            } else if (status == TripStatus.ONGOING) {
-                inProgressCount++;
-            } else if (status == TripStatus.SCHEDULED) {
-                // Kiểm tra đã gán driver/vehicle chưa
-                List<TripDrivers> td = tripDriverRepository.findByTripId(trip.getId());
-                List<TripVehicles> tv = tripVehicleRepository.findByTripId(trip.getId());
-                if (td.isEmpty() && tv.isEmpty()) {
-                    pendingCount++;
-                } else {
-                    assignedCount++;
-                }
+            final Instant targetStart = trip.getStartTime();
+            final Instant targetBusyUntil = targetBusyUntilTmp != null ? targetBusyUntilTmp : targetStart.plusSeconds(3600);
+
+            // Nếu cùng booking thì đã bị chặn ở bước 2) nên không cần tính overlap ở đây
+            Integer bookingId = trip.getBooking() != null ? trip.getBooking().getId() : null;
+            boolean busy = occupancyIndexService
+                    .findVehicleOverlaps(branchIdOf(v), v.getId(), targetStart, targetBusyUntil)
+                    .stream()
+                    .anyMatch(slot -> !slot.getTripId().equals(trip.getId())
+                            && (bookingId == null || !bookingId.equals(slot.getBookingId())));
+
+            if (busy) {
+                eligible = false;
+                reasons.add("Trùng lịch (ước lượng theo km/vận tốc)");
+            } else {
+                reasons.add("Rảnh tại thời điểm này (ước lượng theo km/vận tốc)");
             }
         }
-        // ===== END THỐNG KÊ =====
 
-        Map<Integer, List<TripDrivers>> tripDriverMap = new HashMap<>();
-        Map<Integer, List<TripVehicles>> tripVehicleMap = new HashMap<>();
+        // 4) Check capacity vs required seats của trip này (từ category, không phải max của booking)
+        Integer capacity = v.getCapacity();
+        if (requiredSeats != null && requiredSeats > 0 && capacity != null) {
+            if (capacity < requiredSeats) {
+                eligible = false;
+                reasons.add(String.format("Sức chứa %d chỗ < yêu cầu %d chỗ của chuyến này", capacity, requiredSeats));
+            } else {
+                reasons.add(String.format("Đủ sức chứa: %d/%d chỗ", capacity, requiredSeats));
+            }
+        }
 
-        List<DispatchDashboardResponse.DriverScheduleItem> driverSchedules = drivers.stream()
-                .map(driver -> buildDriverSchedule(driver, tripsInDay, tripDriverMap, targetDate))
-                .collect(Collectors.toList());
+        // 5) Score based on capacity (ưu tiên xe có sức chứa gần với yêu cầu, tránh dùng xe lớn cho đơn nhỏ)
+        if (requiredSeats != null && requiredSeats > 0 && capacity != null && capacity >= requiredSeats) {
+            // Chênh lệch càng nhỏ thì điểm càng thấp (ưu tiên)
+            int diff = capacity - requiredSeats;
+            score = diff;
+        } else {
+            score = 0; // fallback đơn giản
+        }
 
-        List<DispatchDashboardResponse.VehicleScheduleItem> vehicleSchedules = vehicles.stream()
-                .map(vehicle -> buildVehicleSchedule(vehicle, tripsInDay, tripVehicleMap, targetDate))
-                .collect(Collectors.toList());
+        if (eligible) {
+            reasons.add("Đủ điều kiện gán");
+        }
+
+        // Lấy categoryName để frontend có thể filter
+        String categoryName = null;
+        VehicleCategoryPricing vehicleCategory = v.getCategory();
+        if (vehicleCategory != null) {
+            categoryName = vehicleCategory.getCategoryName();
+        }
 
-        return DispatchDashboardResponse.builder()
-                .pendingCount(pendingCount)
-                .assignedCount(assignedCount)
-                .cancelledCount(cancelledCount)
-                .completedCount(completedCount)
-                .inProgressCount(inProgressCount)
-                .pendingTrips(pending)
-                .driverSchedules(driverSchedules)
-                .vehicleSchedules(vehicleSchedules)
+        return org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate.builder()
+                .id(v.getId())
+                .plate(v.getLicensePlate())
+                .model(v.getModel())
+                .capacity(v.getCapacity())
+                .status(v.getStatus())
+                .score(score)
+                .eligible(eligible)
+                .reasons(reasons)
+                .categoryName(categoryName)
                 .build();
     }
 
+    private List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion>
+    buildPairSuggestions(
+            List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverCandidate> drivers,
+            List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleCandidate> vehicles,
+            Integer topPairs) {
+
+        int k = topPairs == null || topPairs <= 0 ? DEFAULT_TOP_PAIRS : Math.min(topPairs, MAX_TOP_PAIRS);
+
+        // Only pair eligible candidates (đã sắp theo điểm tăng dần nên tổng điểm tăng theo cả hai chiều)
+        var eligibleDrivers = drivers.stream().filter(d -> d.isEligible()).collect(Collectors.toList());
+        var eligibleVehicles = vehicles.stream().filter(v -> v.isEligible()).collect(Collectors.toList());
+
+        // Top K trên toàn bộ tài xế × xe hợp lệ, không tạo đối tượng cho các cặp bị loại
+        List<int[]> best = TopKPairs.select(
+                eligibleDrivers.stream().mapToInt(d -> d.getScore()).toArray(),
+                eligibleVehicles.stream().mapToInt(v -> v.getScore()).toArray(),
+                k);
+
+        List<org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion> pairs = new ArrayList<>(best.size());
+        for (int[] pair : best) {
+            var driver = eligibleDrivers.get(pair[0]);
+            var vehicle = eligibleVehicles.get(pair[1]);
+            int pairScore = driver.getScore() + vehicle.getScore();
+            // Chỉ dựng chuỗi lý do cho các cặp được trả về
+            List<String> pairReasons = new ArrayList<>();
+            pairReasons.add(String.format("Tài xế: %s (điểm: %d)", driver.getName(), driver.getScore()));
+            pairReasons.add(String.format("Xe: %s (điểm: %d)", vehicle.getPlate(), vehicle.getScore()));
+            pairReasons.add(String.format("Tổng điểm: %d", pairScore));
+
+            pairs.add(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.PairSuggestion.builder()
+                    .driver(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.DriverBrief.builder()
+                            .id(driver.getId())
+                            .name(driver.getName())
+                            .phone(driver.getPhone())
+                            .hasHistoryWithCustomer(driver.getHasHistoryWithCustomer())
+                            .build())
+                    .vehicle(org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse.VehicleBrief.builder()
+                            .id(vehicle.getId())
+                            .plate(vehicle.getPlate())
+                            .model(vehicle.getModel())
+                            .build())
+                    .score(pairScore)
+                    .reasons(pairReasons)
+                    .build());
+        }
+        return pairs;
+    }
+
     // =========================================================
     // 2) ASSIGN (Manual + Auto)
     // =========================================================
@@ -1312,6 +1042,7 @@ public class DispatchServiceImpl implements DispatchService {
                     log.info("[Dispatch] Assigned second driver {} to trip {}", secondDriver.getId(), tid);
                 }
             }
+            eventPublisher.publishEvent(new TripAssignmentChangedEvent(targetTripIds, AssignmentAction.ASSIGN));
         }
 
         // Build response cho FE
@@ -1473,6 +1204,8 @@ public class DispatchServiceImpl implements DispatchService {
             tripVehicleRepository.deleteAll(tvs);
         }
 
+        eventPublisher.publishEvent(new TripAssignmentChangedEvent(List.of(tripId), AssignmentAction.UNASSIGN));
+
         // Trạng thái trip vẫn là SCHEDULED, nằm lại trong Pending Queue
     }
 
@@ -1740,18 +1473,591 @@ public class DispatchServiceImpl implements DispatchService {
 
     @Override
     public List<TripListItemResponse> searchTrips(TripSearchRequest request) {
-        List<Trips> trips = tripRepository.findAll();
+        // Lọc trong SQL, booking/khách/chi nhánh được fetch cùng truy vấn
+        List<Trips> trips = tripRepository.findBy(TripSpecifications.search(request),
+                q -> q.sortBy(TripSpecifications.KEYSET_ORDER).all());
+        return toTripListItems(trips);
+    }
+
+    @Override
+    public CursorPageResponse<TripListItemResponse> scrollTrips(TripSearchRequest request) {
+        int size = request.getSize() != null
+                ? Math.max(1, Math.min(request.getSize(), MAX_SEARCH_PAGE_SIZE))
+                : DEFAULT_SEARCH_PAGE_SIZE;
+        PageCursor.Position after = PageCursor.decode(request.getCursor());
+
+        // Đọc size + 1 dòng để biết còn trang sau
+        List<Trips> trips = tripRepository.findBy(
+                TripSpecifications.search(request,
+                        after != null ? after.sortKey() : null,
+                        after != null ? after.id() : null),
+                q -> q.sortBy(TripSpecifications.KEYSET_ORDER).limit(size + 1).all());
+        return PageCursor.pageBatch(trips, size, Trips::getStartTime, Trips::getId, this::toTripListItems, null);
+    }
+
+    private List<TripListItemResponse> toTripListItems(List<Trips> trips) {
+        if (trips.isEmpty()) {
+            return List.of();
+        }
+
+        // Tài xế chính / xe của cả trang: mỗi loại 1 truy vấn
+        List<Integer> tripIds = trips.stream().map(Trips::getId).toList();
+        Map<Integer, TripDrivers> mainDriverByTrip = new HashMap<>();
+        for (TripDrivers td : tripDriverRepository.findWithDriverUserByTripIdIn(tripIds)) {
+            mainDriverByTrip.merge(td.getTrip().getId(), td,
+                    (current, other) -> !"Main Driver".equals(current.getDriverRole())
+                            && "Main Driver".equals(other.getDriverRole()) ? other : current);
+        }
+        Map<Integer, TripVehicles> vehicleByTrip = new HashMap<>();
+        for (TripVehicles tv : tripVehicleRepository.findByTrip_IdIn(tripIds)) {
+            vehicleByTrip.putIfAbsent(tv.getTrip().getId(), tv);
+        }
+
+        // ROUND_TRIP: khoảng thời gian của cả booking (1 truy vấn cho các booking trong trang)
+        Set<Integer> roundTripBookingIds = trips.stream()
+                .map(Trips::getBooking)
+                .filter(b -> b.getHireType() != null && "ROUND_TRIP".equals(b.getHireType().getCode()))
+                .map(Bookings::getId)
+                .collect(Collectors.toSet());
+        Map<Integer, List<Trips>> tripsByRoundTripBooking = roundTripBookingIds.isEmpty()
+                ? Map.of()
+                : tripRepository.findByBooking_IdIn(roundTripBookingIds).stream()
+                        .collect(Collectors.groupingBy(t -> t.getBooking().getId()));
+
         return trips.stream()
-                .filter(trip -> request == null || request.match(trip))
-                .map(this::buildTripListItem)
+                .map(trip -> buildTripListItem(trip,
+                        mainDriverByTrip.get(trip.getId()),
+                        vehicleByTrip.get(trip.getId()),
+                        tripsByRoundTripBooking.getOrDefault(trip.getBooking().getId(), List.of())))
                 .collect(Collectors.toList());
     }
 
+    // =========================================================
+    // 3b) ĐIỀU PHỐI TỰ ĐỘNG CẢ NGÀY
+    // =========================================================
+
+    @Override
+    @Transactional(readOnly = true)
+    public AutoDispatchPlanResponse proposeDayPlan(Integer branchId, LocalDate date) {
+        log.info("[Dispatch] Building auto-dispatch plan for branch {} on {}", branchId, date);
+        ZoneId zone = ZoneId.systemDefault();
+        List<PendingTripResponse> pending = getPendingTrips(branchId,
+                date.atStartOfDay(zone).toInstant(), date.plusDays(1).atStartOfDay(zone).toInstant());
+
+        Map<Integer, Trips> tripById = tripRepository
+                .findAllById(pending.stream().map(PendingTripResponse::getTripId).toList())
+                .stream()
+                .collect(Collectors.toMap(Trips::getId, t -> t));
+        List<Trips> trips = pending.stream()
+                .map(p -> tripById.get(p.getTripId()))
+                .filter(t -> t != null && t.getStartTime() != null)
+                .sorted(Comparator.comparing(Trips::getStartTime).thenComparing(Trips::getId))
+                .toList();
+        if (trips.isEmpty()) {
+            return AutoDispatchPlanResponse.builder()
+                    .branchId(branchId).date(date)
+                    .totalTrips(0).plannedTrips(0)
+                    .totalDriverScore(0L).totalVehicleScore(0L)
+                    .items(List.of()).unplanned(List.of())
+                    .build();
+        }
+
+        // ---- Nạp dữ liệu theo lô ----
+        Set<Integer> bookingIds = trips.stream().map(t -> t.getBooking().getId()).collect(Collectors.toSet());
+        Map<Integer, List<Trips>> tripsByBooking = tripRepository.findByBooking_IdIn(bookingIds).stream()
+                .collect(Collectors.groupingBy(t -> t.getBooking().getId()));
+        Map<Integer, List<BookingVehicleDetails>> detailsByBooking = bookingVehicleDetailsRepository.findByBookingIdIn(bookingIds).stream()
+                .collect(Collectors.groupingBy(bvd -> bvd.getBooking().getId()));
+
+        // Tài xế/xe đã gán cho các trip khác trong cùng booking (mỗi trip của booking phải có tài xế/xe riêng)
+        List<Integer> bookingTripIds = tripsByBooking.values().stream().flatMap(List::stream).map(Trips::getId).toList();
+        Map<Integer, Set<Integer>> usedDriversByBooking = usedDriversByBooking(bookingTripIds);
+        Map<Integer, Set<Integer>> usedVehiclesByBooking = usedVehiclesByBooking(bookingTripIds);
+
+        List<Drivers> drivers = driverRepository.findByBranchIdWithUser(branchId).stream()
+                .sorted(Comparator.comparing(Drivers::getId))
+                .toList();
+        List<Vehicles> vehicles = vehicleRepository.filterVehicles(null, branchId, VehicleStatus.AVAILABLE).stream()
+                .sorted(Comparator.comparing(Vehicles::getId))
+                .toList();
+        List<Integer> driverIds = drivers.stream().map(Drivers::getId).toList();
+        Set<Integer> dayOffDriverIds = driverIds.isEmpty() ? Set.of()
+                : new java.util.HashSet<>(driverDayOffRepository.findDriverIdsOffOnDate(driverIds, DriverDayOffStatus.APPROVED, date));
+
+        // ---- Ràng buộc cứng: ma trận hợp lệ chuyến × tài xế, chuyến × xe ----
+        int nT = trips.size();
+        int nD = drivers.size();
+        int nV = vehicles.size();
+        PlanTrip[] planTrips = new PlanTrip[nT];
+        boolean[][] driverOk = new boolean[nT][nD];
+        boolean[][] vehicleOk = new boolean[nT][nV];
+        for (int i = 0; i < nT; i++) {
+            PlanTrip pt = buildPlanTrip(trips.get(i), tripsByBooking, detailsByBooking);
+            planTrips[i] = pt;
+
+            Set<Integer> usedDrivers = usedDriversByBooking.getOrDefault(pt.bookingId, Set.of());
+            for (int j = 0; j < nD; j++) {
+                driverOk[i][j] = driverViolation(drivers.get(j), pt, branchId, date, dayOffDriverIds, usedDrivers) == null;
+            }
+
+            Set<Integer> usedVehicles = usedVehiclesByBooking.getOrDefault(pt.bookingId, Set.of());
+            for (int k = 0; k < nV; k++) {
+                vehicleOk[i][k] = vehicleViolation(vehicles.get(k), pt, branchId, usedVehicles) == null;
+            }
+        }
+
+        // Điểm công bằng hiện tại của tài xế (cùng công thức với gợi ý từng chuyến)
+        DriverWorkloadService.Workload[] baseWorkload = new DriverWorkloadService.Workload[nD];
+        for (int j = 0; j < nD; j++) {
+            baseWorkload[j] = driverWorkloadService.getWorkload(drivers.get(j).getId(), date);
+        }
+
+        // ---- Ghép cặp theo vòng: mỗi vòng giải bài toán ghép chi phí nhỏ nhất cho các chuyến còn lại,
+        // một tài xế/xe nhận tối đa một chuyến mỗi vòng; vòng sau tính lại điểm công bằng và lịch bận theo kế hoạch.
+        // Chuyến chỉ được ghép tài xế khi còn xe phù hợp, và tài xế của chuyến không nhận được xe không bị giữ lại,
+        // nên một chuyến thiếu xe không chiếm mất tài xế của chuyến có thể xếp đủ ----
+        int[] plannedCount = new int[nD];
+        List<List<PlanTrip>> driverPlan = new ArrayList<>();
+        List<List<PlanTrip>> vehiclePlan = new ArrayList<>();
+        for (int j = 0; j < nD; j++) driverPlan.add(new ArrayList<>());
+        for (int k = 0; k < nV; k++) vehiclePlan.add(new ArrayList<>());
+        Map<Integer, Set<Integer>> plannedDriversByBooking = new HashMap<>();
+        Map<Integer, Set<Integer>> plannedVehiclesByBooking = new HashMap<>();
+
+        List<Integer> remaining = new ArrayList<>();
+        for (int i = 0; i < nT; i++) remaining.add(i);
+        int rounds = 0;
+        while (!remaining.isEmpty() && nD > 0 && nV > 0) {
+            rounds++;
+            // Xe còn nhận được từng chuyến theo kế hoạch hiện tại
+            boolean[][] vehicleFree = new boolean[remaining.size()][nV];
+            boolean[] hasVehicle = new boolean[remaining.size()];
+            for (int r = 0; r < remaining.size(); r++) {
+                int i = remaining.get(r);
+                PlanTrip pt = planTrips[i];
+                Set<Integer> bookingVehicles = plannedVehiclesByBooking.getOrDefault(pt.bookingId, Set.of());
+                for (int k = 0; k < nV; k++) {
+                    vehicleFree[r][k] = vehicleOk[i][k]
+                            && !bookingVehicles.contains(vehicles.get(k).getId())
+                            && vehiclePlan.get(k).stream().noneMatch(o -> overlaps(o.trip.getStartTime(), o.busyUntil, pt.trip.getStartTime(), pt.busyUntil));
+                    hasVehicle[r] |= vehicleFree[r][k];
+                }
+            }
+
+            long[][] driverCost = new long[remaining.size()][nD];
+            for (int r = 0; r < remaining.size(); r++) {
+                PlanTrip pt = planTrips[remaining.get(r)];
+                Set<Integer> bookingDrivers = plannedDriversByBooking.getOrDefault(pt.bookingId, Set.of());
+                for (int j = 0; j < nD; j++) {
+                    boolean ok = hasVehicle[r]
+                            && driverOk[remaining.get(r)][j]
+                            && !bookingDrivers.contains(drivers.get(j).getId())
+                            && driverPlan.get(j).stream().noneMatch(o -> overlaps(o.trip.getStartTime(), o.driverEnd, pt.trip.getStartTime(), pt.driverEnd));
+                    long planned = plannedCount[j];
+                    driverCost[r][j] = ok
+                            ? fairnessScore(baseWorkload[j].getTripsToday() + planned,
+                                    baseWorkload[j].getTripsThisWeek() + planned,
+                                    baseWorkload[j].getRecentAssignments() + planned)
+                            : MinCostMatching.FORBIDDEN;
+                }
+            }
+            int[] driverMatch = MinCostMatching.solve(driverCost);
+
+            List<Integer> withDriver = new ArrayList<>();
+            for (int r = 0; r < remaining.size(); r++) {
+                if (driverMatch[r] >= 0) withDriver.add(r);
+            }
+            long[][] vehicleCost = new long[withDriver.size()][nV];
+            for (int w = 0; w < withDriver.size(); w++) {
+                int r = withDriver.get(w);
+                PlanTrip pt = planTrips[remaining.get(r)];
+                for (int k = 0; k < nV; k++) {
+                    vehicleCost[w][k] = vehicleFree[r][k]
+                            ? capacityFitScore(vehicles.get(k), pt.requiredSeats)
+                            : MinCostMatching.FORBIDDEN;
+                }
+            }
+            int[] vehicleMatch = MinCostMatching.solve(vehicleCost);
+
+            Set<Integer> plannedThisRound = new java.util.HashSet<>();
+            for (int w = 0; w < withDriver.size(); w++) {
+                if (vehicleMatch[w] < 0) continue;
+                int r = withDriver.get(w);
+                int i = remaining.get(r);
+                int j = driverMatch[r];
+                int k = vehicleMatch[w];
+                PlanTrip pt = planTrips[i];
+                pt.driverIdx = j;
+                pt.driverScore = (int) driverCost[r][j];
+                pt.vehicleIdx = k;
+                pt.vehicleScore = (int) vehicleCost[w][k];
+                driverPlan.get(j).add(pt);
+                vehiclePlan.get(k).add(pt);
+                plannedCount[j]++;
+                plannedDriversByBooking.computeIfAbsent(pt.bookingId, b -> new java.util.HashSet<>()).add(drivers.get(j).getId());
+                plannedVehiclesByBooking.computeIfAbsent(pt.bookingId, b -> new java.util.HashSet<>()).add(vehicles.get(k).getId());
+                plannedThisRound.add(i);
+            }
+            if (plannedThisRound.isEmpty()) {
+                break;
+            }
+            remaining.removeIf(plannedThisRound::contains);
+        }
+
+        // ---- Kết quả ----
+        List<AutoDispatchPlanResponse.PlanItem> items = new ArrayList<>();
+        List<AutoDispatchPlanResponse.UnplannedTrip> unplanned = new ArrayList<>();
+        long totalDriverScore = 0;
+        long totalVehicleScore = 0;
+        for (int i = 0; i < nT; i++) {
+            PlanTrip pt = planTrips[i];
+            if (pt.driverIdx < 0) {
+                String reason;
+                if (!anyTrue(driverOk[i])) {
+                    reason = "Không có tài xế đủ điều kiện (nghỉ phép, bằng lái, trùng lịch hoặc đã lái chuyến khác của đơn)";
+                } else if (!anyTrue(vehicleOk[i])) {
+                    reason = "Không có xe phù hợp (loại xe, sức chứa, trùng lịch hoặc đã dùng cho chuyến khác của đơn)";
+                } else {
+                    reason = "Không đủ tài xế/xe rảnh: các ứng viên đã được xếp cho chuyến khác trong kế hoạch";
+                }
+                unplanned.add(AutoDispatchPlanResponse.UnplannedTrip.builder()
+                        .tripId(pt.trip.getId())
+                        .bookingId(pt.bookingId)
+                        .startTime(pt.trip.getStartTime())
+                        .reason(reason)
+                        .build());
+                continue;
+            }
+            Drivers d = drivers.get(pt.driverIdx);
+            Vehicles v = vehicles.get(pt.vehicleIdx);
+            totalDriverScore += pt.driverScore;
+            totalVehicleScore += pt.vehicleScore;
+            items.add(AutoDispatchPlanResponse.PlanItem.builder()
+                    .tripId(pt.trip.getId())
+                    .bookingId(pt.bookingId)
+                    .startTime(pt.trip.getStartTime())
+                    .endTime(pt.trip.getEndTime())
+                    .driverId(d.getId())
+                    .driverName(extractDriverName(d))
+                    .driverScore(pt.driverScore)
+                    .vehicleId(v.getId())
+                    .vehicleLicensePlate(v.getLicensePlate())
+                    .vehicleScore(pt.vehicleScore)
+                    .build());
+        }
+
+        log.info("[Dispatch] Auto-dispatch plan for branch {} on {}: {}/{} trips planned in {} rounds ({} drivers, {} vehicles)",
+                branchId, date, items.size(), nT, rounds, nD, nV);
+
+        return AutoDispatchPlanResponse.builder()
+                .branchId(branchId)
+                .date(date)
+                .totalTrips(nT)
+                .plannedTrips(items.size())
+                .totalDriverScore(totalDriverScore)
+                .totalVehicleScore(totalVehicleScore)
+                .items(items)
+                .unplanned(unplanned)
+                .build();
+    }
+
+    @Override
+    public List<AssignRespone> commitDayPlan(AutoDispatchCommitRequest request) {
+        if (request == null || request.getItems() == null || request.getItems().isEmpty()) {
+            throw new RuntimeException("Kế hoạch điều phối trống");
+        }
+        for (AutoDispatchCommitRequest.Item item : request.getItems()) {
+            if (item.getTripId() == null || item.getBookingId() == null
+                    || item.getDriverId() == null || item.getVehicleId() == null) {
+                throw new RuntimeException("Kế hoạch thiếu thông tin chuyến/tài xế/xe");
+            }
+        }
+
+        // Kế hoạch có thể đã cũ: nếu có chuyến đã được gán trong lúc chờ xác nhận thì từ chối cả kế hoạch
+        List<Integer> tripIds = request.getItems().stream().map(AutoDispatchCommitRequest.Item::getTripId).toList();
+        Set<Integer> alreadyAssigned = new java.util.TreeSet<>();
+        tripDriverRepository.findByTripIdIn(tripIds).forEach(td -> alreadyAssigned.add(td.getTrip().getId()));
+        tripVehicleRepository.findByTrip_IdIn(tripIds).forEach(tv -> alreadyAssigned.add(tv.getTrip().getId()));
+        if (!alreadyAssigned.isEmpty()) {
+            throw new RuntimeException("Các chuyến đã được gán trước đó: " + alreadyAssigned + ". Vui lòng tạo lại kế hoạch");
+        }
+
+        // Kế hoạch do client gửi lên có thể đã bị sửa: kiểm tra lại ràng buộc cứng của từng cặp trước khi gán
+        List<String> violations = validateDayPlan(request.getItems());
+        if (!violations.isEmpty()) {
+            throw new RuntimeException("Kế hoạch không còn hợp lệ: " + String.join("; ", violations) + ". Vui lòng tạo lại kế hoạch");
+        }
+
+        // Cùng một transaction: một chuyến lỗi thì toàn bộ kế hoạch được rollback
+        List<AssignRespone> results = new ArrayList<>();
+        for (AutoDispatchCommitRequest.Item item : request.getItems()) {
+            AssignRequest assignRequest = new AssignRequest();
+            assignRequest.setBookingId(item.getBookingId());
+            assignRequest.setTripIds(List.of(item.getTripId()));
+            assignRequest.setDriverId(item.getDriverId());
+            assignRequest.setVehicleId(item.getVehicleId());
+            assignRequest.setAutoAssign(false);
+            assignRequest.setNote(request.getNote());
+            try {
+                results.add(assign(assignRequest));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Không thể gán chuyến " + item.getTripId() + ": " + e.getMessage(), e);
+            }
+        }
+        log.info("[Dispatch] Committed auto-dispatch plan with {} trips", results.size());
+        return results;
+    }
+
+    /**
+     * Kiểm tra lại kế hoạch với cùng ràng buộc cứng như khi lập (chi nhánh, nghỉ phép, bằng lái, loại xe,
+     * trùng lịch với chuyến đã gán và giữa các chuyến trong chính kế hoạch)
+     *
+     * @return danh sách vi phạm theo chuyến, rỗng nếu kế hoạch hợp lệ
+     */
+    private List<String> validateDayPlan(List<AutoDispatchCommitRequest.Item> items) {
+        ZoneId zone = ZoneId.systemDefault();
+        Map<Integer, Trips> tripById = tripRepository
+                .findAllById(items.stream().map(AutoDispatchCommitRequest.Item::getTripId).toList())
+                .stream()
+                .collect(Collectors.toMap(Trips::getId, t -> t));
+        Map<Integer, Drivers> driverById = driverRepository
+                .findAllById(items.stream().map(AutoDispatchCommitRequest.Item::getDriverId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Drivers::getId, d -> d));
+        Map<Integer, Vehicles> vehicleById = vehicleRepository
+                .findAllById(items.stream().map(AutoDispatchCommitRequest.Item::getVehicleId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Vehicles::getId, v -> v));
+
+        Set<Integer> bookingIds = items.stream().map(AutoDispatchCommitRequest.Item::getBookingId).collect(Collectors.toSet());
+        Map<Integer, List<Trips>> tripsByBooking = tripRepository.findByBooking_IdIn(bookingIds).stream()
+                .collect(Collectors.groupingBy(t -> t.getBooking().getId()));
+        Map<Integer, List<BookingVehicleDetails>> detailsByBooking = bookingVehicleDetailsRepository.findByBookingIdIn(bookingIds).stream()
+                .collect(Collectors.groupingBy(bvd -> bvd.getBooking().getId()));
+        List<Integer> bookingTripIds = tripsByBooking.values().stream().flatMap(List::stream).map(Trips::getId).toList();
+        Map<Integer, Set<Integer>> usedDriversByBooking = usedDriversByBooking(bookingTripIds);
+        Map<Integer, Set<Integer>> usedVehiclesByBooking = usedVehiclesByBooking(bookingTripIds);
+
+        // Nghỉ phép theo từng ngày có chuyến trong kế hoạch
+        Map<LocalDate, Set<Integer>> driverIdsByDate = new HashMap<>();
+        for (AutoDispatchCommitRequest.Item item : items) {
+            Trips t = tripById.get(item.getTripId());
+            if (t != null && t.getStartTime() != null) {
+                driverIdsByDate.computeIfAbsent(t.getStartTime().atZone(zone).toLocalDate(), k -> new java.util.HashSet<>())
+                        .add(item.getDriverId());
+            }
+        }
+        Map<LocalDate, Set<Integer>> dayOffByDate = new HashMap<>();
+        driverIdsByDate.forEach((date, ids) -> dayOffByDate.put(date,
+                new java.util.HashSet<>(driverDayOffRepository.findDriverIdsOffOnDate(ids, DriverDayOffStatus.APPROVED, date))));
+
+        List<String> violations = new ArrayList<>();
+        Map<Integer, List<PlanTrip>> driverPlan = new HashMap<>();
+        Map<Integer, List<PlanTrip>> vehiclePlan = new HashMap<>();
+        Map<Integer, Set<Integer>> plannedDriversByBooking = new HashMap<>();
+        Map<Integer, Set<Integer>> plannedVehiclesByBooking = new HashMap<>();
+        for (AutoDispatchCommitRequest.Item item : items) {
+            Trips t = tripById.get(item.getTripId());
+            String reason = null;
+            if (t == null || t.getBooking() == null || !item.getBookingId().equals(t.getBooking().getId())) {
+                reason = "Không tìm thấy chuyến thuộc đơn " + item.getBookingId();
+            } else if (t.getStartTime() == null) {
+                reason = "Chuyến chưa có thời gian bắt đầu";
+            } else if (!driverById.containsKey(item.getDriverId())) {
+                reason = "Không tìm thấy tài xế " + item.getDriverId();
+            } else if (!vehicleById.containsKey(item.getVehicleId())) {
+                reason = "Không tìm thấy xe " + item.getVehicleId();
+            }
+            if (reason != null) {
+                violations.add("Chuyến " + item.getTripId() + ": " + reason);
+                continue;
+            }
+
+            Drivers d = driverById.get(item.getDriverId());
+            Vehicles v = vehicleById.get(item.getVehicleId());
+            PlanTrip pt = buildPlanTrip(t, tripsByBooking, detailsByBooking);
+            LocalDate date = t.getStartTime().atZone(zone).toLocalDate();
+            Integer branchId = t.getBooking().getBranch() != null ? t.getBooking().getBranch().getId() : null;
+
+            Set<Integer> bookingDrivers = new java.util.HashSet<>(usedDriversByBooking.getOrDefault(pt.bookingId, Set.of()));
+            bookingDrivers.addAll(plannedDriversByBooking.getOrDefault(pt.bookingId, Set.of()));
+            Set<Integer> bookingVehicles = new java.util.HashSet<>(usedVehiclesByBooking.getOrDefault(pt.bookingId, Set.of()));
+            bookingVehicles.addAll(plannedVehiclesByBooking.getOrDefault(pt.bookingId, Set.of()));
+
+            reason = driverViolation(d, pt, branchId, date, dayOffByDate.getOrDefault(date, Set.of()), bookingDrivers);
+            if (reason == null && driverPlan.getOrDefault(d.getId(), List.of()).stream()
+                    .anyMatch(o -> overlaps(o.trip.getStartTime(), o.driverEnd, pt.trip.getStartTime(), pt.driverEnd))) {
+                reason = "Tài xế được xếp hai chuyến trùng giờ trong kế hoạch";
+            }
+            if (reason == null) {
+                reason = vehicleViolation(v, pt, branchId, bookingVehicles);
+            }
+            if (reason == null && vehiclePlan.getOrDefault(v.getId(), List.of()).stream()
+                    .anyMatch(o -> overlaps(o.trip.getStartTime(), o.busyUntil, pt.trip.getStartTime(), pt.busyUntil))) {
+                reason = "Xe được xếp hai chuyến trùng giờ trong kế hoạch";
+            }
+            if (reason != null) {
+                violations.add("Chuyến " + t.getId() + ": " + reason);
+                continue;
+            }
+            driverPlan.computeIfAbsent(d.getId(), k -> new ArrayList<>()).add(pt);
+            vehiclePlan.computeIfAbsent(v.getId(), k -> new ArrayList<>()).add(pt);
+            plannedDriversByBooking.computeIfAbsent(pt.bookingId, k -> new java.util.HashSet<>()).add(d.getId());
+            plannedVehiclesByBooking.computeIfAbsent(pt.bookingId, k -> new java.util.HashSet<>()).add(v.getId());
+        }
+        return violations;
+    }
+
+    /**
+     * Dựng trạng thái lập kế hoạch của một chuyến: loại xe/số ghế yêu cầu và khoảng bận của tài xế/xe
+     */
+    private PlanTrip buildPlanTrip(Trips t, Map<Integer, List<Trips>> tripsByBooking,
+                                   Map<Integer, List<BookingVehicleDetails>> detailsByBooking) {
+        Integer bookingId = t.getBooking().getId();
+        List<BookingVehicleDetails> details = detailsByBooking.getOrDefault(bookingId, List.of());
+        PlanTrip pt = new PlanTrip(t, bookingId);
+        pt.maxSeats = maxSeatsOf(details);
+        pt.requiredCategoryId = resolveRequiredCategoryId(t, tripsByBooking.getOrDefault(bookingId, List.of(t)), details);
+        pt.requiredSeats = details.stream()
+                .map(BookingVehicleDetails::getVehicleCategory)
+                .filter(c -> c != null && c.getId().equals(pt.requiredCategoryId) && c.getSeats() != null)
+                .map(VehicleCategoryPricing::getSeats)
+                .findFirst()
+                .orElse(pt.maxSeats);
+        pt.busyUntil = busyUntil(t);
+        pt.driverEnd = t.getEndTime() != null ? t.getEndTime() : pt.busyUntil;
+        return pt;
+    }
+
+    /**
+     * Ràng buộc cứng tài xế - chuyến, dùng chung cho lập và xác nhận kế hoạch
+     *
+     * @return lý do không hợp lệ, hoặc null nếu tài xế nhận được chuyến
+     */
+    private String driverViolation(Drivers d, PlanTrip pt, Integer branchId, LocalDate date,
+                                   Set<Integer> dayOffDriverIds, Set<Integer> bookingDriverIds) {
+        Trips t = pt.trip;
+        if (branchId != null && !branchId.equals(branchIdOf(d))) {
+            return "Tài xế không thuộc chi nhánh của đơn";
+        }
+        if (dayOffDriverIds.contains(d.getId())) {
+            return "Tài xế đang nghỉ phép";
+        }
+        if (d.getLicenseExpiry() != null && d.getLicenseExpiry().isBefore(date)) {
+            return "Bằng lái hết hạn";
+        }
+        String licenseClass = d.getLicenseClass() != null ? d.getLicenseClass().toUpperCase() : "";
+        if (!isLicenseClassValidForSeats(licenseClass, pt.maxSeats)) {
+            return "Bằng " + licenseClass + " không đủ hạng cho xe " + pt.maxSeats + " chỗ";
+        }
+        if (bookingDriverIds.contains(d.getId())) {
+            return "Tài xế đã lái chuyến khác của đơn";
+        }
+        boolean overlap = occupancyIndexService
+                .findDriverOverlaps(branchIdOf(d), d.getId(), t.getStartTime(), t.getEndTime())
+                .stream()
+                .anyMatch(slot -> !slot.getTripId().equals(t.getId()));
+        return overlap ? "Tài xế trùng giờ với chuyến khác" : null;
+    }
+
+    /**
+     * Ràng buộc cứng xe - chuyến, dùng chung cho lập và xác nhận kế hoạch
+     *
+     * @return lý do không hợp lệ, hoặc null nếu xe nhận được chuyến
+     */
+    private String vehicleViolation(Vehicles v, PlanTrip pt, Integer branchId, Set<Integer> bookingVehicleIds) {
+        Trips t = pt.trip;
+        if (branchId != null && !branchId.equals(branchIdOf(v))) {
+            return "Xe không thuộc chi nhánh của đơn";
+        }
+        if (v.getStatus() != VehicleStatus.AVAILABLE) {
+            return "Xe không ở trạng thái sẵn sàng";
+        }
+        if (pt.requiredCategoryId != null
+                && (v.getCategory() == null || !v.getCategory().getId().equals(pt.requiredCategoryId))) {
+            return "Xe không đúng loại yêu cầu";
+        }
+        if (pt.requiredSeats != null && pt.requiredSeats > 0 && v.getCapacity() != null && v.getCapacity() < pt.requiredSeats) {
+            return "Xe không đủ sức chứa";
+        }
+        if (bookingVehicleIds.contains(v.getId())) {
+            return "Xe đã dùng cho chuyến khác của đơn";
+        }
+        boolean overlap = occupancyIndexService
+                .findVehicleOverlaps(branchIdOf(v), v.getId(), t.getStartTime(), pt.busyUntil)
+                .stream()
+                .anyMatch(slot -> !slot.getTripId().equals(t.getId()) && !pt.bookingId.equals(slot.getBookingId()));
+        return overlap ? "Xe trùng giờ với chuyến khác" : null;
+    }
+
+    private Map<Integer, Set<Integer>> usedDriversByBooking(List<Integer> bookingTripIds) {
+        Map<Integer, Set<Integer>> result = new HashMap<>();
+        for (TripDrivers td : tripDriverRepository.findByTripIdIn(bookingTripIds)) {
+            result.computeIfAbsent(td.getTrip().getBooking().getId(), k -> new java.util.HashSet<>())
+                    .add(td.getDriver().getId());
+        }
+        return result;
+    }
+
+    private Map<Integer, Set<Integer>> usedVehiclesByBooking(List<Integer> bookingTripIds) {
+        Map<Integer, Set<Integer>> result = new HashMap<>();
+        for (TripVehicles tv : tripVehicleRepository.findByTrip_IdIn(bookingTripIds)) {
+            result.computeIfAbsent(tv.getTrip().getBooking().getId(), k -> new java.util.HashSet<>())
+                    .add(tv.getVehicle().getId());
+        }
+        return result;
+    }
+
+    /**
+     * Trạng thái một chuyến trong quá trình lập kế hoạch điều phối tự động
+     */
+    private static class PlanTrip {
+        final Trips trip;
+        final Integer bookingId;
+        Integer requiredCategoryId;
+        Integer requiredSeats;
+        Integer maxSeats;
+        Instant busyUntil;
+        Instant driverEnd;
+        int driverIdx = -1;
+        int vehicleIdx = -1;
+        int driverScore;
+        int vehicleScore;
+
+        PlanTrip(Trips trip, Integer bookingId) {
+            this.trip = trip;
+            this.bookingId = bookingId;
+        }
+    }
+
+    private static boolean overlaps(Instant s1, Instant e1, Instant s2, Instant e2) {
+        if (s1 == null || e1 == null || s2 == null || e2 == null) return false;
+        return s1.isBefore(e2) && s2.isBefore(e1);
+    }
+
+    private static boolean anyTrue(boolean[] values) {
+        for (boolean b : values) {
+            if (b) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Độ lệch sức chứa so với yêu cầu (thấp = vừa khít, tránh dùng xe lớn cho chuyến nhỏ)
+     */
+    private int capacityFitScore(Vehicles v, Integer requiredSeats) {
+        if (requiredSeats != null && requiredSeats > 0 && v.getCapacity() != null && v.getCapacity() >= requiredSeats) {
+            return v.getCapacity() - requiredSeats;
+        }
+        return 0;
+    }
+
     // =========================================================
     // 4) HELPER: CHỌN DRIVER / VEHICLE
     // =========================================================
 
-    private TripListItemResponse buildTripListItem(Trips trip) {
+    private TripListItemResponse buildTripListItem(Trips trip, TripDrivers mainDriver, TripVehicles vehicle,
+                                                   List<Trips> bookingTrips) {
         Bookings booking = trip.getBooking();
 
         // Tính toán hireTypeName với suffix cho ROUND_TRIP
@@ -1761,21 +2067,18 @@ public class DispatchServiceImpl implements DispatchService {
             Instant startTimeForSuffix = trip.getStartTime();
             Instant endTimeForSuffix = trip.getEndTime();
 
-            if ("ROUND_TRIP".equals(booking.getHireType().getCode())) {
-                List<Trips> allBookingTrips = tripRepository.findByBooking_Id(booking.getId());
-                if (!allBookingTrips.isEmpty()) {
-                    startTimeForSuffix = allBookingTrips.stream()
-                            .map(Trips::getStartTime)
-                            .filter(java.util.Objects::nonNull)
-                            .min(Instant::compareTo)
-                            .orElse(trip.getStartTime());
+            if ("ROUND_TRIP".equals(booking.getHireType().getCode()) && !bookingTrips.isEmpty()) {
+                startTimeForSuffix = bookingTrips.stream()
+                        .map(Trips::getStartTime)
+                        .filter(java.util.Objects::nonNull)
+                        .min(Instant::compareTo)
+                        .orElse(trip.getStartTime());
 
-                    endTimeForSuffix = allBookingTrips.stream()
-                            .map(Trips::getEndTime)
-                            .filter(java.util.Objects::nonNull)
-                            .max(Instant::compareTo)
-                            .orElse(trip.getEndTime());
-                }
+                endTimeForSuffix = bookingTrips.stream()
+                        .map(Trips::getEndTime)
+                        .filter(java.util.Objects::nonNull)
+                        .max(Instant::compareTo)
+                        .orElse(trip.getEndTime());
             }
 
             hireTypeName = calculateHireTypeNameWithSuffix(
@@ -1798,110 +2101,20 @@ public class DispatchServiceImpl implements DispatchService {
                 .hireTypeName(hireTypeName)
                 .status(trip.getStatus() != null ? trip.getStatus().name() : null);
 
-        List<TripDrivers> tripDrivers = tripDriverRepository.findByTripId(trip.getId());
-        if (!tripDrivers.isEmpty()) {
-            Drivers driver = tripDrivers.get(0).getDriver();
+        if (mainDriver != null) {
+            Drivers driver = mainDriver.getDriver();
             builder.driverId(driver.getId());
             builder.driverName(extractDriverName(driver));
         }
 
-        List<TripVehicles> tripVehicles = tripVehicleRepository.findByTripId(trip.getId());
-        if (!tripVehicles.isEmpty()) {
-            Vehicles vehicle = tripVehicles.get(0).getVehicle();
-            builder.vehicleId(vehicle.getId());
-            builder.vehicleLicensePlate(vehicle.getLicensePlate());
+        if (vehicle != null) {
+            builder.vehicleId(vehicle.getVehicle().getId());
+            builder.vehicleLicensePlate(vehicle.getVehicle().getLicensePlate());
         }
 
         return builder.build();
     }
 
-    private DispatchDashboardResponse.DriverScheduleItem buildDriverSchedule(
-            Drivers driver,
-            List<Trips> tripsInDay,
-            Map<Integer, List<TripDrivers>> tripDriverMap,
-            LocalDate date
-    ) {
-        DispatchDashboardResponse.ScheduleWindow shift = buildShiftWindow(date);
-        List<DispatchDashboardResponse.ScheduleBlock> blocks = new ArrayList<>();
-        for (Trips trip : tripsInDay) {
-            if (trip.getStartTime() == null || trip.getEndTime() == null) {
-                continue;
-            }
-            List<TripDrivers> assigned = tripDriverMap.computeIfAbsent(
-                    trip.getId(),
-                    tripDriverRepository::findByTripId
-            );
-            boolean belongs = assigned.stream()
-                    .anyMatch(td -> td.getDriver().getId().equals(driver.getId()));
-            if (belongs) {
-                blocks.add(DispatchDashboardResponse.ScheduleBlock.builder()
-                        .start(trip.getStartTime())
-                        .end(trip.getEndTime())
-                        .type("BUSY")
-                        .ref("TRIP-" + trip.getId())
-                        .note(routeLabel(trip))
-                        .build());
-            }
-        }
-
-        return DispatchDashboardResponse.DriverScheduleItem.builder()
-                .driverId(driver.getId())
-                .driverName(extractDriverName(driver))
-                .driverPhone(driver.getEmployee() != null && driver.getEmployee().getUser() != null
-                        ? driver.getEmployee().getUser().getPhone()
-                        : null)
-                .shift(shift)
-                .items(blocks)
-                .build();
-    }
-
-    private DispatchDashboardResponse.VehicleScheduleItem buildVehicleSchedule(
-            Vehicles vehicle,
-            List<Trips> tripsInDay,
-            Map<Integer, List<TripVehicles>> tripVehicleMap,
-            LocalDate date
-    ) {
-        DispatchDashboardResponse.ScheduleWindow shift = buildShiftWindow(date);
-        List<DispatchDashboardResponse.ScheduleBlock> blocks = new ArrayList<>();
-        for (Trips trip : tripsInDay) {
-            if (trip.getStartTime() == null || trip.getEndTime() == null) {
-                continue;
-            }
-            List<TripVehicles> assigned = tripVehicleMap.computeIfAbsent(
-                    trip.getId(),
-                    tripVehicleRepository::findByTripId
-            );
-            boolean belongs = assigned.stream()
-                    .anyMatch(tv -> tv.getVehicle().getId().equals(vehicle.getId()));
-            if (belongs) {
-                blocks.add(DispatchDashboardResponse.ScheduleBlock.builder()
-                        .start(trip.getStartTime())
-                        .end(trip.getEndTime())
-                        .type("BUSY")
-                        .ref("TRIP-" + trip.getId())
-                        .note(routeLabel(trip))
-                        .build());
-            }
-        }
-
-        return DispatchDashboardResponse.VehicleScheduleItem.builder()
-                .vehicleId(vehicle.getId())
-                .licensePlate(vehicle.getLicensePlate())
-                .model(vehicle.getModel())
-                .shift(shift)
-                .items(blocks)
-                .build();
-    }
-
-    private DispatchDashboardResponse.ScheduleWindow buildShiftWindow(LocalDate date) {
-        Instant start = date.atTime(DEFAULT_SHIFT_START, 0).atZone(DEFAULT_ZONE).toInstant();
-        Instant end = date.atTime(DEFAULT_SHIFT_END, 0).atZone(DEFAULT_ZONE).toInstant();
-        return DispatchDashboardResponse.ScheduleWindow.builder()
-                .start(start)
-                .end(end)
-                .build();
-    }
-
     private String routeLabel(Trips trip) {
         String start = trip.getStartLocation();
         String end = trip.getEndLocation();
@@ -1962,59 +2175,16 @@ public class DispatchServiceImpl implements DispatchService {
                 continue;
             }
 
-            // 4) Check trùng giờ (trip SCHEDULED/ONGOING)
+            // 4) Check trùng giờ (trip SCHEDULED/ASSIGNED/ONGOING)
             // Lưu ý: Exclude các trips trong cùng booking (vì 1 tài xế có thể lái nhiều xe trong cùng booking)
-            List<TripDrivers> driverTrips = tripDriverRepository.findAllByDriverId(d.getId());
-            boolean overlap = driverTrips.stream().anyMatch(td -> {
-                Trips t = td.getTrip();
-                if (t.getId().equals(trip.getId())) return false;
-                // Exclude trips trong cùng booking (cho phép 1 tài xế lái nhiều xe trong cùng booking)
-                if (t.getBooking() != null && trip.getBooking() != null
-                        && t.getBooking().getId().equals(trip.getBooking().getId())) {
-                    return false; // Không tính là overlap nếu cùng booking
-                }
-                if (t.getStatus() == TripStatus.CANCELLED || t.getStatus() == TripStatus.COMPLETED) return false;
-                Instant s1 = t.getStartTime();
-                Instant e1 = t.getEndTime();
-                Instant s2 = trip.getStartTime();
-                Instant e2 = trip.getEndTime();
-                if (s1 == null || e1 == null || s2 == null || e2 == null) return false;
-                return s1.isBefore(e2) && s2.isBefore(e1);
-            });
-            if (overlap) {
+            if (hasDriverOverlapOutsideBooking(d, trip)) {
                 log.debug("Driver {} has overlap trips (excluding same booking), skip", d.getId());
                 continue;
             }
 
-            // 5) Fairness scoring: số chuyến trong ngày
-            long tripsToday = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return dDate.equals(tripDate);
-            }).count();
-
-            // 6) Fairness: số chuyến trong tuần
-            LocalDate weekStart = tripDate.minusDays(tripDate.getDayOfWeek().getValue() - 1);
-            LocalDate weekEnd = weekStart.plusDays(6);
-            long tripsThisWeek = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !dDate.isBefore(weekStart) && !dDate.isAfter(weekEnd);
-            }).count();
-
-            // 7) Fairness: mức độ được gán gần đây (recent assignment)
-            long recentAssignments = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !dDate.isBefore(tripDate.minusDays(3)); // 3 ngày gần đây
-            }).count();
-
-            // Calculate fairness score (lower is better)
-            // Trọng số: ngày (40%), tuần (30%), gần đây (30%)
-            int fairnessScore = (int) (tripsToday * 40 + tripsThisWeek * 30 + recentAssignments * 30);
+            // 5) Fairness: số chuyến trong ngày / tuần / 3 ngày gần đây (tra sổ khối lượng công việc)
+            DriverWorkloadService.Workload workload = driverWorkloadService.getWorkload(d.getId(), tripDate);
+            int fairnessScore = fairnessScore(workload.getTripsToday(), workload.getTripsThisWeek(), workload.getRecentAssignments());
 
             scored.add(new CandidateScore<>(d, fairnessScore));
         }
@@ -2072,55 +2242,12 @@ public class DispatchServiceImpl implements DispatchService {
 
             // Check trùng giờ
             // Lưu ý: Exclude các trips trong cùng booking (vì 1 tài xế có thể lái nhiều xe trong cùng booking)
-            List<TripDrivers> driverTrips = tripDriverRepository.findAllByDriverId(d.getId());
-            boolean overlap = driverTrips.stream().anyMatch(td -> {
-                Trips t = td.getTrip();
-                if (t.getId().equals(trip.getId())) return false;
-                // Exclude trips trong cùng booking (cho phép 1 tài xế lái nhiều xe trong cùng booking)
-                if (t.getBooking() != null && trip.getBooking() != null
-                        && t.getBooking().getId().equals(trip.getBooking().getId())) {
-                    return false; // Không tính là overlap nếu cùng booking
-                }
-                if (t.getStatus() == TripStatus.CANCELLED || t.getStatus() == TripStatus.COMPLETED) return false;
-                Instant s1 = t.getStartTime();
-                Instant e1 = t.getEndTime();
-                Instant s2 = trip.getStartTime();
-                Instant e2 = trip.getEndTime();
-                if (s1 == null || e1 == null || s2 == null || e2 == null) return false;
-                return s1.isBefore(e2) && s2.isBefore(e1);
-            });
-            if (overlap) continue;
+            if (hasDriverOverlapOutsideBooking(d, trip)) continue;
 
             // Tính score: fairness + priorityLevel (ưu tiên priorityLevel cao)
-            // Fairness: số chuyến trong ngày
-            long tripsToday = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return dDate.equals(tripDate);
-            }).count();
-
-            // Fairness: số chuyến trong tuần
-            LocalDate weekStart = tripDate.minusDays(tripDate.getDayOfWeek().getValue() - 1);
-            LocalDate weekEnd = weekStart.plusDays(6);
-            long tripsThisWeek = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !dDate.isBefore(weekStart) && !dDate.isAfter(weekEnd);
-            }).count();
-
-            // Fairness: số chuyến 3 ngày gần đây
-            long recentAssignments = driverTrips.stream().filter(td -> {
-                Trips t = td.getTrip();
-                if (t.getStartTime() == null) return false;
-                LocalDate dDate = t.getStartTime().atZone(ZoneId.systemDefault()).toLocalDate();
-                return !dDate.isBefore(tripDate.minusDays(3)); // 3 ngày gần đây
-            }).count();
-
-            // Calculate fairness score (lower is better)
-            // Trọng số: ngày (40%), tuần (30%), gần đây (30%)
-            int fairnessScore = (int) (tripsToday * 40 + tripsThisWeek * 30 + recentAssignments * 30);
+            // Fairness: số chuyến trong ngày / tuần / 3 ngày gần đây (tra sổ khối lượng công việc)
+            DriverWorkloadService.Workload workload = driverWorkloadService.getWorkload(d.getId(), tripDate);
+            int fairnessScore = fairnessScore(workload.getTripsToday(), workload.getTripsThisWeek(), workload.getRecentAssignments());
 
             // PriorityLevel cao hơn = tốt hơn, nên trừ đi để score thấp hơn
             int priorityScore = d.getPriorityLevel() != null ? (11 - d.getPriorityLevel()) : 5;
@@ -2210,36 +2337,14 @@ public class DispatchServiceImpl implements DispatchService {
             // IMPORTANT: dùng "busy-until" ước lượng theo distance + vận tốc trung bình + buffer
             if (trip.getStartTime() == null) continue;
             final Instant targetStart = trip.getStartTime();
-            Instant targetBusyUntilTmp = tripOccupancyService.computeBusyUntil(
-                    booking.getHireType() != null ? booking.getHireType().getCode() : null,
-                    trip.getStartTime(),
-                    trip.getEndTime(),
-                    trip.getDistance() != null ? trip.getDistance().doubleValue() : null,
-                    trip.getStartLocation(),
-                    trip.getEndLocation()
-            );
+            Instant targetBusyUntilTmp = tripOccupancyService.computeBusyUntil(trip);
             final Instant targetBusyUntil = targetBusyUntilTmp != null ? targetBusyUntilTmp : targetStart.plusSeconds(3600);
 
-            List<TripVehicles> vehicleTrips = tripVehicleRepository.findAllByVehicleId(v.getId());
-            boolean busy = vehicleTrips.stream().anyMatch(tv -> {
-                Trips other = tv.getTrip();
-                if (other == null || other.getBooking() == null) return false;
-                if (other.getStatus() == TripStatus.CANCELLED || other.getStatus() == TripStatus.COMPLETED) return false;
-                if (other.getId().equals(trip.getId())) return false;
-                if (other.getBooking().getId().equals(booking.getId())) return false;
-                if (other.getStartTime() == null) return true;
-
-                Instant otherBusyUntil = tripOccupancyService.computeBusyUntil(
-                        other.getBooking().getHireType() != null ? other.getBooking().getHireType().getCode() : null,
-                        other.getStartTime(),
-                        other.getEndTime(),
-                        other.getDistance() != null ? other.getDistance().doubleValue() : null,
-                        other.getStartLocation(),
-                        other.getEndLocation()
-                );
-                if (otherBusyUntil == null) return true;
-                return other.getStartTime().isBefore(targetBusyUntil) && targetStart.isBefore(otherBusyUntil);
-            });
+            boolean busy = occupancyIndexService
+                    .findVehicleOverlaps(branchIdOf(v), v.getId(), targetStart, targetBusyUntil)
+                    .stream()
+                    .anyMatch(slot -> !slot.getTripId().equals(trip.getId())
+                            && !booking.getId().equals(slot.getBookingId()));
             if (busy) continue;
 
             if (provisionalAssignments != null) {
@@ -2285,84 +2390,157 @@ public class DispatchServiceImpl implements DispatchService {
     }
 
     /**
-     * Kiểm tra booking đã đặt cọc chưa (có invoice deposit đã được xác nhận thanh toán)
-     * @param booking Booking cần kiểm tra
-     * @return true nếu booking đã có deposit được xác nhận thanh toán, false nếu chưa
+     * Tài xế có chuyến khác (ngoài booking của trip) trùng giờ với trip không - tra từ chỉ mục lịch bận
      */
-    private boolean hasDepositPaid(Bookings booking) {
-        if (booking == null) {
-            log.debug("[Dispatch] hasDepositPaid: booking is null");
-            return false;
-        }
+    private boolean hasDriverOverlapOutsideBooking(Drivers d, Trips trip) {
+        Integer bookingId = trip.getBooking() != null ? trip.getBooking().getId() : null;
+        return occupancyIndexService
+                .findDriverOverlaps(branchIdOf(d), d.getId(), trip.getStartTime(), trip.getEndTime())
+                .stream()
+                .anyMatch(slot -> !slot.getTripId().equals(trip.getId())
+                        && (bookingId == null || !bookingId.equals(slot.getBookingId())));
+    }
 
-        // Nếu booking đã COMPLETED, cho phép hiển thị (đã hoàn thành nên không cần check cọc)
-        if (booking.getStatus() == BookingStatus.COMPLETED) {
-            log.debug("[Dispatch] hasDepositPaid: booking {} is COMPLETED, allowing", booking.getId());
-            return true;
-        }
+    private Integer branchIdOf(Drivers d) {
+        return d.getBranch() != null ? d.getBranch().getId() : null;
+    }
 
-        // Lấy tất cả invoices của booking
-        List<org.example.ptcmssbackend.entity.Invoices> allInvoices =
-                invoiceRepository.findByBooking_IdOrderByCreatedAtDesc(booking.getId());
+    private Integer branchIdOf(Vehicles v) {
+        return v.getBranch() != null ? v.getBranch().getId() : null;
+    }
 
-        if (allInvoices == null || allInvoices.isEmpty()) {
-            log.debug("[Dispatch] hasDepositPaid: booking {} has no invoices", booking.getId());
-            return false;
+    /**
+     * Lấy số ghế tối đa từ các loại xe trong booking
+     */
+    private Integer getMaxSeatsFromBooking(Bookings booking) {
+        if (booking == null) return null;
+
+        try {
+            return maxSeatsOf(bookingVehicleDetailsRepository.findByBookingId(booking.getId()));
+        } catch (Exception e) {
+            log.warn("Cannot get max seats from booking {}: {}", booking.getId(), e.getMessage());
+            return null;
         }
+    }
 
-        log.debug("[Dispatch] hasDepositPaid: booking {} has {} invoices", booking.getId(), allInvoices.size());
+    /**
+     * Loại xe yêu cầu cho trip dựa trên thứ tự của trip trong booking
+     * (booking có thể có nhiều loại xe khác nhau, ví dụ: 1 xe 9 chỗ + 1 xe 45 chỗ)
+     */
+    private Integer resolveRequiredCategoryId(Trips trip, List<Trips> bookingTrips, List<BookingVehicleDetails> bookingVehicles) {
+        // Xác định trip này là trip thứ mấy trong booking (sắp xếp theo startTime hoặc ID)
+        List<Trips> sorted = new ArrayList<>(bookingTrips);
+        sorted.sort(Comparator.comparing((Trips t) -> t.getStartTime() != null ? t.getStartTime() : Instant.EPOCH)
+                .thenComparing(Trips::getId));
 
-        // Kiểm tra có invoice deposit nào đã được xác nhận thanh toán không
-        for (var inv : allInvoices) {
-            // Chỉ kiểm tra invoice deposit (isDeposit = true)
-            if (Boolean.TRUE.equals(inv.getIsDeposit())) {
-                log.debug("[Dispatch] hasDepositPaid: found deposit invoice {} for booking {}", inv.getId(), booking.getId());
+        int tripIndex = -1;
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i).getId().equals(trip.getId())) {
+                tripIndex = i;
+                break;
+            }
+        }
 
-                // Kiểm tra có payment nào đã được CONFIRMED không
-                var payments = paymentHistoryRepository.findByInvoice_IdOrderByPaymentDateDesc(inv.getId());
-                if (payments != null && !payments.isEmpty()) {
-                    log.debug("[Dispatch] hasDepositPaid: invoice {} has {} payments", inv.getId(), payments.size());
-                    for (var payment : payments) {
-                        if (payment.getConfirmationStatus() ==
-                                org.example.ptcmssbackend.enums.PaymentConfirmationStatus.CONFIRMED) {
-                            log.debug("[Dispatch] hasDepositPaid: booking {} has confirmed deposit payment (invoice {}, payment {})",
-                                    booking.getId(), inv.getId(), payment.getId());
-                            return true;
-                        }
+        // Map loại xe cho trip này: expand quantity thành list categoryIds
+        List<Integer> requiredCategoryIds = new ArrayList<>();
+        if (bookingVehicles != null && !bookingVehicles.isEmpty()) {
+            for (BookingVehicleDetails bv : bookingVehicles) {
+                Integer catId = bv.getVehicleCategory() != null ? bv.getVehicleCategory().getId() : null;
+                int qty = bv.getQuantity() != null ? bv.getQuantity() : 1;
+                for (int q = 0; q < qty; q++) {
+                    if (catId != null) {
+                        requiredCategoryIds.add(catId);
                     }
-                    log.debug("[Dispatch] hasDepositPaid: invoice {} has payments but none are CONFIRMED", inv.getId());
-                } else {
-                    log.debug("[Dispatch] hasDepositPaid: invoice {} has no payments", inv.getId());
                 }
             }
         }
 
-        log.debug("[Dispatch] hasDepositPaid: booking {} has no confirmed deposit payment", booking.getId());
-        return false;
+        // Lấy categoryId cho trip này (nếu tripIndex hợp lệ)
+        return (tripIndex >= 0 && tripIndex < requiredCategoryIds.size())
+                ? requiredCategoryIds.get(tripIndex)
+                : (requiredCategoryIds.isEmpty() ? null : requiredCategoryIds.get(0));
     }
 
     /**
-     * Lấy số ghế tối đa từ các loại xe trong booking
+     * Điểm công bằng (thấp = ưu tiên). Trọng số: ngày (40%), tuần (30%), gần đây (30%)
      */
-    private Integer getMaxSeatsFromBooking(Bookings booking) {
-        if (booking == null) return null;
-
-        try {
-            List<BookingVehicleDetails> vehicleDetails = bookingVehicleDetailsRepository.findByBookingId(booking.getId());
-            if (vehicleDetails == null || vehicleDetails.isEmpty()) {
-                return null;
-            }
+    private int fairnessScore(long tripsToday, long tripsThisWeek, long recentAssignments) {
+        return (int) (tripsToday * 40 + tripsThisWeek * 30 + recentAssignments * 30);
+    }
 
-            return vehicleDetails.stream()
-                    .map(vd -> vd.getVehicleCategory())
-                    .filter(cat -> cat != null && cat.getSeats() != null)
-                    .mapToInt(cat -> cat.getSeats())
-                    .max()
-                    .orElse(0);
-        } catch (Exception e) {
-            log.warn("Cannot get max seats from booking {}: {}", booking.getId(), e.getMessage());
+    private Integer maxSeatsOf(List<BookingVehicleDetails> vehicleDetails) {
+        if (vehicleDetails == null || vehicleDetails.isEmpty()) {
             return null;
         }
+        return vehicleDetails.stream()
+                .map(vd -> vd.getVehicleCategory())
+                .filter(cat -> cat != null && cat.getSeats() != null)
+                .mapToInt(cat -> cat.getSeats())
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * Dữ liệu nạp sẵn cho một lần gợi ý gán chuyến
+     */
+    private static class SuggestionContext {
+        Integer requiredCategoryId;
+        VehicleCategoryPricing requiredCategory;
+        Integer maxSeatsRequired;
+        // Tài xế/xe đã gán cho các trip khác trong cùng booking
+        Set<Integer> siblingDriverIds = Set.of();
+        Set<Integer> siblingVehicleIds = Set.of();
+        Set<Integer> dayOffDriverIds = Set.of();
+        Set<Integer> driverIdsWithCustomerHistory = Set.of();
+    }
+
+    /**
+     * Nạp theo lô mọi thứ cần cho chấm điểm ứng viên: nghỉ phép, phân công các trip cùng booking
+     * và lịch sử phục vụ khách hàng. Số truy vấn cố định, không tăng theo số tài xế/xe.
+     */
+    private SuggestionContext prefetchSuggestionContext(Trips trip,
+                                                        List<Trips> allBookingTrips,
+                                                        List<BookingVehicleDetails> bookingVehicles,
+                                                        Integer requiredCategoryId,
+                                                        VehicleCategoryPricing requiredCategory,
+                                                        List<Drivers> drivers,
+                                                        LocalDate tripDate) {
+        SuggestionContext ctx = new SuggestionContext();
+        ctx.requiredCategoryId = requiredCategoryId;
+        ctx.requiredCategory = requiredCategory;
+        ctx.maxSeatsRequired = maxSeatsOf(bookingVehicles);
+
+        List<Integer> siblingTripIds = allBookingTrips.stream()
+                .map(Trips::getId)
+                .filter(id -> !id.equals(trip.getId()))
+                .toList();
+        if (!siblingTripIds.isEmpty()) {
+            ctx.siblingDriverIds = tripDriverRepository.findByTripIdIn(siblingTripIds).stream()
+                    .filter(td -> td.getDriver() != null)
+                    .map(td -> td.getDriver().getId())
+                    .collect(Collectors.toSet());
+            ctx.siblingVehicleIds = tripVehicleRepository.findByTrip_IdIn(siblingTripIds).stream()
+                    .filter(tv -> tv.getVehicle() != null)
+                    .map(tv -> tv.getVehicle().getId())
+                    .collect(Collectors.toSet());
+        }
+
+        List<Integer> driverIds = drivers.stream().map(Drivers::getId).toList();
+        if (driverIds.isEmpty()) {
+            return ctx;
+        }
+
+        ctx.dayOffDriverIds = new java.util.HashSet<>(
+                driverDayOffRepository.findDriverIdsOffOnDate(driverIds, DriverDayOffStatus.APPROVED, tripDate));
+
+        Integer customerId = trip.getBooking() != null && trip.getBooking().getCustomer() != null
+                ? trip.getBooking().getCustomer().getId()
+                : null;
+        if (customerId != null) {
+            ctx.driverIdsWithCustomerHistory = new java.util.HashSet<>(
+                    tripDriverRepository.findDriverIdsWithTripForCustomer(driverIds, customerId, TripStatus.COMPLETED));
+        }
+        return ctx;
     }
 
     /**
@@ -2412,15 +2590,7 @@ public class DispatchServiceImpl implements DispatchService {
 
     private Instant busyUntil(Trips t) {
         if (t == null || t.getStartTime() == null) return null;
-        String hireTypeCode = t.getBooking() != null && t.getBooking().getHireType() != null ? t.getBooking().getHireType().getCode() : null;
-        Instant busy = tripOccupancyService.computeBusyUntil(
-                hireTypeCode,
-                t.getStartTime(),
-                t.getEndTime(),
-                t.getDistance() != null ? t.getDistance().doubleValue() : null,
-                t.getStartLocation(),
-                t.getEndLocation()
-        );
+        Instant busy = tripOccupancyService.computeBusyUntil(t);
         return busy != null ? busy : t.getStartTime().plusSeconds(3600);
     }
 
@@ -21,14 +21,17 @@ import org.example.ptcmssbackend.entity.Trips;
 import org.example.ptcmssbackend.entity.TripVehicles;
 import org.example.ptcmssbackend.entity.Vehicles;
 import org.example.ptcmssbackend.enums.ApprovalType;
+import org.example.ptcmssbackend.enums.AssignmentAction;
 import org.example.ptcmssbackend.enums.BookingStatus;
 import org.example.ptcmssbackend.enums.DriverDayOffStatus;
 import org.example.ptcmssbackend.enums.DriverStatus;
 import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
 import org.example.ptcmssbackend.repository.*;
 import org.example.ptcmssbackend.service.ApprovalService;
 import org.example.ptcmssbackend.service.DriverService;
 import org.example.ptcmssbackend.service.WebSocketNotificationService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -57,6 +60,7 @@ public class DriverServiceImpl implements DriverService {
     private final org.example.ptcmssbackend.service.GraphHopperService graphHopperService;
     private final org.example.ptcmssbackend.repository.InvoiceRepository invoiceRepository;
     private final WebSocketNotificationService webSocketNotificationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional(readOnly = true)
@@ -458,6 +462,7 @@ public class DriverServiceImpl implements DriverService {
             trip.setStartTime(Instant.now());
         }
         tripRepository.save(trip);
+        eventPublisher.publishEvent(new TripAssignmentChangedEvent(List.of(tripId), AssignmentAction.START));
         
         // Cập nhật booking status thành INPROGRESS khi tài xế bắt đầu chuyến
         if (trip.getBooking() != null) {
@@ -500,6 +505,7 @@ public class DriverServiceImpl implements DriverService {
                 trip.setEndTime(Instant.now());
             }
             tripRepository.save(trip);
+            eventPublisher.publishEvent(new TripAssignmentChangedEvent(List.of(tripId), AssignmentAction.COMPLETE));
             log.info("[Trip] Trip {} completed successfully", tripId);
             return tripId;
         } catch (Exception e) {
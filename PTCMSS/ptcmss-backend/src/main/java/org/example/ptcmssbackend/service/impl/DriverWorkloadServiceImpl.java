@@ -0,0 +1,346 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.repository.TripDriverRepository;
+import org.example.ptcmssbackend.service.DriverWorkloadService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Sổ trong bộ nhớ: tài xế -> (ngày -> số chuyến). Tra cứu điểm công bằng chỉ đọc vài ô theo ngày
+ * (hôm nay, 7 ngày trong tuần, các ngày từ 3 ngày trước trở đi) thay vì duyệt lịch sử chuyến.
+ *
+ * Chỉ giữ chuyến bắt đầu từ {@link #HORIZON_DAYS} ngày trước: các cửa sổ tuần / 3 ngày luôn tính quanh
+ * chuyến đang điều phối nên chuyến cũ hơn không ảnh hưởng điểm. Sổ được dựng khi khởi động,
+ * cập nhật theo {@link TripAssignmentChangedEvent} / {@link BookingScheduleChangedEvent} và đối chiếu định kỳ
+ * với trip_drivers. Dựng lại chạy ngoài lock; sự kiện đến trong lúc dựng được áp lại lên sổ mới trước khi thay.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class DriverWorkloadServiceImpl implements DriverWorkloadService {
+
+    static final int HORIZON_DAYS = 14;
+
+    private final TripDriverRepository tripDriverRepository;
+
+    private volatile Ledger ledger;
+
+    // Áp sự kiện và thay sổ đi qua lock để sự kiện được áp đúng thứ tự và không bị mất khi thay sổ
+    private final Object lock = new Object();
+    // Trip/đơn nhận sự kiện trong lúc đang dựng sổ mới: áp lại lên sổ mới trước khi thay
+    private final Set<Integer> pendingTripIds = new HashSet<>();
+    private final Set<Integer> pendingBookingIds = new HashSet<>();
+    private int loadsInProgress;
+
+    @Override
+    public Workload getWorkload(Integer driverId, LocalDate tripDate) {
+        if (driverId == null || tripDate == null) {
+            return Workload.EMPTY;
+        }
+        return ledger().workload(driverId, tripDate);
+    }
+
+    @Override
+    public void refreshTrips(Collection<Integer> tripIds) {
+        if (tripIds == null || tripIds.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            if (loadsInProgress > 0) {
+                pendingTripIds.addAll(tripIds);
+            }
+            Ledger current = ledger;
+            if (current == null) {
+                return;
+            }
+            applyTrips(current, tripIds);
+        }
+        log.debug("[DriverWorkload] Refreshed trips {}", tripIds);
+    }
+
+    @Override
+    public void refreshBookings(Collection<Integer> bookingIds) {
+        if (bookingIds == null || bookingIds.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            if (loadsInProgress > 0) {
+                pendingBookingIds.addAll(bookingIds);
+            }
+            Ledger current = ledger;
+            if (current == null) {
+                return;
+            }
+            applyBookings(current, bookingIds);
+        }
+        log.debug("[DriverWorkload] Refreshed bookings {}", bookingIds);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            Ledger fresh = loadAndSwap(null);
+            log.info("[DriverWorkload] Ledger rebuilt: {} drivers, {} trips", fresh.driverCount(), fresh.tripCount());
+        } catch (Exception e) {
+            // Không chặn khởi động, lần tra cứu đầu tiên sẽ tự dựng lại
+            log.warn("[DriverWorkload] Cannot rebuild ledger: {}", e.getMessage());
+            dropLedger();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 3600000) // 1 giờ
+    public int verifyAndRepair() {
+        int[] mismatched = new int[1];
+        loadAndSwap((current, fresh) -> mismatched[0] = current.countMismatchedDrivers(fresh, fresh.horizon));
+        if (mismatched[0] > 0) {
+            log.warn("[DriverWorkload] Ledger out of sync for {} drivers, replaced with rebuilt ledger", mismatched[0]);
+        }
+        return mismatched[0];
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onTripAssignmentChanged(TripAssignmentChangedEvent event) {
+        try {
+            refreshTrips(event.getTripIds());
+        } catch (Exception e) {
+            // Không cập nhật được thì bỏ sổ, lần tra cứu sau sẽ dựng lại từ DB
+            log.warn("[DriverWorkload] Cannot refresh trips {} ({}), dropping ledger: {}",
+                    event.getTripIds(), event.getAction(), e.getMessage());
+            dropLedger();
+        }
+    }
+
+    /**
+     * Đơn đổi giờ đón / thêm bớt chuyến: ngày của các chuyến đã phân công có thể đổi
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onBookingScheduleChanged(BookingScheduleChangedEvent event) {
+        try {
+            refreshBookings(event.getBookingIds());
+        } catch (Exception e) {
+            log.warn("[DriverWorkload] Cannot refresh bookings {}, dropping ledger: {}",
+                    event.getBookingIds(), e.getMessage());
+            dropLedger();
+        }
+    }
+
+    private Ledger ledger() {
+        Ledger current = ledger;
+        if (current == null) {
+            synchronized (lock) {
+                current = ledger;
+                if (current == null) {
+                    // Nạp trong lock: sự kiện đến lúc này chờ và áp lên sổ mới
+                    current = load();
+                    ledger = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Dựng sổ mới từ DB (ngoài lock), áp lại các sự kiện đến trong lúc dựng rồi thay sổ trong lock.
+     *
+     * @param beforeSwap gọi trong lock với sổ hiện tại (nếu có) và sổ mới, trước khi thay
+     */
+    private Ledger loadAndSwap(BiConsumer<Ledger, Ledger> beforeSwap) {
+        synchronized (lock) {
+            loadsInProgress++;
+        }
+        try {
+            Ledger fresh = load();
+            synchronized (lock) {
+                if (!pendingTripIds.isEmpty()) {
+                    applyTrips(fresh, pendingTripIds);
+                }
+                if (!pendingBookingIds.isEmpty()) {
+                    applyBookings(fresh, pendingBookingIds);
+                }
+                Ledger current = ledger;
+                if (current != null && beforeSwap != null) {
+                    beforeSwap.accept(current, fresh);
+                }
+                // Luôn thay bằng bản mới để bỏ các ngày đã ra khỏi cửa sổ
+                ledger = fresh;
+            }
+            return fresh;
+        } finally {
+            synchronized (lock) {
+                if (--loadsInProgress == 0) {
+                    pendingTripIds.clear();
+                    pendingBookingIds.clear();
+                }
+            }
+        }
+    }
+
+    private void applyTrips(Ledger target, Collection<Integer> tripIds) {
+        List<Integer> ids = new ArrayList<>(new HashSet<>(tripIds));
+        target.replaceTrips(ids, tripDriverRepository.findWorkloadRowsByTripIdIn(ids));
+    }
+
+    private void applyBookings(Ledger target, Collection<Integer> bookingIds) {
+        List<Integer> ids = new ArrayList<>(new HashSet<>(bookingIds));
+        List<Object[]> rows = tripDriverRepository.findWorkloadRowsByBookingIdIn(ids);
+        // Gồm cả trip đã bị xóa khỏi đơn hoặc đã hết tài xế để gỡ số liệu cũ
+        Set<Integer> tripIds = target.tripIdsOfBookings(ids);
+        rows.forEach(row -> tripIds.add((Integer) row[1]));
+        target.replaceTrips(tripIds, rows);
+    }
+
+    private void dropLedger() {
+        synchronized (lock) {
+            ledger = null;
+        }
+    }
+
+    private Ledger load() {
+        long horizon = LocalDate.now().minusDays(HORIZON_DAYS).toEpochDay();
+        Instant from = LocalDate.ofEpochDay(horizon).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Ledger fresh = new Ledger(horizon);
+        fresh.replaceTrips(List.of(), tripDriverRepository.findWorkloadRowsFrom(from));
+        return fresh;
+    }
+
+    private static long epochDay(Instant instant) {
+        return instant.atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    private static final class Ledger {
+        private final long horizon;
+        private final Map<Integer, TreeMap<Long, Integer>> daysByDriver = new HashMap<>();
+        // tripId -> (ngày, các tài xế) để gỡ đúng ô khi chuyến thay đổi
+        private final Map<Integer, TripEntry> byTrip = new HashMap<>();
+
+        Ledger(long horizon) {
+            this.horizon = horizon;
+        }
+
+        synchronized Workload workload(Integer driverId, LocalDate tripDate) {
+            TreeMap<Long, Integer> days = daysByDriver.get(driverId);
+            if (days == null) {
+                return Workload.EMPTY;
+            }
+            long day = tripDate.toEpochDay();
+            long weekStart = tripDate.minusDays(tripDate.getDayOfWeek().getValue() - 1).toEpochDay();
+            int today = days.getOrDefault(day, 0);
+            int week = 0;
+            for (long d = weekStart; d < weekStart + 7; d++) {
+                week += days.getOrDefault(d, 0);
+            }
+            int recent = 0;
+            for (int count : days.tailMap(day - 3, true).values()) {
+                recent += count;
+            }
+            return new Workload(today, week, recent);
+        }
+
+        synchronized void replaceTrips(Collection<Integer> tripIds, List<Object[]> rows) {
+            for (Integer tripId : tripIds) {
+                TripEntry old = byTrip.remove(tripId);
+                if (old != null) {
+                    old.driverIds.forEach(driverId -> add(driverId, old.day, -1));
+                }
+            }
+            for (Object[] row : rows) {
+                Integer driverId = (Integer) row[0];
+                Integer tripId = (Integer) row[1];
+                Instant startTime = (Instant) row[2];
+                Integer bookingId = (Integer) row[3];
+                if (driverId == null || tripId == null || startTime == null) continue;
+                long day = epochDay(startTime);
+                TripEntry entry = byTrip.computeIfAbsent(tripId, k -> new TripEntry(day, bookingId));
+                if (entry.driverIds.add(driverId)) {
+                    add(driverId, day, 1);
+                }
+            }
+        }
+
+        synchronized Set<Integer> tripIdsOfBookings(Collection<Integer> bookingIds) {
+            Set<Integer> result = new HashSet<>();
+            byTrip.forEach((tripId, entry) -> {
+                if (bookingIds.contains(entry.bookingId)) {
+                    result.add(tripId);
+                }
+            });
+            return result;
+        }
+
+        private void add(Integer driverId, long day, int delta) {
+            TreeMap<Long, Integer> days = daysByDriver.computeIfAbsent(driverId, k -> new TreeMap<>());
+            int count = days.getOrDefault(day, 0) + delta;
+            if (count > 0) {
+                days.put(day, count);
+            } else {
+                days.remove(day);
+                if (days.isEmpty()) {
+                    daysByDriver.remove(driverId);
+                }
+            }
+        }
+
+        synchronized int countMismatchedDrivers(Ledger other, long fromDay) {
+            Set<Integer> driverIds = new HashSet<>(daysByDriver.keySet());
+            driverIds.addAll(other.daysByDriver.keySet());
+            int mismatched = 0;
+            for (Integer driverId : driverIds) {
+                if (!Objects.equals(tail(daysByDriver.get(driverId), fromDay), tail(other.daysByDriver.get(driverId), fromDay))) {
+                    mismatched++;
+                }
+            }
+            return mismatched;
+        }
+
+        private static Map<Long, Integer> tail(TreeMap<Long, Integer> days, long fromDay) {
+            return days == null ? Map.of() : days.tailMap(fromDay, true);
+        }
+
+        synchronized int driverCount() {
+            return daysByDriver.size();
+        }
+
+        synchronized int tripCount() {
+            return byTrip.size();
+        }
+    }
+
+    private static final class TripEntry {
+        private final long day;
+        private final Integer bookingId;
+        private final Set<Integer> driverIds = new HashSet<>();
+
+        TripEntry(long day, Integer bookingId) {
+            this.day = day;
+            this.bookingId = bookingId;
+        }
+    }
+}
@@ -8,14 +8,12 @@ import org.example.ptcmssbackend.dto.response.Accounting.ExpenseReportResponse;
 import org.example.ptcmssbackend.dto.response.Accounting.RevenueReportResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceListResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.service.AccountingService;
 import org.example.ptcmssbackend.service.ExportService;
 import org.example.ptcmssbackend.service.InvoiceService;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import com.itextpdf.kernel.pdf.PdfDocument;
@@ -38,6 +36,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.text.NumberFormat;
+import java.util.List;
 import java.util.Locale;
 
 @Slf4j
@@ -128,28 +127,20 @@ public class ExportServiceImpl implements ExportService {
     public Resource exportInvoiceListToExcel(Integer branchId, String type, String status) {
         log.info("[ExportService] Exporting invoice list to Excel");
         try {
-            Pageable pageable = PageRequest.of(0, 10000); // Get all
-            Page<InvoiceListResponse> invoices = invoiceService.getInvoices(
-                    branchId, type, status, null, null, null, null, null, pageable);
-
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
 
             // Header
             pw.println("Invoice Number,Customer,Amount,Paid Amount,Balance,Due Date,Payment Status");
 
-            // Data
-            for (InvoiceListResponse invoice : invoices.getContent()) {
-                pw.println(
-                        invoice.getInvoiceNumber() + "," +
-                                (invoice.getCustomerName() != null ? invoice.getCustomerName() : "") + "," +
-                                invoice.getAmount() + "," +
-                                invoice.getPaidAmount() + "," +
-                                invoice.getBalance() + "," +
-                                (invoice.getDueDate() != null ? invoice.getDueDate().toString() : "") + "," +
-                                invoice.getPaymentStatus()
-                );
-            }
+            // Data: đọc lần lượt theo con trỏ thay cho một trang 10.000 dòng
+            String cursor = null;
+            do {
+                CursorPageResponse<InvoiceListResponse> page = invoiceService.scrollInvoices(
+                        branchId, type, status, null, null, null, null, null, cursor, PageCursor.MAX_SIZE, false);
+                writeInvoiceRows(pw, page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
 
             pw.close();
             byte[] bytes = sw.toString().getBytes(StandardCharsets.UTF_8);
@@ -160,6 +151,20 @@ public class ExportServiceImpl implements ExportService {
         }
     }
 
+    private void writeInvoiceRows(PrintWriter pw, List<InvoiceListResponse> invoices) {
+        for (InvoiceListResponse invoice : invoices) {
+            pw.println(
+                    invoice.getInvoiceNumber() + "," +
+                            (invoice.getCustomerName() != null ? invoice.getCustomerName() : "") + "," +
+                            invoice.getAmount() + "," +
+                            invoice.getPaidAmount() + "," +
+                            invoice.getBalance() + "," +
+                            (invoice.getDueDate() != null ? invoice.getDueDate().toString() : "") + "," +
+                            invoice.getPaymentStatus()
+            );
+        }
+    }
+
     /**
      * Remove Vietnamese accents/diacritics
      */
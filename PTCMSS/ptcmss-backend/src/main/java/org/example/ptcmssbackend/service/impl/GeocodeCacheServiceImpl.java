@@ -0,0 +1,199 @@
+package org.example.ptcmssbackend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
+import org.example.ptcmssbackend.entity.GeocodeCacheEntry;
+import org.example.ptcmssbackend.repository.GeocodeCacheRepository;
+import org.example.ptcmssbackend.service.GeocodeCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Tầng 1: LinkedHashMap theo thứ tự truy cập (LRU), tối đa maxEntries địa chỉ.
+ * Tầng 2: bảng geocode_cache, giữ kết quả qua các lần khởi động; dòng đọc được từ DB được đưa lên tầng 1.
+ * Chỉ địa chỉ dùng để tính quãng đường/tuyến được ghi xuống bảng ({@link #put}); gợi ý khi gõ chỉ ở tầng 1.
+ * Bảng tối đa max-db-entries dòng, phần vượt (dòng lưu lâu nhất) bị xóa cùng lượt xóa dòng hết hạn.
+ * Cả hai tầng dùng chung hạn sống (ttl-hours). Lượt hit/miss từng tầng được đếm qua Micrometer
+ * (graphhopper.geocode.cache, tag tier = memory | database, result = hit | miss).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GeocodeCacheServiceImpl implements GeocodeCacheService {
+
+    static final String METRIC = "graphhopper.geocode.cache";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int PURGE_BATCH = 500;
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final TypeReference<List<PlaceSuggestion>> PLACES = new TypeReference<>() {
+    };
+
+    private final GeocodeCacheRepository geocodeCacheRepository;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${graphhopper.geocode-cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${graphhopper.geocode-cache.max-db-entries:50000}")
+    private long maxDbEntries;
+
+    @Value("${graphhopper.geocode-cache.ttl-hours:720}")
+    private long ttlHours;
+
+    private record CachedPlaces(List<PlaceSuggestion> places, Instant expiresAt) {
+    }
+
+    // Truy cập trong synchronized (memory)
+    private final Map<String, CachedPlaces> memory = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPlaces> eldest) {
+            return size() > Math.max(maxEntries, 1);
+        }
+    };
+
+    /**
+     * Khóa cache: Unicode NFC, chữ thường, gộp khoảng trắng; giữ dấu tiếng Việt vì kết quả geocode có thể khác
+     */
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(query, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        return SPACES.matcher(text).replaceAll(" ").trim();
+    }
+
+    @Override
+    public List<PlaceSuggestion> get(String query) {
+        String key = normalize(query);
+        if (key.isEmpty()) {
+            return null;
+        }
+        Instant now = Instant.now();
+
+        synchronized (memory) {
+            CachedPlaces cached = memory.get(key);
+            if (cached != null && cached.expiresAt().isAfter(now)) {
+                count("memory", "hit");
+                return cached.places();
+            }
+            if (cached != null) {
+                memory.remove(key);
+            }
+        }
+        count("memory", "miss");
+
+        if (key.length() > MAX_KEY_LENGTH) {
+            return null;
+        }
+        try {
+            GeocodeCacheEntry entry = geocodeCacheRepository.findByQueryKey(key)
+                    .filter(e -> e.getExpiresAt().isAfter(now))
+                    .orElse(null);
+            if (entry == null) {
+                count("database", "miss");
+                return null;
+            }
+            List<PlaceSuggestion> places = List.copyOf(objectMapper.readValue(entry.getPayload(), PLACES));
+            count("database", "hit");
+            remember(key, places, entry.getExpiresAt());
+            return places;
+        } catch (Exception e) {
+            // Cache lỗi thì coi như miss, không chặn geocode
+            log.warn("[GeocodeCache] Cannot read cache for '{}': {}", key, e.getMessage());
+            count("database", "miss");
+            return null;
+        }
+    }
+
+    @Override
+    public void putInMemory(String query, List<PlaceSuggestion> places) {
+        String key = normalize(query);
+        if (key.isEmpty() || places == null || places.isEmpty()) {
+            return;
+        }
+        remember(key, List.copyOf(places), Instant.now().plus(Duration.ofHours(ttlHours)));
+    }
+
+    @Override
+    public void put(String query, List<PlaceSuggestion> places) {
+        String key = normalize(query);
+        if (key.isEmpty() || places == null || places.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(Duration.ofHours(ttlHours));
+        List<PlaceSuggestion> copy = List.copyOf(places);
+        remember(key, copy, expiresAt);
+
+        if (key.length() > MAX_KEY_LENGTH) {
+            return;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(copy);
+            GeocodeCacheEntry entry = geocodeCacheRepository.findByQueryKey(key)
+                    .orElseGet(() -> new GeocodeCacheEntry(key, payload, now, expiresAt));
+            entry.setPayload(payload);
+            entry.setCreatedAt(now);
+            entry.setExpiresAt(expiresAt);
+            geocodeCacheRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Request khác vừa lưu cùng địa chỉ
+            log.debug("[GeocodeCache] Entry '{}' already stored", key);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("[GeocodeCache] Cannot store cache for '{}': {}", key, e.getMessage());
+        }
+    }
+
+    @Override
+    @Scheduled(cron = "0 15 * * * *") // Chạy mỗi giờ, phút 15
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        List<GeocodeCacheEntry> expired;
+        do {
+            expired = geocodeCacheRepository.findByExpiresAtBefore(now, PageRequest.of(0, PURGE_BATCH));
+            geocodeCacheRepository.deleteAll(expired);
+        } while (expired.size() == PURGE_BATCH);
+
+        long excess = geocodeCacheRepository.count() - Math.max(maxDbEntries, 0);
+        if (excess > 0) {
+            log.info("[GeocodeCache] Table over limit {}, removing {} oldest entries", maxDbEntries, excess);
+        }
+        while (excess > 0) {
+            List<GeocodeCacheEntry> oldest = geocodeCacheRepository.findAllByOrderByCreatedAtAsc(
+                    PageRequest.of(0, (int) Math.min(PURGE_BATCH, excess)));
+            if (oldest.isEmpty()) {
+                break;
+            }
+            geocodeCacheRepository.deleteAll(oldest);
+            excess -= oldest.size();
+        }
+    }
+
+    private void remember(String key, List<PlaceSuggestion> places, Instant expiresAt) {
+        synchronized (memory) {
+            memory.put(key, new CachedPlaces(places, expiresAt));
+        }
+    }
+
+    private void count(String tier, String result) {
+        meterRegistry.counter(METRIC, "tier", tier, "result", result).increment();
+    }
+}
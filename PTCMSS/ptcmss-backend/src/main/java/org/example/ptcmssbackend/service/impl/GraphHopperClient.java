@@ -0,0 +1,174 @@
+package org.example.ptcmssbackend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.config.GraphHopperProperties;
+import org.example.ptcmssbackend.exception.RoutingUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Lời gọi HTTP tới GraphHopper qua OutboundHttpClient dùng chung: giới hạn thời gian chờ phản hồi và đi qua circuit breaker.
+ * Timeout, lỗi mạng, 5xx, circuit đang mở hoặc hàng đợi tới host quá tải đều ném RoutingUnavailableException
+ * để caller chuyển sang ước lượng offline;
+ * 4xx (địa chỉ / tham số không hợp lệ) ném HttpClientErrorException và không tính là lỗi dịch vụ.
+ * Lượt gọi được đếm qua Micrometer (graphhopper.client.calls, tag endpoint, result = success | failure | rejected).
+ */
+@Slf4j
+@Component
+public class GraphHopperClient {
+
+    static final String METRIC = "graphhopper.client.calls";
+    private static final String UNAVAILABLE = "GraphHopper tạm thời không khả dụng";
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
+
+    private final GraphHopperProperties properties;
+    private final OutboundHttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public GraphHopperClient(GraphHopperProperties properties, OutboundHttpClient httpClient, MeterRegistry meterRegistry) {
+        this(properties, httpClient, meterRegistry, Clock.systemUTC());
+    }
+
+    /**
+     * clock dùng cho thời gian mở của circuit breaker (test truyền đồng hồ giả để không phải chờ thật)
+     */
+    public GraphHopperClient(GraphHopperProperties properties, OutboundHttpClient httpClient, MeterRegistry meterRegistry,
+                             Clock clock) {
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = new CircuitBreaker(properties.getCircuit().getFailureThreshold(),
+                properties.getCircuit().getOpenDuration(), clock);
+    }
+
+    /**
+     * GET {baseUrl}{path}?{query}&key=...
+     */
+    public Map<String, Object> get(String path, Map<String, ?> query) {
+        return await(getAsync(path, query));
+    }
+
+    /**
+     * POST {baseUrl}{path}?key=... với body JSON
+     */
+    public Map<String, Object> post(String path, Object body) {
+        return await(postAsync(path, body));
+    }
+
+    public CompletableFuture<Map<String, Object>> getAsync(String path, Map<String, ?> query) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(properties.getBaseUrl() + path);
+        query.forEach(builder::queryParam);
+        URI uri = builder.queryParam("key", properties.getApiKey()).encode().build().toUri();
+        return execute(path, requestBuilder(uri).GET().build());
+    }
+
+    public CompletableFuture<Map<String, Object>> postAsync(String path, Object body) {
+        URI uri = UriComponentsBuilder.fromHttpUrl(properties.getBaseUrl() + path)
+                .queryParam("key", properties.getApiKey()).encode().build().toUri();
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Không tạo được request GraphHopper", e));
+        }
+        return execute(path, requestBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                .build());
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private HttpRequest.Builder requestBuilder(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(properties.getReadTimeout())
+                .header("Accept", "application/json");
+    }
+
+    private CompletableFuture<Map<String, Object>> execute(String path, HttpRequest request) {
+        if (!circuitBreaker.allowsRequests()) {
+            count(path, "rejected");
+            return CompletableFuture.failedFuture(new RoutingUnavailableException(UNAVAILABLE));
+        }
+        // Request có thể phải xếp hàng chờ suất gọi tới host: xin phép circuit breaker lúc thực sự gửi,
+        // để request xếp hàng từ trước khi circuit mở không gọi tiếp vào dịch vụ đang lỗi
+        return httpClient.sendAsync("graphhopper" + path.replace('/', '.'), request, () -> {
+                    if (!circuitBreaker.tryAcquire()) {
+                        throw new RoutingUnavailableException(UNAVAILABLE);
+                    }
+                })
+                .handle((response, error) -> handle(path, response, error));
+    }
+
+    private Map<String, Object> handle(String path, HttpResponse<byte[]> response, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        // Chưa gửi đi (circuit mở, hàng đợi đầy / chờ quá lâu): không tính là lỗi của GraphHopper
+        if (cause instanceof RoutingUnavailableException unavailable) {
+            count(path, "rejected");
+            throw unavailable;
+        }
+        if (cause instanceof RejectedExecutionException overloaded) {
+            count(path, "rejected");
+            throw new RoutingUnavailableException("GraphHopper đang quá tải: " + overloaded.getMessage(), overloaded);
+        }
+
+        if (error == null && response.statusCode() < 500) {
+            // 4xx: dịch vụ vẫn phản hồi, lỗi nằm ở request
+            circuitBreaker.onSuccess();
+            count(path, "success");
+            if (response.statusCode() >= 400) {
+                throw new HttpClientErrorException(HttpStatusCode.valueOf(response.statusCode()));
+            }
+            try {
+                return objectMapper.readValue(response.body(), JSON_OBJECT);
+            } catch (IOException e) {
+                throw new RuntimeException("GraphHopper trả về dữ liệu không hợp lệ", e);
+            }
+        }
+
+        circuitBreaker.onFailure();
+        count(path, "failure");
+        String reason = cause != null ? cause.toString() : "HTTP " + response.statusCode();
+        log.warn("[GraphHopper] {} failed (circuit {}): {}", path, circuitBreaker.getState(), reason);
+        throw new RoutingUnavailableException("GraphHopper không phản hồi: " + reason, cause);
+    }
+
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void count(String path, String result) {
+        meterRegistry.counter(METRIC, "endpoint", path, "result", result).increment();
+    }
+}
@@ -2,18 +2,28 @@ package org.example.ptcmssbackend.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceMatrixResult;
 import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
 import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
 import org.example.ptcmssbackend.dto.response.GraphHopper.RouteOption;
+import org.example.ptcmssbackend.exception.RoutingUnavailableException;
+import org.example.ptcmssbackend.service.GeocodeCacheService;
 import org.example.ptcmssbackend.service.GraphHopperService;
+import org.example.ptcmssbackend.service.RouteCacheService;
+import org.example.ptcmssbackend.service.RouteEstimateService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -21,37 +31,53 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class GraphHopperServiceImpl implements GraphHopperService {
 
-    @Value("${graphhopper.api-key}")
-    private String apiKey;
+    // Giới hạn số điểm mỗi chiều của một request Matrix API (theo gói GraphHopper)
+    @Value("${graphhopper.matrix.max-origins:5}")
+    private int matrixMaxOrigins;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${graphhopper.matrix.max-destinations:5}")
+    private int matrixMaxDestinations;
 
-    private static final String GEOCODE_URL = "https://graphhopper.com/api/1/geocode";
-    private static final String MATRIX_URL = "https://graphhopper.com/api/1/matrix";
-    private static final String ROUTE_URL = "https://graphhopper.com/api/1/route";
+    private final GraphHopperClient graphHopperClient;
+    private final GeocodeCacheService geocodeCacheService;
+    private final RouteCacheService routeCacheService;
+    private final RouteEstimateService routeEstimateService;
+
+    private static final String GEOCODE_PATH = "/geocode";
+    private static final String MATRIX_PATH = "/matrix";
+    private static final String ROUTE_PATH = "/route";
+    private static final String PROFILE = "car";
 
     @Override
     public List<PlaceSuggestion> autocompletePlaces(String query) {
+        // Gợi ý khi đang gõ: chỉ cache trong bộ nhớ
+        return geocode(query, false);
+    }
+
+    /**
+     * @param persist true khi địa chỉ dùng để tính quãng đường/tuyến: lưu cả xuống bảng geocode_cache
+     */
+    private List<PlaceSuggestion> geocode(String query, boolean persist) {
         if (query == null || query.trim().length() < 2) {
             return Collections.emptyList();
         }
 
-        String url = UriComponentsBuilder.fromHttpUrl(GEOCODE_URL)
-                .queryParam("q", query)
-                .queryParam("locale", "en")
-                .queryParam("limit", 10)
-                .queryParam("key", apiKey)
-                .toUriString();
+        // Địa chỉ lặp lại (bến xe, điểm đến quen thuộc, các lần gõ giống nhau) lấy từ cache
+        List<PlaceSuggestion> cached = geocodeCacheService.get(query);
+        if (cached != null) {
+            return cached;
+        }
 
         try {
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+            Map<String, Object> response = graphHopperClient.get(GEOCODE_PATH,
+                    Map.of("q", query, "locale", "en", "limit", 10));
             if (response == null || !response.containsKey("hits")) {
                 return Collections.emptyList();
             }
 
             List<Map<String, Object>> hits = (List<Map<String, Object>>) response.get("hits");
 
-            return hits.stream().map(hit -> {
+            List<PlaceSuggestion> places = hits.stream().map(hit -> {
                 Map<String, Object> point = (Map<String, Object>) hit.get("point");
                 String name = (String) hit.getOrDefault("name", "");
                 String street = (String) hit.getOrDefault("street", "");
@@ -91,17 +117,28 @@ public class GraphHopperServiceImpl implements GraphHopperService {
                         .build();
             }).collect(Collectors.toList());
 
+            if (persist) {
+                geocodeCacheService.put(query, places);
+            } else {
+                geocodeCacheService.putInMemory(query, places);
+            }
+            return places;
+
+        } catch (RoutingUnavailableException e) {
+            // Không trả danh sách rỗng: caller phân biệt được "không có địa chỉ" với "GraphHopper lỗi" để ước lượng an toàn
+            log.warn("GraphHopper geocoding unavailable for query '{}': {}", query, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("GraphHopper geocoding error for query: {}", query, e);
-            return Collections.emptyList();
+            throw new RoutingUnavailableException("Lỗi khi tra địa chỉ: " + e.getMessage(), e);
         }
     }
 
     @Override
     public DistanceResult calculateDistance(String from, String to) {
         // Step 1: Geocode addresses
-        List<PlaceSuggestion> fromResults = autocompletePlaces(from);
-        List<PlaceSuggestion> toResults = autocompletePlaces(to);
+        List<PlaceSuggestion> fromResults = geocode(from, true);
+        List<PlaceSuggestion> toResults = geocode(to, true);
 
         if (fromResults.isEmpty()) {
             throw new RuntimeException("Không tìm thấy địa chỉ điểm đi: " + from);
@@ -112,22 +149,49 @@ public class GraphHopperServiceImpl implements GraphHopperService {
 
         PlaceSuggestion fromPlace = fromResults.get(0);
         PlaceSuggestion toPlace = toResults.get(0);
+        if (fromPlace.getLatitude() == null || fromPlace.getLongitude() == null
+                || toPlace.getLatitude() == null || toPlace.getLongitude() == null) {
+            throw new RuntimeException("Không xác định được tọa độ của địa chỉ");
+        }
+
+        // Step 2: Khoảng cách đường bộ qua Routing API; tuyến đã tính trước đó lấy từ cache
+        RouteCacheService.RouteLeg leg;
+        boolean estimated = false;
+        try {
+            leg = routeCacheService.getOrFetch(
+                    fromPlace.getLatitude(), fromPlace.getLongitude(),
+                    toPlace.getLatitude(), toPlace.getLongitude(),
+                    PROFILE, () -> fetchRoute(fromPlace, toPlace));
+        } catch (RoutingUnavailableException e) {
+            // GraphHopper lỗi / circuit đang mở và cache không có tuyến: ước lượng offline
+            log.warn("GraphHopper unavailable, estimating distance {} -> {}: {}", from, to, e.getMessage());
+            leg = routeEstimateService.estimate(fromPlace.getLatitude(), fromPlace.getLongitude(),
+                    toPlace.getLatitude(), toPlace.getLongitude());
+            estimated = true;
+        }
 
-        // Step 2: Calculate distance using Routing API for accurate road distance
+        return DistanceResult.builder()
+                .distanceKm(leg.distanceKm())
+                .durationMinutes(leg.durationMinutes())
+                .from(fromPlace.getFullAddress())
+                .to(toPlace.getFullAddress())
+                .estimated(estimated)
+                .build();
+    }
+
+    private RouteCacheService.RouteLeg fetchRoute(PlaceSuggestion fromPlace, PlaceSuggestion toPlace) {
         Map<String, Object> requestBody = Map.of(
                 "points", List.of(
                         List.of(fromPlace.getLongitude(), fromPlace.getLatitude()), // [lon, lat]
                         List.of(toPlace.getLongitude(), toPlace.getLatitude())
                 ),
-                "profile", "car",
+                "profile", PROFILE,
                 "instructions", false,
                 "calc_points", false
         );
 
-        String url = ROUTE_URL + "?key=" + apiKey;
-
         try {
-            Map<String, Object> response = restTemplate.postForObject(url, requestBody, Map.class);
+            Map<String, Object> response = graphHopperClient.post(ROUTE_PATH, requestBody);
             if (response == null || !response.containsKey("paths")) {
                 throw new RuntimeException("API tính tuyến đường không trả về kết quả");
             }
@@ -142,19 +206,262 @@ public class GraphHopperServiceImpl implements GraphHopperService {
             double distanceMeters = ((Number) firstPath.get("distance")).doubleValue();
             long timeMillis = ((Number) firstPath.get("time")).longValue();
 
-            return DistanceResult.builder()
-                    .distanceKm(distanceMeters / 1000.0)
-                    .durationMinutes(timeMillis / 60000.0)
-                    .from(fromPlace.getFullAddress())
-                    .to(toPlace.getFullAddress())
-                    .build();
+            return new RouteCacheService.RouteLeg(distanceMeters / 1000.0, timeMillis / 60000.0);
 
+        } catch (RoutingUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("GraphHopper distance calculation error", e);
             throw new RuntimeException("Lỗi khi tính khoảng cách: " + e.getMessage());
         }
     }
 
+    /**
+     * Geocode mỗi địa chỉ khác nhau một lần, lấy các ô đã có trong route cache,
+     * phần còn thiếu gọi Matrix API theo từng khối (tối đa max-origins × max-destinations điểm) rồi lưu lại cache.
+     * Khối nào API lỗi thì dùng tuyến cũ trong cache nếu có; GraphHopper không khả dụng thì ước lượng offline các ô còn thiếu.
+     */
+    @Override
+    public DistanceMatrixResult calculateMatrix(List<String> origins, List<String> destinations) {
+        if (origins == null || origins.isEmpty() || destinations == null || destinations.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách điểm đi và điểm đến không được để trống");
+        }
+
+        // Step 1: Geocode (mỗi địa chỉ một lần)
+        Map<String, PlaceSuggestion> places = new HashMap<>();
+        for (String address : concat(origins, destinations)) {
+            if (!places.containsKey(address)) {
+                places.put(address, geocodeFirst(address));
+            }
+        }
+        List<PlaceSuggestion> fromPlaces = origins.stream().map(places::get).toList();
+        List<PlaceSuggestion> toPlaces = destinations.stream().map(places::get).toList();
+
+        // Step 2: Các ô đã có trong cache
+        int rows = origins.size();
+        int cols = destinations.size();
+        String[][] keys = new String[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (fromPlaces.get(i) != null && toPlaces.get(j) != null) {
+                    keys[i][j] = RouteCacheServiceImpl.routeKey(fromPlaces.get(i).getLatitude(), fromPlaces.get(i).getLongitude(),
+                            toPlaces.get(j).getLatitude(), toPlaces.get(j).getLongitude(), PROFILE);
+                }
+            }
+        }
+        RouteCacheService.RouteLeg[][] legs = new RouteCacheService.RouteLeg[rows][cols];
+        Map<String, RouteCacheService.RouteLeg> cached = routeCacheService.findFresh(distinctKeys(keys));
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                legs[i][j] = keys[i][j] != null ? cached.get(keys[i][j]) : null;
+            }
+        }
+
+        // Step 3: Gọi Matrix API cho các hàng / cột còn ô thiếu, chia khối theo giới hạn của API
+        Set<Integer> missingRows = new LinkedHashSet<>();
+        Set<Integer> missingCols = new LinkedHashSet<>();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (keys[i][j] != null && legs[i][j] == null) {
+                    missingRows.add(i);
+                    missingCols.add(j);
+                }
+            }
+        }
+        // Các khối gửi song song (giới hạn đồng thời theo host do OutboundHttpClient đảm nhận)
+        List<MatrixChunk> chunks = new ArrayList<>();
+        for (List<Integer> rowChunk : chunk(new ArrayList<>(missingRows), matrixMaxOrigins)) {
+            for (List<Integer> colChunk : chunk(new ArrayList<>(missingCols), matrixMaxDestinations)) {
+                List<String> missingKeys = new ArrayList<>();
+                for (int i : rowChunk) {
+                    for (int j : colChunk) {
+                        if (keys[i][j] != null && legs[i][j] == null) {
+                            missingKeys.add(keys[i][j]);
+                        }
+                    }
+                }
+                if (!missingKeys.isEmpty()) {
+                    chunks.add(new MatrixChunk(rowChunk, colChunk, missingKeys, requestMatrix(
+                            rowChunk.stream().map(fromPlaces::get).toList(),
+                            colChunk.stream().map(toPlaces::get).toList())));
+                }
+            }
+        }
+        boolean estimated = false;
+        for (MatrixChunk chunk : chunks) {
+            estimated |= fillChunk(chunk, fromPlaces, toPlaces, keys, legs);
+        }
+
+        List<List<Double>> distances = new ArrayList<>(rows);
+        List<List<Double>> durations = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Double[] distanceRow = new Double[cols];
+            Double[] durationRow = new Double[cols];
+            for (int j = 0; j < cols; j++) {
+                if (legs[i][j] != null) {
+                    distanceRow[j] = legs[i][j].distanceKm();
+                    durationRow[j] = legs[i][j].durationMinutes();
+                }
+            }
+            distances.add(Arrays.asList(distanceRow));
+            durations.add(Arrays.asList(durationRow));
+        }
+
+        return DistanceMatrixResult.builder()
+                .origins(origins)
+                .destinations(destinations)
+                .distancesKm(distances)
+                .durationsMinutes(durations)
+                .estimated(estimated)
+                .build();
+    }
+
+    /**
+     * Điền các ô còn thiếu của một khối; true nếu có ô phải ước lượng offline
+     */
+    private boolean fillChunk(MatrixChunk chunk, List<PlaceSuggestion> fromPlaces, List<PlaceSuggestion> toPlaces,
+                              String[][] keys, RouteCacheService.RouteLeg[][] legs) {
+        List<Integer> rowChunk = chunk.rows();
+        List<Integer> colChunk = chunk.cols();
+        List<String> missingKeys = chunk.missingKeys();
+        RouteCacheService.RouteLeg[][] fetched;
+        try {
+            fetched = awaitMatrix(chunk.response(), rowChunk.size(), colChunk.size());
+        } catch (RuntimeException e) {
+            Map<String, RouteCacheService.RouteLeg> stale = routeCacheService.findFallback(missingKeys);
+            boolean unavailable = e instanceof RoutingUnavailableException;
+            if (!unavailable && !stale.keySet().containsAll(missingKeys)) {
+                throw e;
+            }
+            log.warn("GraphHopper matrix failed, serving {} cached routes, estimating {}: {}",
+                    stale.size(), missingKeys.size() - stale.size(), e.getMessage());
+            boolean estimated = false;
+            for (int i : rowChunk) {
+                for (int j : colChunk) {
+                    if (keys[i][j] == null || legs[i][j] != null) {
+                        continue;
+                    }
+                    legs[i][j] = stale.get(keys[i][j]);
+                    if (legs[i][j] == null) {
+                        legs[i][j] = routeEstimateService.estimate(fromPlaces.get(i).getLatitude(), fromPlaces.get(i).getLongitude(),
+                                toPlaces.get(j).getLatitude(), toPlaces.get(j).getLongitude());
+                        estimated = true;
+                    }
+                }
+            }
+            return estimated;
+        }
+
+        List<RouteCacheService.RouteEntry> entries = new ArrayList<>();
+        for (int r = 0; r < rowChunk.size(); r++) {
+            for (int c = 0; c < colChunk.size(); c++) {
+                int i = rowChunk.get(r);
+                int j = colChunk.get(c);
+                RouteCacheService.RouteLeg leg = fetched[r][c];
+                if (keys[i][j] == null || legs[i][j] != null || leg == null) {
+                    continue;
+                }
+                legs[i][j] = leg;
+                entries.add(new RouteCacheService.RouteEntry(
+                        fromPlaces.get(i).getLatitude(), fromPlaces.get(i).getLongitude(),
+                        toPlaces.get(j).getLatitude(), toPlaces.get(j).getLongitude(), leg));
+            }
+        }
+        routeCacheService.putAll(PROFILE, entries);
+        return false;
+    }
+
+    private record MatrixChunk(List<Integer> rows, List<Integer> cols, List<String> missingKeys,
+                               CompletableFuture<Map<String, Object>> response) {
+    }
+
+    /**
+     * Gửi một request Matrix API (không chờ kết quả)
+     */
+    private CompletableFuture<Map<String, Object>> requestMatrix(List<PlaceSuggestion> from, List<PlaceSuggestion> to) {
+        Map<String, Object> requestBody = Map.of(
+                "from_points", from.stream().map(p -> List.of(p.getLongitude(), p.getLatitude())).toList(), // [lon, lat]
+                "to_points", to.stream().map(p -> List.of(p.getLongitude(), p.getLatitude())).toList(),
+                "out_arrays", List.of("distances", "times"),
+                "profile", PROFILE,
+                "fail_fast", false
+        );
+        return graphHopperClient.postAsync(MATRIX_PATH, requestBody);
+    }
+
+    /**
+     * Chờ kết quả một khối Matrix API; ô null khi không có đường (fail_fast = false)
+     */
+    private RouteCacheService.RouteLeg[][] awaitMatrix(CompletableFuture<Map<String, Object>> pending, int rows, int cols) {
+        try {
+            Map<String, Object> response = pending.join();
+            if (response == null || !response.containsKey("distances") || !response.containsKey("times")) {
+                throw new RuntimeException("API ma trận khoảng cách không trả về kết quả");
+            }
+
+            List<List<Number>> distances = (List<List<Number>>) response.get("distances");
+            List<List<Number>> times = (List<List<Number>>) response.get("times");
+            RouteCacheService.RouteLeg[][] legs = new RouteCacheService.RouteLeg[rows][cols];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    Number distanceMeters = distances.get(r).get(c);
+                    Number timeSeconds = times.get(r).get(c);
+                    if (distanceMeters != null && timeSeconds != null) {
+                        legs[r][c] = new RouteCacheService.RouteLeg(
+                                distanceMeters.doubleValue() / 1000.0, timeSeconds.doubleValue() / 60.0);
+                    }
+                }
+            }
+            return legs;
+
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RoutingUnavailableException unavailable) {
+                throw unavailable;
+            }
+            log.error("GraphHopper matrix calculation error", e.getCause());
+            throw new RuntimeException("Lỗi khi tính ma trận khoảng cách: " + e.getCause().getMessage());
+        } catch (Exception e) {
+            log.error("GraphHopper matrix calculation error", e);
+            throw new RuntimeException("Lỗi khi tính ma trận khoảng cách: " + e.getMessage());
+        }
+    }
+
+    private PlaceSuggestion geocodeFirst(String address) {
+        List<PlaceSuggestion> results = geocode(address, true);
+        if (results.isEmpty() || results.get(0).getLatitude() == null || results.get(0).getLongitude() == null) {
+            log.warn("GraphHopper matrix: cannot geocode address '{}'", address);
+            return null;
+        }
+        return results.get(0);
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private static List<String> distinctKeys(String[][] keys) {
+        Set<String> all = new LinkedHashSet<>();
+        for (String[] row : keys) {
+            for (String key : row) {
+                if (key != null) {
+                    all.add(key);
+                }
+            }
+        }
+        return new ArrayList<>(all);
+    }
+
+    private static List<List<Integer>> chunk(List<Integer> indexes, int size) {
+        int step = Math.max(1, size);
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < indexes.size(); from += step) {
+            chunks.add(indexes.subList(from, Math.min(indexes.size(), from + step)));
+        }
+        return chunks;
+    }
+
     @Override
     public List<RouteOption> getAlternativeRoutes(String from, String to, Integer maxPaths) {
         if (maxPaths == null || maxPaths < 1) {
@@ -162,8 +469,8 @@ public class GraphHopperServiceImpl implements GraphHopperService {
         }
 
         // Step 1: Geocode
-        List<PlaceSuggestion> fromResults = autocompletePlaces(from);
-        List<PlaceSuggestion> toResults = autocompletePlaces(to);
+        List<PlaceSuggestion> fromResults = geocode(from, true);
+        List<PlaceSuggestion> toResults = geocode(to, true);
 
         if (fromResults.isEmpty() || toResults.isEmpty()) {
             throw new RuntimeException("Không tìm thấy địa chỉ");
@@ -178,7 +485,7 @@ public class GraphHopperServiceImpl implements GraphHopperService {
                         List.of(fromPlace.getLongitude(), fromPlace.getLatitude()),
                         List.of(toPlace.getLongitude(), toPlace.getLatitude())
                 ),
-                "profile", "car",
+                "profile", PROFILE,
                 "algorithm", "alternative_route",
                 "alternative_route.max_paths", maxPaths,
                 "ch.disable", true,
@@ -186,10 +493,8 @@ public class GraphHopperServiceImpl implements GraphHopperService {
                 "locale", "vi"
         );
 
-        String url = ROUTE_URL + "?key=" + apiKey;
-
         try {
-            Map<String, Object> response = restTemplate.postForObject(url, requestBody, Map.class);
+            Map<String, Object> response = graphHopperClient.post(ROUTE_PATH, requestBody);
             if (response == null || !response.containsKey("paths")) {
                 throw new RuntimeException("Không tìm được tuyến đường");
             }
@@ -0,0 +1,115 @@
+package org.example.ptcmssbackend.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Giới hạn số request đồng thời tới một host mà không chặn thread gọi:
+ * quá giới hạn thì request được xếp hàng và chạy khi một request trước hoàn tất.
+ * Hàng đợi có độ dài tối đa và thời gian chờ tối đa; vượt một trong hai thì future lỗi với RejectedExecutionException.
+ */
+public final class HostConcurrencyLimiter {
+
+    private final int limit;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final Deque<Waiting> waiting = new ArrayDeque<>();
+    private int active;
+
+    /**
+     * @param maxWait thời gian chờ tối đa trong hàng đợi; null hoặc 0 = không giới hạn
+     */
+    public HostConcurrencyLimiter(int limit, int maxQueued, Duration maxWait) {
+        this.limit = Math.max(1, limit);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWait = maxWait;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> running;
+            try {
+                running = task.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                release();
+                return;
+            }
+            // Báo kết quả cho caller trước rồi mới nhường suất: request kế tiếp thấy được trạng thái caller vừa cập nhật
+            // (vd. circuit breaker vừa mở vì request này lỗi)
+            running.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+                release();
+            });
+        };
+
+        Waiting entry = null;
+        boolean startNow = false;
+        synchronized (this) {
+            if (active < limit) {
+                active++;
+                startNow = true;
+            } else if (waiting.size() < maxQueued) {
+                entry = new Waiting(start, result);
+                waiting.addLast(entry);
+            }
+        }
+        if (startNow) {
+            start.run();
+        } else if (entry == null) {
+            result.completeExceptionally(new RejectedExecutionException(
+                    "Hàng đợi đã đầy (" + maxQueued + " request đang chờ)"));
+        } else if (maxWait != null && maxWait.toMillis() > 0) {
+            Waiting queued = entry;
+            CompletableFuture.delayedExecutor(maxWait.toMillis(), TimeUnit.MILLISECONDS).execute(() -> expire(queued));
+        }
+        return result;
+    }
+
+    public synchronized int getActive() {
+        return active;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    private void expire(Waiting entry) {
+        boolean removed;
+        synchronized (this) {
+            removed = waiting.remove(entry);
+        }
+        // Đã được chạy thì bỏ qua
+        if (removed) {
+            entry.result().completeExceptionally(new RejectedExecutionException(
+                    "Chờ quá " + maxWait.toMillis() + "ms trong hàng đợi"));
+        }
+    }
+
+    private void release() {
+        Waiting next;
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                active--;
+            }
+        }
+        // Chuyển suất chạy cho request đang chờ (active giữ nguyên)
+        if (next != null) {
+            next.start().run();
+        }
+    }
+
+    private record Waiting(Runnable start, CompletableFuture<?> result) {
+    }
+}
@@ -9,18 +9,22 @@ import org.example.ptcmssbackend.dto.request.Invoice.VoidInvoiceRequest;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceListResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.InvoiceResponse;
 import org.example.ptcmssbackend.dto.response.Invoice.PaymentHistoryResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.entity.*;
 import org.example.ptcmssbackend.enums.BookingStatus;
 import org.example.ptcmssbackend.enums.InvoiceStatus;
 import org.example.ptcmssbackend.enums.InvoiceType;
 import org.example.ptcmssbackend.enums.PaymentStatus;
 import org.example.ptcmssbackend.enums.PaymentConfirmationStatus;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
 import org.example.ptcmssbackend.exception.InvoiceException;
 import org.example.ptcmssbackend.exception.PaymentException;
 import org.example.ptcmssbackend.exception.ResourceNotFoundException;
 import org.example.ptcmssbackend.repository.*;
 import org.example.ptcmssbackend.service.InvoiceService;
+import org.example.ptcmssbackend.service.SearchIndexService;
 import org.example.ptcmssbackend.service.SystemSettingService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -55,6 +59,8 @@ public class InvoiceServiceImpl implements InvoiceService {
     private final TripDriverRepository tripDriverRepository;
     private final BookingVehicleDetailsRepository bookingVehicleDetailsRepository;
     private final SystemSettingService systemSettingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SearchIndexService searchIndexService;
 
     @Override
     @Transactional
@@ -161,14 +167,7 @@ public class InvoiceServiceImpl implements InvoiceService {
             Integer branchId, String type, String status, String paymentStatus,
             LocalDate startDate, LocalDate endDate, Integer customerId, String keyword, Pageable pageable) {
 
-        InvoiceType invoiceType = null;
-        if (type != null) {
-            try {
-                invoiceType = InvoiceType.valueOf(type.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                // Invalid type, keep as null
-            }
-        }
+        InvoiceType invoiceType = parseInvoiceType(type);
         InvoiceStatus invoiceStatus = status != null ? InvoiceStatus.valueOf(status.toUpperCase()) : null;
         PaymentStatus paymentStatusEnum = paymentStatus != null ? PaymentStatus.valueOf(paymentStatus.toUpperCase()) : null;
 
@@ -236,6 +235,71 @@ public class InvoiceServiceImpl implements InvoiceService {
         return new PageImpl<>(responses, pageable, invoices.size());
     }
 
+    @Override
+    public CursorPageResponse<InvoiceListResponse> scrollInvoices(
+            Integer branchId, String type, String status, String paymentStatus,
+            LocalDate startDate, LocalDate endDate, Integer customerId, String keyword,
+            String cursor, int size, boolean withTotal) {
+        int pageSize = PageCursor.normalizeSize(size);
+        PageCursor.Position after = PageCursor.decode(cursor);
+
+        InvoiceType invoiceType = parseInvoiceType(type);
+        InvoiceStatus invoiceStatus = status != null ? InvoiceStatus.valueOf(status.toUpperCase()) : null;
+        PaymentStatus paymentStatusEnum = paymentStatus != null ? PaymentStatus.valueOf(paymentStatus.toUpperCase()) : null;
+
+        Instant startInstant = startDate != null ? startDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+        Instant endInstant = endDate != null ? endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant() : null;
+
+        // Từ khóa: số HĐ (chuỗi con), mã đơn "ORD-123" hoặc "123", tên/SĐT khách hàng qua chỉ mục tìm kiếm
+        boolean keywordSearch = keyword != null && !keyword.isBlank();
+        String invoiceNumberPattern = keywordSearch ? "%" + keyword.trim().toLowerCase() + "%" : null;
+        Integer keywordId = keywordSearch ? parseBookingCode(keyword) : null;
+        SearchIndexService.KeywordMatch match = searchIndexService.match(keyword);
+        SearchIndexService.KeywordMatch terms = match != null ? match : SearchIndexService.KeywordMatch.NONE;
+
+        List<Invoices> rows = invoiceRepository.scrollInvoicesWithFilters(
+                branchId, invoiceType, invoiceStatus, startInstant, endInstant, customerId, paymentStatusEnum,
+                keywordSearch, invoiceNumberPattern, keywordId,
+                terms.term(0), terms.term(1), terms.term(2), terms.emailTerm(),
+                after != null ? after.sortKey() : null,
+                after != null ? after.id() : null,
+                PageCursor.limit(pageSize));
+
+        return PageCursor.page(rows, pageSize, Invoices::getInvoiceDate, Invoices::getId, this::mapToListResponse,
+                withTotal
+                        ? () -> invoiceRepository.countInvoicesWithFilters(
+                                branchId, invoiceType, invoiceStatus, startInstant, endInstant, customerId, paymentStatusEnum,
+                                keywordSearch, invoiceNumberPattern, keywordId,
+                                terms.term(0), terms.term(1), terms.term(2), terms.emailTerm())
+                        : null);
+    }
+
+    private InvoiceType parseInvoiceType(String type) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return InvoiceType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            // Invalid type, keep as null
+            return null;
+        }
+    }
+
+    /**
+     * "ORD-123" hoặc "123" -> 123; null nếu từ khóa không phải mã đơn
+     */
+    private Integer parseBookingCode(String keyword) {
+        String code = keyword.trim().toUpperCase();
+        if (code.startsWith("ORD-")) {
+            code = code.substring(4);
+        }
+        if (code.isEmpty() || code.length() > 9 || !code.chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+        return Integer.valueOf(code);
+    }
+
     @Override
     @Transactional
     public InvoiceResponse updateInvoice(Integer invoiceId, CreateInvoiceRequest request) {
@@ -348,6 +412,11 @@ public class InvoiceServiceImpl implements InvoiceService {
         // Flush để đảm bảo payment được lưu vào DB trước khi query
         paymentHistoryRepository.flush();
 
+        // Thanh toán ghi nhận đã duyệt có thể biến đơn thành đơn giữ chỗ theo cọc
+        if (payment.getConfirmationStatus() == PaymentConfirmationStatus.CONFIRMED && invoice.getBooking() != null) {
+            eventPublisher.publishEvent(new BookingScheduleChangedEvent(List.of(invoice.getBooking().getId())));
+        }
+
         // Gửi thông báo cho Accountant nếu payment có status PENDING (cần xác nhận)
         if (payment.getConfirmationStatus() == PaymentConfirmationStatus.PENDING) {
             notifyAccountantsAboutPendingPayment(invoice, payment);
@@ -726,6 +795,11 @@ public class InvoiceServiceImpl implements InvoiceService {
                 }
             }
 
+            // Duyệt / từ chối thanh toán làm thay đổi số xe giữ chỗ theo cọc của đơn
+            if (invoice != null && invoice.getBooking() != null) {
+                eventPublisher.publishEvent(new BookingScheduleChangedEvent(List.of(invoice.getBooking().getId())));
+            }
+
             // Send WebSocket notifications to Driver (người tạo payment request)
             try {
                 Integer bookingId = invoice != null && invoice.getBooking() != null ? invoice.getBooking().getId() : null;
@@ -0,0 +1,115 @@
+package org.example.ptcmssbackend.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Ghép cặp chi phí nhỏ nhất (thuật toán Hungarian, O(n² · m) với n = min(số hàng, số cột)).
+ * Dùng cho điều phối tự động: hàng = chuyến, cột = tài xế hoặc xe.
+ */
+public final class MinCostMatching {
+
+    /**
+     * Chi phí cho cặp không hợp lệ. Đủ lớn để thuật toán luôn ưu tiên ghép được nhiều cặp hợp lệ nhất,
+     * đủ nhỏ để cộng dồn vài nghìn lần không tràn long.
+     */
+    public static final long FORBIDDEN = 1_000_000_000_000L;
+
+    private static final long INF = Long.MAX_VALUE / 4;
+
+    private MinCostMatching() {
+    }
+
+    /**
+     * @param cost ma trận chi phí [hàng][cột], mọi hàng cùng độ dài
+     * @return với mỗi hàng: chỉ số cột được ghép, hoặc -1 nếu không ghép được (hoặc chỉ ghép được cặp FORBIDDEN)
+     */
+    public static int[] solve(long[][] cost) {
+        int rows = cost.length;
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        if (rows == 0 || cost[0].length == 0) {
+            return result;
+        }
+        int cols = cost[0].length;
+
+        if (rows <= cols) {
+            int[] colOfRow = hungarian(cost, rows, cols, false);
+            for (int r = 0; r < rows; r++) {
+                result[r] = colOfRow[r];
+            }
+        } else {
+            // Thuật toán yêu cầu số hàng <= số cột nên giải trên ma trận chuyển vị
+            int[] rowOfCol = hungarian(cost, cols, rows, true);
+            for (int c = 0; c < cols; c++) {
+                if (rowOfCol[c] >= 0) {
+                    result[rowOfCol[c]] = c;
+                }
+            }
+        }
+
+        for (int r = 0; r < rows; r++) {
+            if (result[r] >= 0 && cost[r][result[r]] >= FORBIDDEN) {
+                result[r] = -1;
+            }
+        }
+        return result;
+    }
+
+    private static int[] hungarian(long[][] cost, int n, int m, boolean transposed) {
+        long[] u = new long[n + 1];
+        long[] v = new long[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        long[] minv = new long[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, INF);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                long delta = INF;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) continue;
+                    long c = transposed ? cost[j - 1][i0 - 1] : cost[i0 - 1][j - 1];
+                    long cur = c - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                assignment[p[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,327 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.entity.TripDrivers;
+import org.example.ptcmssbackend.entity.TripVehicles;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.repository.TripDriverRepository;
+import org.example.ptcmssbackend.repository.TripRepository;
+import org.example.ptcmssbackend.repository.TripVehicleRepository;
+import org.example.ptcmssbackend.service.OccupancyIndexService;
+import org.example.ptcmssbackend.service.TripOccupancyService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot theo chi nhánh: mỗi tài xế/xe giữ một TreeSet các khoảng bận sắp theo thời điểm bắt đầu.
+ * Truy vấn trùng lịch chỉ duyệt các khoảng bắt đầu trong [start - maxSpan, end) nên chi phí là
+ * O(log n + k) thay vì quét toàn bộ lịch sử chuyến.
+ *
+ * Snapshot được nạp khi chi nhánh được truy vấn lần đầu, cập nhật theo {@link TripAssignmentChangedEvent}
+ * và {@link BookingScheduleChangedEvent}, được xoá định kỳ để nạp lại (phòng trường hợp dữ liệu bị sửa ở luồng khác).
+ * Nạp chi nhánh và cập nhật theo sự kiện chạy tuần tự dưới cùng một khoá để bản nạp đầy đủ
+ * không ghi đè lên cập nhật mới hơn.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class OccupancyIndexServiceImpl implements OccupancyIndexService {
+
+    static final EnumSet<TripStatus> ACTIVE_STATUSES =
+            EnumSet.of(TripStatus.SCHEDULED, TripStatus.ASSIGNED, TripStatus.ONGOING);
+
+    private final TripDriverRepository tripDriverRepository;
+    private final TripVehicleRepository tripVehicleRepository;
+    private final TripRepository tripRepository;
+    private final TripOccupancyService tripOccupancyService;
+
+    private final Map<Integer, BranchIndex> branches = new ConcurrentHashMap<>();
+    private final Object reloadLock = new Object();
+
+    @Override
+    public List<Slot> findDriverOverlaps(Integer branchId, Integer driverId, Instant start, Instant end) {
+        if (branchId == null || driverId == null || start == null || end == null) {
+            return List.of();
+        }
+        return branch(branchId).overlaps(true, driverId, start, end);
+    }
+
+    @Override
+    public List<Slot> findVehicleOverlaps(Integer branchId, Integer vehicleId, Instant start, Instant busyUntil) {
+        if (branchId == null || vehicleId == null || start == null || busyUntil == null) {
+            return List.of();
+        }
+        return branch(branchId).overlaps(false, vehicleId, start, busyUntil);
+    }
+
+    @Override
+    public void refreshTrips(Collection<Integer> tripIds) {
+        if (tripIds == null || tripIds.isEmpty()) {
+            return;
+        }
+        synchronized (reloadLock) {
+            if (!branches.isEmpty()) {
+                applyTrips(tripIds);
+            }
+        }
+    }
+
+    @Override
+    public void refreshBookings(Collection<Integer> bookingIds) {
+        if (bookingIds == null || bookingIds.isEmpty()) {
+            return;
+        }
+        synchronized (reloadLock) {
+            if (branches.isEmpty()) {
+                return;
+            }
+            // Gồm cả trip đã bị xóa khỏi đơn (sửa lịch tạo lại trip) để bỏ khoảng bận cũ
+            Set<Integer> ids = new LinkedHashSet<>();
+            tripRepository.findByBooking_IdIn(bookingIds).forEach(t -> ids.add(t.getId()));
+            branches.values().forEach(index -> ids.addAll(index.tripIdsOfBookings(bookingIds)));
+            if (!ids.isEmpty()) {
+                applyTrips(ids);
+            }
+        }
+    }
+
+    private void applyTrips(Collection<Integer> tripIds) {
+        List<Integer> ids = new ArrayList<>(new HashSet<>(tripIds));
+        for (BranchIndex index : branches.values()) {
+            index.removeTrips(ids);
+        }
+
+        for (TripDrivers td : tripDriverRepository.findByTripIdIn(ids)) {
+            if (td.getDriver() == null || td.getDriver().getBranch() == null) continue;
+            BranchIndex index = branches.get(td.getDriver().getBranch().getId());
+            Slot slot = toDriverSlot(td.getTrip());
+            if (index != null && slot != null) {
+                index.add(true, td.getDriver().getId(), slot);
+            }
+        }
+        for (TripVehicles tv : tripVehicleRepository.findByTrip_IdIn(ids)) {
+            if (tv.getVehicle() == null || tv.getVehicle().getBranch() == null) continue;
+            BranchIndex index = branches.get(tv.getVehicle().getBranch().getId());
+            Slot slot = toVehicleSlot(tv.getTrip());
+            if (index != null && slot != null) {
+                index.add(false, tv.getVehicle().getId(), slot);
+            }
+        }
+        log.debug("[OccupancyIndex] Refreshed trips {}", ids);
+    }
+
+    @Override
+    public void evictBranch(Integer branchId) {
+        if (branchId != null) {
+            branches.remove(branchId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onTripAssignmentChanged(TripAssignmentChangedEvent event) {
+        try {
+            refreshTrips(event.getTripIds());
+        } catch (Exception e) {
+            // Không cập nhật được thì xoá toàn bộ snapshot, lần truy vấn sau sẽ nạp lại từ DB
+            log.warn("[OccupancyIndex] Cannot refresh trips {} ({}), clearing snapshots: {}",
+                    event.getTripIds(), event.getAction(), e.getMessage());
+            branches.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onBookingScheduleChanged(BookingScheduleChangedEvent event) {
+        try {
+            refreshBookings(event.getBookingIds());
+        } catch (Exception e) {
+            log.warn("[OccupancyIndex] Cannot refresh bookings {}, clearing snapshots: {}",
+                    event.getBookingIds(), e.getMessage());
+            branches.clear();
+        }
+    }
+
+    @Scheduled(fixedDelay = 600000) // 10 phút
+    public void clearSnapshots() {
+        branches.clear();
+    }
+
+    private BranchIndex branch(Integer branchId) {
+        BranchIndex index = branches.get(branchId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (reloadLock) {
+            index = branches.get(branchId);
+            if (index == null) {
+                index = loadBranch(branchId);
+                branches.put(branchId, index);
+            }
+            return index;
+        }
+    }
+
+    private BranchIndex loadBranch(Integer branchId) {
+        BranchIndex index = new BranchIndex();
+        int driverSlots = 0;
+        int vehicleSlots = 0;
+        for (TripDrivers td : tripDriverRepository.findByDriverBranchIdAndTripStatusIn(branchId, ACTIVE_STATUSES)) {
+            Slot slot = toDriverSlot(td.getTrip());
+            if (slot != null) {
+                index.add(true, td.getDriver().getId(), slot);
+                driverSlots++;
+            }
+        }
+        for (TripVehicles tv : tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(branchId, ACTIVE_STATUSES)) {
+            Slot slot = toVehicleSlot(tv.getTrip());
+            if (slot != null) {
+                index.add(false, tv.getVehicle().getId(), slot);
+                vehicleSlots++;
+            }
+        }
+        log.info("[OccupancyIndex] Loaded branch {}: {} driver slots, {} vehicle slots", branchId, driverSlots, vehicleSlots);
+        return index;
+    }
+
+    /**
+     * Tài xế: bận trong [startTime, endTime]; chuyến thiếu thời gian không tính trùng.
+     */
+    private Slot toDriverSlot(Trips t) {
+        if (t == null || !ACTIVE_STATUSES.contains(t.getStatus())) return null;
+        if (t.getStartTime() == null || t.getEndTime() == null) return null;
+        return new Slot(t.getId(), bookingIdOf(t), t.getStartTime(), t.getEndTime());
+    }
+
+    /**
+     * Xe: bận trong [startTime, busy-until]; không xác định được thời gian thì coi như bận.
+     */
+    private Slot toVehicleSlot(Trips t) {
+        if (t == null || t.getBooking() == null || !ACTIVE_STATUSES.contains(t.getStatus())) return null;
+        if (t.getStartTime() == null) {
+            return new Slot(t.getId(), bookingIdOf(t), null, null);
+        }
+        Instant busyUntil = tripOccupancyService.computeBusyUntil(t);
+        if (busyUntil == null) {
+            return new Slot(t.getId(), bookingIdOf(t), null, null);
+        }
+        return new Slot(t.getId(), bookingIdOf(t), t.getStartTime(), busyUntil);
+    }
+
+    private Integer bookingIdOf(Trips t) {
+        return t.getBooking() != null ? t.getBooking().getId() : null;
+    }
+
+    private static final class BranchIndex {
+        private final Map<Integer, Timeline> drivers = new HashMap<>();
+        private final Map<Integer, Timeline> vehicles = new HashMap<>();
+
+        synchronized void add(boolean driver, Integer resourceId, Slot slot) {
+            (driver ? drivers : vehicles).computeIfAbsent(resourceId, k -> new Timeline()).add(slot);
+        }
+
+        synchronized void removeTrips(Collection<Integer> tripIds) {
+            drivers.values().forEach(t -> t.removeTrips(tripIds));
+            vehicles.values().forEach(t -> t.removeTrips(tripIds));
+        }
+
+        synchronized Set<Integer> tripIdsOfBookings(Collection<Integer> bookingIds) {
+            Set<Integer> ids = new HashSet<>();
+            drivers.values().forEach(t -> t.collectTrips(bookingIds, ids));
+            vehicles.values().forEach(t -> t.collectTrips(bookingIds, ids));
+            return ids;
+        }
+
+        synchronized List<Slot> overlaps(boolean driver, Integer resourceId, Instant start, Instant end) {
+            Timeline timeline = (driver ? drivers : vehicles).get(resourceId);
+            return timeline != null ? timeline.overlaps(start, end) : List.of();
+        }
+    }
+
+    private static final class Timeline {
+        private static final Comparator<Slot> ORDER =
+                Comparator.comparing(Slot::getStart).thenComparing(Slot::getTripId);
+
+        private final TreeSet<Slot> slots = new TreeSet<>(ORDER);
+        private final Map<Integer, Slot> byTrip = new HashMap<>();
+        private final Set<Slot> unknown = new HashSet<>();
+        // Độ dài khoảng lớn nhất từng thêm vào, dùng để giới hạn cận dưới khi tìm kiếm
+        private long maxSpanMillis;
+
+        void add(Slot slot) {
+            Slot old = byTrip.put(slot.getTripId(), slot);
+            if (old != null) {
+                remove(old);
+            }
+            if (slot.getStart() == null) {
+                unknown.add(slot);
+                return;
+            }
+            slots.add(slot);
+            maxSpanMillis = Math.max(maxSpanMillis, slot.getEnd().toEpochMilli() - slot.getStart().toEpochMilli());
+        }
+
+        void removeTrips(Collection<Integer> tripIds) {
+            for (Integer tripId : tripIds) {
+                Slot old = byTrip.remove(tripId);
+                if (old != null) {
+                    remove(old);
+                }
+            }
+        }
+
+        void collectTrips(Collection<Integer> bookingIds, Set<Integer> into) {
+            for (Slot slot : byTrip.values()) {
+                if (slot.getBookingId() != null && bookingIds.contains(slot.getBookingId())) {
+                    into.add(slot.getTripId());
+                }
+            }
+        }
+
+        private void remove(Slot slot) {
+            if (slot.getStart() == null) {
+                unknown.remove(slot);
+            } else {
+                slots.remove(slot);
+            }
+        }
+
+        List<Slot> overlaps(Instant start, Instant end) {
+            List<Slot> result = new ArrayList<>(unknown);
+            Instant lowerBound = start.minusMillis(maxSpanMillis);
+            if (slots.isEmpty() || lowerBound.isAfter(end)) {
+                return result;
+            }
+            Slot from = new Slot(Integer.MIN_VALUE, null, lowerBound, null);
+            Slot to = new Slot(Integer.MIN_VALUE, null, end, null);
+            for (Slot s : slots.subSet(from, true, to, false)) {
+                if (start.isBefore(s.getEnd())) {
+                    result.add(s);
+                }
+            }
+            return result;
+        }
+    }
+}
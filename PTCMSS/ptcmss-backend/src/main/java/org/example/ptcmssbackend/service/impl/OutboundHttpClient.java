@@ -0,0 +1,137 @@
+package org.example.ptcmssbackend.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.config.OutboundHttpProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client dùng chung cho các lời gọi ra dịch vụ ngoài (GraphHopper, VietQR...).
+ * Một java.net.http.HttpClient duy nhất giữ pool kết nối keep-alive, chạy callback trên virtual thread.
+ * Mỗi host có giới hạn số request đồng thời (outbound-http.max-concurrent-per-host / host-limits), phần vượt xếp hàng không chặn thread.
+ * Thời gian từng request ghi vào Micrometer timer http.outbound.requests (tag endpoint, host, outcome) kèm histogram,
+ * xem qua /actuator/metrics/http.outbound.requests.
+ */
+@Slf4j
+@Component
+public class OutboundHttpClient {
+
+    static final String METRIC = "http.outbound.requests";
+
+    private final OutboundHttpProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    private final Map<String, HostConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(OutboundHttpProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        // keep-alive / số kết nối rảnh của pool là system property toàn JVM, đặt lúc khởi động (OutboundHttpSystemProperties)
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(properties.getConnectTimeout())
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Gửi request không chặn; endpoint là tên logic dùng làm tag metric (vd. graphhopper.route).
+     * Future lỗi với IOException / HttpTimeoutException (bọc trong CompletionException) khi không nhận được phản hồi.
+     */
+    public CompletableFuture<HttpResponse<byte[]>> sendAsync(String endpoint, HttpRequest request) {
+        return sendAsync(endpoint, request, () -> {
+        });
+    }
+
+    /**
+     * Như {@link #sendAsync(String, HttpRequest)}; beforeSend chạy khi request thực sự được gửi (sau khi rời hàng đợi),
+     * ném RuntimeException để hủy request đó. Hàng đợi đầy hoặc chờ quá lâu: future lỗi với RejectedExecutionException.
+     */
+    public CompletableFuture<HttpResponse<byte[]>> sendAsync(String endpoint, HttpRequest request, Runnable beforeSend) {
+        String host = request.uri().getHost();
+        return limiter(host).submit(() -> {
+            beforeSend.run();
+            long started = System.nanoTime();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> timer(endpoint, host, outcome(response, error))
+                            .record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Gửi request và chờ kết quả (phù hợp khi gọi từ virtual thread)
+     */
+    public HttpResponse<byte[]> send(String endpoint, HttpRequest request) throws IOException {
+        try {
+            return sendAsync(endpoint, request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.close();
+        executor.shutdown();
+    }
+
+    private HostConcurrencyLimiter limiter(String host) {
+        return limiters.computeIfAbsent(host, h -> {
+            int limit = properties.getHostLimits().getOrDefault(h, properties.getMaxConcurrentPerHost());
+            HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(limit,
+                    properties.getMaxQueuedPerHost(), properties.getMaxQueueWait());
+            Gauge.builder("http.outbound.queued", limiter, HostConcurrencyLimiter::getQueued)
+                    .description("Request đang chờ vì host đã đạt giới hạn đồng thời")
+                    .tag("host", h)
+                    .register(meterRegistry);
+            log.info("[OutboundHttp] Host {} limited to {} concurrent requests", h, limit);
+            return limiter;
+        });
+    }
+
+    private Timer timer(String endpoint, String host, String outcome) {
+        return Timer.builder(METRIC)
+                .description("Thời gian gọi HTTP ra dịch vụ ngoài")
+                .tags("endpoint", endpoint, "host", host, "outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String outcome(HttpResponse<?> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return cause instanceof HttpTimeoutException ? "TIMEOUT" : "IO_ERROR";
+        }
+        int status = response.statusCode();
+        if (status >= 500) {
+            return "SERVER_ERROR";
+        }
+        if (status >= 400) {
+            return "CLIENT_ERROR";
+        }
+        return "SUCCESS";
+    }
+}
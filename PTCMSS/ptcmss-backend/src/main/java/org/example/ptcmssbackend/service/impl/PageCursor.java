@@ -0,0 +1,122 @@
+package org.example.ptcmssbackend.service.impl;
+
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Con trỏ phân trang keyset trên cặp (sortKey, id), dùng được cho cả hai chiều sắp xếp.
+ *
+ * Con trỏ chỉ ghi vị trí dòng cuối của trang trước; chiều sắp xếp do câu truy vấn quyết định và phải giữ nguyên
+ * giữa các trang. Giảm dần (danh sách đơn, khách hàng, hóa đơn): trang sau lọc
+ * "sortKey &lt; key OR (sortKey = key AND id &lt; id)". Tăng dần (tìm chuyến theo giờ đón): trang sau lọc
+ * "sortKey &gt; key OR (sortKey = key AND id &gt; id)".
+ * Client chỉ thấy chuỗi base64 không mang nghĩa; chi phí trang 500 bằng trang 1 (không OFFSET, không COUNT).
+ * Mỗi lần đọc size + 1 dòng để biết còn trang sau.
+ */
+public final class PageCursor {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 500;
+
+    private static final String NULL_KEY = "-";
+
+    private PageCursor() {
+    }
+
+    /**
+     * Vị trí dòng cuối của trang trước; sortKey = null khi dòng đó không có giá trị sắp xếp
+     */
+    public record Position(Instant sortKey, Integer id) {
+    }
+
+    public static String encode(Instant sortKey, Integer id) {
+        String raw = (sortKey != null ? sortKey.toString() : NULL_KEY) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null cho trang đầu (cursor rỗng)
+     */
+    public static Position decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            String key = raw.substring(0, separator);
+            Integer id = Integer.valueOf(raw.substring(separator + 1));
+            return new Position(NULL_KEY.equals(key) ? null : Instant.parse(key), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ: " + cursor);
+        }
+    }
+
+    public static int normalizeSize(int size) {
+        if (size <= 0) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * Giới hạn size + 1 dòng, không sắp xếp (ORDER BY nằm trong câu truy vấn)
+     */
+    public static Pageable limit(int size) {
+        return PageRequest.of(0, size + 1);
+    }
+
+    /**
+     * Cắt dòng thừa, sinh nextCursor từ dòng cuối của trang và chỉ đếm tổng khi được yêu cầu
+     *
+     * @param rows  tối đa size + 1 dòng theo đúng thứ tự của truy vấn: (sortKey DESC, id DESC) hoặc (sortKey ASC, id ASC)
+     * @param total null nếu không cần tổng số dòng
+     */
+    public static <E, R> CursorPageResponse<R> page(List<E> rows, int size,
+                                                    Function<E, Instant> sortKey, Function<E, Integer> id,
+                                                    Function<E, R> mapper, LongSupplier total) {
+        return pageBatch(rows, size, sortKey, id, pageRows -> pageRows.stream().map(mapper).toList(), total);
+    }
+
+    /**
+     * Trang rỗng khi biết trước không có dòng nào khớp (không cần truy vấn)
+     */
+    public static <R> CursorPageResponse<R> empty(int size, boolean withTotal) {
+        return CursorPageResponse.<R>builder()
+                .pageSize(size)
+                .hasMore(false)
+                .totalElements(withTotal ? 0L : null)
+                .items(List.of())
+                .build();
+    }
+
+    /**
+     * Như {@link #page}, nhưng chuyển đổi cả trang một lần để mapper có thể nạp dữ liệu phụ theo lô
+     */
+    public static <E, R> CursorPageResponse<R> pageBatch(List<E> rows, int size,
+                                                         Function<E, Instant> sortKey, Function<E, Integer> id,
+                                                         Function<List<E>, List<R>> mapper, LongSupplier total) {
+        boolean hasMore = rows.size() > size;
+        List<E> pageRows = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            E last = pageRows.get(pageRows.size() - 1);
+            nextCursor = encode(sortKey.apply(last), id.apply(last));
+        }
+        return CursorPageResponse.<R>builder()
+                .pageSize(size)
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .totalElements(total != null ? total.getAsLong() : null)
+                .items(mapper.apply(pageRows))
+                .build();
+    }
+}
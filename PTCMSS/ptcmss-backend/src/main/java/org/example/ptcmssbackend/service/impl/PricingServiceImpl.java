@@ -0,0 +1,122 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.entity.SystemSetting;
+import org.example.ptcmssbackend.enums.SettingStatus;
+import org.example.ptcmssbackend.event.PricingConfigChangedEvent;
+import org.example.ptcmssbackend.repository.HireTypesRepository;
+import org.example.ptcmssbackend.repository.SystemSettingRepository;
+import org.example.ptcmssbackend.repository.VehicleCategoryPricingRepository;
+import org.example.ptcmssbackend.service.PricingService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot bảng giá (xem {@link PricingService}). Dựng bằng 3 truy vấn (cài đặt, hình thức thuê, loại xe),
+ * dựng lại khi khởi động, sau mỗi {@link PricingConfigChangedEvent} và định kỳ 10 phút
+ * (bắt các thay đổi sửa thẳng trong DB như bảng hire_types).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class PricingServiceImpl implements PricingService {
+
+    private final SystemSettingRepository systemSettingRepository;
+    private final HireTypesRepository hireTypesRepository;
+    private final VehicleCategoryPricingRepository vehicleCategoryRepository;
+
+    private volatile PricingSnapshot snapshot;
+
+    @Override
+    public PricingSnapshot getSnapshot() {
+        PricingSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelay = 600000) // 10 phút
+    public void rebuild() {
+        try {
+            // Dựng tuần tự để bản dựng cũ không ghi đè bản mới hơn
+            synchronized (this) {
+                PricingSnapshot fresh = load();
+                snapshot = fresh;
+                log.debug("[Pricing] Snapshot rebuilt: {} hire types, {} categories",
+                        fresh.hireTypeCount(), fresh.categoryCount());
+            }
+        } catch (Exception e) {
+            // Giữ snapshot cũ, lần dựng sau sẽ thử lại
+            log.warn("[Pricing] Cannot rebuild snapshot: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onPricingConfigChanged(PricingConfigChangedEvent event) {
+        log.info("[Pricing] Pricing config changed ({}), rebuilding snapshot", event.getSource());
+        rebuild();
+    }
+
+    private PricingSnapshot load() {
+        Map<String, String> settings = new HashMap<>();
+        for (SystemSetting setting : systemSettingRepository.findAll()) {
+            if (setting.getStatus() == SettingStatus.ACTIVE && setting.getSettingValue() != null) {
+                settings.put(setting.getSettingKey(), setting.getSettingValue());
+            }
+        }
+        return new PricingSnapshot(
+                decimal(settings, "HOLIDAY_SURCHARGE_RATE", PricingSnapshot.DEFAULT_HOLIDAY_SURCHARGE_RATE),
+                decimal(settings, "WEEKEND_SURCHARGE_RATE", PricingSnapshot.DEFAULT_WEEKEND_SURCHARGE_RATE),
+                decimal(settings, "ROUND_TRIP_MULTIPLIER", PricingSnapshot.DEFAULT_ROUND_TRIP_MULTIPLIER),
+                integer(settings, "INTER_PROVINCE_DISTANCE_KM", PricingSnapshot.DEFAULT_INTER_PROVINCE_DISTANCE_KM),
+                integer(settings, "SAME_DAY_TRIP_START_HOUR", PricingSnapshot.DEFAULT_SAME_DAY_TRIP_START_HOUR),
+                integer(settings, "SAME_DAY_TRIP_END_HOUR", PricingSnapshot.DEFAULT_SAME_DAY_TRIP_END_HOUR),
+                hireTypesRepository.findAll(),
+                vehicleCategoryRepository.findAll());
+    }
+
+    private static BigDecimal decimal(Map<String, String> settings, String key, BigDecimal defaultValue) {
+        String value = settings.get(key);
+        if (value != null) {
+            try {
+                return new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                log.warn("Cannot get system setting {}: {}", key, e.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+
+    private static int integer(Map<String, String> settings, String key, int defaultValue) {
+        String value = settings.get(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                log.warn("Cannot get system setting {}: {}", key, e.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+}
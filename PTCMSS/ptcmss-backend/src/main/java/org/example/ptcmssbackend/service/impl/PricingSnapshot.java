@@ -0,0 +1,313 @@
+package org.example.ptcmssbackend.service.impl;
+
+import org.example.ptcmssbackend.dto.request.Booking.VehicleDetailRequest;
+import org.example.ptcmssbackend.dto.response.Booking.BatchQuoteResponse;
+import org.example.ptcmssbackend.entity.HireTypes;
+import org.example.ptcmssbackend.entity.VehicleCategoryPricing;
+import org.example.ptcmssbackend.enums.VehicleCategoryStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot bất biến của dữ liệu tính giá: phụ phí lễ / cuối tuần, hệ số khứ hồi, ngưỡng nội tỉnh,
+ * khung giờ chuyến trong ngày, mã hình thức thuê và bảng giá loại xe.
+ *
+ * Các giá trị dẫn xuất (đơn giá km × hệ số khứ hồi, đơn giá km × 2, hệ số 1 + phụ phí) được tính sẵn khi dựng,
+ * nên {@link #price} là hàm thuần, không truy cập DB và cho kết quả trùng với công thức gốc
+ * (phép nhân BigDecimal là chính xác nên đổi thứ tự nhân không làm thay đổi giá trị).
+ */
+public final class PricingSnapshot {
+
+    public static final BigDecimal DEFAULT_HOLIDAY_SURCHARGE_RATE = new BigDecimal("0.25");
+    public static final BigDecimal DEFAULT_WEEKEND_SURCHARGE_RATE = new BigDecimal("0.20");
+    public static final BigDecimal DEFAULT_ROUND_TRIP_MULTIPLIER = new BigDecimal("1.5");
+    public static final int DEFAULT_INTER_PROVINCE_DISTANCE_KM = 10;
+    public static final int DEFAULT_SAME_DAY_TRIP_START_HOUR = 0;
+    public static final int DEFAULT_SAME_DAY_TRIP_END_HOUR = 23;
+
+    private static final ZoneId SAME_DAY_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    private final int interProvinceDistanceKm;
+    private final LocalTime sameDayEarliestStart;
+    private final LocalTime sameDayLatestEnd;
+    // Hệ số (1 + phụ phí) theo chỉ số (lễ ? 1 : 0) | (cuối tuần ? 2 : 0); null = không cộng phụ phí
+    private final BigDecimal[] surchargeFactors = new BigDecimal[4];
+    private final Map<Integer, String> hireTypeCodes;
+    private final Map<Integer, CategoryRate> categories;
+
+    public PricingSnapshot(BigDecimal holidaySurchargeRate,
+                           BigDecimal weekendSurchargeRate,
+                           BigDecimal roundTripMultiplier,
+                           int interProvinceDistanceKm,
+                           int sameDayStartHour,
+                           int sameDayEndHour,
+                           Collection<HireTypes> hireTypes,
+                           Collection<VehicleCategoryPricing> categories) {
+        this.interProvinceDistanceKm = interProvinceDistanceKm;
+        this.sameDayEarliestStart = timeOrNull(sameDayStartHour, 0);
+        this.sameDayLatestEnd = timeOrNull(sameDayEndHour, 59);
+
+        for (int flags = 0; flags < surchargeFactors.length; flags++) {
+            BigDecimal rate = BigDecimal.ZERO;
+            if ((flags & 1) != 0) rate = rate.add(holidaySurchargeRate);
+            if ((flags & 2) != 0) rate = rate.add(weekendSurchargeRate);
+            surchargeFactors[flags] = rate.compareTo(BigDecimal.ZERO) > 0 ? BigDecimal.ONE.add(rate) : null;
+        }
+
+        Map<Integer, String> codes = new HashMap<>();
+        for (HireTypes hireType : hireTypes) {
+            codes.put(hireType.getId(), hireType.getCode());
+        }
+        this.hireTypeCodes = Map.copyOf(codes);
+
+        Map<Integer, CategoryRate> rates = new HashMap<>();
+        for (VehicleCategoryPricing category : categories) {
+            rates.put(category.getId(), new CategoryRate(category, roundTripMultiplier));
+        }
+        this.categories = Map.copyOf(rates);
+    }
+
+    /**
+     * Tính tổng giá cho danh sách loại xe, cùng công thức với {@code BookingServiceImpl#calculatePrice}:
+     * <p>
+     * - ONE_WAY: km × PricePerKm + BaseFee
+     * - ROUND_TRIP: cùng ngày km × PricePerKm × hệ số khứ hồi + BaseFee, khác ngày 2 × km × PricePerKm + BaseFee
+     * - DAILY: 1 ngày và km <= ngưỡng nội tỉnh: SameDayFixedPrice + BaseFee,
+     * ngược lại km × PricePerKm × hệ số khứ hồi + SameDayFixedPrice × số ngày + BaseFee
+     * <p>
+     * Sau đó cộng phí cao tốc, phụ phí xe premium, phụ phí lễ / cuối tuần và nhân số lượng.
+     * Loại xe không ACTIVE được bỏ qua.
+     */
+    public BigDecimal price(List<Integer> vehicleCategoryIds,
+                            List<Integer> quantities,
+                            Double distance,
+                            Boolean useHighway,
+                            Integer hireTypeId,
+                            Boolean isHoliday,
+                            Boolean isWeekend,
+                            Instant startTime,
+                            Instant endTime) {
+        if (vehicleCategoryIds == null || vehicleCategoryIds.isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+
+        String hireTypeCode = hireTypeCode(hireTypeId);
+        BigDecimal surchargeFactor = surchargeFactor(isHoliday, isWeekend);
+        boolean highway = Boolean.TRUE.equals(useHighway);
+        int numberOfDays = numberOfDays(startTime, endTime);
+        boolean sameDayTrip = isSameDayTrip(startTime, endTime);
+        BigDecimal km = distance != null ? BigDecimal.valueOf(distance) : null;
+
+        BigDecimal totalPrice = BigDecimal.ZERO;
+        for (int i = 0; i < vehicleCategoryIds.size(); i++) {
+            CategoryRate rate = category(vehicleCategoryIds.get(i));
+            if (!rate.active) continue;
+
+            int quantity = i < quantities.size() ? quantities.get(i) : 1;
+            BigDecimal linePrice = unitPrice(rate, hireTypeCode, km, distance, highway,
+                    surchargeFactor, numberOfDays, sameDayTrip);
+            totalPrice = totalPrice.add(quantity == 1 ? linePrice : linePrice.multiply(BigDecimal.valueOf(quantity)));
+        }
+        return totalPrice.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Như {@link #price} nhưng trả thêm chi tiết từng loại xe. Tổng giá trùng với {@link #price}
+     * (cộng giá chưa làm tròn của từng dòng rồi mới làm tròn).
+     */
+    public BatchQuoteResponse.ScenarioQuote quote(List<VehicleDetailRequest> vehicles,
+                                                  Double distance,
+                                                  Boolean useHighway,
+                                                  Integer hireTypeId,
+                                                  Boolean isHoliday,
+                                                  Boolean isWeekend,
+                                                  Instant startTime,
+                                                  Instant endTime) {
+        String hireTypeCode = hireTypeCode(hireTypeId);
+        BigDecimal surchargeFactor = surchargeFactor(isHoliday, isWeekend);
+        boolean highway = Boolean.TRUE.equals(useHighway);
+        int numberOfDays = numberOfDays(startTime, endTime);
+        boolean sameDayTrip = isSameDayTrip(startTime, endTime);
+        BigDecimal km = distance != null ? BigDecimal.valueOf(distance) : null;
+
+        List<BatchQuoteResponse.QuoteLine> lines = new ArrayList<>(vehicles.size());
+        BigDecimal totalPrice = BigDecimal.ZERO;
+        for (VehicleDetailRequest vehicle : vehicles) {
+            CategoryRate rate = category(vehicle.getVehicleCategoryId());
+            int quantity = vehicle.getQuantity() != null ? vehicle.getQuantity() : 1;
+            BatchQuoteResponse.QuoteLine.QuoteLineBuilder line = BatchQuoteResponse.QuoteLine.builder()
+                    .vehicleCategoryId(vehicle.getVehicleCategoryId())
+                    .categoryName(rate.name)
+                    .quantity(quantity)
+                    .active(rate.active);
+            if (rate.active) {
+                BigDecimal unitPrice = unitPrice(rate, hireTypeCode, km, distance, highway,
+                        surchargeFactor, numberOfDays, sameDayTrip);
+                BigDecimal amount = unitPrice.multiply(BigDecimal.valueOf(quantity));
+                totalPrice = totalPrice.add(amount);
+                line.unitPrice(unitPrice.setScale(2, RoundingMode.HALF_UP))
+                        .amount(amount.setScale(2, RoundingMode.HALF_UP));
+            }
+            lines.add(line.build());
+        }
+
+        return BatchQuoteResponse.ScenarioQuote.builder()
+                .ok(true)
+                .distance(distance)
+                .hireTypeCode(hireTypeCode)
+                .numberOfDays(numberOfDays)
+                .sameDayTrip(sameDayTrip)
+                .surchargeRate(surchargeFactor != null ? surchargeFactor.subtract(BigDecimal.ONE) : BigDecimal.ZERO)
+                .totalPrice(totalPrice.setScale(2, RoundingMode.HALF_UP))
+                .lines(lines)
+                .build();
+    }
+
+    /**
+     * Giá một xe của loại xe (chưa nhân số lượng, chưa làm tròn).
+     */
+    BigDecimal unitPrice(CategoryRate rate,
+                         String hireTypeCode,
+                         BigDecimal km,
+                         Double distance,
+                         boolean highway,
+                         BigDecimal surchargeFactor,
+                         int numberOfDays,
+                         boolean sameDayTrip) {
+        BigDecimal basePrice;
+        if ("ONE_WAY".equals(hireTypeCode)) {
+            basePrice = rate.pricePerKm.multiply(km).add(rate.baseFee);
+        } else if ("ROUND_TRIP".equals(hireTypeCode)) {
+            basePrice = (sameDayTrip ? rate.pricePerKmRoundTrip : rate.pricePerKmDouble)
+                    .multiply(km)
+                    .add(rate.baseFee);
+        } else if ("DAILY".equals(hireTypeCode)) {
+            int days = Math.max(1, numberOfDays);
+            if (days == 1 && distance <= interProvinceDistanceKm) {
+                basePrice = rate.sameDayFixedPrice.add(rate.baseFee);
+            } else {
+                basePrice = rate.pricePerKmRoundTrip.multiply(km)
+                        .add(rate.sameDayFixedPrice.multiply(BigDecimal.valueOf(days)))
+                        .add(rate.baseFee);
+            }
+        } else {
+            throw new IllegalStateException("Unsupported hire type: " + hireTypeCode);
+        }
+
+        if (highway) {
+            basePrice = basePrice.add(rate.highwayFee);
+        }
+        if (rate.premiumFee != null) {
+            basePrice = basePrice.add(rate.premiumFee);
+        }
+        if (surchargeFactor != null) {
+            basePrice = basePrice.multiply(surchargeFactor);
+        }
+        return basePrice;
+    }
+
+    String hireTypeCode(Integer hireTypeId) {
+        String code = hireTypeId != null ? hireTypeCodes.get(hireTypeId) : null;
+        if (code == null) {
+            throw new RuntimeException("HireType not found: " + hireTypeId);
+        }
+        return code;
+    }
+
+    CategoryRate category(Integer categoryId) {
+        CategoryRate rate = categoryId != null ? categories.get(categoryId) : null;
+        if (rate == null) {
+            throw new RuntimeException("Không tìm thấy loại xe: " + categoryId);
+        }
+        return rate;
+    }
+
+    BigDecimal surchargeFactor(Boolean isHoliday, Boolean isWeekend) {
+        return surchargeFactors[(Boolean.TRUE.equals(isHoliday) ? 1 : 0) | (Boolean.TRUE.equals(isWeekend) ? 2 : 0)];
+    }
+
+    /**
+     * Số ngày theo lịch (múi giờ hệ thống) giữa hai mốc, tối thiểu 1.
+     */
+    public int numberOfDays(Instant startTime, Instant endTime) {
+        if (startTime == null || endTime == null) {
+            return 1;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long daysBetween = ChronoUnit.DAYS.between(startTime.atZone(zone).toLocalDate(), endTime.atZone(zone).toLocalDate());
+        return Math.max(1, (int) daysBetween + 1);
+    }
+
+    /**
+     * Chuyến trong ngày (giờ Việt Nam): cùng ngày, khởi hành không sớm hơn giờ bắt đầu
+     * và về không muộn hơn giờ kết thúc cấu hình.
+     */
+    public boolean isSameDayTrip(Instant startTime, Instant endTime) {
+        if (startTime == null || endTime == null || sameDayEarliestStart == null || sameDayLatestEnd == null) {
+            return false;
+        }
+        ZonedDateTime start = startTime.atZone(SAME_DAY_ZONE);
+        ZonedDateTime end = endTime.atZone(SAME_DAY_ZONE);
+        return start.toLocalDate().equals(end.toLocalDate())
+                && !start.toLocalTime().isBefore(sameDayEarliestStart)
+                && !end.toLocalTime().isAfter(sameDayLatestEnd);
+    }
+
+    public int hireTypeCount() {
+        return hireTypeCodes.size();
+    }
+
+    public int categoryCount() {
+        return categories.size();
+    }
+
+    private static LocalTime timeOrNull(int hour, int minute) {
+        // Giờ cấu hình sai: coi như không có chuyến trong ngày (giống cách xử lý lỗi trước đây)
+        return hour >= 0 && hour <= 23 ? LocalTime.of(hour, minute) : null;
+    }
+
+    private static BigDecimal defaultZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * Đơn giá của một loại xe, đã thay null bằng 0 và nhân sẵn các hệ số.
+     */
+    static final class CategoryRate {
+        final String name;
+        final boolean active;
+        final BigDecimal pricePerKm;
+        final BigDecimal pricePerKmRoundTrip;
+        final BigDecimal pricePerKmDouble;
+        final BigDecimal baseFee;
+        final BigDecimal highwayFee;
+        final BigDecimal sameDayFixedPrice;
+        final BigDecimal premiumFee;
+
+        private CategoryRate(VehicleCategoryPricing category, BigDecimal roundTripMultiplier) {
+            this.name = category.getCategoryName();
+            this.active = category.getStatus() == VehicleCategoryStatus.ACTIVE;
+            this.pricePerKm = defaultZero(category.getPricePerKm());
+            this.pricePerKmRoundTrip = pricePerKm.multiply(roundTripMultiplier);
+            this.pricePerKmDouble = pricePerKm.multiply(TWO);
+            this.baseFee = defaultZero(category.getBaseFare());
+            this.highwayFee = defaultZero(category.getHighwayFee());
+            this.sameDayFixedPrice = defaultZero(category.getSameDayFixedPrice());
+            this.premiumFee = Boolean.TRUE.equals(category.getIsPremium())
+                    ? defaultZero(category.getPremiumSurcharge())
+                    : null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.example.ptcmssbackend.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.entity.RouteDistanceCache;
+import org.example.ptcmssbackend.repository.RouteDistanceCacheRepository;
+import org.example.ptcmssbackend.service.RouteCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Tuyến còn mới (fetchedAt trong max-age-hours) trả thẳng từ bảng route_distance_cache.
+ * Các request cùng routeKey trong lúc đang gọi API chờ chung một CompletableFuture thay vì gọi lại.
+ * Lượt tra được đếm qua Micrometer (graphhopper.route.cache, tag result = hit | miss | coalesced | stale).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteCacheServiceImpl implements RouteCacheService {
+
+    static final String METRIC = "graphhopper.route.cache";
+    private static final int LOOKUP_BATCH = 500;
+
+    private final RouteDistanceCacheRepository routeDistanceCacheRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${graphhopper.route-cache.max-age-hours:720}")
+    private long maxAgeHours;
+
+    @Value("${graphhopper.route-cache.serve-stale-on-error:true}")
+    private boolean serveStaleOnError;
+
+    private final Map<String, CompletableFuture<RouteLeg>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Khóa tuyến: tọa độ làm tròn 5 chữ số thập phân
+     */
+    public static String routeKey(double fromLat, double fromLng, double toLat, double toLng, String profile) {
+        return String.format(Locale.ROOT, "%s|%.5f,%.5f|%.5f,%.5f", profile, fromLat, fromLng, toLat, toLng);
+    }
+
+    @Override
+    public RouteLeg getOrFetch(double fromLat, double fromLng, double toLat, double toLng, String profile,
+                               Supplier<RouteLeg> loader) {
+        String key = routeKey(fromLat, fromLng, toLat, toLng, profile);
+        RouteDistanceCache cached = find(key);
+        if (cached != null && isFresh(cached)) {
+            count("hit");
+            return toLeg(cached);
+        }
+
+        CompletableFuture<RouteLeg> mine = new CompletableFuture<>();
+        CompletableFuture<RouteLeg> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            count("coalesced");
+            return await(running);
+        }
+
+        try {
+            // Lượt tải khác có thể vừa lưu xong giữa lần đọc cache ở trên và putIfAbsent
+            RouteDistanceCache latest = find(key);
+            if (latest != null) {
+                cached = latest;
+                if (isFresh(latest)) {
+                    count("hit");
+                    RouteLeg leg = toLeg(latest);
+                    mine.complete(leg);
+                    return leg;
+                }
+            }
+
+            count("miss");
+            RouteLeg leg = loader.get();
+            store(cached, key, profile, fromLat, fromLng, toLat, toLng, leg);
+            mine.complete(leg);
+            return leg;
+        } catch (RuntimeException e) {
+            if (cached != null && serveStaleOnError) {
+                log.warn("[RouteCache] Provider failed for {}, serving cached route from {}: {}",
+                        key, cached.getFetchedAt(), e.getMessage());
+                count("stale");
+                RouteLeg stale = toLeg(cached);
+                mine.complete(stale);
+                return stale;
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        } catch (Throwable t) {
+            // Error (OOM, StackOverflow...) cũng phải đánh thức các request đang chờ trong await()
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Override
+    public Map<String, RouteLeg> findFresh(Collection<String> routeKeys) {
+        Map<String, RouteLeg> fresh = new HashMap<>();
+        for (RouteDistanceCache cached : findAll(routeKeys).values()) {
+            if (isFresh(cached)) {
+                fresh.put(cached.getRouteKey(), toLeg(cached));
+            }
+        }
+        int total = (int) routeKeys.stream().distinct().count();
+        count("hit", fresh.size());
+        count("miss", total - fresh.size());
+        return fresh;
+    }
+
+    @Override
+    public Map<String, RouteLeg> findFallback(Collection<String> routeKeys) {
+        Map<String, RouteLeg> stale = new HashMap<>();
+        if (!serveStaleOnError) {
+            return stale;
+        }
+        findAll(routeKeys).forEach((key, cached) -> stale.put(key, toLeg(cached)));
+        count("stale", stale.size());
+        return stale;
+    }
+
+    @Override
+    public void putAll(String profile, List<RouteEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<String, RouteEntry> byKey = new LinkedHashMap<>();
+        for (RouteEntry entry : entries) {
+            byKey.put(routeKey(entry.fromLat(), entry.fromLng(), entry.toLat(), entry.toLng(), profile), entry);
+        }
+        try {
+            Map<String, RouteDistanceCache> existing = findAll(byKey.keySet());
+            Instant now = Instant.now();
+            List<RouteDistanceCache> rows = new ArrayList<>(byKey.size());
+            byKey.forEach((key, entry) -> {
+                RouteDistanceCache row = existing.getOrDefault(key, new RouteDistanceCache());
+                fill(row, key, profile, entry.fromLat(), entry.fromLng(), entry.toLat(), entry.toLng(), entry.leg(), now);
+                rows.add(row);
+            });
+            routeDistanceCacheRepository.saveAll(rows);
+        } catch (RuntimeException e) {
+            log.warn("[RouteCache] Cannot store {} routes: {}", byKey.size(), e.getMessage());
+        }
+    }
+
+    private Map<String, RouteDistanceCache> findAll(Collection<String> routeKeys) {
+        Map<String, RouteDistanceCache> found = new HashMap<>();
+        List<String> keys = routeKeys.stream().distinct().toList();
+        try {
+            for (int from = 0; from < keys.size(); from += LOOKUP_BATCH) {
+                List<String> batch = keys.subList(from, Math.min(keys.size(), from + LOOKUP_BATCH));
+                routeDistanceCacheRepository.findByRouteKeyIn(batch)
+                        .forEach(cached -> found.put(cached.getRouteKey(), cached));
+            }
+        } catch (RuntimeException e) {
+            log.warn("[RouteCache] Cannot read cache for {} routes: {}", keys.size(), e.getMessage());
+        }
+        return found;
+    }
+
+    private RouteDistanceCache find(String key) {
+        try {
+            return routeDistanceCacheRepository.findByRouteKey(key).orElse(null);
+        } catch (RuntimeException e) {
+            // Cache lỗi thì coi như miss, không chặn tính khoảng cách
+            log.warn("[RouteCache] Cannot read cache for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isFresh(RouteDistanceCache cached) {
+        return cached.getFetchedAt().isAfter(Instant.now().minus(Duration.ofHours(maxAgeHours)));
+    }
+
+    private void store(RouteDistanceCache cached, String key, String profile,
+                       double fromLat, double fromLng, double toLat, double toLng, RouteLeg leg) {
+        try {
+            RouteDistanceCache entry = cached != null ? cached : new RouteDistanceCache();
+            fill(entry, key, profile, fromLat, fromLng, toLat, toLng, leg, Instant.now());
+            routeDistanceCacheRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Instance khác vừa lưu cùng tuyến
+            log.debug("[RouteCache] Route {} already stored", key);
+        } catch (RuntimeException e) {
+            log.warn("[RouteCache] Cannot store route {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static void fill(RouteDistanceCache entry, String key, String profile,
+                             double fromLat, double fromLng, double toLat, double toLng, RouteLeg leg, Instant now) {
+        entry.setRouteKey(key);
+        entry.setProfile(profile);
+        entry.setFromLat(fromLat);
+        entry.setFromLng(fromLng);
+        entry.setToLat(toLat);
+        entry.setToLng(toLng);
+        entry.setDistanceKm(leg.distanceKm());
+        entry.setDurationMinutes(leg.durationMinutes());
+        entry.setFetchedAt(now);
+    }
+
+    private static RouteLeg await(CompletableFuture<RouteLeg> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static RouteLeg toLeg(RouteDistanceCache cached) {
+        return new RouteLeg(cached.getDistanceKm(), cached.getDurationMinutes());
+    }
+
+    private void count(String result) {
+        count(result, 1);
+    }
+
+    private void count(String result, int amount) {
+        if (amount > 0) {
+            meterRegistry.counter(METRIC, "result", result).increment(amount);
+        }
+    }
+}
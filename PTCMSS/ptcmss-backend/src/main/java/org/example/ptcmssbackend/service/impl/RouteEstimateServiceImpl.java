@@ -0,0 +1,109 @@
+package org.example.ptcmssbackend.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.entity.RouteDistanceCache;
+import org.example.ptcmssbackend.repository.RouteDistanceCacheRepository;
+import org.example.ptcmssbackend.service.RouteCacheService;
+import org.example.ptcmssbackend.service.RouteEstimateService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hệ số đường bộ = trung vị (distanceKm / haversineKm), vận tốc = trung vị (distanceKm / giờ) trên tối đa
+ * SAMPLE_SIZE tuyến mới nhất dài từ 1 km; chưa đủ MIN_SAMPLES tuyến thì dùng giá trị cấu hình.
+ * Lượt ước lượng được đếm qua Micrometer (graphhopper.route.estimate).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteEstimateServiceImpl implements RouteEstimateService {
+
+    static final String METRIC = "graphhopper.route.estimate";
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final int SAMPLE_SIZE = 1000;
+    private static final int MIN_SAMPLES = 20;
+    private static final double MIN_SAMPLE_KM = 1.0;
+
+    private final RouteDistanceCacheRepository routeDistanceCacheRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${graphhopper.offline-estimate.road-factor:1.3}")
+    private double defaultRoadFactor;
+
+    @Value("${graphhopper.offline-estimate.speed-kmph:50}")
+    private double defaultSpeedKmph;
+
+    private record Calibration(double roadFactor, double speedKmph) {
+    }
+
+    private volatile Calibration calibration;
+
+    public static double haversineKm(double fromLat, double fromLng, double toLat, double toLng) {
+        double dLat = Math.toRadians(toLat - fromLat);
+        double dLng = Math.toRadians(toLng - fromLng);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(fromLat)) * Math.cos(Math.toRadians(toLat))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    @Override
+    public RouteCacheService.RouteLeg estimate(double fromLat, double fromLng, double toLat, double toLng) {
+        Calibration current = calibration;
+        if (current == null) {
+            calibrate();
+            current = calibration;
+        }
+        double distanceKm = haversineKm(fromLat, fromLng, toLat, toLng) * current.roadFactor();
+        meterRegistry.counter(METRIC).increment();
+        return new RouteCacheService.RouteLeg(distanceKm, distanceKm / current.speedKmph() * 60.0);
+    }
+
+    @Override
+    @Scheduled(cron = "0 20 * * * *") // Chạy mỗi giờ vào phút 20
+    public void calibrate() {
+        List<Double> factors = new ArrayList<>();
+        List<Double> speeds = new ArrayList<>();
+        try {
+            List<RouteDistanceCache> routes = routeDistanceCacheRepository
+                    .findAllByOrderByFetchedAtDesc(PageRequest.of(0, SAMPLE_SIZE));
+            for (RouteDistanceCache route : routes) {
+                double straightKm = haversineKm(route.getFromLat(), route.getFromLng(), route.getToLat(), route.getToLng());
+                if (straightKm < MIN_SAMPLE_KM || route.getDistanceKm() <= 0 || route.getDurationMinutes() <= 0) {
+                    continue;
+                }
+                factors.add(route.getDistanceKm() / straightKm);
+                speeds.add(route.getDistanceKm() / (route.getDurationMinutes() / 60.0));
+            }
+        } catch (RuntimeException e) {
+            log.warn("[RouteEstimate] Cannot read cached routes: {}", e.getMessage());
+        }
+
+        if (factors.size() < MIN_SAMPLES) {
+            calibration = new Calibration(defaultRoadFactor, defaultSpeedKmph);
+            log.info("[RouteEstimate] {} cached routes, using defaults: road factor {}, {} km/h",
+                    factors.size(), defaultRoadFactor, defaultSpeedKmph);
+            return;
+        }
+        // Chặn giá trị bất thường (tuyến vòng qua phà, dữ liệu lỗi...)
+        double roadFactor = Math.min(3.0, Math.max(1.0, median(factors)));
+        double speedKmph = Math.min(100.0, Math.max(15.0, median(speeds)));
+        calibration = new Calibration(roadFactor, speedKmph);
+        log.info("[RouteEstimate] Calibrated from {} cached routes: road factor {}, {} km/h",
+                factors.size(), String.format("%.3f", roadFactor), String.format("%.1f", speedKmph));
+    }
+
+    private static double median(List<Double> values) {
+        Collections.sort(values);
+        int mid = values.size() / 2;
+        return values.size() % 2 == 1 ? values.get(mid) : (values.get(mid - 1) + values.get(mid)) / 2.0;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.ptcmssbackend.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ptcmssbackend.entity.CustomerSearchTokens;
+import org.example.ptcmssbackend.entity.Customers;
+import org.example.ptcmssbackend.repository.CustomerSearchTokenRepository;
+import org.example.ptcmssbackend.service.SearchIndexService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchIndexServiceImpl implements SearchIndexService {
+
+    private static final int BACKFILL_BATCH = 500;
+
+    private final CustomerSearchTokenRepository tokenRepository;
+
+    @Override
+    @Transactional
+    public void indexCustomer(Customers customer) {
+        if (customer == null || customer.getId() == null) {
+            return;
+        }
+        reindex(customer);
+    }
+
+    @Override
+    public KeywordMatch match(String keyword) {
+        SearchTokens.Query query = SearchTokens.parse(keyword);
+        if (query == null) {
+            return null;
+        }
+        // Từ dài hơn thường khớp ít khách hơn: đặt lên đầu để câu SQL quét chỉ mục từ tiền tố chọn lọc nhất
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(query.prefixes()));
+        terms.sort(Comparator.comparingInt(String::length).reversed());
+        if (terms.size() > KeywordMatch.MAX_TERMS) {
+            terms = terms.subList(0, KeywordMatch.MAX_TERMS);
+        }
+        return new KeywordMatch(query.exactId(), List.copyOf(terms), query.emailPrefix());
+    }
+
+    /**
+     * Đưa vào chỉ mục khách hàng chưa có token (dữ liệu có trước chỉ mục) hoặc thiếu token tên miền email khi khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int indexed = 0;
+        try {
+            Integer afterId = 0;
+            List<Customers> batch;
+            do {
+                batch = tokenRepository.findCustomersToIndex(afterId, PageRequest.of(0, BACKFILL_BATCH));
+                for (Customers customer : batch) {
+                    reindex(customer);
+                    afterId = customer.getId();
+                }
+                indexed += batch.size();
+            } while (batch.size() == BACKFILL_BATCH);
+        } catch (Exception e) {
+            log.warn("[SearchIndex] Backfill stopped after {} customers: {}", indexed, e.getMessage());
+        }
+        if (indexed > 0) {
+            log.info("[SearchIndex] Indexed {} existing customers", indexed);
+        }
+    }
+
+    /**
+     * Chỉ xóa token không còn đúng và thêm token mới, giữ nguyên các token không đổi
+     */
+    private void reindex(Customers customer) {
+        List<String> fresh = SearchTokens.tokens(customer);
+        List<CustomerSearchTokens> existing = tokenRepository.findByCustomerId(customer.getId());
+        Set<String> current = new LinkedHashSet<>();
+        List<CustomerSearchTokens> stale = new ArrayList<>();
+        for (CustomerSearchTokens token : existing) {
+            if (fresh.contains(token.getToken()) && current.add(token.getToken())) {
+                continue;
+            }
+            stale.add(token);
+        }
+        if (!stale.isEmpty()) {
+            tokenRepository.deleteAll(stale);
+        }
+        List<CustomerSearchTokens> added = fresh.stream()
+                .filter(t -> !current.contains(t))
+                .map(t -> new CustomerSearchTokens(customer.getId(), t))
+                .toList();
+        if (!added.isEmpty()) {
+            tokenRepository.saveAll(added);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.ptcmssbackend.service.impl;
+
+import org.example.ptcmssbackend.entity.Customers;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Sinh token cho chỉ mục tìm kiếm khách hàng và chuyển từ khóa thành các tiền tố cần tra.
+ *
+ * - Tên: từng từ đã bỏ dấu, chữ thường ("n:nguyen"), tra theo tiền tố từ.
+ * - SĐT: mọi hậu tố từ 3 chữ số ("p:0912345678", "p:912345678", ...); tra tiền tố của hậu tố = tìm chuỗi con.
+ * - Email: cả địa chỉ và tên miền, chữ thường ("e:an@gmail.com", "e:gmail.com"), tra theo tiền tố;
+ *   từ khóa một cụm không có '@' ("an.nguyen", "gmail.com") tra thêm theo email.
+ * - Mã đơn: so khớp chính xác với khóa chính, không cần token.
+ */
+public final class SearchTokens {
+
+    static final int MIN_PHONE_DIGITS = 3;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int MAX_ID_DIGITS = 9;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern PHONE_LIKE = Pattern.compile("[0-9+()\\s.-]+");
+    private static final Pattern EMAIL_PART = Pattern.compile("[a-z0-9_.+-]*[a-z][a-z0-9_.+-]*");
+    // Ký tự thoát của LIKE, khớp với ESCAPE '!' trong CustomerSearchTokenRepository
+    // ('\' mặc định bị MySQL hiểu khác nhau tùy sql_mode)
+    private static final char LIKE_ESCAPE = '!';
+
+    private SearchTokens() {
+    }
+
+    /**
+     * Từ khóa đã phân tích: exactId (có thể null), các tiền tố token phải cùng khớp (AND)
+     * và tiền tố email khớp thay thế (OR, có thể null)
+     */
+    public record Query(Integer exactId, List<String> prefixes, String emailPrefix) {
+        public boolean isEmpty() {
+            return exactId == null && prefixes.isEmpty() && emailPrefix == null;
+        }
+    }
+
+    public static List<String> tokens(Customers customer) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String word : words(customer.getFullName())) {
+            tokens.add(truncate("n:" + word));
+        }
+        String digits = digits(customer.getPhone());
+        for (int i = 0; i + MIN_PHONE_DIGITS <= digits.length(); i++) {
+            tokens.add(truncate("p:" + digits.substring(i)));
+        }
+        if (customer.getEmail() != null && !customer.getEmail().isBlank()) {
+            String email = customer.getEmail().trim().toLowerCase(Locale.ROOT);
+            tokens.add(truncate("e:" + email));
+            String domain = email.substring(email.lastIndexOf('@') + 1);
+            if (!domain.isEmpty() && !domain.equals(email)) {
+                tokens.add(truncate("e:" + domain));
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * @return null nếu từ khóa rỗng
+     */
+    public static Query parse(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+        String trimmed = keyword.trim();
+        List<String> prefixes = new ArrayList<>();
+        Integer exactId = null;
+        String emailPrefix = null;
+
+        if (trimmed.contains("@")) {
+            prefixes.add(prefix("e:" + trimmed.toLowerCase(Locale.ROOT)));
+        } else if (PHONE_LIKE.matcher(trimmed).matches()) {
+            String digits = digits(trimmed);
+            if (!digits.isEmpty() && digits.length() <= MAX_ID_DIGITS && digits.equals(trimmed)) {
+                exactId = Integer.valueOf(digits);
+            }
+            if (digits.length() >= MIN_PHONE_DIGITS) {
+                prefixes.add(prefix("p:" + digits));
+            }
+        } else {
+            for (String word : words(trimmed)) {
+                prefixes.add(prefix("n:" + word));
+            }
+            // Một phần email không có '@': phần đầu địa chỉ hoặc tên miền
+            String lower = trimmed.toLowerCase(Locale.ROOT);
+            if (EMAIL_PART.matcher(lower).matches()) {
+                emailPrefix = prefix("e:" + lower);
+            }
+        }
+        return new Query(exactId, prefixes, emailPrefix);
+    }
+
+    /**
+     * Bỏ dấu tiếng Việt (kể cả đ/Đ), chữ thường, tách theo ký tự không phải chữ/số
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return words;
+        }
+        String normalized = Normalizer.normalize(text.replace('đ', 'd').replace('Đ', 'D'), Normalizer.Form.NFD);
+        normalized = MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+        for (String word : NON_WORD.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String digits(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c >= '0' && c <= '9') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String prefix(String token) {
+        // Token lưu tối đa 64 ký tự nên tiền tố dài hơn cũng chỉ so 64 ký tự đầu; thoát ký tự đại diện của LIKE
+        String escape = String.valueOf(LIKE_ESCAPE);
+        return truncate(token)
+                .replace(escape, escape + escape)
+                .replace("%", escape + "%")
+                .replace("_", escape + "_") + "%";
+    }
+
+    private static String truncate(String token) {
+        return token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token;
+    }
+}
@@ -6,9 +6,11 @@ import org.example.ptcmssbackend.dto.response.SystemSetting.SystemSettingRespons
 import org.example.ptcmssbackend.entity.Employees;
 import org.example.ptcmssbackend.entity.SystemSetting;
 import org.example.ptcmssbackend.enums.SettingStatus;
+import org.example.ptcmssbackend.event.PricingConfigChangedEvent;
 import org.example.ptcmssbackend.repository.SystemSettingRepository;
 import org.example.ptcmssbackend.repository.EmployeeRepository;
 import org.example.ptcmssbackend.service.SystemSettingService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +24,7 @@ public class SystemSettingServiceImpl implements SystemSettingService {
 
     private final SystemSettingRepository systemSettingRepository;
     private final EmployeeRepository employeeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<SystemSettingResponse> getAll() {
@@ -75,6 +78,7 @@ public class SystemSettingServiceImpl implements SystemSettingService {
                 .build();
 
         SystemSetting saved = systemSettingRepository.save(setting);
+        eventPublisher.publishEvent(new PricingConfigChangedEvent("system_settings"));
         return mapToResponse(saved);
     }
 
@@ -105,6 +109,7 @@ public class SystemSettingServiceImpl implements SystemSettingService {
         setting.setUpdatedBy(updater);
 
         SystemSetting updated = systemSettingRepository.save(setting);
+        eventPublisher.publishEvent(new PricingConfigChangedEvent("system_settings"));
         return mapToResponse(updated);
     }
 
@@ -114,6 +119,7 @@ public class SystemSettingServiceImpl implements SystemSettingService {
             throw new RuntimeException("Không tìm thấy cài đặt hệ thống");
         }
         systemSettingRepository.deleteById(id);
+        eventPublisher.publishEvent(new PricingConfigChangedEvent("system_settings"));
     }
 
     private SystemSettingResponse mapToResponse(SystemSetting entity) {
@@ -0,0 +1,53 @@
+package org.example.ptcmssbackend.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Chọn K cặp (hàng, cột) có tổng điểm nhỏ nhất khi điểm hàng và điểm cột đều đã sắp tăng dần.
+ * Dùng cho gợi ý cặp tài xế × xe: điểm cặp = điểm tài xế + điểm xe.
+ *
+ * Không duyệt toàn bộ n × m cặp: heap chỉ giữ "biên" gồm tối đa min(K, số hàng) ứng viên,
+ * mỗi lần lấy ra cặp nhỏ nhất (i, j) thì đẩy vào (i, j + 1). Chi phí O(K · log K).
+ */
+public final class TopKPairs {
+
+    private TopKPairs() {
+    }
+
+    /**
+     * @param rowScores điểm theo hàng, tăng dần
+     * @param colScores điểm theo cột, tăng dần
+     * @return tối đa {@code k} cặp {hàng, cột} theo tổng điểm tăng dần; cùng tổng thì theo (hàng, cột)
+     */
+    public static List<int[]> select(int[] rowScores, int[] colScores, int k) {
+        int rows = rowScores.length;
+        int cols = colScores.length;
+        List<int[]> result = new ArrayList<>(Math.max(0, Math.min(k, rows * Math.min(cols, k))));
+        if (k <= 0 || rows == 0 || cols == 0) {
+            return result;
+        }
+
+        PriorityQueue<int[]> frontier = new PriorityQueue<>((a, b) -> {
+            int cmp = Long.compare((long) rowScores[a[0]] + colScores[a[1]], (long) rowScores[b[0]] + colScores[b[1]]);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Integer.compare(a[0], b[0]);
+            return cmp != 0 ? cmp : Integer.compare(a[1], b[1]);
+        });
+        // Các hàng sau vị trí k không thể lọt vào top K (đã có k hàng đầu ghép với cột 0 nhỏ hơn hoặc bằng)
+        for (int i = 0; i < Math.min(rows, k); i++) {
+            frontier.add(new int[]{i, 0});
+        }
+        while (result.size() < k && !frontier.isEmpty()) {
+            int[] best = frontier.poll();
+            result.add(best);
+            if (best[1] + 1 < cols) {
+                frontier.add(new int[]{best[0], best[1] + 1});
+            }
+        }
+        return result;
+    }
+}
@@ -3,6 +3,7 @@ package org.example.ptcmssbackend.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
+import org.example.ptcmssbackend.entity.Trips;
 import org.example.ptcmssbackend.enums.HireTypeCode;
 import org.example.ptcmssbackend.service.GraphHopperService;
 import org.example.ptcmssbackend.service.SystemSettingService;
@@ -13,6 +14,8 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -22,12 +25,40 @@ public class TripOccupancyServiceImpl implements TripOccupancyService {
     private static final String AVG_SPEED_KEY = "AVG_VEHICLE_SPEED_KMPH";
     private static final int DEFAULT_AVG_SPEED_KMPH = 60;
     private static final Duration BUFFER_AFTER_ARRIVAL = Duration.ofMinutes(10);
+    private static final long SPEED_TTL_MILLIS = 60_000;
+    private static final int BUSY_UNTIL_CACHE_SIZE = 20_000;
+    // Quãng đường giả định khi chuyến có địa điểm nhưng không tính được quãng đường (GraphHopper lỗi, chưa geocode được):
+    // ước lượng dài để xe không bị coi là rảnh quá sớm
+    private static final double UNRESOLVED_DISTANCE_KM = 300;
 
     private final SystemSettingService systemSettingService;
     private final GraphHopperService graphHopperService;
 
+    // Vận tốc trung bình đọc lại tối đa mỗi phút thay vì mỗi lần tính
+    private volatile int cachedSpeedKmph;
+    private volatile long speedLoadedAt;
+
+    // tripId -> busy-until kèm dữ liệu đầu vào đã dùng để tính (LRU, giới hạn kích thước)
+    private final Map<Integer, CachedBusyUntil> busyUntilCache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CachedBusyUntil> eldest) {
+            return size() > BUSY_UNTIL_CACHE_SIZE;
+        }
+    };
+
     @Override
     public int getAverageSpeedKmph() {
+        long now = System.currentTimeMillis();
+        if (cachedSpeedKmph > 0 && now - speedLoadedAt < SPEED_TTL_MILLIS) {
+            return cachedSpeedKmph;
+        }
+        int speed = loadAverageSpeedKmph();
+        cachedSpeedKmph = speed;
+        speedLoadedAt = now;
+        return speed;
+    }
+
+    private int loadAverageSpeedKmph() {
         try {
             var setting = systemSettingService.getByKey(AVG_SPEED_KEY);
             if (setting != null && setting.getSettingValue() != null && !setting.getSettingValue().isBlank()) {
@@ -50,9 +81,46 @@ public class TripOccupancyServiceImpl implements TripOccupancyService {
             String endLocation
     ) {
         if (startTime == null) return null;
+        Double km = resolveDistanceKm(distanceKm, startLocation, endLocation);
+        return busyUntil(hireTypeCode, startTime, endTime, km != null ? km : UNRESOLVED_DISTANCE_KM);
+    }
+
+    @Override
+    public Instant computeBusyUntil(Trips trip) {
+        if (trip == null || trip.getStartTime() == null) return null;
+
+        String hireTypeCode = trip.getBooking() != null && trip.getBooking().getHireType() != null
+                ? trip.getBooking().getHireType().getCode()
+                : null;
+        Double distanceKm = trip.getDistance() != null ? trip.getDistance().doubleValue() : null;
+        if (trip.getId() == null) {
+            return computeBusyUntil(hireTypeCode, trip.getStartTime(), trip.getEndTime(), distanceKm,
+                    trip.getStartLocation(), trip.getEndLocation());
+        }
 
+        BusyUntilInputs inputs = new BusyUntilInputs(hireTypeCode, trip.getStartTime(), trip.getEndTime(), distanceKm,
+                trip.getStartLocation(), trip.getEndLocation(), getAverageSpeedKmph());
+        synchronized (busyUntilCache) {
+            CachedBusyUntil cached = busyUntilCache.get(trip.getId());
+            if (cached != null && cached.inputs().equals(inputs)) {
+                return cached.busyUntil();
+            }
+        }
+
+        Double km = resolveDistanceKm(distanceKm, trip.getStartLocation(), trip.getEndLocation());
+        Instant busyUntil = busyUntil(hireTypeCode, trip.getStartTime(), trip.getEndTime(),
+                km != null ? km : UNRESOLVED_DISTANCE_KM);
+        // Không nhớ kết quả ước lượng khi GraphHopper không trả được quãng đường (lần sau thử lại)
+        if (km != null) {
+            synchronized (busyUntilCache) {
+                busyUntilCache.put(trip.getId(), new CachedBusyUntil(inputs, busyUntil));
+            }
+        }
+        return busyUntil;
+    }
+
+    private Instant busyUntil(String hireTypeCode, Instant startTime, Instant endTime, double km) {
         final HireTypeCode type = parseHireType(hireTypeCode);
-        final double km = resolveDistanceKm(distanceKm, startLocation, endLocation);
         final Duration travel = km > 0 ? estimateTravelDuration(km) : Duration.ZERO;
 
         // ONE_WAY: busy until max(userEndTime, start + travel) + buffer
@@ -94,18 +162,22 @@ public class TripOccupancyServiceImpl implements TripOccupancyService {
         }
     }
 
-    private double resolveDistanceKm(Double distanceKm, String from, String to) {
+    /**
+     * Quãng đường của chuyến (km); 0 nếu thiếu địa điểm, null nếu có địa điểm nhưng GraphHopper không tính được
+     */
+    private Double resolveDistanceKm(Double distanceKm, String from, String to) {
         if (distanceKm != null && distanceKm > 0) return distanceKm;
-        if (from == null || from.isBlank() || to == null || to.isBlank()) return 0;
+        if (!hasLocations(from, to)) return 0.0;
         try {
             DistanceResult result = graphHopperService.calculateDistance(from, to);
             if (result != null && result.getDistanceKm() != null) {
                 return result.getDistanceKm();
             }
         } catch (Exception e) {
-            log.warn("[TripOccupancy] Cannot calculate distance via GraphHopper: {}", e.getMessage());
+            log.warn("[TripOccupancy] Cannot calculate distance via GraphHopper, assuming {} km: {}",
+                    UNRESOLVED_DISTANCE_KM, e.getMessage());
         }
-        return 0;
+        return null;
     }
 
     private Duration estimateTravelDuration(double distanceKm) {
@@ -115,6 +187,15 @@ public class TripOccupancyServiceImpl implements TripOccupancyService {
         long seconds = Math.max(0, (long) Math.ceil(hours * 3600.0));
         return Duration.ofSeconds(seconds);
     }
-}
 
+    private boolean hasLocations(String from, String to) {
+        return from != null && !from.isBlank() && to != null && !to.isBlank();
+    }
+
+    private record BusyUntilInputs(String hireTypeCode, Instant startTime, Instant endTime, Double distanceKm,
+                                   String startLocation, String endLocation, int speedKmph) {
+    }
 
+    private record CachedBusyUntil(BusyUntilInputs inputs, Instant busyUntil) {
+    }
+}
@@ -5,9 +5,11 @@ import org.example.ptcmssbackend.dto.request.Vehicle.VehicleCategoryRequest;
 import org.example.ptcmssbackend.dto.response.Vehicle.VehicleCategoryResponse;
 import org.example.ptcmssbackend.entity.VehicleCategoryPricing;
 import org.example.ptcmssbackend.enums.VehicleCategoryStatus;
+import org.example.ptcmssbackend.event.PricingConfigChangedEvent;
 import org.example.ptcmssbackend.repository.VehicleCategoryPricingRepository;
 import org.example.ptcmssbackend.repository.VehicleRepository;
 import org.example.ptcmssbackend.service.VehicleCategoryService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -19,6 +21,7 @@ public class VehicleCategoryServiceImpl implements VehicleCategoryService {
 
     private final VehicleCategoryPricingRepository categoryRepository;
     private final VehicleRepository vehicleRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<VehicleCategoryResponse> listAll() {
@@ -36,7 +39,9 @@ public class VehicleCategoryServiceImpl implements VehicleCategoryService {
     public VehicleCategoryResponse create(VehicleCategoryRequest req) {
         VehicleCategoryPricing c = new VehicleCategoryPricing();
         apply(c, req);
-        return toResponse(categoryRepository.save(c));
+        VehicleCategoryPricing saved = categoryRepository.save(c);
+        eventPublisher.publishEvent(new PricingConfigChangedEvent("vehicle_category_pricing"));
+        return toResponse(saved);
     }
 
     @Override
@@ -44,12 +49,15 @@ public class VehicleCategoryServiceImpl implements VehicleCategoryService {
         VehicleCategoryPricing c = categoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy loại xe"));
         apply(c, req);
-        return toResponse(categoryRepository.save(c));
+        VehicleCategoryPricing saved = categoryRepository.save(c);
+        eventPublisher.publishEvent(new PricingConfigChangedEvent("vehicle_category_pricing"));
+        return toResponse(saved);
     }
 
     @Override
     public void delete(Integer id) {
         categoryRepository.deleteById(id);
+        eventPublisher.publishEvent(new PricingConfigChangedEvent("vehicle_category_pricing"));
     }
 
     private void apply(VehicleCategoryPricing c, VehicleCategoryRequest req) {
@@ -15,6 +15,7 @@ import org.example.ptcmssbackend.entity.ExpenseRequests;
 import org.example.ptcmssbackend.enums.InvoiceType;
 import org.example.ptcmssbackend.enums.PaymentStatus;
 import org.example.ptcmssbackend.enums.VehicleStatus;
+import org.example.ptcmssbackend.event.VehicleFleetChangedEvent;
 import org.example.ptcmssbackend.dto.response.common.PageResponse;
 import org.example.ptcmssbackend.repository.BranchesRepository;
 import org.example.ptcmssbackend.repository.InvoiceRepository;
@@ -27,6 +28,7 @@ import org.example.ptcmssbackend.repository.VehicleCategoryPricingRepository;
 import org.example.ptcmssbackend.repository.VehicleRepository;
 import org.example.ptcmssbackend.service.VehicleService;
 import org.example.ptcmssbackend.enums.ExpenseRequestStatus;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -53,6 +55,7 @@ public class VehicleServiceImpl implements VehicleService {
     private final TripDriverRepository tripDriverRepository;
     private final InvoiceRepository invoiceRepository;
     private final ExpenseRequestRepository expenseRequestRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public VehicleResponse create(VehicleRequest request) {
@@ -70,6 +73,7 @@ public class VehicleServiceImpl implements VehicleService {
         // 2. Map + save
         Vehicles vehicle = mapToEntity(request);
         vehicleRepository.save(vehicle);
+        eventPublisher.publishEvent(new VehicleFleetChangedEvent(List.of(vehicle.getBranch().getId())));
         return mapToResponse(vehicle);
     }
 
@@ -99,9 +103,13 @@ public class VehicleServiceImpl implements VehicleService {
             }
         }
         
+        // Chi nhánh cũ: xe có thể được chuyển sang chi nhánh khác
+        Integer previousBranchId = vehicle.getBranch() != null ? vehicle.getBranch().getId() : null;
         Vehicles updated = updateEntity(vehicle, request);
         System.out.println("[VehicleService] Updated vehicle status: " + updated.getStatus());
         vehicleRepository.save(updated);
+        eventPublisher.publishEvent(new VehicleFleetChangedEvent(
+                java.util.Arrays.asList(previousBranchId, updated.getBranch().getId())));
         return mapToResponse(updated);
     }
 
@@ -183,7 +191,11 @@ public class VehicleServiceImpl implements VehicleService {
 
     @Override
     public void delete(Integer id) {
+        Integer branchId = vehicleRepository.findById(id)
+                .map(v -> v.getBranch() != null ? v.getBranch().getId() : null)
+                .orElse(null);
         vehicleRepository.deleteById(id);
+        eventPublisher.publishEvent(new VehicleFleetChangedEvent(java.util.Collections.singletonList(branchId)));
     }
 
     @Override
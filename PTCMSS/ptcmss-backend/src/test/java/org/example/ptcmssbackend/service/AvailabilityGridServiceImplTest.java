@@ -0,0 +1,235 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.Booking.AvailabilityHeatmapResponse;
+import org.example.ptcmssbackend.entity.Bookings;
+import org.example.ptcmssbackend.entity.Branches;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.enums.AssignmentAction;
+import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.event.VehicleFleetChangedEvent;
+import org.example.ptcmssbackend.repository.BookingVehicleDetailsRepository;
+import org.example.ptcmssbackend.repository.TripRepository;
+import org.example.ptcmssbackend.repository.TripVehicleRepository;
+import org.example.ptcmssbackend.repository.VehicleRepository;
+import org.example.ptcmssbackend.service.impl.AvailabilityGrid;
+import org.example.ptcmssbackend.service.impl.AvailabilityGridServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityGridServiceImplTest {
+
+    private static final Integer BRANCH_ID = 1;
+    private static final Integer CATEGORY_ID = 10;
+
+    @Mock
+    private TripRepository tripRepository;
+    @Mock
+    private TripVehicleRepository tripVehicleRepository;
+    @Mock
+    private BookingVehicleDetailsRepository bookingVehicleDetailsRepository;
+    @Mock
+    private VehicleRepository vehicleRepository;
+
+    @InjectMocks
+    private AvailabilityGridServiceImpl gridService;
+
+    private final Instant base = Instant.now().truncatedTo(ChronoUnit.HOURS).plus(Duration.ofDays(1));
+
+    @Test
+    void getHeatmap_shouldLoadBranchOnceFromFixedQueries() {
+        Trips assigned = createTrip(100, TripStatus.ASSIGNED, at(2), at(4));
+        Trips reservedTrip = createTrip(101, TripStatus.SCHEDULED, at(3), at(5));
+        stubBranch(3, List.of(assigned, reservedTrip));
+        when(tripVehicleRepository.findAssignedVehicleCategories(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{100, 7, CATEGORY_ID, BRANCH_ID}));
+        when(bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{1101, CATEGORY_ID, 2}));
+
+        AvailabilityHeatmapResponse response = gridService.getHeatmap(BRANCH_ID, null, at(0), at(6));
+        gridService.getHeatmap(BRANCH_ID, CATEGORY_ID, at(0), at(6));
+
+        AvailabilityHeatmapResponse.CategoryRow row = response.getCategories().get(0);
+        assertThat(row.getTotal()).isEqualTo(3);
+        assertThat(row.getBusy()).containsExactly(0, 0, 1, 1, 0, 0);
+        assertThat(row.getReserved()).containsExactly(0, 0, 0, 2, 2, 0);
+        assertThat(row.getAvailable()).containsExactly(3, 3, 2, 0, 1, 3);
+        verify(tripRepository, times(1)).findIdsByBranchOverlapping(eq(BRANCH_ID), any(), any());
+    }
+
+    @Test
+    void getHeatmap_whenBranchMissing_shouldThrowException() {
+        assertThatThrownBy(() -> gridService.getHeatmap(null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Mã chi nhánh là bắt buộc");
+        verifyNoInteractions(tripRepository, vehicleRepository);
+    }
+
+    @Test
+    void onTripAssignmentChanged_shouldOnlyReloadChangedTrips() {
+        stubBranch(2, List.of());
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)).available()).isEqualTo(2);
+
+        Trips trip = createTrip(100, TripStatus.ASSIGNED, at(1), at(3));
+        when(tripRepository.findWithBookingByIdIn(List.of(100))).thenReturn(List.of(trip));
+        when(tripVehicleRepository.findAssignedVehicleCategories(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{100, 7, CATEGORY_ID, BRANCH_ID}));
+        when(bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(anyCollection()))
+                .thenReturn(List.of());
+
+        gridService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)))
+                .isEqualTo(new AvailabilityGrid.Counts(2, 1, 0));
+        verify(tripRepository, times(1)).findIdsByBranchOverlapping(eq(BRANCH_ID), any(), any());
+    }
+
+    @Test
+    void onBookingScheduleChanged_shouldDropContributionOfRemovedTrips() {
+        Trips reservedTrip = createTrip(101, TripStatus.SCHEDULED, at(3), at(5));
+        stubBranch(3, List.of(reservedTrip));
+        when(tripVehicleRepository.findAssignedVehicleCategories(anyCollection())).thenReturn(List.of());
+        when(bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{1101, CATEGORY_ID, 2}));
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(3), at(4)).reserved()).isEqualTo(2);
+
+        // Đơn được sửa, trip 101 bị xóa
+        when(tripRepository.findByBooking_IdIn(List.of(1101))).thenReturn(List.of());
+
+        gridService.onBookingScheduleChanged(new BookingScheduleChangedEvent(List.of(1101)));
+
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(3), at(4)).available()).isEqualTo(3);
+    }
+
+    @Test
+    void onVehicleFleetChanged_shouldReloadBranchOnNextRead() {
+        stubBranch(2, List.of());
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)).total()).isEqualTo(2);
+
+        // Thêm một xe mới vào chi nhánh
+        when(vehicleRepository.countAvailableByBranchGroupByCategory(BRANCH_ID))
+                .thenReturn(List.<Object[]>of(new Object[]{CATEGORY_ID, "Xe 16 chỗ", 3L}));
+        gridService.onVehicleFleetChanged(new VehicleFleetChangedEvent(List.of(BRANCH_ID)));
+
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)).total()).isEqualTo(3);
+        verify(tripRepository, times(2)).findIdsByBranchOverlapping(eq(BRANCH_ID), any(), any());
+    }
+
+    @Test
+    void onTripAssignmentChanged_shouldRecomputeReservationOfWholeBooking() {
+        Trips first = createTrip(101, TripStatus.SCHEDULED, at(1), at(2));
+        Trips second = createTrip(102, TripStatus.SCHEDULED, at(5), at(6));
+        second.setBooking(first.getBooking());
+        stubBranch(3, List.of(first, second));
+        when(tripVehicleRepository.findAssignedVehicleCategories(anyCollection())).thenReturn(List.of());
+        when(bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{1101, CATEGORY_ID, 2}));
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(5), at(6)).reserved()).isEqualTo(2);
+
+        // Gán xe cho trip 101: đơn 1101 không còn giữ chỗ, kể cả trip 102 chưa gán
+        when(tripRepository.findWithBookingByIdIn(List.of(101))).thenReturn(List.of(first));
+        when(tripRepository.findByBooking_IdIn(Set.of(1101))).thenReturn(List.of(first, second));
+        when(tripVehicleRepository.findAssignedVehicleCategories(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{101, 7, CATEGORY_ID, BRANCH_ID}));
+        when(bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(anyCollection())).thenReturn(List.of());
+
+        gridService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(101), AssignmentAction.ASSIGN));
+
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(5), at(6)))
+                .isEqualTo(new AvailabilityGrid.Counts(3, 0, 0));
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)))
+                .isEqualTo(new AvailabilityGrid.Counts(3, 1, 0));
+    }
+
+    @Test
+    void resyncGrids_whenBranchEvictedDuringLoad_shouldNotReinsertGrid() {
+        stubBranch(2, List.of());
+        gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2));
+
+        // Xe được thêm trong lúc đồng bộ đang đọc DB
+        when(vehicleRepository.countAvailableByBranchGroupByCategory(BRANCH_ID)).thenAnswer(invocation -> {
+            gridService.onVehicleFleetChanged(new VehicleFleetChangedEvent(List.of(BRANCH_ID)));
+            return List.<Object[]>of(new Object[]{CATEGORY_ID, "Xe 16 chỗ", 2L});
+        });
+        gridService.resyncGrids();
+
+        // Lưới không được đưa lại vào bộ nhớ: lần đọc sau nạp lại từ DB
+        when(vehicleRepository.countAvailableByBranchGroupByCategory(BRANCH_ID))
+                .thenReturn(List.<Object[]>of(new Object[]{CATEGORY_ID, "Xe 16 chỗ", 3L}));
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)).total()).isEqualTo(3);
+        verify(tripRepository, times(3)).findIdsByBranchOverlapping(eq(BRANCH_ID), any(), any());
+    }
+
+    @Test
+    void resyncGrids_whenTripChangedDuringLoad_shouldKeepEventUpdatedGrid() {
+        stubBranch(2, List.of());
+        gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2));
+
+        Trips trip = createTrip(100, TripStatus.ASSIGNED, at(1), at(3));
+        when(tripRepository.findWithBookingByIdIn(List.of(100))).thenReturn(List.of(trip));
+        when(tripVehicleRepository.findAssignedVehicleCategories(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[]{100, 7, CATEGORY_ID, BRANCH_ID}));
+        when(bookingVehicleDetailsRepository.findReservedQuantitiesByBookingIds(anyCollection())).thenReturn(List.of());
+        // Trip được gán xe sau khi đồng bộ đã đọc danh sách trip (bản nạp lại không có trip 100)
+        when(tripRepository.findIdsByBranchOverlapping(eq(BRANCH_ID), any(), any())).thenAnswer(invocation -> {
+            gridService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+            return List.of();
+        });
+        gridService.resyncGrids();
+
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(1), at(2)))
+                .isEqualTo(new AvailabilityGrid.Counts(2, 1, 0));
+    }
+
+    @Test
+    void getCounts_whenWindowOutsideGrid_shouldReturnNull() {
+        stubBranch(2, List.of());
+
+        assertThat(gridService.getCounts(BRANCH_ID, CATEGORY_ID, at(24 * 40), at(24 * 40 + 2))).isNull();
+    }
+
+    private void stubBranch(int vehicles, List<Trips> trips) {
+        when(vehicleRepository.countAvailableByBranchGroupByCategory(BRANCH_ID))
+                .thenReturn(List.<Object[]>of(new Object[]{CATEGORY_ID, "Xe 16 chỗ", (long) vehicles}));
+        List<Integer> ids = trips.stream().map(Trips::getId).toList();
+        when(tripRepository.findIdsByBranchOverlapping(eq(BRANCH_ID), any(), any())).thenReturn(ids);
+        if (!trips.isEmpty()) {
+            when(tripRepository.findWithBookingByIdIn(ids)).thenReturn(trips);
+        }
+    }
+
+    private Trips createTrip(Integer id, TripStatus status, Instant start, Instant end) {
+        Branches branch = new Branches();
+        branch.setId(BRANCH_ID);
+        Bookings booking = new Bookings();
+        booking.setId(id + 1000);
+        booking.setBranch(branch);
+        Trips trip = new Trips();
+        trip.setId(id);
+        trip.setBooking(booking);
+        trip.setStatus(status);
+        trip.setStartTime(start);
+        trip.setEndTime(end);
+        return trip;
+    }
+
+    private Instant at(int hour) {
+        return base.plus(Duration.ofHours(hour));
+    }
+}
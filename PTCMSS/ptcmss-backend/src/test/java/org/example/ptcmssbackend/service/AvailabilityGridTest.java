@@ -0,0 +1,91 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.Booking.AvailabilityHeatmapResponse;
+import org.example.ptcmssbackend.service.impl.AvailabilityGrid;
+import org.example.ptcmssbackend.service.impl.AvailabilityGrid.Piece;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityGridTest {
+
+    private static final Instant FROM = Instant.parse("2025-12-04T00:00:00Z");
+
+    @Test
+    void apply_shouldCountEachVehicleOnceAndRoundTripsOutwardToHours() {
+        AvailabilityGrid grid = grid();
+
+        // Xe 7 có hai trip chồng nhau 01:30-03:00 và 02:00-04:00
+        grid.apply(1, 100, List.of(busy(7, at(1).plusSeconds(1800), at(3))));
+        grid.apply(2, 101, List.of(busy(7, at(2), at(4))));
+
+        AvailabilityHeatmapResponse.CategoryRow row = grid.toResponse(10, at(0), at(5)).getCategories().get(0);
+        assertThat(row.getBusy()).containsExactly(0, 1, 1, 1, 0);
+        assertThat(row.getAvailable()).containsExactly(3, 2, 2, 2, 3);
+    }
+
+    @Test
+    void apply_shouldReplacePreviousContributionOfTrip() {
+        AvailabilityGrid grid = grid();
+        grid.apply(1, 100, List.of(busy(7, at(1), at(3))));
+        long version = grid.getVersion();
+
+        // Đổi lịch sang 05:00-06:00, rồi hủy
+        grid.apply(1, 100, List.of(busy(7, at(5), at(6))));
+        assertThat(grid.toResponse(10, at(0), at(7)).getCategories().get(0).getBusy())
+                .containsExactly(0, 0, 0, 0, 0, 1, 0);
+
+        grid.apply(1, 100, List.of());
+        assertThat(grid.toResponse(10, at(0), at(7)).getCategories().get(0).getBusy()).containsOnly(0);
+        assertThat(grid.contains(1)).isFalse();
+        assertThat(grid.getVersion()).isEqualTo(version + 2);
+
+        // Không đổi gì thì không tăng version
+        assertThat(grid.apply(1, 100, List.of())).isFalse();
+    }
+
+    @Test
+    void counts_shouldUseDistinctBusyVehiclesAndPeakReservations() {
+        AvailabilityGrid grid = grid();
+        grid.apply(1, 100, List.of(busy(7, at(1), at(2))));
+        grid.apply(2, 101, List.of(busy(8, at(3), at(4))));
+        grid.apply(3, 102, List.of(new Piece(10, null, 2, at(1), at(2))));
+        grid.apply(4, 103, List.of(new Piece(10, null, 1, at(3), at(4))));
+
+        AvailabilityGrid.Counts counts = grid.counts(10, at(0), at(5));
+
+        // Hai xe khác nhau bận trong khoảng; giữ chỗ lớn nhất cùng lúc là 2
+        assertThat(counts).isEqualTo(new AvailabilityGrid.Counts(3, 2, 2));
+        assertThat(counts.available()).isZero();
+        assertThat(grid.counts(10, at(4), at(6)).available()).isEqualTo(3);
+        assertThat(grid.tripIdsOfBookings(Set.of(101, 103))).containsExactlyInAnyOrder(2, 4);
+    }
+
+    @Test
+    void covers_shouldOnlyAcceptWindowsInsideGrid() {
+        AvailabilityGrid grid = grid();
+
+        assertThat(grid.covers(at(1), at(2))).isTrue();
+        assertThat(grid.covers(FROM.minusSeconds(60), at(2))).isFalse();
+        assertThat(grid.covers(at(20), at(25))).isFalse();
+        assertThat(grid.covers(at(2), at(2))).isFalse();
+    }
+
+    private static AvailabilityGrid grid() {
+        return new AvailabilityGrid(1, FROM.plusSeconds(600), 24, Map.of(10, 3), Map.of(10, "Xe 16 chỗ"));
+    }
+
+    private static Piece busy(int vehicleId, Instant start, Instant end) {
+        return new Piece(10, vehicleId, 1, start, end);
+    }
+
+    private static Instant at(int hour) {
+        return FROM.plus(Duration.ofHours(hour));
+    }
+}
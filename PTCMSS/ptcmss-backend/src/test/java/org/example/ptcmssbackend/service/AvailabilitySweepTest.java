@@ -0,0 +1,98 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.AvailabilitySweep;
+import org.example.ptcmssbackend.service.impl.AvailabilitySweep.Interval;
+import org.example.ptcmssbackend.service.impl.AvailabilitySweep.Window;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilitySweepTest {
+
+    private static final Instant FROM = Instant.parse("2025-12-04T00:00:00Z");
+    private static final Instant TO = FROM.plus(Duration.ofDays(1));
+
+    @Test
+    void findWindows_shouldReturnEarliestInstantsWithEnoughFreeVehicles() {
+        List<Interval> busy = List.of(
+                busy(1, 0, 4),
+                busy(2, 0, 6),
+                busy(3, 2, 8));
+
+        List<Window> windows = AvailabilitySweep.findWindows(3, busy, FROM, TO, 2, null, 5);
+
+        // +4h xe 1 rảnh (1 xe), +6h xe 2 rảnh (2 xe), +8h đủ 3 xe
+        assertThat(windows).containsExactly(new Window(at(6), null, 2));
+    }
+
+    @Test
+    void findWindows_shouldMergeOverlappingTripsOfSameVehicle() {
+        List<Interval> busy = List.of(
+                busy(1, 0, 3),
+                busy(1, 2, 5),
+                busy(1, 4, 6));
+
+        List<Window> windows = AvailabilitySweep.findWindows(1, busy, FROM, TO, 1, null, 5);
+
+        assertThat(windows).containsExactly(new Window(at(6), null, 1));
+    }
+
+    @Test
+    void findWindows_shouldSkipGapsShorterThanTripLength() {
+        List<Interval> busy = List.of(
+                busy(1, 0, 2),
+                busy(1, 3, 5),
+                busy(1, 8, 10));
+
+        List<Window> windows = AvailabilitySweep.findWindows(1, busy, FROM, TO, 1, Duration.ofHours(2), 5);
+
+        // Khoảng +2h..+3h quá ngắn, +5h..+8h và từ +10h trở đi đủ dài
+        assertThat(windows).containsExactly(
+                new Window(at(5), at(8), 1),
+                new Window(at(10), null, 1));
+    }
+
+    @Test
+    void findWindows_shouldCountReservationsByQuantity() {
+        List<Interval> busy = List.of(
+                new Interval(null, at(0), at(5), 2),
+                busy(3, 0, 3));
+
+        List<Window> windows = AvailabilitySweep.findWindows(3, busy, FROM, TO, 2, null, 5);
+
+        assertThat(windows).containsExactly(new Window(at(5), null, 3));
+    }
+
+    @Test
+    void findWindows_shouldRespectLimitAndCapacity() {
+        List<Interval> busy = new ArrayList<>();
+        for (int h = 0; h < 20; h += 2) {
+            busy.add(busy(1, h, h + 1));
+        }
+
+        assertThat(AvailabilitySweep.findWindows(1, busy, FROM, TO, 1, null, 3))
+                .extracting(Window::from)
+                .containsExactly(at(1), at(3), at(5));
+        assertThat(AvailabilitySweep.findWindows(1, busy, FROM, TO, 2, null, 3)).isEmpty();
+    }
+
+    @Test
+    void findWindows_whenBusyUntilEndOfHorizon_shouldReturnEmpty() {
+        List<Interval> busy = List.of(new Interval(1, FROM.minusSeconds(3600), TO.plusSeconds(3600), 1));
+
+        assertThat(AvailabilitySweep.findWindows(1, busy, FROM, TO, 1, null, 5)).isEmpty();
+    }
+
+    private static Interval busy(int vehicleId, int fromHour, int toHour) {
+        return new Interval(vehicleId, at(fromHour), at(toHour), 1);
+    }
+
+    private static Instant at(int hour) {
+        return FROM.plus(Duration.ofHours(hour));
+    }
+}
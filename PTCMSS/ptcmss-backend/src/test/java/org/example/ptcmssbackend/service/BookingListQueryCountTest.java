@@ -0,0 +1,258 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.Booking.BookingListResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
+import org.example.ptcmssbackend.entity.*;
+import org.example.ptcmssbackend.enums.InvoiceType;
+import org.example.ptcmssbackend.enums.PaymentConfirmationStatus;
+import org.example.ptcmssbackend.repository.BookingRepository;
+import org.example.ptcmssbackend.service.impl.BookingListAssembler;
+import org.example.ptcmssbackend.service.impl.PageCursor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đếm số câu SQL khi nạp một trang danh sách booking (H2 trong bộ nhớ, Hibernate statistics)
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BookingListQueryCountTest {
+
+    private static final Instant T0 = Instant.parse("2025-12-01T00:00:00Z");
+
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private Statistics statistics;
+    private Branches branch;
+
+    @BeforeEach
+    void setUp() {
+        Roles role = new Roles();
+        role.setRoleName("CONSULTANT");
+        em.persist(role);
+
+        branch = new Branches();
+        branch.setBranchName("Hà Nội");
+        em.persist(branch);
+
+        Employees consultant = employee(role, "consultant", "Tư vấn A");
+        Employees driverEmployee = employee(role, "driver", "Tài xế B");
+
+        Drivers driver = new Drivers();
+        driver.setEmployee(driverEmployee);
+        driver.setBranch(branch);
+        driver.setLicenseNumber("GPLX-01");
+        em.persist(driver);
+
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setCategoryName("Xe 16 chỗ");
+        em.persist(category);
+
+        Vehicles vehicle = new Vehicles();
+        vehicle.setCategory(category);
+        vehicle.setBranch(branch);
+        vehicle.setLicensePlate("29A-12345");
+        em.persist(vehicle);
+
+        for (int i = 0; i < 5; i++) {
+            Customers customer = new Customers();
+            customer.setFullName("Khách " + i);
+            customer.setPhone("090000000" + i);
+            customer.setCreatedBy(consultant);
+            em.persist(customer);
+
+            Bookings booking = new Bookings();
+            booking.setCustomer(customer);
+            booking.setBranch(branch);
+            booking.setConsultant(consultant);
+            booking.setTotalCost(new BigDecimal("1000000"));
+            em.persist(booking);
+            // Thứ tự tạo xác định cho phân trang keyset
+            booking.setCreatedAt(T0.plusSeconds(i * 60L));
+
+            Trips outbound = trip(booking, "Hà Nội", "Hạ Long", T0.plusSeconds(86400));
+            trip(booking, "Hạ Long", "Hà Nội", T0.plusSeconds(2 * 86400));
+
+            if (i % 2 == 0) {
+                TripDrivers tripDriver = new TripDrivers();
+                TripDriverId tripDriverId = new TripDriverId();
+                tripDriverId.setTripId(outbound.getId());
+                tripDriverId.setDriverId(driver.getId());
+                tripDriver.setId(tripDriverId);
+                tripDriver.setTrip(outbound);
+                tripDriver.setDriver(driver);
+                em.persist(tripDriver);
+
+                TripVehicles tripVehicle = new TripVehicles();
+                tripVehicle.setTrip(outbound);
+                tripVehicle.setVehicle(vehicle);
+                em.persist(tripVehicle);
+            }
+
+            BookingVehicleDetails details = new BookingVehicleDetails();
+            details.setId(new BookingVehicleDetailsId(booking.getId(), category.getId()));
+            details.setBooking(booking);
+            details.setVehicleCategory(category);
+            details.setQuantity(2);
+            em.persist(details);
+
+            Invoices invoice = new Invoices();
+            invoice.setBranch(branch);
+            invoice.setBooking(booking);
+            invoice.setType(InvoiceType.INCOME);
+            invoice.setAmount(new BigDecimal("1000000"));
+            em.persist(invoice);
+            payment(invoice, "300000", PaymentConfirmationStatus.CONFIRMED);
+            payment(invoice, "500000", PaymentConfirmationStatus.PENDING);
+        }
+        em.flush();
+        em.clear();
+
+        statistics = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void scroll_shouldLoadEachPageInTwoQueries() {
+        CursorPageResponse<BookingListResponse> first = scrollPage(null);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(first.isHasMore()).isTrue();
+        assertThat(first.getItems()).extracting(BookingListResponse::getCustomerName)
+                .containsExactly("Khách 4", "Khách 3", "Khách 2");
+        BookingListResponse top = first.getItems().get(0);
+        assertThat(top.getRouteSummary()).isEqualTo("Hà Nội → Hạ Long, Hạ Long → Hà Nội");
+        assertThat(top.getStartDate()).isEqualTo(T0.plusSeconds(86400));
+        assertThat(top.getVehicleCount()).isEqualTo(2);
+        assertThat(top.getPaidAmount()).isEqualByComparingTo("300000");
+        assertThat(top.getConsultantName()).isEqualTo("Tư vấn A");
+        assertThat(top.getBranchName()).isEqualTo("Hà Nội");
+        assertThat(first.getItems()).extracting(BookingListResponse::getIsAssigned)
+                .containsExactly(true, false, true);
+
+        em.clear();
+        statistics.clear();
+        CursorPageResponse<BookingListResponse> second = scrollPage(first.getNextCursor());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(second.isHasMore()).isFalse();
+        assertThat(second.getItems()).extracting(BookingListResponse::getCustomerName)
+                .containsExactly("Khách 1", "Khách 0");
+    }
+
+    @Test
+    void filterBookings_shouldNotLoadAssociationsPerBooking() {
+        Page<Bookings> page = bookingRepository.filterBookings(null, branch.getId(), null, null, null,
+                false, null, null, null, null, null, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "id")));
+        List<BookingListResponse> items = BookingListAssembler.assemble(page.getContent(),
+                bookingRepository.findListDetailsByBookingIds(page.getContent().stream().map(Bookings::getId).toList()));
+
+        // Trang dữ liệu + dữ liệu phụ, cộng câu COUNT của phân trang offset
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(items).hasSize(3).allMatch(item -> item.getConsultantName().equals("Tư vấn A"));
+    }
+
+    @Test
+    void filterBookings_withKeyword_shouldMatchSearchTokensInOneQuery() {
+        List<Customers> customers = em.getEntityManager()
+                .createQuery("SELECT c FROM Customers c ORDER BY c.id", Customers.class).getResultList();
+        em.persist(new CustomerSearchTokens(customers.get(1).getId(), "n:nguyen"));
+        em.persist(new CustomerSearchTokens(customers.get(1).getId(), "n:an"));
+        em.persist(new CustomerSearchTokens(customers.get(2).getId(), "n:nguyen"));
+        em.persist(new CustomerSearchTokens(customers.get(3).getId(), "e:an@gmail.com"));
+        em.flush();
+        em.clear();
+        statistics.clear();
+
+        Page<Bookings> byName = bookingRepository.filterBookings(null, null, null, null, null,
+                true, null, "n:nguyen%", "n:an%", null, null, PageRequest.of(0, 10));
+        Page<Bookings> byEmail = bookingRepository.filterBookings(null, null, null, null, null,
+                true, null, "n:an%", null, null, "e:an%", PageRequest.of(0, 10));
+
+        // Tra chỉ mục nằm ngay trong câu danh sách (trang chưa đầy nên Spring Data bỏ qua câu COUNT)
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(byName.getContent()).extracting(b -> b.getCustomer().getId())
+                .containsExactly(customers.get(1).getId());
+        assertThat(byEmail.getContent()).extracting(b -> b.getCustomer().getId())
+                .containsExactlyInAnyOrder(customers.get(1).getId(), customers.get(3).getId());
+    }
+
+    @Test
+    void findDetailById_shouldFetchDisplayedAssociationsInOneQuery() {
+        Integer bookingId = bookingRepository.findAll().get(0).getId();
+        em.clear();
+        statistics.clear();
+
+        Bookings booking = bookingRepository.findDetailById(bookingId).orElseThrow();
+
+        assertThat(booking.getCustomer().getCreatedBy().getBranch().getBranchName()).isEqualTo("Hà Nội");
+        assertThat(booking.getConsultant().getUser().getFullName()).isEqualTo("Tư vấn A");
+        assertThat(booking.getBranch().getBranchName()).isEqualTo("Hà Nội");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private CursorPageResponse<BookingListResponse> scrollPage(String cursor) {
+        PageCursor.Position after = PageCursor.decode(cursor);
+        List<Bookings> rows = bookingRepository.scrollBookings(null, branch.getId(), null, null, null,
+                false, null, null, null, null, null,
+                after != null ? after.sortKey() : null, after != null ? after.id() : null, PageCursor.limit(3));
+        return PageCursor.pageBatch(rows, 3, Bookings::getCreatedAt, Bookings::getId,
+                bookings -> BookingListAssembler.assemble(bookings,
+                        bookingRepository.findListDetailsByBookingIds(bookings.stream().map(Bookings::getId).toList())),
+                null);
+    }
+
+    private Employees employee(Roles role, String username, String fullName) {
+        Users user = new Users();
+        user.setRole(role);
+        user.setUsername(username);
+        user.setFullName(fullName);
+        user.setPasswordHash("x");
+        em.persist(user);
+
+        Employees employee = new Employees();
+        employee.setUser(user);
+        employee.setBranch(branch);
+        employee.setRole(role);
+        em.persist(employee);
+        return employee;
+    }
+
+    private Trips trip(Bookings booking, String from, String to, Instant startTime) {
+        Trips trip = new Trips();
+        trip.setBooking(booking);
+        trip.setStartLocation(from);
+        trip.setEndLocation(to);
+        trip.setStartTime(startTime);
+        trip.setEndTime(startTime.plusSeconds(4 * 3600));
+        em.persist(trip);
+        return trip;
+    }
+
+    private void payment(Invoices invoice, String amount, PaymentConfirmationStatus status) {
+        PaymentHistory payment = new PaymentHistory();
+        payment.setInvoice(invoice);
+        payment.setPaymentDate(T0);
+        payment.setAmount(new BigDecimal(amount));
+        payment.setPaymentMethod("CASH");
+        payment.setConfirmationStatus(status);
+        em.persist(payment);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.BookingOutbox;
+import org.example.ptcmssbackend.enums.OutboxEventType;
+import org.example.ptcmssbackend.enums.OutboxStatus;
+import org.example.ptcmssbackend.repository.BookingOutboxRepository;
+import org.example.ptcmssbackend.service.impl.BookingOutboxServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookingOutboxServiceImplTest {
+
+    @Mock
+    private BookingOutboxRepository outboxRepository;
+    @Mock
+    private WebSocketNotificationService webSocketNotificationService;
+
+    @InjectMocks
+    private BookingOutboxServiceImpl outboxService;
+
+    @Test
+    void enqueue_shouldOnlyWriteOutboxRow() {
+        outboxService.enqueueUserNotification(5, 42, "Chuyến mới được gán", "Bạn được gán 1 chuyến", "INFO");
+
+        ArgumentCaptor<BookingOutbox> captor = ArgumentCaptor.forClass(BookingOutbox.class);
+        verify(outboxRepository).save(captor.capture());
+        BookingOutbox row = captor.getValue();
+        assertThat(row.getBookingId()).isEqualTo(5);
+        assertThat(row.getEventType()).isEqualTo(OutboxEventType.USER_NOTIFICATION);
+        assertThat(row.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(row.getPayload()).contains("\"userId\":42");
+        verifyNoInteractions(webSocketNotificationService);
+    }
+
+    @Test
+    void dispatchPending_shouldPublishInIdOrderAndMarkSent() {
+        BookingOutbox global = row(1L, 7, OutboxEventType.GLOBAL_NOTIFICATION,
+                "{\"title\":\"Đơn hàng mới\",\"message\":\"Đơn ORD-7\",\"type\":\"INFO\"}");
+        BookingOutbox update = row(2L, 7, OutboxEventType.BOOKING_UPDATE,
+                "{\"status\":\"CREATED\",\"message\":\"Đơn hàng ORD-7 đã được tạo\"}");
+        when(outboxRepository.findDispatchable(any(), any())).thenReturn(List.of(global, update));
+
+        int sent = outboxService.dispatchPending();
+
+        assertThat(sent).isEqualTo(2);
+        InOrder inOrder = inOrder(webSocketNotificationService);
+        inOrder.verify(webSocketNotificationService).sendGlobalNotification("Đơn hàng mới", "Đơn ORD-7", "INFO");
+        inOrder.verify(webSocketNotificationService).sendBookingUpdate(7, "CREATED", "Đơn hàng ORD-7 đã được tạo");
+        assertThat(List.of(global, update)).allMatch(r -> r.getStatus() == OutboxStatus.SENT && r.getSentAt() != null);
+        verify(outboxRepository).saveAll(List.of(global, update));
+    }
+
+    @Test
+    void dispatchPending_whenEventFails_shouldRetryLaterAndHoldBackSameBooking() {
+        BookingOutbox failing = row(1L, 7, OutboxEventType.BOOKING_UPDATE, "{\"status\":\"UPDATED\",\"message\":\"a\"}");
+        BookingOutbox sameBooking = row(2L, 7, OutboxEventType.BOOKING_UPDATE, "{\"status\":\"CANCELLED\",\"message\":\"b\"}");
+        BookingOutbox otherBooking = row(3L, 8, OutboxEventType.BOOKING_UPDATE, "{\"status\":\"UPDATED\",\"message\":\"c\"}");
+        when(outboxRepository.findDispatchable(any(), any())).thenReturn(List.of(failing, sameBooking, otherBooking));
+        doThrow(new RuntimeException("broker down"))
+                .when(webSocketNotificationService).sendBookingUpdate(7, "UPDATED", "a");
+
+        Instant before = Instant.now();
+        int sent = outboxService.dispatchPending();
+
+        assertThat(sent).isEqualTo(1);
+        assertThat(failing.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(failing.getAttempts()).isEqualTo(1);
+        assertThat(failing.getLastError()).isEqualTo("broker down");
+        assertThat(failing.getNextAttemptAt()).isAfter(before);
+        // Sự kiện sau cùng booking không được gửi vượt lên trước
+        assertThat(sameBooking.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        verify(webSocketNotificationService, never()).sendBookingUpdate(7, "CANCELLED", "b");
+        assertThat(otherBooking.getStatus()).isEqualTo(OutboxStatus.SENT);
+    }
+
+    @Test
+    void dispatchPending_afterMaxAttempts_shouldMarkFailed() {
+        BookingOutbox failing = row(1L, 7, OutboxEventType.PAYMENT_UPDATE,
+                "{\"invoiceId\":3,\"status\":\"PAID\",\"message\":\"x\"}");
+        failing.setAttempts(7);
+        when(outboxRepository.findDispatchable(any(), any())).thenReturn(List.of(failing));
+        doThrow(new RuntimeException("broker down"))
+                .when(webSocketNotificationService).sendPaymentUpdate(3, 7, "PAID", "x");
+
+        outboxService.dispatchPending();
+
+        assertThat(failing.getStatus()).isEqualTo(OutboxStatus.FAILED);
+        assertThat(failing.getAttempts()).isEqualTo(8);
+    }
+
+    @Test
+    void dispatchPending_whenNothingDue_shouldNotWrite() {
+        when(outboxRepository.findDispatchable(any(), any())).thenReturn(List.of());
+
+        assertThat(outboxService.dispatchPending()).isZero();
+        verify(outboxRepository, never()).saveAll(anyList());
+    }
+
+    private static BookingOutbox row(Long id, Integer bookingId, OutboxEventType type, String payload) {
+        BookingOutbox row = new BookingOutbox(bookingId, type, payload, Instant.now().minusSeconds(5));
+        row.setId(id);
+        return row;
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.request.Booking.BatchQuoteRequest;
+import org.example.ptcmssbackend.dto.request.Booking.VehicleDetailRequest;
+import org.example.ptcmssbackend.dto.response.Booking.BatchQuoteResponse;
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
+import org.example.ptcmssbackend.entity.HireTypes;
+import org.example.ptcmssbackend.entity.VehicleCategoryPricing;
+import org.example.ptcmssbackend.enums.VehicleCategoryStatus;
+import org.example.ptcmssbackend.service.impl.BookingQuoteServiceImpl;
+import org.example.ptcmssbackend.service.impl.PricingSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookingQuoteServiceImplTest {
+
+    @Mock
+    private PricingService pricingService;
+    @Mock
+    private GraphHopperService graphHopperService;
+
+    @InjectMocks
+    private BookingQuoteServiceImpl bookingQuoteService;
+
+    private PricingSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        VehicleCategoryPricing car = category(1, "Xe 4 chỗ", "10000", "50000");
+        VehicleCategoryPricing bus = category(2, "Xe 16 chỗ", "20000", "100000");
+        snapshot = new PricingSnapshot(
+                PricingSnapshot.DEFAULT_HOLIDAY_SURCHARGE_RATE,
+                PricingSnapshot.DEFAULT_WEEKEND_SURCHARGE_RATE,
+                PricingSnapshot.DEFAULT_ROUND_TRIP_MULTIPLIER,
+                PricingSnapshot.DEFAULT_INTER_PROVINCE_DISTANCE_KM,
+                PricingSnapshot.DEFAULT_SAME_DAY_TRIP_START_HOUR,
+                PricingSnapshot.DEFAULT_SAME_DAY_TRIP_END_HOUR,
+                List.of(hireType(1, "ONE_WAY"), hireType(2, "ROUND_TRIP")),
+                List.of(car, bus));
+    }
+
+    @Test
+    void quote_shouldLookUpEachUniqueRouteOnce() {
+        when(pricingService.getSnapshot()).thenReturn(snapshot);
+        when(graphHopperService.calculateDistance("Hà Nội", "Hải Phòng"))
+                .thenReturn(DistanceResult.builder().distanceKm(100.0).build());
+        when(graphHopperService.calculateDistance("Hà Nội", "Ninh Bình"))
+                .thenReturn(DistanceResult.builder().distanceKm(90.0).build());
+
+        BatchQuoteRequest request = request(
+                scenario("A", "Hà Nội", "Hải Phòng", 1, vehicle(1, 1)),
+                scenario("B", " hà nội ", "HẢI PHÒNG", 2, vehicle(1, 1), vehicle(2, 2)),
+                scenario("C", "Hà Nội", "Ninh Bình", 1, vehicle(2, 1)));
+
+        BatchQuoteResponse response = bookingQuoteService.quote(request);
+
+        assertThat(response.getRouteLookups()).isEqualTo(2);
+        verify(graphHopperService, times(2)).calculateDistance(anyString(), anyString());
+        verify(pricingService, times(1)).getSnapshot();
+
+        List<BatchQuoteResponse.ScenarioQuote> quotes = response.getQuotes();
+        assertThat(quotes).extracting(BatchQuoteResponse.ScenarioQuote::getLabel).containsExactly("A", "B", "C");
+        assertThat(quotes).allMatch(BatchQuoteResponse.ScenarioQuote::isOk);
+        // A: 100 × 10.000 + 50.000
+        assertThat(quotes.get(0).getTotalPrice()).isEqualTo(new BigDecimal("1050000.00"));
+        // B: khứ hồi khác ngày (không có thời gian) -> 2 × km × đơn giá + phí cơ bản
+        BatchQuoteResponse.ScenarioQuote b = quotes.get(1);
+        assertThat(b.getLines()).extracting(BatchQuoteResponse.QuoteLine::getAmount)
+                .containsExactly(new BigDecimal("2050000.00"), new BigDecimal("8200000.00"));
+        assertThat(b.getTotalPrice()).isEqualTo(snapshot.price(List.of(1, 2), List.of(1, 2), 100.0,
+                null, 2, null, null, null, null));
+        assertThat(quotes.get(2).getDistance()).isEqualTo(90.0);
+    }
+
+    @Test
+    void quote_whenScenarioFails_shouldNotAffectOthers() {
+        when(pricingService.getSnapshot()).thenReturn(snapshot);
+        when(graphHopperService.calculateDistance("Nơi không tồn tại", "Hà Nội"))
+                .thenThrow(new RuntimeException("Không tìm thấy địa chỉ điểm đi: Nơi không tồn tại"));
+
+        BatchQuoteRequest.QuoteScenario withDistance = scenario("OK", null, null, 1, vehicle(1, 1));
+        withDistance.setDistance(10.0);
+        BatchQuoteRequest.QuoteScenario unknownCategory = scenario("Loại xe sai", null, null, 1, vehicle(99, 1));
+        unknownCategory.setDistance(10.0);
+
+        BatchQuoteResponse response = bookingQuoteService.quote(request(
+                withDistance,
+                unknownCategory,
+                scenario("Tuyến sai", "Nơi không tồn tại", "Hà Nội", 1, vehicle(1, 1)),
+                scenario("Thiếu tuyến", null, null, 1, vehicle(1, 1))));
+
+        List<BatchQuoteResponse.ScenarioQuote> quotes = response.getQuotes();
+        assertThat(quotes.get(0).isOk()).isTrue();
+        assertThat(quotes.get(0).getTotalPrice()).isEqualTo(new BigDecimal("150000.00"));
+        assertThat(quotes.get(1).isOk()).isFalse();
+        assertThat(quotes.get(1).getError()).isEqualTo("Không tìm thấy loại xe: 99");
+        assertThat(quotes.get(2).getError()).contains("Không tìm thấy địa chỉ điểm đi");
+        assertThat(quotes.get(3).getError()).isEqualTo("Cần khoảng cách hoặc điểm đi / điểm đến");
+    }
+
+    @Test
+    void quote_withManyScenarios_shouldKeepInputOrder() {
+        when(pricingService.getSnapshot()).thenReturn(snapshot);
+        when(graphHopperService.calculateDistance(anyString(), anyString()))
+                .thenAnswer(inv -> DistanceResult.builder()
+                        .distanceKm(Double.parseDouble(inv.getArgument(1, String.class).substring(3)))
+                        .build());
+
+        List<BatchQuoteRequest.QuoteScenario> scenarios = new ArrayList<>();
+        for (int i = 1; i <= 30; i++) {
+            scenarios.add(scenario("#" + i, "Hà Nội", "Km " + i, 1, vehicle(1, 1)));
+        }
+        BatchQuoteRequest request = new BatchQuoteRequest();
+        request.setScenarios(scenarios);
+
+        BatchQuoteResponse response = bookingQuoteService.quote(request);
+
+        assertThat(response.getRouteLookups()).isEqualTo(30);
+        assertThat(response.getQuotes()).extracting(BatchQuoteResponse.ScenarioQuote::getIndex)
+                .containsExactlyElementsOf(IntStream.range(0, 30).boxed().toList());
+        // Km i -> i × 10.000 + 50.000
+        assertThat(response.getQuotes()).extracting(BatchQuoteResponse.ScenarioQuote::getTotalPrice)
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, 30)
+                        .mapToObj(i -> BigDecimal.valueOf(i * 10000L + 50000L).setScale(2))
+                        .toList());
+    }
+
+    @Test
+    void quote_whenTooManyScenarios_shouldThrowException() {
+        BatchQuoteRequest request = new BatchQuoteRequest();
+        request.setScenarios(Collections.nCopies(51, scenario("x", "A", "B", 1, vehicle(1, 1))));
+
+        assertThatThrownBy(() -> bookingQuoteService.quote(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Tối đa 50 phương án");
+        verifyNoInteractions(graphHopperService, pricingService);
+    }
+
+    private static BatchQuoteRequest request(BatchQuoteRequest.QuoteScenario... scenarios) {
+        BatchQuoteRequest request = new BatchQuoteRequest();
+        request.setScenarios(List.of(scenarios));
+        return request;
+    }
+
+    private static BatchQuoteRequest.QuoteScenario scenario(String label, String from, String to, int hireTypeId,
+                                                            VehicleDetailRequest... vehicles) {
+        BatchQuoteRequest.QuoteScenario scenario = new BatchQuoteRequest.QuoteScenario();
+        scenario.setLabel(label);
+        scenario.setStartLocation(from);
+        scenario.setEndLocation(to);
+        scenario.setHireTypeId(hireTypeId);
+        scenario.setVehicles(List.of(vehicles));
+        return scenario;
+    }
+
+    private static VehicleDetailRequest vehicle(int categoryId, int quantity) {
+        VehicleDetailRequest vehicle = new VehicleDetailRequest();
+        vehicle.setVehicleCategoryId(categoryId);
+        vehicle.setQuantity(quantity);
+        return vehicle;
+    }
+
+    private static HireTypes hireType(int id, String code) {
+        HireTypes hireType = new HireTypes();
+        hireType.setId(id);
+        hireType.setCode(code);
+        return hireType;
+    }
+
+    private static VehicleCategoryPricing category(int id, String name, String pricePerKm, String baseFare) {
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(id);
+        category.setCategoryName(name);
+        category.setStatus(VehicleCategoryStatus.ACTIVE);
+        category.setPricePerKm(new BigDecimal(pricePerKm));
+        category.setBaseFare(new BigDecimal(baseFare));
+        return category;
+    }
+}
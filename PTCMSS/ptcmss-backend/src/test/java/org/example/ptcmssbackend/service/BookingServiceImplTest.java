@@ -7,6 +7,7 @@ import org.example.ptcmssbackend.dto.request.Booking.TripRequest;
 import org.example.ptcmssbackend.dto.request.Booking.UpdateBookingRequest;
 import org.example.ptcmssbackend.dto.request.Booking.VehicleDetailRequest;
 import org.example.ptcmssbackend.dto.response.Booking.BookingListResponse;
+import org.example.ptcmssbackend.dto.response.Booking.CheckAvailabilityResponse;
 import org.example.ptcmssbackend.dto.response.Booking.ConsultantDashboardResponse;
 import org.example.ptcmssbackend.dto.response.common.PageResponse;
 import org.example.ptcmssbackend.entity.*;
@@ -20,14 +21,18 @@ import org.example.ptcmssbackend.entity.Vehicles;
 import org.example.ptcmssbackend.enums.BookingStatus;
 import org.example.ptcmssbackend.enums.VehicleStatus;
 import org.example.ptcmssbackend.repository.*;
+import org.example.ptcmssbackend.service.impl.AvailabilityGrid;
 import org.example.ptcmssbackend.service.impl.BookingServiceImpl;
+import org.example.ptcmssbackend.service.impl.PricingSnapshot;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -71,7 +76,15 @@ class BookingServiceImplTest {
     @Mock
     private VehicleRepository vehicleRepository;
     @Mock
-    private WebSocketNotificationService webSocketNotificationService;
+    private BookingOutboxService bookingOutboxService;
+    @Mock
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PricingService pricingService;
+    @Mock
+    private AvailabilityGridService availabilityGridService;
+    @Mock
+    private SearchIndexService searchIndexService;
 
     @InjectMocks
     private BookingServiceImpl bookingService;
@@ -88,13 +101,8 @@ class BookingServiceImplTest {
         request.setEndTime(end);
         request.setQuantity(1);
 
-        when(vehicleRepository.filterVehicles(eq(10), eq(1), eq(VehicleStatus.AVAILABLE)))
-                .thenReturn(List.of(createVehicle(101), createVehicle(102)));
-        when(tripVehicleRepository.findBusyVehicleIds(1, 10, start, end))
-                .thenReturn(List.of(201));
-        when(bookingVehicleDetailsRepository.countReservedQuantityWithoutAssignedVehicles(
-                eq(1), eq(10), eq(start), eq(end), anyList()))
-                .thenReturn(0);
+        when(vehicleCategoryRepository.findAvailabilityByBranch(1, start, end))
+                .thenReturn(List.<Object[]>of(availabilityRow(10, 4, 2L, 1L, 0L)));
 
         var response = bookingService.checkAvailability(request);
 
@@ -106,6 +114,30 @@ class BookingServiceImplTest {
         assertThat(response.getNextAvailableSlots()).isNull();
     }
 
+    @Test
+    void checkAvailability_whenGridHasEnoughVehicles_shouldSkipOverlapQueries() {
+        Instant start = Instant.parse("2025-12-04T02:00:00Z");
+        Instant end = start.plusSeconds(4 * 3600);
+
+        CheckAvailabilityRequest request = new CheckAvailabilityRequest();
+        request.setBranchId(1);
+        request.setCategoryId(10);
+        request.setStartTime(start);
+        request.setEndTime(end);
+        request.setQuantity(2);
+
+        when(availabilityGridService.getCounts(1, 10, start, end))
+                .thenReturn(new AvailabilityGrid.Counts(5, 2, 1));
+
+        var response = bookingService.checkAvailability(request);
+
+        assertThat(response.isOk()).isTrue();
+        assertThat(response.getAvailableCount()).isEqualTo(2);
+        assertThat(response.getTotalCandidates()).isEqualTo(5);
+        assertThat(response.getBusyCount()).isEqualTo(3);
+        verifyNoInteractions(vehicleCategoryRepository, tripVehicleRepository, bookingVehicleDetailsRepository);
+    }
+
     @Test
     void checkAvailability_whenNotEnoughVehicles_shouldReturnSuggestionsAndOkFalse() {
         Instant start = Instant.parse("2025-12-04T02:00:00Z");
@@ -119,16 +151,10 @@ class BookingServiceImplTest {
         request.setQuantity(3);
 
         List<Vehicles> candidates = List.of(createVehicle(301));
+        when(vehicleCategoryRepository.findAvailabilityByBranch(2, start, end))
+                .thenReturn(List.<Object[]>of(availabilityRow(20, 16, 1L, 2L, 1L)));
         when(vehicleRepository.filterVehicles(eq(20), eq(2), eq(VehicleStatus.AVAILABLE)))
                 .thenReturn(candidates);
-        when(tripVehicleRepository.findBusyVehicleIds(2, 20, start, end))
-                .thenReturn(List.of(401, 402));
-        when(tripVehicleRepository.findAllByVehicleId(anyInt()))
-                .thenReturn(Collections.emptyList());
-        when(bookingVehicleDetailsRepository.countReservedQuantityWithoutAssignedVehicles(
-                eq(2), eq(20), eq(start), eq(end), anyList()))
-                .thenReturn(1);
-        when(vehicleCategoryRepository.findAll()).thenReturn(Collections.emptyList());
 
         var response = bookingService.checkAvailability(request);
 
@@ -136,7 +162,84 @@ class BookingServiceImplTest {
         assertThat(response.getAvailableCount()).isZero(); // max(0, 1 total - 2 busy -1 reserved)
         assertThat(response.getBusyCount()).isEqualTo(3); // busy(2) + reserved(1)
         assertThat(response.getAlternativeCategories()).isNull();
+        // Chỉ có 1 xe, cần 3 -> không bao giờ đủ, không cần quét lịch
         assertThat(response.getNextAvailableSlots()).isNull();
+        verifyNoInteractions(tripVehicleRepository);
+    }
+
+    @Test
+    void checkAvailability_shouldSweepBusyIntervalsForEarliestSlots() {
+        Instant start = Instant.parse("2025-12-04T02:00:00Z");
+        Instant end = start.plusSeconds(2 * 3600);
+        Instant horizon = start.plus(Duration.ofDays(7));
+
+        CheckAvailabilityRequest request = new CheckAvailabilityRequest();
+        request.setBranchId(2);
+        request.setCategoryId(20);
+        request.setStartTime(start);
+        request.setEndTime(end);
+        request.setQuantity(2);
+
+        when(vehicleCategoryRepository.findAvailabilityByBranch(2, start, end))
+                .thenReturn(List.<Object[]>of(availabilityRow(20, 16, 3L, 1L, 1L)));
+        when(vehicleRepository.filterVehicles(eq(20), eq(2), eq(VehicleStatus.AVAILABLE)))
+                .thenReturn(List.of(createVehicle(301), createVehicle(302), createVehicle(303)));
+        // Xe 301 bận -1h..+3h (hai chuyến chồng nhau), xe 302 bận +1h..+4h, 1 xe giữ chỗ theo cọc -2h..+2h
+        when(tripVehicleRepository.findBusyIntervals(2, 20, start, horizon)).thenReturn(List.of(
+                new Object[]{301, start.minusSeconds(3600), start.plusSeconds(2 * 3600)},
+                new Object[]{301, start.plusSeconds(3600), start.plusSeconds(3 * 3600)},
+                new Object[]{302, start.plusSeconds(3600), start.plusSeconds(4 * 3600)}));
+        when(bookingVehicleDetailsRepository.findReservedIntervalsByDepositWithoutAssignedVehicles(2, 20, start, horizon))
+                .thenReturn(List.<Object[]>of(new Object[]{start.minusSeconds(2 * 3600), start.plusSeconds(2 * 3600), 1}));
+
+        var response = bookingService.checkAvailability(request);
+
+        assertThat(response.isOk()).isFalse();
+        // Từ +3h xe 301 và 303 cùng rảnh, sau đó không còn chuyến nào trong cửa sổ quét
+        assertThat(response.getNextAvailableSlots()).hasSize(1);
+        CheckAvailabilityResponse.NextAvailableSlot slot = response.getNextAvailableSlots().get(0);
+        assertThat(slot.getAvailableFrom()).isEqualTo(start.plusSeconds(3 * 3600));
+        assertThat(slot.getAvailableUntil()).isNull();
+        assertThat(slot.getAvailableCount()).isEqualTo(2);
+        assertThat(slot.getVehicleId()).isNull();
+        verify(tripVehicleRepository, never()).findAllByVehicleId(anyInt());
+    }
+
+    @Test
+    void checkAvailability_shouldSuggestAlternativesFromSingleGroupedQuery() {
+        Instant start = Instant.parse("2025-12-04T02:00:00Z");
+        Instant end = start.plusSeconds(24 * 3600); // thuê theo ngày -> không gợi ý giờ khác
+
+        CheckAvailabilityRequest request = new CheckAvailabilityRequest();
+        request.setBranchId(3);
+        request.setCategoryId(20);
+        request.setStartTime(start);
+        request.setEndTime(end);
+        request.setQuantity(2);
+
+        Object[] inactive = availabilityRow(40, 9, 5L, 0L, 0L);
+        inactive[4] = org.example.ptcmssbackend.enums.VehicleCategoryStatus.INACTIVE;
+        when(vehicleCategoryRepository.findAvailabilityByBranch(3, start, end))
+                .thenReturn(List.of(
+                        availabilityRow(20, 16, 2L, 1L, 1L),
+                        availabilityRow(45, 29, 4L, 1L, 0L),
+                        availabilityRow(30, 7, 4L, 1L, 1L),
+                        inactive,
+                        availabilityRow(50, 45, 2L, 0L, 1L)));
+
+        var response = bookingService.checkAvailability(request);
+
+        assertThat(response.isOk()).isFalse();
+        assertThat(response.getTotalCandidates()).isEqualTo(2);
+        assertThat(response.getBusyCount()).isEqualTo(2);
+        // Chỉ loại ACTIVE đủ xe, sắp theo số ghế tăng dần
+        assertThat(response.getAlternativeCategories())
+                .extracting(CheckAvailabilityResponse.AlternativeCategory::getCategoryId)
+                .containsExactly(30, 45);
+        assertThat(response.getAlternativeCategories().get(0).getAvailableCount()).isEqualTo(2);
+        assertThat(response.getNextAvailableSlots()).isNull();
+        verify(vehicleCategoryRepository, times(1)).findAvailabilityByBranch(3, start, end);
+        verifyNoInteractions(vehicleRepository, tripVehicleRepository, bookingVehicleDetailsRepository);
     }
 
     @Test
@@ -150,12 +253,11 @@ class BookingServiceImplTest {
         category.setStatus(org.example.ptcmssbackend.enums.VehicleCategoryStatus.ACTIVE);
         category.setPricePerKm(new BigDecimal("10000")); // 10.000 / km
         category.setBaseFare(new BigDecimal("50000"));   // 50.000 base
-        when(vehicleCategoryRepository.findById(categoryId)).thenReturn(java.util.Optional.of(category));
 
         org.example.ptcmssbackend.entity.HireTypes hireType = new org.example.ptcmssbackend.entity.HireTypes();
         hireType.setId(hireTypeId);
         hireType.setCode("ONE_WAY");
-        when(hireTypesRepository.findById(hireTypeId)).thenReturn(java.util.Optional.of(hireType));
+        when(pricingService.getSnapshot()).thenReturn(pricingSnapshot(List.of(hireType), List.of(category)));
 
         Instant start = LocalDateTime.of(2025, 12, 4, 9, 0).toInstant(ZoneOffset.UTC);
         Instant end = start.plusSeconds(2 * 3600);
@@ -187,12 +289,11 @@ class BookingServiceImplTest {
         category.setStatus(org.example.ptcmssbackend.enums.VehicleCategoryStatus.ACTIVE);
         category.setSameDayFixedPrice(new BigDecimal("800000")); // 800.000 / ngày
         category.setBaseFare(new BigDecimal("100000"));          // 100.000 base
-        when(vehicleCategoryRepository.findById(categoryId)).thenReturn(java.util.Optional.of(category));
 
         org.example.ptcmssbackend.entity.HireTypes hireType = new org.example.ptcmssbackend.entity.HireTypes();
         hireType.setId(hireTypeId);
         hireType.setCode("DAILY");
-        when(hireTypesRepository.findById(hireTypeId)).thenReturn(java.util.Optional.of(hireType));
+        when(pricingService.getSnapshot()).thenReturn(pricingSnapshot(List.of(hireType), List.of(category)));
 
         // 2 ngày
         Instant start = LocalDateTime.of(2025, 12, 4, 9, 0).toInstant(ZoneOffset.UTC);
@@ -231,8 +332,7 @@ class BookingServiceImplTest {
         inactive.setPricePerKm(new BigDecimal("999999"));
         inactive.setBaseFare(new BigDecimal("999999"));
 
-        when(vehicleCategoryRepository.findById(activeId)).thenReturn(java.util.Optional.of(active));
-        when(vehicleCategoryRepository.findById(inactiveId)).thenReturn(java.util.Optional.of(inactive));
+        when(pricingService.getSnapshot()).thenReturn(pricingSnapshot(List.of(), List.of(active, inactive)));
 
         BigDecimal price = bookingService.calculatePrice(
                 List.of(activeId, inactiveId),
@@ -318,7 +418,7 @@ class BookingServiceImplTest {
         customer.setFullName("Nguyễn Văn A");
         booking.setCustomer(customer);
         
-        when(bookingRepository.findById(bookingId)).thenReturn(java.util.Optional.of(booking));
+        when(bookingRepository.findDetailById(bookingId)).thenReturn(java.util.Optional.of(booking));
         when(tripRepository.findByBooking_Id(bookingId)).thenReturn(Collections.emptyList());
         when(bookingVehicleDetailsRepository.findByBookingId(bookingId)).thenReturn(Collections.emptyList());
 
@@ -328,14 +428,14 @@ class BookingServiceImplTest {
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getId()).isEqualTo(bookingId);
-        verify(bookingRepository).findById(bookingId);
+        verify(bookingRepository).findDetailById(bookingId);
     }
 
     @Test
     void getById_whenBookingNotFound_shouldThrowException() {
         // Given
         Integer bookingId = 999;
-        when(bookingRepository.findById(bookingId)).thenReturn(java.util.Optional.empty());
+        when(bookingRepository.findDetailById(bookingId)).thenReturn(java.util.Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> bookingService.getById(bookingId))
@@ -410,6 +510,7 @@ class BookingServiceImplTest {
         when(customerService.findOrCreateCustomer(any(), any())).thenReturn(customer);
         when(hireTypesRepository.findById(1)).thenReturn(java.util.Optional.of(hireType));
         when(vehicleCategoryRepository.findById(1)).thenReturn(java.util.Optional.of(category));
+        when(pricingService.getSnapshot()).thenReturn(pricingSnapshot(List.of(hireType), List.of(category)));
         when(bookingRepository.save(any())).thenAnswer(inv -> {
             org.example.ptcmssbackend.entity.Bookings b = inv.getArgument(0);
             b.setId(1);
@@ -435,7 +536,8 @@ class BookingServiceImplTest {
         verify(bookingRepository).save(any());
         verify(tripRepository).save(any());
         verify(bookingVehicleDetailsRepository).save(any());
-        verify(webSocketNotificationService).sendGlobalNotification(anyString(), anyString(), anyString());
+        verify(bookingOutboxService).enqueueGlobalNotification(eq(1), anyString(), anyString(), anyString());
+        verify(bookingOutboxService).enqueueBookingUpdate(1, "CREATED", "Đơn hàng ORD-1 đã được tạo thành công");
     }
 
     @Test
@@ -501,6 +603,7 @@ class BookingServiceImplTest {
         when(customerService.findOrCreateCustomer(any(), any())).thenReturn(customer);
         when(hireTypesRepository.findById(2)).thenReturn(java.util.Optional.of(hireType));
         when(vehicleCategoryRepository.findById(1)).thenReturn(java.util.Optional.of(category));
+        when(pricingService.getSnapshot()).thenReturn(pricingSnapshot(List.of(hireType), List.of(category)));
         when(bookingRepository.save(any())).thenAnswer(inv -> {
             org.example.ptcmssbackend.entity.Bookings b = inv.getArgument(0);
             b.setId(1);
@@ -604,6 +707,23 @@ class BookingServiceImplTest {
         verify(bookingVehicleDetailsRepository, times(2)).save(any()); // Should save 2 vehicle details
     }
 
+    private Object[] availabilityRow(int categoryId, Integer seats, long total, long busy, long reserved) {
+        return new Object[]{categoryId, "Xe " + seats + " chỗ", seats, new BigDecimal("10000"),
+                org.example.ptcmssbackend.enums.VehicleCategoryStatus.ACTIVE, total, busy, reserved};
+    }
+
+    private PricingSnapshot pricingSnapshot(List<HireTypes> hireTypes, List<VehicleCategoryPricing> categories) {
+        return new PricingSnapshot(
+                PricingSnapshot.DEFAULT_HOLIDAY_SURCHARGE_RATE,
+                PricingSnapshot.DEFAULT_WEEKEND_SURCHARGE_RATE,
+                PricingSnapshot.DEFAULT_ROUND_TRIP_MULTIPLIER,
+                PricingSnapshot.DEFAULT_INTER_PROVINCE_DISTANCE_KM,
+                PricingSnapshot.DEFAULT_SAME_DAY_TRIP_START_HOUR,
+                PricingSnapshot.DEFAULT_SAME_DAY_TRIP_END_HOUR,
+                hireTypes,
+                categories);
+    }
+
     private Vehicles createVehicle(int id) {
         Vehicles vehicle = new Vehicles();
         vehicle.setId(id);
@@ -665,7 +785,7 @@ class BookingServiceImplTest {
         assertThat(response).isNotNull();
         assertThat(response.getId()).isEqualTo(bookingId);
         verify(bookingRepository).save(any());
-        verify(webSocketNotificationService).sendBookingUpdate(anyInt(), anyString(), anyString());
+        verify(bookingOutboxService).enqueueBookingUpdate(eq(bookingId), anyString(), anyString());
     }
 
     @Test
@@ -790,8 +910,8 @@ class BookingServiceImplTest {
         when(bookingVehicleDetailsRepository.findByBookingId(bookingId)).thenReturn(List.of(existingVehicleDetail));
         when(hireTypesRepository.findById(1)).thenReturn(java.util.Optional.of(hireType));
         when(vehicleCategoryRepository.findById(1)).thenReturn(java.util.Optional.of(category));
+        when(pricingService.getSnapshot()).thenReturn(pricingSnapshot(List.of(hireType), List.of(category)));
         when(bookingRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
-        when(systemSettingService.getByKey(anyString())).thenReturn(null);
 
         // When
         var response = bookingService.update(bookingId, request);
@@ -831,8 +951,13 @@ class BookingServiceImplTest {
 
         Page<Bookings> bookingPage = new PageImpl<>(List.of(booking), Pageable.ofSize(size), 1);
 
-        when(bookingRepository.filterBookings(any(), any(), any(), any(), any(), any(), any()))
+        when(searchIndexService.match(keyword))
+                .thenReturn(new SearchIndexService.KeywordMatch(null, List.of("n:nguyen%"), null));
+        when(bookingRepository.filterBookings(any(), any(), any(), any(), any(), anyBoolean(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(bookingPage);
+        when(bookingRepository.findListDetailsByBookingIds(List.of(1))).thenReturn(List.of(
+                new Object[]{1, 11, "Hà Nội", "Hạ Long", startDate.plusSeconds(3600), true, 2L, new BigDecimal("300000")},
+                new Object[]{1, 12, "Hạ Long", null, startDate, false, 2L, new BigDecimal("300000")}));
 
         // When
         PageResponse<?> response = bookingService.getAll(status, branchId, consultantId, startDate, endDate, keyword, page, size, sortBy);
@@ -842,7 +967,17 @@ class BookingServiceImplTest {
         assertThat(response.getPageNo()).isEqualTo(1);
         assertThat(response.getPageSize()).isEqualTo(10);
         assertThat(response.getTotalElements()).isEqualTo(1);
-        verify(bookingRepository).filterBookings(any(), eq(branchId), eq(consultantId), eq(startDate), eq(endDate), eq(keyword), any());
+        verify(bookingRepository).filterBookings(any(), eq(branchId), eq(consultantId), eq(startDate), eq(endDate),
+                eq(true), isNull(), eq("n:nguyen%"), isNull(), isNull(), isNull(), any());
+        BookingListResponse item = (BookingListResponse) ((List<?>) response.getItems()).get(0);
+        assertThat(item.getRouteSummary()).isEqualTo("Hà Nội → Hạ Long, Hạ Long → ?");
+        assertThat(item.getStartDate()).isEqualTo(startDate);
+        assertThat(item.getIsAssigned()).isTrue();
+        assertThat(item.getVehicleCount()).isEqualTo(2);
+        assertThat(item.getPaidAmount()).isEqualByComparingTo("300000");
+        // Dữ liệu phụ của cả trang nạp trong một câu, không truy vấn theo từng đơn / từng chuyến
+        verifyNoInteractions(tripRepository, tripDriverRepository, tripVehicleRepository);
+        verify(invoiceRepository, never()).calculateConfirmedPaidAmountByBookingId(any());
     }
 
     @Test
@@ -850,7 +985,7 @@ class BookingServiceImplTest {
         // Given
         Page<Bookings> bookingPage = new PageImpl<>(Collections.emptyList(), Pageable.ofSize(10), 0);
 
-        when(bookingRepository.filterBookings(any(), any(), any(), any(), any(), any(), any()))
+        when(bookingRepository.filterBookings(any(), any(), any(), any(), any(), anyBoolean(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(bookingPage);
 
         // When
@@ -879,7 +1014,7 @@ class BookingServiceImplTest {
 
         Page<Bookings> bookingPage = new PageImpl<>(List.of(booking));
 
-        when(bookingRepository.filterBookings(any(), eq(branchId), eq(consultantId), any(), any(), any(), any()))
+        when(bookingRepository.filterBookings(any(), eq(branchId), eq(consultantId), any(), any(), anyBoolean(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(bookingPage);
 
         // When
@@ -905,20 +1040,60 @@ class BookingServiceImplTest {
         customer.setFullName("Test Customer");
         booking.setCustomer(customer);
 
-        when(bookingRepository.findPendingBookings(branchId, consultantEmployeeId)).thenReturn(List.of(booking));
-        when(bookingRepository.filterBookings(any(), any(), any(), any(), any(), any(), any()))
-                .thenReturn(new PageImpl<>(List.of(booking)));
-        when(bookingRepository.findConfirmedBookings(branchId, consultantEmployeeId)).thenReturn(List.of(booking));
-        when(bookingRepository.countByStatus(any(), any(), any())).thenReturn(1L);
-        when(invoiceRepository.sumConfirmedPaymentsForConsultantAndBranchAndDateRange(any(), any(), any(), any()))
-                .thenReturn(new BigDecimal("1000000"));
+        when(bookingRepository.scrollBookings(any(), eq(branchId), eq(consultantEmployeeId), isNull(), isNull(),
+                eq(false), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(List.of(booking));
+        when(bookingRepository.countGroupByStatus(branchId, consultantEmployeeId)).thenReturn(List.of(
+                new Object[]{BookingStatus.PENDING, 3L},
+                new Object[]{BookingStatus.CONFIRMED, 1L}));
+        when(bookingRepository.countByMonthAndStatus(eq(branchId), eq(consultantEmployeeId), any(), any(), any(), any()))
+                .thenReturn(List.of(
+                        new Object[]{2, BookingStatus.PENDING, 2L},
+                        new Object[]{2, BookingStatus.COMPLETED, 2L},
+                        new Object[]{0, BookingStatus.CONFIRMED, 1L}));
+        when(invoiceRepository.sumConfirmedPaymentsByMonthForConsultantAndBranch(
+                eq(branchId), eq(consultantEmployeeId), any(), any(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{2, new BigDecimal("1000000")}));
 
         // When
         ConsultantDashboardResponse response = bookingService.getConsultantDashboard(consultantEmployeeId, branchId);
 
         // Then
         assertThat(response).isNotNull();
-        verify(bookingRepository).findPendingBookings(branchId, consultantEmployeeId);
+        assertThat(response.getPendingBookings()).hasSize(1);
+        assertThat(response.getTotalPendingCount()).isEqualTo(3L);
+        assertThat(response.getTotalSentCount()).isZero();
+        assertThat(response.getConversionRate()).isEqualTo(25.0);
+        assertThat(response.getMonthlyRevenue()).isEqualTo(new BigDecimal("1000000"));
+        assertThat(response.getMonthlyStatistics()).extracting(ConsultantDashboardResponse.MonthlyStatistic::getTotalBookings)
+                .containsExactly(1L, 0L, 4L);
+        assertThat(response.getMonthlyStatistics().get(2).getConversionRate()).isEqualTo(50.0);
+        assertThat(response.getMonthlyStatistics().get(1).getRevenue()).isEqualTo(BigDecimal.ZERO);
+        verify(bookingRepository, times(3)).scrollBookings(any(), any(), any(), any(), any(),
+                anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(bookingRepository, never()).filterBookings(any(), any(), any(), any(), any(), anyBoolean(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getConsultantDashboard_withinTtl_shouldServeFromCache() {
+        // Given
+        ReflectionTestUtils.setField(bookingService, "dashboardCacheTtlSeconds", 30L);
+        when(bookingRepository.scrollBookings(any(), any(), any(), any(), any(),
+                anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of());
+        when(bookingRepository.countGroupByStatus(1, 10)).thenReturn(List.of());
+        when(bookingRepository.countByMonthAndStatus(any(), any(), any(), any(), any(), any())).thenReturn(List.of());
+        when(invoiceRepository.sumConfirmedPaymentsByMonthForConsultantAndBranch(any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of());
+
+        // When
+        ConsultantDashboardResponse first = bookingService.getConsultantDashboard(10, 1);
+        ConsultantDashboardResponse second = bookingService.getConsultantDashboard(10, 1);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(first.getConversionRate()).isEqualTo(0.0);
+        verify(bookingRepository, times(1)).countGroupByStatus(1, 10);
     }
 
     // ==================== addPayment() Tests ====================
@@ -948,6 +1123,7 @@ class BookingServiceImplTest {
         employee.setEmployeeId(employeeId);
 
         when(bookingRepository.findById(bookingId)).thenReturn(java.util.Optional.of(booking));
+        when(bookingRepository.findDetailById(bookingId)).thenReturn(java.util.Optional.of(booking));
         when(invoiceRepository.findByBooking_IdOrderByCreatedAtDesc(bookingId)).thenReturn(Collections.emptyList());
         when(employeeRepository.findById(employeeId)).thenReturn(java.util.Optional.of(employee));
         when(invoiceRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
@@ -0,0 +1,163 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.CandidateScoringExecutor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CandidateScoringExecutorTest {
+
+    @Test
+    void map_whenDisabled_shouldRunOnCallerThread() {
+        CandidateScoringExecutor executor = new CandidateScoringExecutor(false, 0, 10);
+        Thread caller = Thread.currentThread();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        List<Integer> result = executor.map(range(20), i -> {
+            threads.add(Thread.currentThread());
+            return i * 2;
+        });
+
+        assertThat(result).containsExactlyElementsOf(range(20).stream().map(i -> i * 2).toList());
+        assertThat(threads).containsExactly(caller);
+    }
+
+    @Test
+    void map_whenEnabled_shouldKeepInputOrder() {
+        CandidateScoringExecutor executor = new CandidateScoringExecutor(true, 8, 10);
+
+        // Phần tử đầu chậm nhất, phần tử cuối nhanh nhất: thứ tự hoàn thành ngược thứ tự đầu vào
+        List<Integer> result = executor.map(range(30), i -> {
+            sleep(30 - i);
+            return i;
+        });
+
+        assertThat(result).containsExactlyElementsOf(range(30));
+    }
+
+    @Test
+    void map_shouldNotExceedConcurrencyLimit() {
+        CandidateScoringExecutor executor = new CandidateScoringExecutor(true, 0, 5);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        executor.map(range(50), i -> {
+            int now = running.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            sleep(5);
+            running.decrementAndGet();
+            return i;
+        });
+
+        // Pool 5 kết nối: chừa 1 cho luồng gọi
+        assertThat(executor.getConcurrency()).isEqualTo(4);
+        assertThat(peak.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void map_whenConfiguredAbovePool_shouldCapAtPoolSize() {
+        CandidateScoringExecutor executor = new CandidateScoringExecutor(true, 64, 10);
+
+        assertThat(executor.getConcurrency()).isEqualTo(9);
+    }
+
+    @Test
+    void map_whenScorerFails_shouldRethrowOriginalException() {
+        CandidateScoringExecutor executor = new CandidateScoringExecutor(true, 4, 10);
+
+        assertThatThrownBy(() -> executor.map(range(20), i -> {
+            if (i == 13) {
+                throw new IllegalStateException("Ứng viên lỗi");
+            }
+            return i;
+        }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Ứng viên lỗi");
+    }
+
+    @Test
+    void map_whenEnabled_shouldScoreBlockingCandidatesConcurrently() {
+        CandidateScoringExecutor executor = new CandidateScoringExecutor(true, 4, 10);
+        // Mỗi scorer chặn tới khi đủ 4 scorer cùng chạy: chạy tuần tự thì không bao giờ đạt được
+        CountDownLatch allRunning = new CountDownLatch(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        List<Integer> result = executor.map(range(20), i -> {
+            if (i == 0) {
+                return i; // ứng viên đầu chấm trên luồng gọi
+            }
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            allRunning.countDown();
+            try {
+                allRunning.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return i;
+        });
+
+        assertThat(allRunning.getCount()).isZero();
+        assertThat(peak.get()).isEqualTo(4);
+        assertThat(result).containsExactlyElementsOf(range(20));
+    }
+
+    /**
+     * So sánh độ trễ giữa chế độ tuần tự và song song với scorer giả lập I/O chặn (~10ms/ứng viên,
+     * tương đương một lần nạp lại snapshot hoặc truy vấn DB).
+     * Đo thời gian thực nên không chạy trong bộ test mặc định: mvn test -Pbenchmark
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_parallelShouldCutLatencyForBlockingScorers() {
+        List<Integer> candidates = range(60);
+        Function<Integer, Integer> blockingScorer = i -> {
+            sleep(10);
+            return i;
+        };
+        CandidateScoringExecutor sequential = new CandidateScoringExecutor(false, 0, 10);
+        CandidateScoringExecutor parallel = new CandidateScoringExecutor(true, 0, 10);
+
+        // Làm nóng JIT và khởi tạo virtual thread scheduler
+        parallel.map(range(10), blockingScorer);
+
+        long sequentialMillis = timeMillis(() -> sequential.map(candidates, blockingScorer));
+        long parallelMillis = timeMillis(() -> parallel.map(candidates, blockingScorer));
+        System.out.printf("[CandidateScoringBenchmark] %d candidates: sequential %d ms, parallel (x%d) %d ms%n",
+                candidates.size(), sequentialMillis, parallel.getConcurrency(), parallelMillis);
+
+        assertThat(parallelMillis * 2).isLessThan(sequentialMillis);
+    }
+
+    private static List<Integer> range(int n) {
+        return IntStream.range(0, n).boxed().toList();
+    }
+
+    private static long timeMillis(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
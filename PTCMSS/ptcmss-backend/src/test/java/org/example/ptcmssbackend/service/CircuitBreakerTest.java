@@ -0,0 +1,88 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(30), clock);
+
+    @Test
+    void shouldOpenAfterConsecutiveFailures() {
+        fail();
+        fail();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        succeed(); // thành công thì đếm lại từ đầu
+        fail();
+        fail();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        fail();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void halfOpen_shouldLetOneTrialThroughAndCloseOnSuccess() {
+        openCircuit();
+        clock.advance(Duration.ofSeconds(29));
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse(); // chỉ một request thử
+
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void allowsRequests_shouldNotTakeTheHalfOpenTrial() {
+        openCircuit();
+        assertThat(breaker.allowsRequests()).isFalse();
+
+        clock.advance(Duration.ofSeconds(30));
+        assertThat(breaker.allowsRequests()).isTrue();
+        assertThat(breaker.allowsRequests()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.allowsRequests()).isFalse();
+    }
+
+    @Test
+    void halfOpen_failedTrialShouldReopenForAnotherPeriod() {
+        openCircuit();
+        clock.advance(Duration.ofSeconds(30));
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        clock.advance(Duration.ofSeconds(10));
+        assertThat(breaker.tryAcquire()).isFalse();
+        clock.advance(Duration.ofSeconds(20));
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    private void openCircuit() {
+        fail();
+        fail();
+        fail();
+    }
+
+    private void fail() {
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+    }
+
+    private void succeed() {
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess();
+    }
+}
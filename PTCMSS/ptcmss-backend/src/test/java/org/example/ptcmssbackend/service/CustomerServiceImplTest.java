@@ -2,11 +2,13 @@ package org.example.ptcmssbackend.service;
 
 import org.example.ptcmssbackend.dto.request.Booking.CustomerRequest;
 import org.example.ptcmssbackend.dto.response.Booking.CustomerResponse;
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
 import org.example.ptcmssbackend.entity.*;
 import org.example.ptcmssbackend.enums.CustomerStatus;
 import org.example.ptcmssbackend.repository.CustomerRepository;
 import org.example.ptcmssbackend.repository.EmployeeRepository;
 import org.example.ptcmssbackend.service.impl.CustomerServiceImpl;
+import org.example.ptcmssbackend.service.impl.PageCursor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -34,6 +36,8 @@ class CustomerServiceImplTest {
     private CustomerRepository customerRepository;
     @Mock
     private EmployeeRepository employeeRepository;
+    @Mock
+    private SearchIndexService searchIndexService;
 
     @InjectMocks
     private CustomerServiceImpl customerService;
@@ -69,6 +73,7 @@ class CustomerServiceImplTest {
         assertThat(result.getEmail()).isEqualTo("test@example.com");
         verify(customerRepository).findByPhoneIgnoreCase("0912345678");
         verify(customerRepository).save(existingCustomer);
+        verify(searchIndexService).indexCustomer(existingCustomer);
     }
 
     @Test
@@ -439,7 +444,7 @@ class CustomerServiceImplTest {
         PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 2);
 
-        when(customerRepository.findWithFilters(null, null, null, null, pageable))
+        when(customerRepository.findWithFilters(false, null, null, null, null, null, null, null, pageable))
                 .thenReturn(customersPage);
 
         // When
@@ -449,7 +454,7 @@ class CustomerServiceImplTest {
         assertThat(result).isNotNull();
         assertThat(result.getTotalElements()).isEqualTo(2);
         assertThat(result.getContent().size()).isEqualTo(2);
-        verify(customerRepository).findWithFilters(null, null, null, null, pageable);
+        verify(customerRepository).findWithFilters(false, null, null, null, null, null, null, null, pageable);
     }
 
     @Test
@@ -461,7 +466,9 @@ class CustomerServiceImplTest {
         PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 1);
 
-        when(customerRepository.findWithFilters(eq("Nguyễn"), any(), any(), any(), any()))
+        when(searchIndexService.match("Nguyễn"))
+                .thenReturn(new SearchIndexService.KeywordMatch(null, List.of("n:nguyen%"), "e:nguyen%"));
+        when(customerRepository.findWithFilters(eq(true), eq("n:nguyen%"), isNull(), isNull(), eq("e:nguyen%"), any(), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -470,7 +477,19 @@ class CustomerServiceImplTest {
         // Then
         assertThat(result).isNotNull();
         assertThat(result.getTotalElements()).isEqualTo(1);
-        verify(customerRepository).findWithFilters(eq("Nguyễn"), any(), any(), any(), any());
+        verify(customerRepository).findWithFilters(eq(true), eq("n:nguyen%"), isNull(), isNull(), eq("e:nguyen%"), any(), any(), any(), any());
+    }
+
+    @Test
+    void listCustomers_whenKeywordMatchesNoCustomer_shouldReturnEmptyPageWithoutQuery() {
+        when(searchIndexService.match("Không tồn tại"))
+                .thenReturn(new SearchIndexService.KeywordMatch(null, List.of(), null));
+
+        Page<CustomerResponse> result = customerService.listCustomers("Không tồn tại", null, null, null, null, 0, 10);
+
+        assertThat(result.getContent()).isEmpty();
+        assertThat(result.getTotalElements()).isZero();
+        verifyNoInteractions(customerRepository);
     }
 
     @Test
@@ -482,7 +501,7 @@ class CustomerServiceImplTest {
         PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 1);
 
-        when(customerRepository.findWithFilters(any(), eq(10), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), eq(10), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -491,7 +510,7 @@ class CustomerServiceImplTest {
         // Then
         assertThat(result).isNotNull();
         assertThat(result.getTotalElements()).isEqualTo(1);
-        verify(customerRepository).findWithFilters(any(), eq(10), any(), any(), any());
+        verify(customerRepository).findWithFilters(anyBoolean(), any(), any(), any(), any(), eq(10), any(), any(), any());
     }
 
     @Test
@@ -505,7 +524,7 @@ class CustomerServiceImplTest {
         PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 1);
 
-        when(customerRepository.findWithFilters(any(), any(), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -513,7 +532,7 @@ class CustomerServiceImplTest {
 
         // Then
         assertThat(result).isNotNull();
-        verify(customerRepository).findWithFilters(any(), any(), any(), any(), any());
+        verify(customerRepository).findWithFilters(anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -541,7 +560,7 @@ class CustomerServiceImplTest {
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 1);
 
         when(employeeRepository.findByUserId(userId)).thenReturn(Optional.of(employee));
-        when(customerRepository.findWithFilters(any(), eq(10), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), eq(10), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -551,7 +570,7 @@ class CustomerServiceImplTest {
         assertThat(result).isNotNull();
         assertThat(result.getTotalElements()).isEqualTo(1);
         verify(employeeRepository).findByUserId(userId);
-        verify(customerRepository).findWithFilters(any(), eq(10), any(), any(), any());
+        verify(customerRepository).findWithFilters(anyBoolean(), any(), any(), any(), any(), eq(10), any(), any(), any());
     }
 
     @Test
@@ -578,7 +597,7 @@ class CustomerServiceImplTest {
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 1);
 
         when(employeeRepository.findByUserId(userId)).thenReturn(Optional.of(employee));
-        when(customerRepository.findWithFilters(any(), isNull(), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), isNull(), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -587,7 +606,7 @@ class CustomerServiceImplTest {
         // Then
         assertThat(result).isNotNull();
         verify(employeeRepository).findByUserId(userId);
-        verify(customerRepository).findWithFilters(any(), isNull(), any(), any(), any());
+        verify(customerRepository).findWithFilters(anyBoolean(), any(), any(), any(), any(), isNull(), any(), any(), any());
     }
 
     @Test
@@ -601,7 +620,7 @@ class CustomerServiceImplTest {
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 1);
 
         when(employeeRepository.findByUserId(userId)).thenReturn(Optional.empty());
-        when(customerRepository.findWithFilters(any(), isNull(), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), isNull(), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -610,7 +629,7 @@ class CustomerServiceImplTest {
         // Then
         assertThat(result).isNotNull();
         verify(employeeRepository).findByUserId(userId);
-        verify(customerRepository).findWithFilters(any(), isNull(), any(), any(), any());
+        verify(customerRepository).findWithFilters(anyBoolean(), any(), any(), any(), any(), isNull(), any(), any(), any());
     }
 
     @Test
@@ -619,7 +638,7 @@ class CustomerServiceImplTest {
         PageRequest pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<Customers> customersPage = new PageImpl<>(Collections.emptyList(), pageable, 0);
 
-        when(customerRepository.findWithFilters(any(), any(), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -640,7 +659,7 @@ class CustomerServiceImplTest {
         PageRequest pageable = PageRequest.of(1, 5, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<Customers> customersPage = new PageImpl<>(customers, pageable, 10);
 
-        when(customerRepository.findWithFilters(any(), any(), any(), any(), any()))
+        when(customerRepository.findWithFilters(anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(customersPage);
 
         // When
@@ -653,6 +672,31 @@ class CustomerServiceImplTest {
         assertThat(result.getTotalElements()).isEqualTo(10);
     }
 
+    @Test
+    void scrollCustomers_shouldContinueAfterCursorWithoutCounting() {
+        // Given
+        Customers first = createTestCustomer(30, "Nguyễn Văn A", "0912345678");
+        Customers second = createTestCustomer(29, "Trần Văn B", "0987654321");
+        Customers extra = createTestCustomer(28, "Lê Văn C", "0901234567");
+        Instant afterKey = Instant.parse("2025-12-01T00:00:00Z");
+        String cursor = PageCursor.encode(afterKey, 31);
+
+        when(customerRepository.scrollWithFilters(eq(false), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(),
+                eq(afterKey), eq(31), eq(PageCursor.limit(2))))
+                .thenReturn(List.of(first, second, extra));
+
+        // When
+        CursorPageResponse<CustomerResponse> result = customerService.scrollCustomers(null, null, null, null, null,
+                cursor, 2, false);
+
+        // Then
+        assertThat(result.getItems()).extracting(CustomerResponse::getId).containsExactly(30, 29);
+        assertThat(result.isHasMore()).isTrue();
+        assertThat(PageCursor.decode(result.getNextCursor()).id()).isEqualTo(29);
+        assertThat(result.getTotalElements()).isNull();
+        verify(customerRepository, never()).findWithFilters(anyBoolean(), any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
     // ==================== Helper Methods ====================
 
     private Customers createTestCustomer(Integer id, String fullName, String phone) {
@@ -0,0 +1,294 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardDelta;
+import org.example.ptcmssbackend.dto.response.dispatch.DispatchDashboardResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
+import org.example.ptcmssbackend.entity.*;
+import org.example.ptcmssbackend.enums.AssignmentAction;
+import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.repository.DriverRepository;
+import org.example.ptcmssbackend.repository.TripDriverRepository;
+import org.example.ptcmssbackend.repository.TripRepository;
+import org.example.ptcmssbackend.repository.TripVehicleRepository;
+import org.example.ptcmssbackend.repository.VehicleRepository;
+import org.example.ptcmssbackend.service.impl.DispatchDashboardServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DispatchDashboardServiceImplTest {
+
+    private static final Integer BRANCH_ID = 1;
+
+    @Mock
+    private TripRepository tripRepository;
+    @Mock
+    private TripDriverRepository tripDriverRepository;
+    @Mock
+    private TripVehicleRepository tripVehicleRepository;
+    @Mock
+    private DriverRepository driverRepository;
+    @Mock
+    private VehicleRepository vehicleRepository;
+    @Mock
+    private DispatchService dispatchService;
+    @Mock
+    private WebSocketNotificationService webSocketNotificationService;
+
+    @InjectMocks
+    private DispatchDashboardServiceImpl dashboardService;
+
+    // ==================== getDashboard() Tests ====================
+
+    @Test
+    void getDashboard_withDate_shouldBuildFromBatchedQueries() {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Instant eight = date.atTime(8, 0).atZone(ZoneId.systemDefault()).toInstant();
+        Trips pending = createTrip(100, TripStatus.SCHEDULED, eight);
+        Trips scheduledWithDriver = createTrip(101, TripStatus.SCHEDULED, eight.plus(2, ChronoUnit.HOURS));
+        Trips assigned = createTrip(102, TripStatus.ASSIGNED, eight.plus(4, ChronoUnit.HOURS));
+        Trips ongoing = createTrip(103, TripStatus.ONGOING, eight);
+        Trips cancelled = createTrip(104, TripStatus.CANCELLED, eight);
+        stubBranch(List.of(pending, scheduledWithDriver, assigned, ongoing, cancelled),
+                List.of(row(101, 7), row(102, 7)), List.<Object[]>of(row(102, 9)));
+
+        DispatchDashboardResponse response = dashboardService.getDashboard(BRANCH_ID, date);
+
+        assertThat(response.getPendingCount()).isEqualTo(1);
+        assertThat(response.getAssignedCount()).isEqualTo(2);
+        assertThat(response.getInProgressCount()).isEqualTo(1);
+        assertThat(response.getCancelledCount()).isEqualTo(1);
+        assertThat(response.getCompletedCount()).isZero();
+        assertThat(response.getVersion()).isNull();
+
+        DispatchDashboardResponse.DriverScheduleItem driver = response.getDriverSchedules().get(0);
+        assertThat(driver.getDriverName()).isEqualTo("Tài xế 7");
+        assertThat(driver.getItems()).extracting(DispatchDashboardResponse.ScheduleBlock::getRef)
+                .containsExactly("TRIP-101", "TRIP-102");
+        assertThat(response.getVehicleSchedules().get(0).getItems())
+                .extracting(DispatchDashboardResponse.ScheduleBlock::getRef)
+                .containsExactly("TRIP-102");
+
+        // Không còn truy vấn gán tài xế/xe theo từng trip, trip chỉ nạp một lần
+        verify(tripRepository, times(1)).findByBooking_Branch_IdAndStartTimeBetween(eq(BRANCH_ID), any(), any());
+        verify(tripDriverRepository, never()).findByTripId(anyInt());
+        verify(tripVehicleRepository, never()).findByTripId(anyInt());
+    }
+
+    @Test
+    void getDashboard_withoutBranch_shouldThrow() {
+        assertThatThrownBy(() -> dashboardService.getDashboard(null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("chi nhánh");
+    }
+
+    @Test
+    void getDashboard_live_shouldReuseSnapshot() {
+        stubBranch(List.of(createTrip(100, TripStatus.SCHEDULED, tomorrow())), List.of(), List.of());
+
+        DispatchDashboardResponse first = dashboardService.getDashboard(BRANCH_ID, null);
+        DispatchDashboardResponse second = dashboardService.getDashboard(BRANCH_ID, null);
+
+        assertThat(first.getVersion()).isZero();
+        assertThat(second.getPendingCount()).isEqualTo(1);
+        verify(tripRepository, times(1)).findByBooking_Branch_IdAndStartTimeBetween(eq(BRANCH_ID), any(), any());
+    }
+
+    // ==================== onTripAssignmentChanged() Tests ====================
+
+    @Test
+    void onTripAssignmentChanged_shouldPushDeltaWithChangedTripOnly() {
+        Trips trip = createTrip(100, TripStatus.SCHEDULED, tomorrow());
+        Trips other = createTrip(101, TripStatus.SCHEDULED, tomorrow());
+        PendingTripResponse queued = pendingRow(100);
+        stubBranch(List.of(trip, other), List.of(), List.of());
+        when(dispatchService.getPendingTrips(eq(BRANCH_ID), any(), any()))
+                .thenReturn(List.of(queued, pendingRow(101)), List.of(pendingRow(101)));
+        dashboardService.getDashboard(BRANCH_ID, null);
+
+        // Trip 100 được gán tài xế 7 + xe 9
+        trip.setStatus(TripStatus.ASSIGNED);
+        when(tripRepository.findWithBookingByIdIn(List.of(100))).thenReturn(List.of(trip));
+        when(tripDriverRepository.findTripDriverIdPairs(List.of(100))).thenReturn(List.<Object[]>of(row(100, 7)));
+        when(tripVehicleRepository.findTripVehicleIdPairs(List.of(100))).thenReturn(List.<Object[]>of(row(100, 9)));
+
+        dashboardService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+
+        ArgumentCaptor<DispatchDashboardDelta> captor = ArgumentCaptor.forClass(DispatchDashboardDelta.class);
+        verify(webSocketNotificationService).sendDispatchDashboardDelta(eq(BRANCH_ID), captor.capture());
+        DispatchDashboardDelta delta = captor.getValue();
+        assertThat(delta.getVersion()).isEqualTo(1L);
+        assertThat(delta.getUpserts()).hasSize(1);
+        DispatchDashboardDelta.TripChange change = delta.getUpserts().get(0);
+        assertThat(change.getTripId()).isEqualTo(100);
+        assertThat(change.getState()).isEqualTo("ASSIGNED");
+        assertThat(change.getDriverIds()).containsExactly(7);
+        assertThat(change.getVehicleIds()).containsExactly(9);
+        assertThat(delta.getPendingCount()).isEqualTo(1);
+        assertThat(delta.getAssignedCount()).isEqualTo(1);
+        assertThat(delta.getPendingTrips()).extracting(PendingTripResponse::getTripId).containsExactly(101);
+        assertThat(delta.getRemovedTripIds()).isEmpty();
+
+        assertThat(dashboardService.getDashboard(BRANCH_ID, null).getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void onTripAssignmentChanged_whenNothingChanged_shouldNotPush() {
+        Trips trip = createTrip(100, TripStatus.SCHEDULED, tomorrow());
+        stubBranch(List.of(trip), List.of(), List.of());
+        dashboardService.getDashboard(BRANCH_ID, null);
+        when(tripRepository.findWithBookingByIdIn(List.of(100))).thenReturn(List.of(trip));
+
+        dashboardService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ACCEPT));
+
+        verify(webSocketNotificationService, never()).sendDispatchDashboardDelta(anyInt(), any());
+    }
+
+    @Test
+    void onTripAssignmentChanged_whenNoSnapshotLoaded_shouldSkipQueries() {
+        dashboardService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+
+        verifyNoInteractions(tripRepository, tripDriverRepository, tripVehicleRepository, webSocketNotificationService);
+    }
+
+    @Test
+    void onTripAssignmentChanged_whenRefreshFails_shouldAskClientsToReload() {
+        stubBranch(List.of(createTrip(100, TripStatus.SCHEDULED, tomorrow())), List.of(), List.of());
+        dashboardService.getDashboard(BRANCH_ID, null);
+        when(tripRepository.findWithBookingByIdIn(anyCollection())).thenThrow(new RuntimeException("DB down"));
+
+        dashboardService.onTripAssignmentChanged(new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+
+        ArgumentCaptor<DispatchDashboardDelta> captor = ArgumentCaptor.forClass(DispatchDashboardDelta.class);
+        verify(webSocketNotificationService).sendDispatchDashboardDelta(eq(BRANCH_ID), captor.capture());
+        assertThat(captor.getValue().getReload()).isTrue();
+    }
+
+    // ==================== onBookingScheduleChanged() Tests ====================
+
+    @Test
+    void onBookingScheduleChanged_shouldMoveRescheduledTripAndDropRemovedTrip() {
+        Trips trip = createTrip(100, TripStatus.SCHEDULED, tomorrow());
+        Trips removed = createTrip(102, TripStatus.SCHEDULED, tomorrow());
+        removed.setBooking(trip.getBooking());
+        stubBranch(List.of(trip, removed), List.of(), List.of());
+        dashboardService.getDashboard(BRANCH_ID, null);
+
+        // Đơn 1100 được sửa: trip 100 dời sang ngày kia, trip 102 bị xóa khỏi đơn
+        trip.setStartTime(tomorrow().plus(1, ChronoUnit.DAYS));
+        trip.setEndTime(trip.getStartTime().plus(1, ChronoUnit.HOURS));
+        when(tripRepository.findByBooking_IdIn(List.of(1100))).thenReturn(List.of(trip));
+
+        dashboardService.onBookingScheduleChanged(new BookingScheduleChangedEvent(List.of(1100)));
+
+        ArgumentCaptor<DispatchDashboardDelta> captor = ArgumentCaptor.forClass(DispatchDashboardDelta.class);
+        verify(webSocketNotificationService).sendDispatchDashboardDelta(eq(BRANCH_ID), captor.capture());
+        DispatchDashboardDelta delta = captor.getValue();
+        assertThat(delta.getUpserts()).extracting(DispatchDashboardDelta.TripChange::getTripId).containsExactly(100);
+        assertThat(delta.getUpserts().get(0).getStartTime()).isEqualTo(trip.getStartTime());
+        assertThat(delta.getRemovedTripIds()).containsExactly(102);
+        assertThat(delta.getPendingCount()).isEqualTo(1);
+    }
+
+    // ==================== refreshPendingQueues() Tests ====================
+
+    @Test
+    void refreshPendingQueues_whenTripEntersQueue_shouldPushNewTrip() {
+        stubBranch(new ArrayList<>(), List.of(), List.of());
+        dashboardService.getDashboard(BRANCH_ID, null);
+
+        // Đơn mới được cọc: trip 200 xuất hiện trong hàng đợi mà không có sự kiện gán
+        Trips created = createTrip(200, TripStatus.SCHEDULED, tomorrow());
+        when(dispatchService.getPendingTrips(eq(BRANCH_ID), any(), any())).thenReturn(List.of(pendingRow(200)));
+        when(tripRepository.findWithBookingByIdIn(List.of(200))).thenReturn(List.of(created));
+
+        dashboardService.refreshPendingQueues();
+
+        ArgumentCaptor<DispatchDashboardDelta> captor = ArgumentCaptor.forClass(DispatchDashboardDelta.class);
+        verify(webSocketNotificationService).sendDispatchDashboardDelta(eq(BRANCH_ID), captor.capture());
+        assertThat(captor.getValue().getUpserts()).extracting(DispatchDashboardDelta.TripChange::getTripId)
+                .containsExactly(200);
+        assertThat(captor.getValue().getPendingCount()).isEqualTo(1);
+        assertThat(captor.getValue().getPendingTrips()).hasSize(1);
+    }
+
+    // ==================== Helper Methods ====================
+
+    private void stubBranch(List<Trips> trips, List<Object[]> driverRows, List<Object[]> vehicleRows) {
+        when(tripRepository.findByBooking_Branch_IdAndStartTimeBetween(eq(BRANCH_ID), any(), any())).thenReturn(trips);
+        lenient().when(tripDriverRepository.findTripDriverIdPairs(anyCollection())).thenReturn(driverRows);
+        lenient().when(tripVehicleRepository.findTripVehicleIdPairs(anyCollection())).thenReturn(vehicleRows);
+        lenient().when(dispatchService.getPendingTrips(eq(BRANCH_ID), any(), any())).thenReturn(Collections.emptyList());
+        when(driverRepository.findByBranchIdWithUser(BRANCH_ID)).thenReturn(List.of(createDriver(7)));
+        when(vehicleRepository.filterVehicles(null, BRANCH_ID, null)).thenReturn(List.of(createVehicle(9)));
+    }
+
+    private Trips createTrip(Integer id, TripStatus status, Instant start) {
+        Branches branch = new Branches();
+        branch.setId(BRANCH_ID);
+        Bookings booking = new Bookings();
+        booking.setId(id + 1000);
+        booking.setBranch(branch);
+        Trips trip = new Trips();
+        trip.setId(id);
+        trip.setBooking(booking);
+        trip.setStatus(status);
+        trip.setStartTime(start);
+        trip.setEndTime(start.plus(1, ChronoUnit.HOURS));
+        trip.setStartLocation("Hà Nội");
+        trip.setEndLocation("Hải Phòng");
+        return trip;
+    }
+
+    private Drivers createDriver(Integer id) {
+        Users user = new Users();
+        user.setFullName("Tài xế " + id);
+        user.setPhone("0900000" + id);
+        Employees employee = new Employees();
+        employee.setUser(user);
+        Drivers driver = new Drivers();
+        driver.setId(id);
+        driver.setEmployee(employee);
+        return driver;
+    }
+
+    private Vehicles createVehicle(Integer id) {
+        Vehicles vehicle = new Vehicles();
+        vehicle.setId(id);
+        vehicle.setLicensePlate("29A-0000" + id);
+        return vehicle;
+    }
+
+    private PendingTripResponse pendingRow(Integer tripId) {
+        PendingTripResponse row = new PendingTripResponse();
+        row.setTripId(tripId);
+        return row;
+    }
+
+    private Object[] row(Integer tripId, Integer resourceId) {
+        return new Object[]{tripId, resourceId};
+    }
+
+    private Instant tomorrow() {
+        return LocalDate.now().plusDays(1).atTime(9, 0).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -1,25 +1,40 @@
 package org.example.ptcmssbackend.service;
 
 import org.example.ptcmssbackend.dto.request.dispatch.AssignRequest;
+import org.example.ptcmssbackend.dto.request.dispatch.AutoDispatchCommitRequest;
+import org.example.ptcmssbackend.dto.request.Trip.TripSearchRequest;
 import org.example.ptcmssbackend.dto.response.Booking.BookingResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.AssignmentSuggestionResponse;
+import org.example.ptcmssbackend.dto.response.dispatch.AutoDispatchPlanResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.AssignRespone;
+import org.example.ptcmssbackend.dto.response.Trip.TripListItemResponse;
 import org.example.ptcmssbackend.dto.response.dispatch.PendingTripResponse;
 import org.example.ptcmssbackend.entity.*;
 import org.example.ptcmssbackend.enums.BookingStatus;
+import org.example.ptcmssbackend.enums.DriverDayOffStatus;
 import org.example.ptcmssbackend.enums.PaymentConfirmationStatus;
 import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.enums.VehicleStatus;
 import org.example.ptcmssbackend.repository.*;
+import org.example.ptcmssbackend.service.impl.CandidateScoringExecutor;
 import org.example.ptcmssbackend.service.impl.DispatchServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -57,88 +72,70 @@ class DispatchServiceImplTest {
     private PaymentHistoryRepository paymentHistoryRepository;
     @Mock
     private DriverRatingsRepository driverRatingsRepository;
+    @Mock
+    private OccupancyIndexService occupancyIndexService;
+    @Mock
+    private TripOccupancyService tripOccupancyService;
+    @Mock
+    private VehicleCategoryPricingRepository vehicleCategoryRepository;
+    @Mock
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DriverWorkloadService driverWorkloadService;
+    @Spy
+    private CandidateScoringExecutor candidateScoringExecutor = new CandidateScoringExecutor(false, 0, 10);
 
     @InjectMocks
     private DispatchServiceImpl dispatchService;
 
     @Test
-    void getPendingTrips_shouldReturnOnlyUnassignedTripsWithDispatchableBookings() {
+    void getPendingTrips_shouldLoadQueueInSingleQueryAndSortBySeatsThenStartTime() {
         Integer branchId = 1;
         Instant from = Instant.parse("2025-12-04T00:00:00Z");
         Instant to = Instant.parse("2025-12-05T00:00:00Z");
 
-        // Booking dispatchable (PENDING)
-        Bookings bookingPending = new Bookings();
-        bookingPending.setId(10);
-        bookingPending.setStatus(BookingStatus.PENDING);
-        Customers customer = new Customers();
-        customer.setFullName("Nguyễn Văn A");
-        customer.setPhone("0909");
-        bookingPending.setCustomer(customer);
-        Branches branch = new Branches();
-        branch.setId(branchId);
-        branch.setBranchName("Chi nhánh A");
-        bookingPending.setBranch(branch);
-
-        // Booking không dispatchable (CANCELLED)
-        Bookings bookingCancelled = new Bookings();
-        bookingCancelled.setId(11);
-        bookingCancelled.setStatus(BookingStatus.CANCELLED);
-        bookingCancelled.setCustomer(customer);
-        bookingCancelled.setBranch(branch);
-
-        // Trip 1: SCHEDULED, chưa gán driver/vehicle -> phải được trả về
-        Trips trip1 = new Trips();
-        trip1.setId(100);
-        trip1.setStatus(TripStatus.SCHEDULED);
-        trip1.setStartTime(from.plusSeconds(3600));
-        trip1.setEndTime(from.plusSeconds(7200));
-        trip1.setBooking(bookingPending);
-
-        // Trip 2: SCHEDULED nhưng đã gán driver -> loại bỏ
-        Trips trip2 = new Trips();
-        trip2.setId(200);
-        trip2.setStatus(TripStatus.SCHEDULED);
-        trip2.setStartTime(from.plusSeconds(3600));
-        trip2.setEndTime(from.plusSeconds(7200));
-        trip2.setBooking(bookingPending);
-
-        // Trip 3: SCHEDULED, chưa gán nhưng booking CANCELLED -> loại bỏ
-        Trips trip3 = new Trips();
-        trip3.setId(300);
-        trip3.setStatus(TripStatus.SCHEDULED);
-        trip3.setStartTime(from.plusSeconds(3600));
-        trip3.setEndTime(from.plusSeconds(7200));
-        trip3.setBooking(bookingCancelled);
-
-        when(tripRepository.findByBooking_Branch_IdAndStatusAndStartTimeBetween(
-                eq(branchId), eq(TripStatus.SCHEDULED), eq(from), eq(to)))
-                .thenReturn(List.of(trip1, trip2, trip3));
-        when(tripRepository.findByBooking_Branch_IdAndStatusAndStartTimeBetween(
-                eq(branchId), eq(TripStatus.ASSIGNED), eq(from), eq(to)))
-                .thenReturn(Collections.emptyList());
+        // Lọc chưa gán / trạng thái booking / đã cọc nằm trong truy vấn, service chỉ sắp xếp
+        PendingTripResponse small = pendingRow(100, 10, from.plusSeconds(3600), 16);
+        PendingTripResponse bigLate = pendingRow(200, 20, from.plusSeconds(7200), 45);
+        PendingTripResponse bigEarly = pendingRow(300, 30, from.plusSeconds(1800), 45);
+        PendingTripResponse unknownSeats = pendingRow(400, 40, from.plusSeconds(600), null);
 
-        // Trip1: chưa gán
-        when(tripDriverRepository.findByTripId(100)).thenReturn(Collections.emptyList());
-        when(tripVehicleRepository.findByTripId(100)).thenReturn(Collections.emptyList());
-        // Trip2: đã gán driver
-        TripDrivers td = new TripDrivers();
-        td.setId(new TripDriverId());
-        when(tripDriverRepository.findByTripId(200)).thenReturn(List.of(td));
-        when(tripVehicleRepository.findByTripId(200)).thenReturn(Collections.emptyList());
-        // Trip3: chưa gán nhưng booking CANCELLED
-        when(tripDriverRepository.findByTripId(300)).thenReturn(Collections.emptyList());
-        when(tripVehicleRepository.findByTripId(300)).thenReturn(Collections.emptyList());
+        when(tripRepository.findPendingQueue(eq(branchId),
+                eq(EnumSet.of(TripStatus.SCHEDULED, TripStatus.ASSIGNED)),
+                argThat(statuses -> statuses.contains(BookingStatus.PENDING) && !statuses.contains(BookingStatus.CANCELLED)),
+                eq(from), eq(to)))
+                .thenReturn(List.of(small, bigLate, bigEarly, unknownSeats));
 
         List<PendingTripResponse> result = dispatchService.getPendingTrips(branchId, from, to);
 
-        assertThat(result).hasSize(1);
-        PendingTripResponse r = result.get(0);
-        assertThat(r.getTripId()).isEqualTo(100);
-        assertThat(r.getBookingId()).isEqualTo(10);
-        assertThat(r.getBranchId()).isEqualTo(branchId);
-        assertThat(r.getCustomerName()).isEqualTo("Nguyễn Văn A");
-        assertThat(r.getBookingStatus()).isEqualTo(BookingStatus.PENDING);
+        assertThat(result).extracting(PendingTripResponse::getTripId).containsExactly(300, 200, 100, 400);
+        assertThat(result.get(0).getCustomerName()).isEqualTo("Khách 30");
+        assertThat(result.get(0).getBookingStatus()).isEqualTo(BookingStatus.CONFIRMED);
+        // Không còn truy vấn theo từng trip
+        verify(tripDriverRepository, never()).findByTripId(anyInt());
+        verify(tripVehicleRepository, never()).findByTripId(anyInt());
+        verify(invoiceRepository, never()).findByBooking_IdOrderByCreatedAtDesc(anyInt());
+        verify(bookingRepository, never()).findById(anyInt());
+        verify(bookingVehicleDetailsRepository, never()).findByBookingId(anyInt());
+    }
+
+    @Test
+    void getAllPendingTrips_shouldQueryAllBranches() {
+        PendingTripResponse row = pendingRow(100, 10, Instant.now().plusSeconds(3600), 16);
+        when(tripRepository.findPendingQueue(isNull(), anyCollection(), anyCollection(), any(), any()))
+                .thenReturn(List.of(row));
+
+        List<PendingTripResponse> result = dispatchService.getAllPendingTrips();
+
+        assertThat(result).containsExactly(row);
+        verify(tripRepository, never()).findByBooking_Branch_IdAndStatusAndStartTimeBetween(any(), any(), any(), any());
+    }
+
+    private PendingTripResponse pendingRow(Integer tripId, Integer bookingId, Instant start, Integer maxSeats) {
+        return new PendingTripResponse(tripId, bookingId, 1, "Chi nhánh A", "Khách " + bookingId, "0909",
+                "A", "B", start, start.plusSeconds(3600), false, "Một chiều",
+                new BigDecimal("1000000"), BookingStatus.CONFIRMED, maxSeats);
     }
 
     // ==================== assign() Tests ====================
@@ -335,6 +332,606 @@ class DispatchServiceImplTest {
         verify(invoiceRepository, never()).findByBooking_IdOrderByCreatedAtDesc(anyInt());
         verify(bookingService).assign(eq(1), any());
     }
-}
 
+    // ==================== getAssignmentSuggestions() Tests ====================
+
+    @Test
+    void getAssignmentSuggestions_shouldUseFixedNumberOfQueriesRegardlessOfFleetSize() {
+        int smallFleetQueries = countSuggestionQueries(1);
+        int largeFleetQueries = countSuggestionQueries(200);
+
+        assertThat(largeFleetQueries).isEqualTo(smallFleetQueries);
+        // Không còn truy vấn theo từng tài xế/xe
+        verify(driverDayOffRepository, never()).findApprovedDayOffOnDate(anyInt(), any(), any());
+        verify(tripDriverRepository, never()).findAllByDriverId(anyInt());
+        verify(tripDriverRepository, never()).findByTripId(anyInt());
+        verify(tripVehicleRepository, never()).findByTripId(anyInt());
+        verify(tripVehicleRepository, never()).findAllByVehicleId(anyInt());
+    }
+
+    @Test
+    void getAssignmentSuggestions_shouldApplyPrefetchedDayOffSiblingAndHistory() {
+        Trips trip = stubSuggestionScenario(3);
+        // Tài xế 1 đã lái trip khác trong cùng booking, tài xế 3 nghỉ phép, tài xế 2 từng phục vụ khách
+        TripDrivers sibling = new TripDrivers();
+        sibling.setId(new TripDriverId());
+        sibling.setDriver(driverRef(1));
+        when(tripDriverRepository.findByTripIdIn(List.of(101))).thenReturn(List.of(sibling));
+        when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), eq(DriverDayOffStatus.APPROVED), any()))
+                .thenReturn(List.of(3));
+        when(tripDriverRepository.findDriverIdsWithTripForCustomer(anyCollection(), eq(50), eq(TripStatus.COMPLETED)))
+                .thenReturn(List.of(2));
+
+        AssignmentSuggestionResponse response = dispatchService.getAssignmentSuggestions(trip.getId());
+
+        assertThat(response.getDrivers()).hasSize(3);
+        AssignmentSuggestionResponse.DriverCandidate first = response.getDrivers().get(0);
+        assertThat(first.getId()).isEqualTo(2);
+        assertThat(first.isEligible()).isTrue();
+        assertThat(first.getHasHistoryWithCustomer()).isTrue();
+        assertThat(response.getDrivers().stream().filter(d -> !d.isEligible()))
+                .extracting(AssignmentSuggestionResponse.DriverCandidate::getId)
+                .containsExactlyInAnyOrder(1, 3);
+        assertThat(response.getRecommendedDriverId()).isEqualTo(2);
+    }
+
+    @Test
+    void getAssignmentSuggestions_parallelScoringShouldKeepSequentialOrder() {
+        Trips trip = stubSuggestionScenario(40);
+        // Điểm công bằng khác nhau theo tài xế để thứ tự sau khi sắp xếp có ý nghĩa
+        when(driverWorkloadService.getWorkload(anyInt(), any())).thenAnswer(inv -> {
+            int id = inv.getArgument(0);
+            return new DriverWorkloadService.Workload(id % 3, id % 5, id % 2);
+        });
+
+        AssignmentSuggestionResponse sequential = dispatchService.getAssignmentSuggestions(trip.getId());
+
+        CandidateScoringExecutor parallel = new CandidateScoringExecutor(true, 4, 10);
+        doAnswer(inv -> parallel.map(inv.getArgument(0), inv.getArgument(1)))
+                .when(candidateScoringExecutor).map(anyList(), any());
+        AssignmentSuggestionResponse concurrent = dispatchService.getAssignmentSuggestions(trip.getId());
+
+        assertThat(concurrent.getDrivers())
+                .extracting(AssignmentSuggestionResponse.DriverCandidate::getId)
+                .containsExactlyElementsOf(sequential.getDrivers().stream()
+                        .map(AssignmentSuggestionResponse.DriverCandidate::getId).toList());
+        assertThat(concurrent.getDrivers())
+                .extracting(AssignmentSuggestionResponse.DriverCandidate::getReasons)
+                .containsExactlyElementsOf(sequential.getDrivers().stream()
+                        .map(AssignmentSuggestionResponse.DriverCandidate::getReasons).toList());
+        assertThat(concurrent.getVehicles())
+                .extracting(AssignmentSuggestionResponse.VehicleCandidate::getId)
+                .containsExactlyElementsOf(sequential.getVehicles().stream()
+                        .map(AssignmentSuggestionResponse.VehicleCandidate::getId).toList());
+        assertThat(concurrent.getRecommendedDriverId()).isEqualTo(sequential.getRecommendedDriverId());
+    }
+
+    @Test
+    void getAssignmentSuggestions_shouldReturnTopPairsAcrossWholeFleet() {
+        Trips trip = stubSuggestionScenario(12);
+        // Tài xế 1..6 đã có chuyến trong ngày; tài xế 7..12 rảnh nên phải đứng đầu dù xếp sau trong danh sách gốc
+        when(driverWorkloadService.getWorkload(anyInt(), any())).thenAnswer(inv -> {
+            int id = inv.getArgument(0);
+            return id <= 6 ? new DriverWorkloadService.Workload(2, 2, 2) : DriverWorkloadService.Workload.EMPTY;
+        });
+
+        AssignmentSuggestionResponse response = dispatchService.getAssignmentSuggestions(trip.getId(), 40);
+
+        assertThat(response.getSuggestions()).hasSize(40);
+        assertThat(response.getSuggestions())
+                .extracting(AssignmentSuggestionResponse.PairSuggestion::getScore)
+                .isSorted();
+        // 6 tài xế rảnh × 12 xe = 72 cặp điểm 0, nên 40 cặp đầu chỉ gồm tài xế rảnh
+        assertThat(response.getSuggestions())
+                .allSatisfy(p -> assertThat(p.getDriver().getId()).isGreaterThan(6));
+        assertThat(response.getSuggestions().stream().map(p -> p.getVehicle().getId()).distinct().count())
+                .isEqualTo(12);
+        assertThat(response.getSuggestions().get(0).getReasons()).hasSize(3);
+    }
+
+    @Test
+    void getAssignmentSuggestions_withoutTop_shouldReturnDefaultTenPairs() {
+        Trips trip = stubSuggestionScenario(12);
+
+        AssignmentSuggestionResponse response = dispatchService.getAssignmentSuggestions(trip.getId());
+
+        assertThat(response.getSuggestions()).hasSize(10);
+    }
+
+    private int countSuggestionQueries(int fleetSize) {
+        Mockito.reset(tripRepository, tripDriverRepository, tripVehicleRepository, driverRepository, vehicleRepository,
+                driverDayOffRepository, bookingVehicleDetailsRepository, vehicleCategoryRepository);
+        Trips trip = stubSuggestionScenario(fleetSize);
+
+        AssignmentSuggestionResponse response = dispatchService.getAssignmentSuggestions(trip.getId());
+        assertThat(response.getDrivers()).hasSize(fleetSize);
+        assertThat(response.getVehicles()).hasSize(fleetSize);
+
+        return List.of(tripRepository, bookingRepository, tripDriverRepository, tripVehicleRepository, driverRepository,
+                        vehicleRepository, driverDayOffRepository, bookingVehicleDetailsRepository, vehicleCategoryRepository,
+                        invoiceRepository, paymentHistoryRepository, driverRatingsRepository)
+                .stream()
+                .mapToInt(repo -> Mockito.mockingDetails(repo).getInvocations().size())
+                .sum();
+    }
+
+    private Trips stubSuggestionScenario(int fleetSize) {
+        Branches branch = new Branches();
+        branch.setId(1);
+        branch.setBranchName("Chi nhánh A");
+        Customers customer = new Customers();
+        customer.setId(50);
+        customer.setFullName("Nguyễn Văn A");
+        Bookings booking = new Bookings();
+        booking.setId(10);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking.setBranch(branch);
+        booking.setCustomer(customer);
+
+        Instant start = LocalDate.of(2025, 12, 4).atTime(8, 0).atZone(ZoneId.systemDefault()).toInstant();
+        Trips trip = new Trips();
+        trip.setId(100);
+        trip.setStatus(TripStatus.SCHEDULED);
+        trip.setBooking(booking);
+        trip.setStartTime(start);
+        trip.setEndTime(start.plusSeconds(4 * 3600));
+        Trips siblingTrip = new Trips();
+        siblingTrip.setId(101);
+        siblingTrip.setStatus(TripStatus.ASSIGNED);
+        siblingTrip.setBooking(booking);
+        siblingTrip.setStartTime(start);
+
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(7);
+        category.setCategoryName("Xe 16 chỗ");
+        category.setSeats(16);
+        BookingVehicleDetails detail = new BookingVehicleDetails();
+        detail.setVehicleCategory(category);
+        detail.setQuantity(2);
+
+        List<Drivers> drivers = IntStream.rangeClosed(1, fleetSize).mapToObj(i -> {
+            Drivers d = driverRef(i);
+            d.setBranch(branch);
+            d.setLicenseClass("D");
+            return d;
+        }).toList();
+        List<Vehicles> vehicles = IntStream.rangeClosed(1, fleetSize).mapToObj(i -> {
+            Vehicles v = new Vehicles();
+            v.setId(i);
+            v.setBranch(branch);
+            v.setCategory(category);
+            v.setCapacity(16);
+            v.setStatus(VehicleStatus.AVAILABLE);
+            return v;
+        }).toList();
+
+        when(tripRepository.findById(100)).thenReturn(java.util.Optional.of(trip));
+        when(bookingVehicleDetailsRepository.findByBookingId(10)).thenReturn(List.of(detail));
+        when(tripRepository.findByBooking_Id(10)).thenReturn(new java.util.ArrayList<>(List.of(trip, siblingTrip)));
+        when(vehicleCategoryRepository.findById(7)).thenReturn(java.util.Optional.of(category));
+        when(driverRepository.findByBranchIdWithUser(1)).thenReturn(drivers);
+        when(vehicleRepository.filterVehicles(7, 1, VehicleStatus.AVAILABLE)).thenReturn(vehicles);
+        lenient().when(tripDriverRepository.findByTripIdIn(List.of(101))).thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByTrip_IdIn(List.of(101))).thenReturn(Collections.emptyList());
+        lenient().when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), any(), any()))
+                .thenReturn(Collections.emptyList());
+        lenient().when(tripDriverRepository.findDriverIdsWithTripForCustomer(anyCollection(), any(), any()))
+                .thenReturn(Collections.emptyList());
+        lenient().when(driverWorkloadService.getWorkload(anyInt(), any())).thenReturn(DriverWorkloadService.Workload.EMPTY);
+        return trip;
+    }
+
+    private Drivers driverRef(int id) {
+        Drivers d = new Drivers();
+        d.setId(id);
+        return d;
+    }
 
+    // ==================== searchTrips() Tests ====================
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchTrips_shouldBatchDriversVehiclesAndRoundTripSpans() {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Branches branch = new Branches();
+        branch.setId(1);
+        branch.setBranchName("Chi nhánh A");
+        HireTypes roundTrip = new HireTypes();
+        roundTrip.setCode("ROUND_TRIP");
+        roundTrip.setName("Hai chiều");
+
+        Bookings roundTripBooking = createPlanBooking(10, branch);
+        roundTripBooking.setHireType(roundTrip);
+        Bookings oneWayBooking = createPlanBooking(20, branch);
+        Trips outbound = createPlanTrip(100, roundTripBooking, date, 8, 10);
+        Trips inbound = createPlanTrip(101, roundTripBooking, date, 17, 19);
+        Trips other = createPlanTrip(200, oneWayBooking, date, 9, 11);
+
+        when(tripRepository.findBy(any(Specification.class), any())).thenReturn(List.of(outbound, other));
+
+        Drivers coDriver = driverRef(1);
+        Drivers mainDriver = driverRef(2);
+        Employees employee = new Employees();
+        Users user = new Users();
+        user.setFullName("Tài xế chính");
+        employee.setUser(user);
+        mainDriver.setEmployee(employee);
+        TripDrivers coAssignment = new TripDrivers();
+        coAssignment.setTrip(outbound);
+        coAssignment.setDriver(coDriver);
+        coAssignment.setDriverRole("Co-Driver");
+        TripDrivers mainAssignment = new TripDrivers();
+        mainAssignment.setTrip(outbound);
+        mainAssignment.setDriver(mainDriver);
+        mainAssignment.setDriverRole("Main Driver");
+        when(tripDriverRepository.findWithDriverUserByTripIdIn(List.of(100, 200)))
+                .thenReturn(List.of(coAssignment, mainAssignment));
+
+        Vehicles vehicle = new Vehicles();
+        vehicle.setId(5);
+        vehicle.setLicensePlate("29A-12345");
+        TripVehicles tv = new TripVehicles();
+        tv.setTrip(other);
+        tv.setVehicle(vehicle);
+        when(tripVehicleRepository.findByTrip_IdIn(List.of(100, 200))).thenReturn(List.of(tv));
+        when(tripRepository.findByBooking_IdIn(java.util.Set.of(10))).thenReturn(List.of(outbound, inbound));
+
+        TripSearchRequest request = new TripSearchRequest();
+        request.setBranchId(1);
+        List<TripListItemResponse> result = dispatchService.searchTrips(request);
+
+        assertThat(result).extracting(TripListItemResponse::getTripId).containsExactly(100, 200);
+        assertThat(result.get(0).getDriverId()).isEqualTo(2);
+        assertThat(result.get(0).getDriverName()).isEqualTo("Tài xế chính");
+        assertThat(result.get(0).getBranchName()).isEqualTo("Chi nhánh A");
+        assertThat(result.get(1).getVehicleLicensePlate()).isEqualTo("29A-12345");
+        assertThat(result.get(1).getDriverId()).isNull();
+        // Không còn findAll() hay truy vấn theo từng dòng
+        verify(tripRepository, never()).findAll();
+        verify(tripRepository, never()).findByBooking_Id(anyInt());
+        verify(tripDriverRepository, never()).findByTripId(anyInt());
+        verify(tripVehicleRepository, never()).findByTripId(anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchTrips_whenPageEmpty_shouldSkipBatchLookups() {
+        when(tripRepository.findBy(any(Specification.class), any())).thenReturn(List.of());
+
+        assertThat(dispatchService.searchTrips(new TripSearchRequest())).isEmpty();
+        verifyNoInteractions(tripDriverRepository, tripVehicleRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrollTrips_shouldReturnNextCursorWhenMoreRowsExist() {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Branches branch = new Branches();
+        branch.setId(1);
+        Bookings booking = createPlanBooking(10, branch);
+        Trips first = createPlanTrip(100, booking, date, 8, 10);
+        Trips second = createPlanTrip(101, booking, date, 9, 11);
+        Trips extra = createPlanTrip(102, booking, date, 10, 12);
+        // Repository trả size + 1 dòng
+        when(tripRepository.findBy(any(Specification.class), any())).thenReturn(List.of(first, second, extra));
+        when(tripDriverRepository.findWithDriverUserByTripIdIn(List.of(100, 101))).thenReturn(List.of());
+        when(tripVehicleRepository.findByTrip_IdIn(List.of(100, 101))).thenReturn(List.of());
+
+        TripSearchRequest request = new TripSearchRequest();
+        request.setSize(2);
+        var page = dispatchService.scrollTrips(request);
+
+        assertThat(page.getItems()).extracting(TripListItemResponse::getTripId).containsExactly(100, 101);
+        assertThat(page.isHasMore()).isTrue();
+        var cursor = org.example.ptcmssbackend.service.impl.PageCursor.decode(page.getNextCursor());
+        assertThat(cursor.id()).isEqualTo(101);
+        assertThat(cursor.sortKey()).isEqualTo(second.getStartTime());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrollTrips_onLastPage_shouldReportNoMore() {
+        when(tripRepository.findBy(any(Specification.class), any())).thenReturn(List.of());
+        TripSearchRequest request = new TripSearchRequest();
+        request.setCursor(org.example.ptcmssbackend.service.impl.PageCursor.encode(Instant.parse("2025-12-04T01:00:00Z"), 101));
+
+        var page = dispatchService.scrollTrips(request);
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    // ==================== proposeDayPlan() / commitDayPlan() Tests ====================
+
+    @Test
+    void proposeDayPlan_shouldRespectHardRulesAndPlanAllTrips() {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Branches branch = new Branches();
+        branch.setId(1);
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(7);
+        category.setSeats(16);
+
+        // Booking 10: 2 xe 16 chỗ, 2 trip cùng giờ; booking 20: 1 trip buổi chiều
+        Bookings bookingA = createPlanBooking(10, branch);
+        Bookings bookingB = createPlanBooking(20, branch);
+        Trips t1 = createPlanTrip(100, bookingA, date, 8, 12);
+        Trips t2 = createPlanTrip(101, bookingA, date, 8, 12);
+        Trips t3 = createPlanTrip(102, bookingB, date, 13, 15);
+        stubPendingQueue(List.of(t1, t2, t3), List.of(createDetail(bookingA, category, 2), createDetail(bookingB, category, 1)));
+
+        Drivers busyDriver = createPlanDriver(1, branch, "D");
+        Drivers freeDriver = createPlanDriver(2, branch, "D");
+        Drivers smallLicenseDriver = createPlanDriver(3, branch, "B2"); // không đủ hạng cho xe 16 chỗ
+        when(driverRepository.findByBranchIdWithUser(1)).thenReturn(List.of(busyDriver, freeDriver, smallLicenseDriver));
+        when(vehicleRepository.filterVehicles(null, 1, VehicleStatus.AVAILABLE))
+                .thenReturn(List.of(createPlanVehicle(1, branch, category, 16), createPlanVehicle(2, branch, category, 29)));
+        when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), eq(DriverDayOffStatus.APPROVED), eq(date)))
+                .thenReturn(Collections.emptyList());
+        // Tài xế 1 đã có 2 chuyến trong ngày
+        when(driverWorkloadService.getWorkload(anyInt(), eq(date))).thenAnswer(inv -> busyDriver.getId().equals(inv.getArgument(0))
+                ? new DriverWorkloadService.Workload(2, 2, 2)
+                : DriverWorkloadService.Workload.EMPTY);
+
+        AutoDispatchPlanResponse plan = dispatchService.proposeDayPlan(1, date);
+
+        assertThat(plan.getTotalTrips()).isEqualTo(3);
+        assertThat(plan.getPlannedTrips()).isEqualTo(3);
+        assertThat(plan.getUnplanned()).isEmpty();
+        var byTrip = plan.getItems().stream()
+                .collect(java.util.stream.Collectors.toMap(AutoDispatchPlanResponse.PlanItem::getTripId, i -> i));
+        // Cùng booking: tài xế khác nhau, xe khác nhau
+        assertThat(byTrip.get(100).getDriverId()).isNotEqualTo(byTrip.get(101).getDriverId());
+        assertThat(byTrip.get(100).getVehicleId()).isNotEqualTo(byTrip.get(101).getVehicleId());
+        // Không ai dùng tài xế bằng B2
+        assertThat(plan.getItems()).extracting(AutoDispatchPlanResponse.PlanItem::getDriverId).doesNotContain(3);
+        // Chuyến chiều: tài xế rảnh hơn, xe vừa khít sức chứa
+        assertThat(byTrip.get(102).getDriverId()).isEqualTo(2);
+        assertThat(byTrip.get(102).getVehicleId()).isEqualTo(1);
+        verify(bookingService, never()).assign(anyInt(), any());
+    }
+
+    @Test
+    void proposeDayPlan_whenAllDriversOff_shouldReportUnplannedTrips() {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Branches branch = new Branches();
+        branch.setId(1);
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(7);
+        category.setSeats(16);
+        Bookings booking = createPlanBooking(10, branch);
+        Trips trip = createPlanTrip(100, booking, date, 8, 12);
+        stubPendingQueue(List.of(trip), List.of(createDetail(booking, category, 1)));
+
+        when(driverRepository.findByBranchIdWithUser(1)).thenReturn(List.of(createPlanDriver(1, branch, "E")));
+        when(vehicleRepository.filterVehicles(null, 1, VehicleStatus.AVAILABLE))
+                .thenReturn(List.of(createPlanVehicle(1, branch, category, 16)));
+        when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), eq(DriverDayOffStatus.APPROVED), eq(date)))
+                .thenReturn(List.of(1));
+        lenient().when(driverWorkloadService.getWorkload(anyInt(), any())).thenReturn(DriverWorkloadService.Workload.EMPTY);
+
+        AutoDispatchPlanResponse plan = dispatchService.proposeDayPlan(1, date);
+
+        assertThat(plan.getPlannedTrips()).isZero();
+        assertThat(plan.getUnplanned()).hasSize(1);
+        assertThat(plan.getUnplanned().get(0).getReason()).contains("Không có tài xế");
+    }
+
+    @Test
+    void commitDayPlan_whenTripAlreadyAssigned_shouldRejectWholePlan() {
+        AutoDispatchCommitRequest request = createCommitRequest();
+        Trips trip = new Trips();
+        trip.setId(101);
+        TripVehicles tv = new TripVehicles();
+        tv.setTrip(trip);
+        when(tripDriverRepository.findByTripIdIn(List.of(100, 101))).thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByTrip_IdIn(List.of(100, 101))).thenReturn(List.of(tv));
+
+        assertThatThrownBy(() -> dispatchService.commitDayPlan(request))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("101");
+        verifyNoInteractions(bookingService);
+    }
+
+    @Test
+    void commitDayPlan_whenOneAssignmentFails_shouldFailWithTripId() {
+        AutoDispatchCommitRequest request = createCommitRequest();
+        stubCommitPlan(createPlanDriver(2, commitBranch(), "D"), 8, 12);
+        when(bookingRepository.findById(10)).thenReturn(java.util.Optional.empty());
+
+        assertThatThrownBy(() -> dispatchService.commitDayPlan(request))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Không thể gán chuyến 100");
+    }
+
+    @Test
+    void commitDayPlan_whenPlanEditedWithConflicts_shouldRejectBeforeAssigning() {
+        AutoDispatchCommitRequest request = createCommitRequest();
+        // Tài xế 2 đang nghỉ phép và chỉ có bằng B2
+        Drivers offDriver = createPlanDriver(2, commitBranch(), "B2");
+        stubCommitPlan(offDriver, 8, 12);
+        when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), eq(DriverDayOffStatus.APPROVED), any()))
+                .thenReturn(List.of(2));
+
+        assertThatThrownBy(() -> dispatchService.commitDayPlan(request))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Chuyến 101: Tài xế đang nghỉ phép")
+                .hasMessageNotContaining("Chuyến 100");
+        verifyNoInteractions(bookingService);
+        verify(bookingRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    void commitDayPlan_whenSameDriverOnOverlappingTrips_shouldReject() {
+        AutoDispatchCommitRequest request = createCommitRequest();
+        request.getItems().get(1).setDriverId(1);
+        // Hai chuyến khác đơn nhưng trùng giờ, cùng một tài xế
+        request.getItems().get(1).setBookingId(20);
+        stubCommitPlan(null, 8, 12);
+
+        assertThatThrownBy(() -> dispatchService.commitDayPlan(request))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Chuyến 101: Tài xế được xếp hai chuyến trùng giờ trong kế hoạch");
+        verifyNoInteractions(bookingService);
+    }
+
+    @Test
+    void proposeDayPlan_whenTripHasNoVehicle_shouldNotTakeDriverFromStaffableTrip() {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Branches branch = new Branches();
+        branch.setId(1);
+        VehicleCategoryPricing smallCategory = new VehicleCategoryPricing();
+        smallCategory.setId(7);
+        smallCategory.setSeats(16);
+        VehicleCategoryPricing bigCategory = new VehicleCategoryPricing();
+        bigCategory.setId(9);
+        bigCategory.setSeats(29);
+
+        // Booking 10 cần xe 29 chỗ nhưng chi nhánh không có; booking 20 cần xe 16 chỗ. Cùng giờ, chỉ một tài xế
+        Bookings bookingA = createPlanBooking(10, branch);
+        Bookings bookingB = createPlanBooking(20, branch);
+        Trips noVehicleTrip = createPlanTrip(100, bookingA, date, 8, 12);
+        Trips staffableTrip = createPlanTrip(101, bookingB, date, 8, 12);
+        stubPendingQueue(List.of(noVehicleTrip, staffableTrip),
+                List.of(createDetail(bookingA, bigCategory, 1), createDetail(bookingB, smallCategory, 1)));
+
+        when(driverRepository.findByBranchIdWithUser(1)).thenReturn(List.of(createPlanDriver(1, branch, "E")));
+        when(vehicleRepository.filterVehicles(null, 1, VehicleStatus.AVAILABLE))
+                .thenReturn(List.of(createPlanVehicle(1, branch, smallCategory, 16)));
+        when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), eq(DriverDayOffStatus.APPROVED), eq(date)))
+                .thenReturn(Collections.emptyList());
+        when(driverWorkloadService.getWorkload(anyInt(), eq(date))).thenReturn(DriverWorkloadService.Workload.EMPTY);
+
+        AutoDispatchPlanResponse plan = dispatchService.proposeDayPlan(1, date);
+
+        assertThat(plan.getItems()).extracting(AutoDispatchPlanResponse.PlanItem::getTripId).containsExactly(101);
+        assertThat(plan.getUnplanned()).extracting(AutoDispatchPlanResponse.UnplannedTrip::getTripId).containsExactly(100);
+        assertThat(plan.getUnplanned().get(0).getReason()).contains("Không có xe phù hợp");
+    }
+
+    @Test
+    void commitDayPlan_whenEmpty_shouldThrow() {
+        assertThatThrownBy(() -> dispatchService.commitDayPlan(new AutoDispatchCommitRequest()))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Kế hoạch điều phối trống");
+    }
+
+    private void stubPendingQueue(List<Trips> trips, List<BookingVehicleDetails> details) {
+        when(tripRepository.findPendingQueue(eq(1), anyCollection(), anyCollection(), any(), any()))
+                .thenAnswer(inv -> trips.stream()
+                        .map(t -> new PendingTripResponse(t.getId(), t.getBooking().getId(), 1, null,
+                                t.getBooking().getCustomer().getFullName(), null, t.getStartLocation(), t.getEndLocation(),
+                                t.getStartTime(), t.getEndTime(), t.getUseHighway(), null, null,
+                                t.getBooking().getStatus(), details.stream()
+                                        .filter(d -> d.getBooking().getId().equals(t.getBooking().getId()))
+                                        .map(d -> d.getVehicleCategory().getSeats())
+                                        .max(Integer::compare).orElse(null)))
+                        .toList());
+
+        when(tripRepository.findAllById(anyIterable())).thenReturn(trips);
+        when(tripRepository.findByBooking_IdIn(anyCollection())).thenReturn(trips);
+        when(bookingVehicleDetailsRepository.findByBookingIdIn(anyCollection())).thenReturn(details);
+        when(tripDriverRepository.findByTripIdIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByTrip_IdIn(anyList())).thenReturn(Collections.emptyList());
+    }
+
+    private Bookings createPlanBooking(Integer id, Branches branch) {
+        Customers customer = new Customers();
+        customer.setId(id * 10);
+        customer.setFullName("Khách " + id);
+        Bookings booking = new Bookings();
+        booking.setId(id);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking.setBranch(branch);
+        booking.setCustomer(customer);
+        return booking;
+    }
+
+    private Trips createPlanTrip(Integer id, Bookings booking, LocalDate date, int fromHour, int toHour) {
+        Trips trip = new Trips();
+        trip.setId(id);
+        trip.setStatus(TripStatus.SCHEDULED);
+        trip.setBooking(booking);
+        trip.setStartTime(date.atTime(fromHour, 0).atZone(ZoneId.systemDefault()).toInstant());
+        trip.setEndTime(date.atTime(toHour, 0).atZone(ZoneId.systemDefault()).toInstant());
+        return trip;
+    }
+
+    private BookingVehicleDetails createDetail(Bookings booking, VehicleCategoryPricing category, int quantity) {
+        BookingVehicleDetails detail = new BookingVehicleDetails();
+        detail.setBooking(booking);
+        detail.setVehicleCategory(category);
+        detail.setQuantity(quantity);
+        return detail;
+    }
+
+    private Drivers createPlanDriver(Integer id, Branches branch, String licenseClass) {
+        Drivers driver = driverRef(id);
+        driver.setBranch(branch);
+        driver.setLicenseClass(licenseClass);
+        return driver;
+    }
+
+    private Vehicles createPlanVehicle(Integer id, Branches branch, VehicleCategoryPricing category, int capacity) {
+        Vehicles vehicle = new Vehicles();
+        vehicle.setId(id);
+        vehicle.setBranch(branch);
+        vehicle.setCategory(category);
+        vehicle.setCapacity(capacity);
+        vehicle.setStatus(VehicleStatus.AVAILABLE);
+        return vehicle;
+    }
+
+    private Branches commitBranch() {
+        Branches branch = new Branches();
+        branch.setId(1);
+        return branch;
+    }
+
+    /**
+     * Dữ liệu cho kế hoạch của {@link #createCommitRequest()}: chuyến 100 (đơn 10), chuyến 101 (đơn 10 hoặc 20),
+     * tài xế 1 hạng D, xe 1-2 loại 16 chỗ; secondDriver null thì chỉ có tài xế 1
+     */
+    private void stubCommitPlan(Drivers secondDriver, int fromHour, int toHour) {
+        LocalDate date = LocalDate.of(2025, 12, 4);
+        Branches branch = commitBranch();
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(7);
+        category.setSeats(16);
+        Bookings bookingA = createPlanBooking(10, branch);
+        Bookings bookingB = createPlanBooking(20, branch);
+        Trips t1 = createPlanTrip(100, bookingA, date, fromHour, toHour);
+        Trips t2 = createPlanTrip(101, secondDriver != null ? bookingA : bookingB, date, fromHour, toHour);
+
+        when(tripDriverRepository.findByTripIdIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByTrip_IdIn(anyList())).thenReturn(Collections.emptyList());
+        when(tripRepository.findAllById(anyIterable())).thenReturn(List.of(t1, t2));
+        when(tripRepository.findByBooking_IdIn(anyCollection())).thenReturn(List.of(t1, t2));
+        when(bookingVehicleDetailsRepository.findByBookingIdIn(anyCollection()))
+                .thenReturn(List.of(createDetail(bookingA, category, 2), createDetail(bookingB, category, 1)));
+        List<Drivers> drivers = secondDriver != null
+                ? List.of(createPlanDriver(1, branch, "D"), secondDriver)
+                : List.of(createPlanDriver(1, branch, "D"));
+        when(driverRepository.findAllById(anyIterable())).thenReturn(drivers);
+        when(vehicleRepository.findAllById(anyIterable()))
+                .thenReturn(List.of(createPlanVehicle(1, branch, category, 16), createPlanVehicle(2, branch, category, 16)));
+        lenient().when(driverDayOffRepository.findDriverIdsOffOnDate(anyCollection(), eq(DriverDayOffStatus.APPROVED), any()))
+                .thenReturn(Collections.emptyList());
+    }
+
+    private AutoDispatchCommitRequest createCommitRequest() {
+        AutoDispatchCommitRequest request = new AutoDispatchCommitRequest();
+        List<AutoDispatchCommitRequest.Item> items = new java.util.ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            AutoDispatchCommitRequest.Item item = new AutoDispatchCommitRequest.Item();
+            item.setTripId(100 + i);
+            item.setBookingId(10);
+            item.setDriverId(1 + i);
+            item.setVehicleId(1 + i);
+            items.add(item);
+        }
+        request.setItems(items);
+        return request;
+    }
+}
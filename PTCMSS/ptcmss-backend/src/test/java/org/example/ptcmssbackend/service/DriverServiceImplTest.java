@@ -60,6 +60,8 @@ class DriverServiceImplTest {
     private GraphHopperService graphHopperService;
     @Mock
     private InvoiceRepository invoiceRepository;
+    @Mock
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private DriverServiceImpl driverService;
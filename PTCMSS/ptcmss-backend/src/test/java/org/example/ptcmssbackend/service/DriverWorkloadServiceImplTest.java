@@ -0,0 +1,197 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.enums.AssignmentAction;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.repository.TripDriverRepository;
+import org.example.ptcmssbackend.service.impl.DriverWorkloadServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DriverWorkloadServiceImplTest {
+
+    // Thứ 4 của tuần sau: đủ xa để cửa sổ 3 ngày / cả tuần nằm trong phạm vi sổ
+    private static final LocalDate WEDNESDAY = LocalDate.now().plusWeeks(1).with(DayOfWeek.WEDNESDAY);
+
+    @Mock
+    private TripDriverRepository tripDriverRepository;
+
+    @InjectMocks
+    private DriverWorkloadServiceImpl driverWorkloadService;
+
+    // ==================== getWorkload() Tests ====================
+
+    @Test
+    void getWorkload_shouldCountTodayWeekAndRecentFromLedger() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any())).thenReturn(rows(
+                row(1, 100, WEDNESDAY),
+                row(1, 101, WEDNESDAY),
+                row(1, 102, WEDNESDAY.minusDays(2)),  // thứ 2: trong tuần, gần đây
+                row(1, 103, WEDNESDAY.minusDays(3)),  // CN tuần trước: chỉ gần đây
+                row(1, 104, WEDNESDAY.plusDays(2)),   // thứ 6: trong tuần, gần đây
+                row(1, 105, WEDNESDAY.plusDays(6)),   // thứ 3 tuần sau: chỉ gần đây
+                row(1, 106, WEDNESDAY.minusDays(5)),  // quá cửa sổ
+                row(2, 107, WEDNESDAY)
+        ));
+
+        DriverWorkloadService.Workload workload = driverWorkloadService.getWorkload(1, WEDNESDAY);
+
+        assertThat(workload.getTripsToday()).isEqualTo(2);
+        assertThat(workload.getTripsThisWeek()).isEqualTo(4);
+        assertThat(workload.getRecentAssignments()).isEqualTo(6);
+        assertThat(driverWorkloadService.getWorkload(2, WEDNESDAY).getTripsToday()).isEqualTo(1);
+        assertThat(driverWorkloadService.getWorkload(3, WEDNESDAY)).isSameAs(DriverWorkloadService.Workload.EMPTY);
+        // Sổ chỉ nạp một lần
+        verify(tripDriverRepository, times(1)).findWorkloadRowsFrom(any());
+    }
+
+    @Test
+    void getWorkload_whenArgumentsMissing_shouldReturnEmptyWithoutLoading() {
+        assertThat(driverWorkloadService.getWorkload(null, WEDNESDAY)).isSameAs(DriverWorkloadService.Workload.EMPTY);
+        assertThat(driverWorkloadService.getWorkload(1, null)).isSameAs(DriverWorkloadService.Workload.EMPTY);
+        verifyNoInteractions(tripDriverRepository);
+    }
+
+    // ==================== onTripAssignmentChanged() Tests ====================
+
+    @Test
+    void onTripAssignmentChanged_shouldMoveTripsBetweenDrivers() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any())).thenReturn(rows(
+                row(1, 100, WEDNESDAY),
+                row(1, 101, WEDNESDAY)
+        ));
+        driverWorkloadService.rebuild();
+
+        // Trip 100 bị hủy gán, trip 101 chuyển sang tài xế 2
+        when(tripDriverRepository.findWorkloadRowsByTripIdIn(anyCollection())).thenReturn(rows(row(2, 101, WEDNESDAY)));
+        driverWorkloadService.onTripAssignmentChanged(
+                new TripAssignmentChangedEvent(List.of(100, 101), AssignmentAction.REASSIGN));
+
+        assertThat(driverWorkloadService.getWorkload(1, WEDNESDAY)).isSameAs(DriverWorkloadService.Workload.EMPTY);
+        assertThat(driverWorkloadService.getWorkload(2, WEDNESDAY).getTripsToday()).isEqualTo(1);
+        verify(tripDriverRepository, times(1)).findWorkloadRowsFrom(any());
+    }
+
+    @Test
+    void onTripAssignmentChanged_beforeLedgerLoaded_shouldSkipQuery() {
+        driverWorkloadService.onTripAssignmentChanged(
+                new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+
+        verify(tripDriverRepository, never()).findWorkloadRowsByTripIdIn(anyCollection());
+    }
+
+    @Test
+    void onTripAssignmentChanged_whenRefreshFails_shouldReloadOnNextLookup() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any()))
+                .thenReturn(rows(row(1, 100, WEDNESDAY)))
+                .thenReturn(rows(row(1, 100, WEDNESDAY), row(1, 101, WEDNESDAY)));
+        driverWorkloadService.rebuild();
+        when(tripDriverRepository.findWorkloadRowsByTripIdIn(anyCollection())).thenThrow(new RuntimeException("db down"));
+
+        driverWorkloadService.onTripAssignmentChanged(
+                new TripAssignmentChangedEvent(List.of(101), AssignmentAction.ASSIGN));
+
+        assertThat(driverWorkloadService.getWorkload(1, WEDNESDAY).getTripsToday()).isEqualTo(2);
+        verify(tripDriverRepository, times(2)).findWorkloadRowsFrom(any());
+    }
+
+    // ==================== onBookingScheduleChanged() Tests ====================
+
+    @Test
+    void onBookingScheduleChanged_shouldMoveTripsToNewDayAndDropRemovedTrips() {
+        Object[] removed = row(1, 101, WEDNESDAY);
+        removed[3] = 1100;
+        when(tripDriverRepository.findWorkloadRowsFrom(any())).thenReturn(rows(row(1, 100, WEDNESDAY), removed));
+        driverWorkloadService.rebuild();
+
+        // Đơn 1100 dời sang thứ 5, trip 101 bị xóa khỏi đơn
+        when(tripDriverRepository.findWorkloadRowsByBookingIdIn(List.of(1100)))
+                .thenReturn(rows(row(1, 100, WEDNESDAY.plusDays(1))));
+        driverWorkloadService.onBookingScheduleChanged(new BookingScheduleChangedEvent(List.of(1100)));
+
+        assertThat(driverWorkloadService.getWorkload(1, WEDNESDAY).getTripsToday()).isZero();
+        assertThat(driverWorkloadService.getWorkload(1, WEDNESDAY.plusDays(1)).getTripsToday()).isEqualTo(1);
+        verify(tripDriverRepository, times(1)).findWorkloadRowsFrom(any());
+    }
+
+    // ==================== rebuild() / verifyAndRepair() Tests ====================
+
+    @Test
+    void verifyAndRepair_whenTripChangedDuringRebuild_shouldKeepEventUpdate() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any()))
+                .thenReturn(rows(row(1, 100, WEDNESDAY)))
+                // Trip 101 được gán sau khi bản dựng lại đã đọc trip_drivers
+                .thenAnswer(invocation -> {
+                    driverWorkloadService.onTripAssignmentChanged(
+                            new TripAssignmentChangedEvent(List.of(101), AssignmentAction.ASSIGN));
+                    return rows(row(1, 100, WEDNESDAY));
+                });
+        driverWorkloadService.rebuild();
+        when(tripDriverRepository.findWorkloadRowsByTripIdIn(anyCollection())).thenReturn(rows(row(1, 101, WEDNESDAY)));
+
+        int mismatched = driverWorkloadService.verifyAndRepair();
+
+        assertThat(mismatched).isZero();
+        assertThat(driverWorkloadService.getWorkload(1, WEDNESDAY).getTripsToday()).isEqualTo(2);
+    }
+
+    @Test
+    void verifyAndRepair_whenLedgerDrifted_shouldReportAndReplace() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any()))
+                .thenReturn(rows(row(1, 100, WEDNESDAY), row(2, 101, WEDNESDAY)))
+                // DB đã thay đổi mà không có sự kiện: trip 101 chuyển sang tài xế 3
+                .thenReturn(rows(row(1, 100, WEDNESDAY), row(3, 101, WEDNESDAY)));
+        driverWorkloadService.rebuild();
+
+        int mismatched = driverWorkloadService.verifyAndRepair();
+
+        assertThat(mismatched).isEqualTo(2);
+        assertThat(driverWorkloadService.getWorkload(2, WEDNESDAY)).isSameAs(DriverWorkloadService.Workload.EMPTY);
+        assertThat(driverWorkloadService.getWorkload(3, WEDNESDAY).getTripsToday()).isEqualTo(1);
+    }
+
+    @Test
+    void verifyAndRepair_whenInSync_shouldReportZero() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any())).thenReturn(rows(row(1, 100, WEDNESDAY)));
+        driverWorkloadService.rebuild();
+
+        assertThat(driverWorkloadService.verifyAndRepair()).isZero();
+    }
+
+    @Test
+    void rebuild_whenQueryFails_shouldNotThrow() {
+        when(tripDriverRepository.findWorkloadRowsFrom(any()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(Collections.emptyList());
+
+        driverWorkloadService.rebuild();
+
+        assertThat(driverWorkloadService.getWorkload(1, WEDNESDAY)).isSameAs(DriverWorkloadService.Workload.EMPTY);
+        verify(tripDriverRepository, times(2)).findWorkloadRowsFrom(any());
+    }
+
+    private List<Object[]> rows(Object[]... rows) {
+        return Arrays.asList(rows);
+    }
+
+    private Object[] row(Integer driverId, Integer tripId, LocalDate date) {
+        Instant start = date.atTime(9, 0).atZone(ZoneId.systemDefault()).toInstant();
+        return new Object[]{driverId, tripId, start, tripId + 1000};
+    }
+}
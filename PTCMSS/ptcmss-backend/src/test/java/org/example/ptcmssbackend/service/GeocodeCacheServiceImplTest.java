@@ -0,0 +1,169 @@
+package org.example.ptcmssbackend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
+import org.example.ptcmssbackend.entity.GeocodeCacheEntry;
+import org.example.ptcmssbackend.repository.GeocodeCacheRepository;
+import org.example.ptcmssbackend.service.impl.GeocodeCacheServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GeocodeCacheServiceImplTest {
+
+    @Mock
+    private GeocodeCacheRepository geocodeCacheRepository;
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private GeocodeCacheServiceImpl geocodeCacheService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(geocodeCacheService, "maxEntries", 2);
+        ReflectionTestUtils.setField(geocodeCacheService, "ttlHours", 24L);
+    }
+
+    @Test
+    void normalize_shouldIgnoreCaseAndExtraSpaces() {
+        assertThat(GeocodeCacheServiceImpl.normalize("  Bến xe   MỸ ĐÌNH ")).isEqualTo("bến xe mỹ đình");
+        // Dạng tổ hợp (NFD) và dựng sẵn (NFC) cho cùng khóa
+        assertThat(GeocodeCacheServiceImpl.normalize(Normalizer.normalize("Hà Nội", Normalizer.Form.NFD)))
+                .isEqualTo("hà nội");
+    }
+
+    @Test
+    void get_afterPut_shouldAnswerFromMemoryWithoutDatabase() {
+        when(geocodeCacheRepository.findByQueryKey("hà nội")).thenReturn(Optional.empty());
+
+        geocodeCacheService.put("Hà Nội", List.of(place("Hà Nội")));
+        List<PlaceSuggestion> first = geocodeCacheService.get("hà  nội");
+        List<PlaceSuggestion> second = geocodeCacheService.get("HÀ NỘI");
+
+        assertThat(first).extracting(PlaceSuggestion::getDescription).containsExactly("Hà Nội");
+        assertThat(second).isSameAs(first);
+        // Chỉ một lần đọc DB khi put (upsert), get không chạm DB
+        verify(geocodeCacheRepository, times(1)).findByQueryKey(anyString());
+        ArgumentCaptor<GeocodeCacheEntry> saved = ArgumentCaptor.forClass(GeocodeCacheEntry.class);
+        verify(geocodeCacheRepository).save(saved.capture());
+        assertThat(saved.getValue().getQueryKey()).isEqualTo("hà nội");
+        assertThat(saved.getValue().getPayload()).contains("\"description\":\"Hà Nội\"");
+        assertThat(count("memory", "hit")).isEqualTo(2.0);
+    }
+
+    @Test
+    void get_whenOnlyInDatabase_shouldPromoteToMemory() {
+        GeocodeCacheEntry entry = new GeocodeCacheEntry("hạ long",
+                "[{\"description\":\"Hạ Long\",\"latitude\":20.95,\"longitude\":107.07}]",
+                Instant.now(), Instant.now().plusSeconds(3600));
+        when(geocodeCacheRepository.findByQueryKey("hạ long")).thenReturn(Optional.of(entry));
+
+        List<PlaceSuggestion> fromDb = geocodeCacheService.get("Hạ Long");
+        List<PlaceSuggestion> fromMemory = geocodeCacheService.get("Hạ Long");
+
+        assertThat(fromDb).hasSize(1);
+        assertThat(fromDb.get(0).getLatitude()).isEqualTo(20.95);
+        assertThat(fromMemory).isSameAs(fromDb);
+        verify(geocodeCacheRepository, times(1)).findByQueryKey("hạ long");
+        assertThat(count("database", "hit")).isEqualTo(1.0);
+        assertThat(count("memory", "miss")).isEqualTo(1.0);
+        assertThat(count("memory", "hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void get_whenDatabaseEntryExpired_shouldMiss() {
+        GeocodeCacheEntry entry = new GeocodeCacheEntry("vinh", "[{\"description\":\"Vinh\"}]",
+                Instant.now().minusSeconds(7200), Instant.now().minusSeconds(60));
+        when(geocodeCacheRepository.findByQueryKey("vinh")).thenReturn(Optional.of(entry));
+
+        assertThat(geocodeCacheService.get("Vinh")).isNull();
+        assertThat(count("database", "miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsedBeyondMaxEntries() {
+        when(geocodeCacheRepository.findByQueryKey(anyString())).thenReturn(Optional.empty());
+
+        geocodeCacheService.put("A1", List.of(place("A1")));
+        geocodeCacheService.put("B2", List.of(place("B2")));
+        geocodeCacheService.get("A1"); // A1 vừa dùng, B2 là cũ nhất
+        geocodeCacheService.put("C3", List.of(place("C3")));
+        clearInvocations(geocodeCacheRepository);
+
+        assertThat(geocodeCacheService.get("A1")).isNotNull();
+        assertThat(geocodeCacheService.get("C3")).isNotNull();
+        assertThat(geocodeCacheService.get("B2")).isNull();
+        verify(geocodeCacheRepository, only()).findByQueryKey("b2");
+    }
+
+    @Test
+    void put_shouldSkipEmptyResults() {
+        geocodeCacheService.put("Nơi không tồn tại", List.of());
+
+        verifyNoInteractions(geocodeCacheRepository);
+        verify(geocodeCacheRepository, never()).save(any());
+    }
+
+    @Test
+    void putInMemory_shouldNotWriteDatabase() {
+        geocodeCacheService.putInMemory("Bãi Ch", List.of(place("Bãi Cháy")));
+
+        assertThat(geocodeCacheService.get("bãi ch")).extracting(PlaceSuggestion::getDescription)
+                .containsExactly("Bãi Cháy");
+        verifyNoInteractions(geocodeCacheRepository);
+    }
+
+    @Test
+    void purgeExpired_whenTableOverLimit_shouldRemoveOldestEntries() {
+        ReflectionTestUtils.setField(geocodeCacheService, "maxDbEntries", 3L);
+        GeocodeCacheEntry oldest = new GeocodeCacheEntry("a", "[]", Instant.now().minusSeconds(300), Instant.now().plusSeconds(60));
+        GeocodeCacheEntry older = new GeocodeCacheEntry("b", "[]", Instant.now().minusSeconds(200), Instant.now().plusSeconds(60));
+        when(geocodeCacheRepository.findByExpiresAtBefore(any(), any())).thenReturn(List.of());
+        when(geocodeCacheRepository.count()).thenReturn(5L);
+        when(geocodeCacheRepository.findAllByOrderByCreatedAtAsc(PageRequest.of(0, 2))).thenReturn(List.of(oldest, older));
+
+        geocodeCacheService.purgeExpired();
+
+        verify(geocodeCacheRepository).deleteAll(List.of(oldest, older));
+    }
+
+    @Test
+    void purgeExpired_whenTableWithinLimit_shouldKeepEntries() {
+        ReflectionTestUtils.setField(geocodeCacheService, "maxDbEntries", 3L);
+        when(geocodeCacheRepository.findByExpiresAtBefore(any(), any())).thenReturn(List.of());
+        when(geocodeCacheRepository.count()).thenReturn(3L);
+
+        geocodeCacheService.purgeExpired();
+
+        verify(geocodeCacheRepository, never()).findAllByOrderByCreatedAtAsc(any());
+    }
+
+    private double count(String tier, String result) {
+        return meterRegistry.counter("graphhopper.geocode.cache", "tier", tier, "result", result).count();
+    }
+
+    private static PlaceSuggestion place(String name) {
+        return PlaceSuggestion.builder().description(name).fullAddress(name + ", Việt Nam")
+                .latitude(21.0).longitude(105.8).build();
+    }
+}
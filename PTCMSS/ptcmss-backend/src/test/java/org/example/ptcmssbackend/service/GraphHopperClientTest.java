@@ -0,0 +1,213 @@
+package org.example.ptcmssbackend.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ptcmssbackend.config.GraphHopperProperties;
+import org.example.ptcmssbackend.config.OutboundHttpProperties;
+import org.example.ptcmssbackend.exception.RoutingUnavailableException;
+import org.example.ptcmssbackend.service.impl.CircuitBreaker;
+import org.example.ptcmssbackend.service.impl.GraphHopperClient;
+import org.example.ptcmssbackend.service.impl.GraphHopperServiceImpl;
+import org.example.ptcmssbackend.service.impl.OutboundHttpClient;
+import org.example.ptcmssbackend.service.impl.TripOccupancyServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chạy GraphHopperClient với server HTTP giả lập trên localhost (com.sun.net.httpserver)
+ */
+class GraphHopperClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicReference<String> lastQuery = new AtomicReference<>();
+    private volatile int status = 200;
+    private volatile boolean holdResponse;
+    // Giữ phản hồi của server tới khi test kết thúc (giả lập GraphHopper treo)
+    private final CountDownLatch releaseResponses = new CountDownLatch(1);
+    private final MutableClock clock = new MutableClock();
+    private ExecutorService serverExecutor;
+    private OutboundHttpClient httpClient;
+    private GraphHopperClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/1", exchange -> {
+            hits.incrementAndGet();
+            lastQuery.set(exchange.getRequestURI().getRawQuery());
+            if (holdResponse) {
+                try {
+                    releaseResponses.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "{\"paths\":[{\"distance\":160000,\"time\":9000000}]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        GraphHopperProperties properties = new GraphHopperProperties();
+        properties.setApiKey("test-key");
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/api/1");
+        properties.setReadTimeout(Duration.ofMillis(300));
+        properties.getCircuit().setFailureThreshold(2);
+        properties.getCircuit().setOpenDuration(Duration.ofSeconds(30));
+        httpClient = new OutboundHttpClient(new OutboundHttpProperties(), new SimpleMeterRegistry());
+        client = new GraphHopperClient(properties, httpClient, new SimpleMeterRegistry(), clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseResponses.countDown();
+        httpClient.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void get_shouldSendQueryAndApiKey() {
+        Map<String, Object> response = client.get("/geocode", Map.of("q", "Hạ Long"));
+
+        assertThat(response).containsKey("paths");
+        assertThat(lastQuery.get()).contains("q=H%E1%BA%A1%20Long").contains("key=test-key");
+    }
+
+    @Test
+    void postAsync_shouldSendJsonBodyWithoutBlockingCaller() {
+        Map<String, Object> response = client.postAsync("/route", Map.of("profile", "car")).join();
+
+        assertThat(response).containsKey("paths");
+        assertThat(lastQuery.get()).isEqualTo("key=test-key");
+    }
+
+    @Test
+    void post_whenServerHangs_shouldFailWithReadTimeout() {
+        holdResponse = true;
+
+        // Server không bao giờ trả lời: chỉ timeout của request mới kết thúc được lời gọi
+        assertThatThrownBy(() -> client.post("/route", Map.of("profile", "car")))
+                .isInstanceOf(RoutingUnavailableException.class)
+                .hasCauseInstanceOf(HttpTimeoutException.class);
+    }
+
+    @Test
+    void serverErrors_shouldOpenCircuitAndRejectWithoutCallingServer() {
+        status = 503;
+        assertThatThrownBy(() -> client.post("/route", Map.of())).isInstanceOf(RoutingUnavailableException.class);
+        assertThatThrownBy(() -> client.post("/route", Map.of())).isInstanceOf(RoutingUnavailableException.class);
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThatThrownBy(() -> client.post("/route", Map.of()))
+                .isInstanceOf(RoutingUnavailableException.class)
+                .hasMessage("GraphHopper tạm thời không khả dụng");
+        assertThat(hits.get()).isEqualTo(2);
+    }
+
+    @Test
+    void openCircuit_shouldCloseAfterSuccessfulTrial() {
+        status = 500;
+        assertThatThrownBy(() -> client.post("/route", Map.of())).isInstanceOf(RoutingUnavailableException.class);
+        assertThatThrownBy(() -> client.post("/route", Map.of())).isInstanceOf(RoutingUnavailableException.class);
+
+        status = 200;
+        clock.advance(Duration.ofSeconds(29));
+        assertThatThrownBy(() -> client.post("/route", Map.of())).isInstanceOf(RoutingUnavailableException.class);
+        assertThat(hits.get()).isEqualTo(2);
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(client.post("/route", Map.of())).containsKey("paths");
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void queuedRequest_shouldBeRejectedWhenCircuitOpensBeforeItStarts() {
+        holdResponse = true;
+        GraphHopperProperties properties = new GraphHopperProperties();
+        properties.setApiKey("test-key");
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/api/1");
+        properties.setReadTimeout(Duration.ofMillis(300));
+        properties.getCircuit().setFailureThreshold(1);
+        OutboundHttpProperties outbound = new OutboundHttpProperties();
+        outbound.getHostLimits().put("127.0.0.1", 1);
+        OutboundHttpClient singleSlot = new OutboundHttpClient(outbound, new SimpleMeterRegistry());
+        try {
+            GraphHopperClient limited = new GraphHopperClient(properties, singleSlot, new SimpleMeterRegistry(), clock);
+            CompletableFuture<Map<String, Object>> first = limited.postAsync("/route", Map.of());
+            // Xếp hàng sau request đầu (giới hạn 1 request đồng thời), lúc này circuit vẫn đóng
+            CompletableFuture<Map<String, Object>> queued = limited.postAsync("/route", Map.of());
+
+            // Request đầu timeout -> circuit mở -> request đang chờ bị từ chối khi tới lượt, không gọi server
+            assertThatThrownBy(first::join).hasCauseInstanceOf(RoutingUnavailableException.class);
+            assertThatThrownBy(queued::join)
+                    .hasCauseInstanceOf(RoutingUnavailableException.class)
+                    .hasMessageContaining("GraphHopper tạm thời không khả dụng");
+            assertThat(limited.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThat(hits.get()).isEqualTo(1);
+        } finally {
+            singleSlot.close();
+        }
+    }
+
+    @Test
+    void serverDown_forUncachedAddress_shouldAssumeLongTripInsteadOfZeroKm() {
+        // Cache geocode trống: mọi địa chỉ phải tra qua server
+        GeocodeCacheService geocodeCache = mock(GeocodeCacheService.class);
+        when(geocodeCache.get(anyString())).thenReturn(null);
+        GraphHopperService graphHopperService = new GraphHopperServiceImpl(client, geocodeCache,
+                mock(RouteCacheService.class), mock(RouteEstimateService.class));
+        TripOccupancyServiceImpl occupancy = new TripOccupancyServiceImpl(mock(SystemSettingService.class), graphHopperService);
+        server.stop(0);
+
+        // Geocode lỗi vì mất kết nối, không phải "không tìm thấy địa chỉ"
+        assertThatThrownBy(() -> graphHopperService.calculateDistance("Hà Nội", "Bãi Cháy"))
+                .isInstanceOf(RoutingUnavailableException.class);
+        // Không tính được quãng đường: giả định 300km (5h ở 60km/h) + 10 phút buffer thay vì 0km
+        Instant start = Instant.parse("2025-12-04T01:00:00Z");
+        assertThat(occupancy.computeBusyUntil("ONE_WAY", start, null, null, "Hà Nội", "Bãi Cháy"))
+                .isEqualTo(start.plus(Duration.ofMinutes(310)));
+    }
+
+    @Test
+    void clientErrors_shouldNotOpenCircuit() {
+        status = 400;
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> client.get("/geocode", Map.of("q", "?")))
+                    .isInstanceOf(HttpClientErrorException.class);
+        }
+
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(hits.get()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceMatrixResult;
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
+import org.example.ptcmssbackend.dto.response.GraphHopper.PlaceSuggestion;
+import org.example.ptcmssbackend.exception.RoutingUnavailableException;
+import org.example.ptcmssbackend.service.impl.GraphHopperClient;
+import org.example.ptcmssbackend.service.impl.GraphHopperServiceImpl;
+import org.example.ptcmssbackend.service.impl.RouteCacheServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GraphHopperServiceImplTest {
+
+    @Mock
+    private GraphHopperClient graphHopperClient;
+    @Mock
+    private GeocodeCacheService geocodeCacheService;
+    @Mock
+    private RouteCacheService routeCacheService;
+    @Mock
+    private RouteEstimateService routeEstimateService;
+
+    @InjectMocks
+    private GraphHopperServiceImpl graphHopperService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(graphHopperService, "matrixMaxOrigins", 5);
+        ReflectionTestUtils.setField(graphHopperService, "matrixMaxDestinations", 5);
+    }
+
+    @Test
+    void calculateMatrix_shouldChunkMissingCellsAndFillRouteCache() {
+        List<String> vehicles = List.of("Xe 1", "Xe 2", "Xe 3", "Xe 4", "Xe 5", "Xe 6", "Xe 7");
+        for (int i = 0; i < vehicles.size(); i++) {
+            geocode(vehicles.get(i), 21.0 + i * 0.01, 105.8);
+        }
+        geocode("Điểm đón", 20.95, 107.07);
+        when(routeCacheService.findFresh(anyCollection())).thenReturn(Map.of());
+        when(graphHopperClient.postAsync(eq("/matrix"), any()))
+                .thenReturn(matrix(5))
+                .thenReturn(matrix(2));
+
+        DistanceMatrixResult result = graphHopperService.calculateMatrix(vehicles, List.of("Điểm đón"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> bodies = ArgumentCaptor.forClass(Map.class);
+        verify(graphHopperClient, times(2)).postAsync(eq("/matrix"), bodies.capture());
+        assertThat(bodies.getAllValues()).extracting(body -> ((List<?>) body.get("from_points")).size())
+                .containsExactly(5, 2);
+        assertThat(bodies.getValue().get("to_points")).isEqualTo(List.of(List.of(107.07, 20.95)));
+        assertThat(result.getDistancesKm()).hasSize(7).allMatch(row -> row.size() == 1);
+        assertThat(result.getDistancesKm().get(0).get(0)).isEqualTo(150.0);
+        assertThat(result.getDurationsMinutes().get(6).get(0)).isEqualTo(120.0);
+        assertThat(result.getEstimated()).isFalse();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RouteCacheService.RouteEntry>> stored = ArgumentCaptor.forClass(List.class);
+        verify(routeCacheService, times(2)).putAll(eq("car"), stored.capture());
+        assertThat(stored.getAllValues()).extracting(List::size).containsExactly(5, 2);
+    }
+
+    @Test
+    void calculateMatrix_whenAllCellsCached_shouldNotCallApi() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        geocode("Hạ Long", 20.9511, 107.0734);
+        String key = RouteCacheServiceImpl.routeKey(21.0285, 105.8542, 20.9511, 107.0734, "car");
+        when(routeCacheService.findFresh(List.of(key)))
+                .thenReturn(Map.of(key, new RouteCacheService.RouteLeg(160.0, 150.0)));
+
+        DistanceMatrixResult result = graphHopperService.calculateMatrix(List.of("Hà Nội", "Hà Nội"), List.of("Hạ Long"));
+
+        assertThat(result.getDistancesKm()).containsExactly(List.of(160.0), List.of(160.0));
+        verify(graphHopperClient, never()).postAsync(anyString(), any());
+        verify(routeCacheService, never()).putAll(anyString(), anyList());
+    }
+
+    @Test
+    void calculateMatrix_whenAddressCannotBeGeocoded_shouldLeaveCellsEmpty() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        when(geocodeCacheService.get("Không rõ")).thenReturn(List.of());
+        when(routeCacheService.findFresh(anyCollection())).thenReturn(Map.of());
+
+        DistanceMatrixResult result = graphHopperService.calculateMatrix(List.of("Hà Nội"), List.of("Không rõ"));
+
+        assertThat(result.getDistancesKm()).containsExactly(Arrays.asList((Double) null));
+        verify(graphHopperClient, never()).postAsync(anyString(), any());
+    }
+
+    @Test
+    void calculateMatrix_whenApiUnavailable_shouldServeStaleRoutesThenEstimate() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        geocode("Hạ Long", 20.9511, 107.0734);
+        String key = RouteCacheServiceImpl.routeKey(21.0285, 105.8542, 20.9511, 107.0734, "car");
+        when(routeCacheService.findFresh(anyCollection())).thenReturn(Map.of());
+        when(routeCacheService.findFallback(List.of(key)))
+                .thenReturn(Map.of(key, new RouteCacheService.RouteLeg(158.0, 145.0)))
+                .thenReturn(Map.of());
+        when(routeEstimateService.estimate(21.0285, 105.8542, 20.9511, 107.0734))
+                .thenReturn(new RouteCacheService.RouteLeg(165.0, 190.0));
+        when(graphHopperClient.postAsync(eq("/matrix"), any()))
+                .thenAnswer(invocation -> CompletableFuture.failedFuture(new RoutingUnavailableException("GraphHopper không phản hồi")));
+
+        DistanceMatrixResult stale = graphHopperService.calculateMatrix(List.of("Hà Nội"), List.of("Hạ Long"));
+        DistanceMatrixResult estimated = graphHopperService.calculateMatrix(List.of("Hà Nội"), List.of("Hạ Long"));
+
+        assertThat(stale.getDistancesKm().get(0).get(0)).isEqualTo(158.0);
+        assertThat(stale.getEstimated()).isFalse();
+        assertThat(estimated.getDistancesKm().get(0).get(0)).isEqualTo(165.0);
+        assertThat(estimated.getEstimated()).isTrue();
+        verify(routeCacheService, never()).putAll(anyString(), anyList());
+    }
+
+    @Test
+    void calculateMatrix_whenApiRejectsRequest_shouldThrow() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        geocode("Hạ Long", 20.9511, 107.0734);
+        when(routeCacheService.findFresh(anyCollection())).thenReturn(Map.of());
+        when(routeCacheService.findFallback(anyCollection())).thenReturn(Map.of());
+        when(graphHopperClient.postAsync(eq("/matrix"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new HttpClientErrorException(HttpStatus.BAD_REQUEST)));
+
+        assertThatThrownBy(() -> graphHopperService.calculateMatrix(List.of("Hà Nội"), List.of("Hạ Long")))
+                .hasMessageStartingWith("Lỗi khi tính ma trận khoảng cách");
+        verifyNoInteractions(routeEstimateService);
+    }
+
+    @Test
+    void calculateMatrix_shouldRejectEmptyInput() {
+        assertThatThrownBy(() -> graphHopperService.calculateMatrix(List.of(), List.of("Hạ Long")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void calculateDistance_whenProviderUnavailable_shouldEstimate() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        geocode("Hạ Long", 20.9511, 107.0734);
+        loadThroughRouteCache();
+        when(graphHopperClient.post(eq("/route"), any()))
+                .thenThrow(new RoutingUnavailableException("GraphHopper tạm thời không khả dụng"));
+        when(routeEstimateService.estimate(21.0285, 105.8542, 20.9511, 107.0734))
+                .thenReturn(new RouteCacheService.RouteLeg(165.0, 190.0));
+
+        DistanceResult result = graphHopperService.calculateDistance("Hà Nội", "Hạ Long");
+
+        assertThat(result.getDistanceKm()).isEqualTo(165.0);
+        assertThat(result.getDurationMinutes()).isEqualTo(190.0);
+        assertThat(result.getEstimated()).isTrue();
+    }
+
+    @Test
+    void calculateDistance_whenRouteApiAnswers_shouldNotEstimate() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        geocode("Hạ Long", 20.9511, 107.0734);
+        loadThroughRouteCache();
+        when(graphHopperClient.post(eq("/route"), any()))
+                .thenReturn(Map.of("paths", List.of(Map.of("distance", 160000, "time", 9000000))));
+
+        DistanceResult result = graphHopperService.calculateDistance("Hà Nội", "Hạ Long");
+
+        assertThat(result.getDistanceKm()).isEqualTo(160.0);
+        assertThat(result.getDurationMinutes()).isEqualTo(150.0);
+        assertThat(result.getEstimated()).isFalse();
+        verifyNoInteractions(routeEstimateService);
+    }
+
+    @Test
+    void calculateDistance_whenGeocodingUnavailable_shouldFailAsUnavailable() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        when(geocodeCacheService.get("Bãi Cháy")).thenReturn(null);
+        when(graphHopperClient.get(eq("/geocode"), any()))
+                .thenThrow(new RoutingUnavailableException("GraphHopper tạm thời không khả dụng"));
+
+        // Địa chỉ chưa có trong cache: không được coi là "không tìm thấy địa chỉ"
+        assertThatThrownBy(() -> graphHopperService.calculateDistance("Hà Nội", "Bãi Cháy"))
+                .isInstanceOf(RoutingUnavailableException.class);
+        verify(geocodeCacheService, never()).put(anyString(), anyList());
+    }
+
+    @Test
+    void autocompletePlaces_whenResponseCannotBeRead_shouldFailAsUnavailable() {
+        when(geocodeCacheService.get("Hạ Long")).thenReturn(null);
+        when(graphHopperClient.get(eq("/geocode"), any())).thenReturn(Map.of("hits", "không phải danh sách"));
+
+        assertThatThrownBy(() -> graphHopperService.autocompletePlaces("Hạ Long"))
+                .isInstanceOf(RoutingUnavailableException.class)
+                .hasMessageStartingWith("Lỗi khi tra địa chỉ");
+    }
+
+    @Test
+    void autocompletePlaces_shouldCacheSuggestionsInMemoryOnly() {
+        when(geocodeCacheService.get("Bãi Ch")).thenReturn(null);
+        when(graphHopperClient.get(eq("/geocode"), any())).thenReturn(geocodeHits("Bãi Cháy", 20.9511, 107.0734));
+
+        List<PlaceSuggestion> places = graphHopperService.autocompletePlaces("Bãi Ch");
+
+        assertThat(places).extracting(PlaceSuggestion::getDescription).containsExactly("Bãi Cháy");
+        verify(geocodeCacheService).putInMemory("Bãi Ch", places);
+        verify(geocodeCacheService, never()).put(anyString(), anyList());
+    }
+
+    @Test
+    void calculateDistance_shouldPersistGeocodedAddresses() {
+        geocode("Hà Nội", 21.0285, 105.8542);
+        when(geocodeCacheService.get("Bãi Cháy")).thenReturn(null);
+        when(graphHopperClient.get(eq("/geocode"), any())).thenReturn(geocodeHits("Bãi Cháy", 20.9511, 107.0734));
+        loadThroughRouteCache();
+        when(graphHopperClient.post(eq("/route"), any()))
+                .thenReturn(Map.of("paths", List.of(Map.of("distance", 160000, "time", 9000000))));
+
+        graphHopperService.calculateDistance("Hà Nội", "Bãi Cháy");
+
+        verify(geocodeCacheService).put(eq("Bãi Cháy"), anyList());
+        verify(geocodeCacheService, never()).putInMemory(anyString(), anyList());
+    }
+
+    private static Map<String, Object> geocodeHits(String name, double lat, double lng) {
+        return Map.of("hits", List.of(Map.of("name", name, "point", Map.of("lat", lat, "lng", lng))));
+    }
+
+    private void loadThroughRouteCache() {
+        when(routeCacheService.getOrFetch(eq(21.0285), eq(105.8542), eq(20.9511), eq(107.0734), eq("car"), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<RouteCacheService.RouteLeg>>getArgument(5).get());
+    }
+
+    private void geocode(String address, double lat, double lng) {
+        when(geocodeCacheService.get(address)).thenReturn(List.of(PlaceSuggestion.builder()
+                .description(address).fullAddress(address).latitude(lat).longitude(lng).build()));
+    }
+
+    private static CompletableFuture<Map<String, Object>> matrix(int rows) {
+        return CompletableFuture.completedFuture(Map.of(
+                "distances", Collections.nCopies(rows, List.of(150000)),
+                "times", Collections.nCopies(rows, List.of(7200))));
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.HostConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HostConcurrencyLimiterTest {
+
+    private final HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(2, 2, Duration.ofSeconds(30));
+
+    @Test
+    void submit_beyondLimit_shouldQueueAndStartInOrderWhenSlotsFree() {
+        List<CompletableFuture<String>> upstream = new ArrayList<>();
+        List<Integer> started = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            results.add(limiter.submit(() -> {
+                started.add(index);
+                CompletableFuture<String> call = new CompletableFuture<>();
+                upstream.add(call);
+                return call;
+            }));
+        }
+
+        assertThat(started).containsExactly(0, 1);
+        assertThat(limiter.getActive()).isEqualTo(2);
+        assertThat(limiter.getQueued()).isEqualTo(2);
+
+        upstream.get(1).complete("b");
+        assertThat(started).containsExactly(0, 1, 2);
+        assertThat(results.get(1)).isCompletedWithValue("b");
+
+        upstream.get(0).completeExceptionally(new IllegalStateException("timeout"));
+        assertThat(started).containsExactly(0, 1, 2, 3);
+        assertThat(results.get(0)).isCompletedExceptionally();
+
+        upstream.get(2).complete("c");
+        upstream.get(3).complete("d");
+        assertThat(limiter.getActive()).isZero();
+        assertThat(limiter.getQueued()).isZero();
+        assertThat(results.get(3)).isCompletedWithValue("d");
+    }
+
+    @Test
+    void submit_whenQueueIsFull_shouldRejectImmediately() {
+        for (int i = 0; i < 4; i++) {
+            limiter.submit(CompletableFuture::new);
+        }
+
+        CompletableFuture<String> rejected = limiter.submit(() -> CompletableFuture.completedFuture("x"));
+
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(limiter.getQueued()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_whenWaitingTooLong_shouldFailAndNeverStart() throws Exception {
+        HostConcurrencyLimiter shortWait = new HostConcurrencyLimiter(1, 10, Duration.ofMillis(50));
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        shortWait.submit(() -> upstream);
+        AtomicBoolean started = new AtomicBoolean();
+
+        CompletableFuture<String> queued = shortWait.submit(() -> {
+            started.set(true);
+            return CompletableFuture.completedFuture("late");
+        });
+
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(shortWait.getQueued()).isZero();
+        upstream.complete("a");
+        assertThat(started).isFalse();
+        assertThat(shortWait.getActive()).isZero();
+    }
+
+    @Test
+    void submit_whenTaskThrowsSynchronously_shouldReleaseSlot() {
+        CompletableFuture<String> failed = limiter.submit(() -> {
+            throw new IllegalArgumentException("URI không hợp lệ");
+        });
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(limiter.getActive()).isZero();
+        assertThat(limiter.submit(() -> CompletableFuture.completedFuture("ok"))).isCompletedWithValue("ok");
+    }
+}
@@ -55,6 +55,10 @@ class InvoiceServiceImplTest {
     private TripRepository tripRepository;
     @Mock
     private TripDriverRepository tripDriverRepository;
+    @Mock
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
+    @Mock
+    private SearchIndexService searchIndexService;
 
     @InjectMocks
     private InvoiceServiceImpl invoiceService;
@@ -289,6 +293,8 @@ class InvoiceServiceImplTest {
         assertThat(response).isNotNull();
         assertThat(payment.getConfirmationStatus()).isEqualTo(PaymentConfirmationStatus.CONFIRMED);
         verify(paymentHistoryRepository).save(payment);
+        // Không có đơn -> không cần tính lại lưới khả dụng
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -1102,6 +1108,36 @@ class InvoiceServiceImplTest {
         assertThat(count).isEqualTo(5L);
     }
 
+    // ==================== scrollInvoices() Tests ====================
+
+    @Test
+    void scrollInvoices_withKeyword_shouldFilterInQueryAndCountOnlyWhenAsked() {
+        // Given
+        Invoices invoice = createTestInvoice(10, "INV-HN-2025-0010", PaymentStatus.UNPAID);
+        when(searchIndexService.match("ORD-12"))
+                .thenReturn(new SearchIndexService.KeywordMatch(null, List.of("n:ord%", "n:12%"), null));
+        when(invoiceRepository.scrollInvoicesWithFilters(isNull(), eq(InvoiceType.INCOME), isNull(), isNull(), isNull(),
+                isNull(), isNull(), eq(true), eq("%ord-12%"), eq(12), eq("n:ord%"), eq("n:12%"), isNull(), isNull(),
+                isNull(), isNull(), any()))
+                .thenReturn(List.of(invoice));
+        when(invoiceRepository.countInvoicesWithFilters(isNull(), eq(InvoiceType.INCOME), isNull(), isNull(), isNull(),
+                isNull(), isNull(), eq(true), eq("%ord-12%"), eq(12), eq("n:ord%"), eq("n:12%"), isNull(), isNull()))
+                .thenReturn(1L);
+        when(paymentHistoryRepository.sumConfirmedByInvoiceId(10)).thenReturn(BigDecimal.ZERO);
+        when(invoiceRepository.findById(10)).thenReturn(Optional.of(invoice));
+
+        // When
+        var result = invoiceService.scrollInvoices(null, "income", null, null, null, null, null, "ORD-12",
+                null, 20, true);
+
+        // Then
+        assertThat(result.getItems()).hasSize(1);
+        assertThat(result.isHasMore()).isFalse();
+        assertThat(result.getNextCursor()).isNull();
+        assertThat(result.getTotalElements()).isEqualTo(1L);
+        verify(invoiceRepository, never()).findInvoicesWithFilters(any(), any(), any(), any(), any(), any(), any());
+    }
+
     // ==================== Helper Methods ====================
 
     private Invoices createTestInvoice(Integer id, String invoiceNumber, PaymentStatus paymentStatus) {
@@ -0,0 +1,185 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.MinCostMatching;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MinCostMatchingTest {
+
+    @Test
+    void solve_shouldFindOptimalAssignmentOnSquareMatrix() {
+        long[][] cost = {
+                {4, 1, 3},
+                {2, 0, 5},
+                {3, 2, 2}
+        };
+
+        int[] result = MinCostMatching.solve(cost);
+
+        // 1 + 2 + 2 = 5 là tổng nhỏ nhất
+        assertThat(result).containsExactly(1, 0, 2);
+    }
+
+    @Test
+    void solve_whenMoreRowsThanColumns_shouldLeaveExtraRowsUnassigned() {
+        long[][] cost = {
+                {5, 9},
+                {1, 7},
+                {8, 2}
+        };
+
+        int[] result = MinCostMatching.solve(cost);
+
+        assertThat(result).containsExactly(-1, 0, 1);
+    }
+
+    @Test
+    void solve_shouldNeverReturnForbiddenPairs() {
+        long F = MinCostMatching.FORBIDDEN;
+        long[][] cost = {
+                {F, F, F},
+                {3, F, F},
+                {1, F, 2}
+        };
+
+        int[] result = MinCostMatching.solve(cost);
+
+        assertThat(result[0]).isEqualTo(-1);
+        // Ưu tiên ghép được nhiều cặp hợp lệ nhất: hàng 1 -> cột 0, hàng 2 -> cột 2
+        assertThat(result[1]).isEqualTo(0);
+        assertThat(result[2]).isEqualTo(2);
+    }
+
+    @Test
+    void solve_shouldMatchBruteForceOnRandomMatrices() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int rows = 1 + random.nextInt(5);
+            int cols = 1 + random.nextInt(5);
+            long[][] cost = new long[rows][cols];
+            for (long[] row : cost) {
+                for (int c = 0; c < cols; c++) {
+                    row[c] = random.nextInt(10) == 0 ? MinCostMatching.FORBIDDEN : random.nextInt(100);
+                }
+            }
+
+            int[] result = MinCostMatching.solve(cost);
+
+            long[] best = bruteForce(cost);
+            assertThat(matchedCount(result)).isEqualTo(best[0]);
+            assertThat(totalCost(cost, result)).isEqualTo(best[1]);
+            assertThat(Arrays.stream(result).filter(c -> c >= 0).distinct().count()).isEqualTo(matchedCount(result));
+        }
+    }
+
+    @Test
+    void solve_shouldMatchBruteForceOnTallMatrices() {
+        // Cùng dạng với ma trận điều phối trong ngày: nhiều tài xế hơn chuyến
+        Random random = new Random(11);
+        for (int round = 0; round < 30; round++) {
+            int rows = 6 + random.nextInt(3);
+            int cols = 2 + random.nextInt(3);
+            long[][] cost = randomMatrix(random, rows, cols);
+
+            int[] result = MinCostMatching.solve(cost);
+
+            long[] best = bruteForce(cost);
+            assertThat(matchedCount(result)).isEqualTo(best[0]);
+            assertThat(totalCost(cost, result)).isEqualTo(best[1]);
+        }
+    }
+
+    @Test
+    void solve_onDayScaleMatrix_shouldMatchEveryColumnWithoutImprovingSwap() {
+        long[][] cost = randomMatrix(new Random(7), 300, 100);
+
+        int[] result = MinCostMatching.solve(cost);
+
+        assertThat(matchedCount(result)).isEqualTo(100);
+        assertThat(Arrays.stream(result).filter(c -> c >= 0).distinct().count()).isEqualTo(100);
+        // Điều kiện cần của nghiệm tối ưu: không đổi chéo hai cặp hay thay một hàng chưa ghép nào làm giảm chi phí
+        for (int r1 = 0; r1 < result.length; r1++) {
+            for (int r2 = 0; r2 < result.length; r2++) {
+                int c2 = result[r2];
+                if (r1 == r2 || c2 < 0) continue;
+                int c1 = result[r1];
+                if (c1 < 0) {
+                    assertThat(cost[r1][c2]).isGreaterThanOrEqualTo(cost[r2][c2]);
+                } else {
+                    assertThat(cost[r1][c2] + cost[r2][c1]).isGreaterThanOrEqualTo(cost[r1][c1] + cost[r2][c2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Đo thời gian với ma trận cỡ một ngày điều phối; chạy bằng mvn test -Pbenchmark
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_dayScaleMatrixShouldSolveQuickly() {
+        long[][] cost = randomMatrix(new Random(7), 300, 100);
+
+        long started = System.nanoTime();
+        int[] result = MinCostMatching.solve(cost);
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertThat(matchedCount(result)).isEqualTo(100);
+        assertThat(elapsedMs).isLessThan(2000);
+    }
+
+    // ==================== Helper Methods ====================
+
+    private long[][] randomMatrix(Random random, int rows, int cols) {
+        long[][] cost = new long[rows][cols];
+        for (long[] row : cost) {
+            for (int c = 0; c < cols; c++) {
+                row[c] = random.nextInt(5) == 0 ? MinCostMatching.FORBIDDEN : random.nextInt(1000);
+            }
+        }
+        return cost;
+    }
+
+    private long matchedCount(int[] result) {
+        return Arrays.stream(result).filter(c -> c >= 0).count();
+    }
+
+    private long totalCost(long[][] cost, int[] result) {
+        long sum = 0;
+        for (int r = 0; r < result.length; r++) {
+            if (result[r] >= 0) sum += cost[r][result[r]];
+        }
+        return sum;
+    }
+
+    /**
+     * {số cặp hợp lệ lớn nhất, chi phí nhỏ nhất với số cặp đó}
+     */
+    private long[] bruteForce(long[][] cost) {
+        long[] best = {-1, Long.MAX_VALUE};
+        search(cost, 0, new boolean[cost[0].length], 0, 0, best);
+        return best;
+    }
+
+    private void search(long[][] cost, int row, boolean[] usedCols, long matched, long sum, long[] best) {
+        if (row == cost.length) {
+            if (matched > best[0] || (matched == best[0] && sum < best[1])) {
+                best[0] = matched;
+                best[1] = sum;
+            }
+            return;
+        }
+        search(cost, row + 1, usedCols, matched, sum, best);
+        for (int c = 0; c < usedCols.length; c++) {
+            if (usedCols[c] || cost[row][c] >= MinCostMatching.FORBIDDEN) continue;
+            usedCols[c] = true;
+            search(cost, row + 1, usedCols, matched + 1, sum + cost[row][c], best);
+            usedCols[c] = false;
+        }
+    }
+}
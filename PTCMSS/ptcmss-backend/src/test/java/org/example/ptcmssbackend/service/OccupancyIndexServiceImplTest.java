@@ -0,0 +1,301 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.*;
+import org.example.ptcmssbackend.enums.AssignmentAction;
+import org.example.ptcmssbackend.enums.TripStatus;
+import org.example.ptcmssbackend.event.BookingScheduleChangedEvent;
+import org.example.ptcmssbackend.event.TripAssignmentChangedEvent;
+import org.example.ptcmssbackend.repository.TripDriverRepository;
+import org.example.ptcmssbackend.repository.TripRepository;
+import org.example.ptcmssbackend.repository.TripVehicleRepository;
+import org.example.ptcmssbackend.service.impl.OccupancyIndexServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyIndexServiceImplTest {
+
+    private static final Integer BRANCH_ID = 1;
+    private static final Instant BASE = Instant.parse("2025-12-04T00:00:00Z");
+
+    @Mock
+    private TripDriverRepository tripDriverRepository;
+    @Mock
+    private TripVehicleRepository tripVehicleRepository;
+    @Mock
+    private TripRepository tripRepository;
+    @Mock
+    private TripOccupancyService tripOccupancyService;
+
+    @InjectMocks
+    private OccupancyIndexServiceImpl occupancyIndexService;
+
+    // ==================== findDriverOverlaps() Tests ====================
+
+    @Test
+    void findDriverOverlaps_shouldReturnOnlyIntersectingTrips() {
+        Drivers driver = createDriver(5);
+        Trips morning = createTrip(100, 10, TripStatus.ASSIGNED, hours(8), hours(10));
+        Trips evening = createTrip(101, 11, TripStatus.SCHEDULED, hours(18), hours(20));
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripDriver(morning, driver), createTripDriver(evening, driver)));
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+
+        List<OccupancyIndexService.Slot> result =
+                occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12));
+
+        assertThat(result).extracting(OccupancyIndexService.Slot::getTripId).containsExactly(100);
+        assertThat(result.get(0).getBookingId()).isEqualTo(10);
+    }
+
+    @Test
+    void findDriverOverlaps_whenTouchingBoundary_shouldNotOverlap() {
+        Drivers driver = createDriver(5);
+        Trips trip = createTrip(100, 10, TripStatus.ASSIGNED, hours(8), hours(10));
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripDriver(trip, driver)));
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(10), hours(12))).isEmpty();
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(6), hours(8))).isEmpty();
+    }
+
+    @Test
+    void findDriverOverlaps_shouldFindLongTripStartedEarlier() {
+        Drivers driver = createDriver(5);
+        // Chuyến dài nhiều ngày bắt đầu trước khoảng truy vấn
+        Trips longTrip = createTrip(100, 10, TripStatus.ONGOING, hours(-48), hours(48));
+        Trips shortTrip = createTrip(101, 11, TripStatus.ASSIGNED, hours(-5), hours(-4));
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripDriver(longTrip, driver), createTripDriver(shortTrip, driver)));
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+
+        List<OccupancyIndexService.Slot> result =
+                occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12));
+
+        assertThat(result).extracting(OccupancyIndexService.Slot::getTripId).containsExactly(100);
+    }
+
+    @Test
+    void findDriverOverlaps_shouldLoadBranchOnlyOnce() {
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+
+        occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12));
+        occupancyIndexService.findDriverOverlaps(BRANCH_ID, 6, hours(9), hours(12));
+        occupancyIndexService.findVehicleOverlaps(BRANCH_ID, 7, hours(9), hours(12));
+
+        verify(tripDriverRepository, times(1)).findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection());
+        verify(tripVehicleRepository, times(1)).findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection());
+    }
+
+    @Test
+    void findDriverOverlaps_whenMissingArguments_shouldReturnEmptyWithoutLoading() {
+        assertThat(occupancyIndexService.findDriverOverlaps(null, 5, hours(9), hours(12))).isEmpty();
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, null, hours(12))).isEmpty();
+
+        verifyNoInteractions(tripDriverRepository, tripVehicleRepository);
+    }
+
+    // ==================== findVehicleOverlaps() Tests ====================
+
+    @Test
+    void findVehicleOverlaps_shouldUseBusyUntilInsteadOfEndTime() {
+        Vehicles vehicle = createVehicle(7);
+        Trips trip = createTrip(100, 10, TripStatus.ASSIGNED, hours(8), hours(10));
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripVehicle(trip, vehicle)));
+        // Xe còn bận (quay đầu) tới 13h
+        when(tripOccupancyService.computeBusyUntil(trip))
+                .thenReturn(hours(13));
+
+        List<OccupancyIndexService.Slot> result =
+                occupancyIndexService.findVehicleOverlaps(BRANCH_ID, 7, hours(12), hours(14));
+
+        assertThat(result).extracting(OccupancyIndexService.Slot::getTripId).containsExactly(100);
+    }
+
+    @Test
+    void findVehicleOverlaps_whenTripTimeUnknown_shouldAlwaysBeBusy() {
+        Vehicles vehicle = createVehicle(7);
+        Trips trip = createTrip(100, 10, TripStatus.SCHEDULED, null, null);
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripVehicle(trip, vehicle)));
+
+        List<OccupancyIndexService.Slot> result =
+                occupancyIndexService.findVehicleOverlaps(BRANCH_ID, 7, hours(100), hours(101));
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getStart()).isNull();
+        verifyNoInteractions(tripOccupancyService);
+    }
+
+    // ==================== refreshTrips() Tests ====================
+
+    @Test
+    void onTripAssignmentChanged_whenTripCompleted_shouldRemoveSlot() {
+        Drivers driver = createDriver(5);
+        Trips trip = createTrip(100, 10, TripStatus.ONGOING, hours(8), hours(10));
+        TripDrivers td = createTripDriver(trip, driver);
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(td));
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12))).hasSize(1);
+
+        trip.setStatus(TripStatus.COMPLETED);
+        when(tripDriverRepository.findByTripIdIn(List.of(100))).thenReturn(List.of(td));
+        when(tripVehicleRepository.findByTrip_IdIn(List.of(100))).thenReturn(Collections.emptyList());
+        occupancyIndexService.onTripAssignmentChanged(
+                new TripAssignmentChangedEvent(List.of(100), AssignmentAction.COMPLETE));
+
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12))).isEmpty();
+    }
+
+    @Test
+    void onTripAssignmentChanged_whenTripReassigned_shouldMoveSlotToNewDriver() {
+        Drivers oldDriver = createDriver(5);
+        Drivers newDriver = createDriver(6);
+        Trips trip = createTrip(100, 10, TripStatus.ASSIGNED, hours(8), hours(10));
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripDriver(trip, oldDriver)));
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12))).hasSize(1);
+
+        when(tripDriverRepository.findByTripIdIn(List.of(100))).thenReturn(List.of(createTripDriver(trip, newDriver)));
+        when(tripVehicleRepository.findByTrip_IdIn(List.of(100))).thenReturn(Collections.emptyList());
+        occupancyIndexService.onTripAssignmentChanged(
+                new TripAssignmentChangedEvent(List.of(100), AssignmentAction.REASSIGN));
+
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12))).isEmpty();
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 6, hours(9), hours(12)))
+                .extracting(OccupancyIndexService.Slot::getTripId).containsExactly(100);
+    }
+
+    @Test
+    void refreshTrips_whenNoBranchLoaded_shouldNotQuery() {
+        occupancyIndexService.refreshTrips(List.of(100));
+
+        verifyNoInteractions(tripDriverRepository, tripVehicleRepository);
+    }
+
+    @Test
+    void onTripAssignmentChanged_whenRefreshFails_shouldReloadBranchOnNextQuery() {
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12));
+
+        when(tripDriverRepository.findByTripIdIn(anyCollection())).thenThrow(new RuntimeException("DB down"));
+        occupancyIndexService.onTripAssignmentChanged(
+                new TripAssignmentChangedEvent(List.of(100), AssignmentAction.ASSIGN));
+        occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12));
+
+        verify(tripDriverRepository, times(2)).findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection());
+    }
+
+    @Test
+    void onBookingScheduleChanged_whenTripsRecreated_shouldDropOldSlotsAndAddNewOnes() {
+        Drivers driver = createDriver(5);
+        Trips oldTrip = createTrip(100, 10, TripStatus.ASSIGNED, hours(8), hours(10));
+        when(tripDriverRepository.findByDriverBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(List.of(createTripDriver(oldTrip, driver)));
+        when(tripVehicleRepository.findByVehicleBranchIdAndTripStatusIn(eq(BRANCH_ID), anyCollection()))
+                .thenReturn(Collections.emptyList());
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12))).hasSize(1);
+
+        // Sửa lịch đơn: trip 100 bị xóa, trip 200 được tạo lại ở khung giờ khác và đã gán tài xế
+        Trips newTrip = createTrip(200, 10, TripStatus.ASSIGNED, hours(14), hours(16));
+        when(tripRepository.findByBooking_IdIn(List.of(10))).thenReturn(List.of(newTrip));
+        when(tripDriverRepository.findByTripIdIn(anyList())).thenReturn(List.of(createTripDriver(newTrip, driver)));
+        when(tripVehicleRepository.findByTrip_IdIn(anyList())).thenReturn(Collections.emptyList());
+        occupancyIndexService.onBookingScheduleChanged(new BookingScheduleChangedEvent(List.of(10)));
+
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(9), hours(12))).isEmpty();
+        assertThat(occupancyIndexService.findDriverOverlaps(BRANCH_ID, 5, hours(15), hours(17)))
+                .extracting(OccupancyIndexService.Slot::getTripId).containsExactly(200);
+        verify(tripDriverRepository).findByTripIdIn(argThat(ids -> ids.containsAll(List.of(100, 200))));
+    }
+
+    @Test
+    void refreshBookings_whenNoBranchLoaded_shouldNotQuery() {
+        occupancyIndexService.refreshBookings(List.of(10));
+
+        verifyNoInteractions(tripRepository, tripDriverRepository, tripVehicleRepository);
+    }
+
+    // ==================== Helper Methods ====================
+
+    private Instant hours(int h) {
+        return BASE.plusSeconds(h * 3600L);
+    }
+
+    private Branches createBranch() {
+        Branches branch = new Branches();
+        branch.setId(BRANCH_ID);
+        return branch;
+    }
+
+    private Drivers createDriver(Integer id) {
+        Drivers driver = new Drivers();
+        driver.setId(id);
+        driver.setBranch(createBranch());
+        return driver;
+    }
+
+    private Vehicles createVehicle(Integer id) {
+        Vehicles vehicle = new Vehicles();
+        vehicle.setId(id);
+        vehicle.setBranch(createBranch());
+        return vehicle;
+    }
+
+    private Trips createTrip(Integer id, Integer bookingId, TripStatus status, Instant start, Instant end) {
+        Bookings booking = new Bookings();
+        booking.setId(bookingId);
+        Trips trip = new Trips();
+        trip.setId(id);
+        trip.setBooking(booking);
+        trip.setStatus(status);
+        trip.setStartTime(start);
+        trip.setEndTime(end);
+        return trip;
+    }
+
+    private TripDrivers createTripDriver(Trips trip, Drivers driver) {
+        TripDrivers td = new TripDrivers();
+        td.setId(new TripDriverId());
+        td.setTrip(trip);
+        td.setDriver(driver);
+        return td;
+    }
+
+    private TripVehicles createTripVehicle(Trips trip, Vehicles vehicle) {
+        TripVehicles tv = new TripVehicles();
+        tv.setTrip(trip);
+        tv.setVehicle(vehicle);
+        return tv;
+    }
+}
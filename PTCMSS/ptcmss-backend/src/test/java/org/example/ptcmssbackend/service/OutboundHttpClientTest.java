@@ -0,0 +1,129 @@
+package org.example.ptcmssbackend.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ptcmssbackend.config.OutboundHttpProperties;
+import org.example.ptcmssbackend.service.impl.OutboundHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Chạy OutboundHttpClient với server HTTP giả lập trên localhost (com.sun.net.httpserver)
+ */
+class OutboundHttpClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long delayMillis = 100;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboundHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/fail") ? 503 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        OutboundHttpProperties properties = new OutboundHttpProperties();
+        properties.setHostLimits(Map.of("127.0.0.1", 2));
+        client = new OutboundHttpClient(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void sendAsync_shouldNotExceedPerHostLimit() {
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            responses.add(client.sendAsync("stub.ok", request("/ok")));
+        }
+
+        responses.forEach(response -> assertThat(response.join().statusCode()).isEqualTo(200));
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    @Test
+    void send_fromVirtualThreads_shouldRecordLatencyPerEndpoint() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<HttpResponse<byte[]>>> calls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                calls.add(executor.submit(() -> client.send("stub.ok", request("/ok"))));
+            }
+            calls.add(executor.submit(() -> client.send("stub.fail", request("/fail"))));
+            for (Future<HttpResponse<byte[]>> call : calls) {
+                call.get();
+            }
+        }
+
+        Timer ok = meterRegistry.get("http.outbound.requests")
+                .tags("endpoint", "stub.ok", "host", "127.0.0.1", "outcome", "SUCCESS").timer();
+        assertThat(ok.count()).isEqualTo(3);
+        assertThat(ok.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(300);
+        assertThat(ok.takeSnapshot().percentileValues()).extracting(p -> p.percentile()).containsExactly(0.5, 0.95, 0.99);
+        assertThat(meterRegistry.get("http.outbound.requests")
+                .tags("endpoint", "stub.fail", "outcome", "SERVER_ERROR").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void send_whenServerTooSlow_shouldTimeOut() {
+        delayMillis = 2000;
+
+        assertThatThrownBy(() -> client.send("stub.slow", HttpRequest.newBuilder(uri("/slow"))
+                .timeout(Duration.ofMillis(200)).build()))
+                .isInstanceOf(HttpTimeoutException.class);
+        assertThat(meterRegistry.get("http.outbound.requests")
+                .tags("endpoint", "stub.slow", "outcome", "TIMEOUT").timer().count()).isEqualTo(1);
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(uri(path)).timeout(Duration.ofSeconds(5)).build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+}
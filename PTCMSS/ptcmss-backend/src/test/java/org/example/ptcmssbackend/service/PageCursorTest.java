@@ -0,0 +1,75 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.common.CursorPageResponse;
+import org.example.ptcmssbackend.service.impl.PageCursor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageCursorTest {
+
+    private record Row(Integer id, Instant createdAt) {
+    }
+
+    @Test
+    void encodeDecode_shouldRoundTripPosition() {
+        Instant key = Instant.parse("2025-12-04T02:00:00.123456Z");
+
+        PageCursor.Position position = PageCursor.decode(PageCursor.encode(key, 42));
+        PageCursor.Position nullKey = PageCursor.decode(PageCursor.encode(null, 7));
+
+        assertThat(position).isEqualTo(new PageCursor.Position(key, 42));
+        assertThat(nullKey).isEqualTo(new PageCursor.Position(null, 7));
+        assertThat(PageCursor.decode(null)).isNull();
+        assertThat(PageCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    void decode_whenCursorIsTampered_shouldThrowException() {
+        assertThatThrownBy(() -> PageCursor.decode("không-phải-cursor"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Cursor không hợp lệ");
+    }
+
+    @Test
+    void page_whenExtraRowFetched_shouldTrimAndPointAtLastRow() {
+        Instant t = Instant.parse("2025-12-04T02:00:00Z");
+        List<Row> rows = List.of(new Row(5, t), new Row(4, t), new Row(3, t.minusSeconds(60)));
+
+        CursorPageResponse<Integer> page = PageCursor.page(rows, 2, Row::createdAt, Row::id, Row::id, null);
+
+        assertThat(page.getItems()).containsExactly(5, 4);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(PageCursor.decode(page.getNextCursor())).isEqualTo(new PageCursor.Position(t, 4));
+        assertThat(page.getTotalElements()).isNull();
+    }
+
+    @Test
+    void page_onLastPage_shouldHaveNoCursorAndCountOnlyWhenAsked() {
+        AtomicInteger counts = new AtomicInteger();
+        List<Row> rows = List.of(new Row(2, null));
+
+        CursorPageResponse<Integer> page = PageCursor.page(rows, 2, Row::createdAt, Row::id, Row::id,
+                () -> {
+                    counts.incrementAndGet();
+                    return 11L;
+                });
+
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getTotalElements()).isEqualTo(11L);
+        assertThat(counts).hasValue(1);
+    }
+
+    @Test
+    void normalizeSize_shouldApplyDefaultAndCap() {
+        assertThat(PageCursor.normalizeSize(0)).isEqualTo(PageCursor.DEFAULT_SIZE);
+        assertThat(PageCursor.normalizeSize(10_000)).isEqualTo(PageCursor.MAX_SIZE);
+        assertThat(PageCursor.limit(20).getPageSize()).isEqualTo(21);
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.HireTypes;
+import org.example.ptcmssbackend.entity.SystemSetting;
+import org.example.ptcmssbackend.entity.VehicleCategoryPricing;
+import org.example.ptcmssbackend.enums.SettingStatus;
+import org.example.ptcmssbackend.enums.VehicleCategoryStatus;
+import org.example.ptcmssbackend.event.PricingConfigChangedEvent;
+import org.example.ptcmssbackend.repository.HireTypesRepository;
+import org.example.ptcmssbackend.repository.SystemSettingRepository;
+import org.example.ptcmssbackend.repository.VehicleCategoryPricingRepository;
+import org.example.ptcmssbackend.service.impl.PricingServiceImpl;
+import org.example.ptcmssbackend.service.impl.PricingSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PricingServiceImplTest {
+
+    @Mock
+    private SystemSettingRepository systemSettingRepository;
+    @Mock
+    private HireTypesRepository hireTypesRepository;
+    @Mock
+    private VehicleCategoryPricingRepository vehicleCategoryRepository;
+
+    @InjectMocks
+    private PricingServiceImpl pricingService;
+
+    @Test
+    void getSnapshot_shouldLoadOnceAndUseActiveSettings() {
+        when(systemSettingRepository.findAll()).thenReturn(List.of(
+                setting("ROUND_TRIP_MULTIPLIER", "2", SettingStatus.ACTIVE),
+                setting("HOLIDAY_SURCHARGE_RATE", "0.5", SettingStatus.INACTIVE),
+                setting("WEEKEND_SURCHARGE_RATE", "abc", SettingStatus.ACTIVE)));
+        when(hireTypesRepository.findAll()).thenReturn(List.of(hireType(1, "ROUND_TRIP")));
+        when(vehicleCategoryRepository.findAll()).thenReturn(List.of(category(1, "10000")));
+
+        PricingSnapshot first = pricingService.getSnapshot();
+        PricingSnapshot second = pricingService.getSnapshot();
+
+        assertThat(second).isSameAs(first);
+        verify(vehicleCategoryRepository, times(1)).findAll();
+        // Hệ số khứ hồi 2 từ cài đặt; lễ dùng mặc định 0.25 vì cài đặt INACTIVE; cuối tuần sai định dạng -> 0.20
+        BigDecimal price = first.price(List.of(1), List.of(1), 10.0, false, 1, true, true,
+                java.time.Instant.parse("2025-12-04T02:00:00Z"), java.time.Instant.parse("2025-12-04T03:00:00Z"));
+        assertThat(price).isEqualTo(new BigDecimal("290000.00"));
+    }
+
+    @Test
+    void onPricingConfigChanged_shouldSwapInRebuiltSnapshot() {
+        when(hireTypesRepository.findAll()).thenReturn(List.of(hireType(1, "ONE_WAY")));
+        when(vehicleCategoryRepository.findAll())
+                .thenReturn(List.of(category(1, "10000")))
+                .thenReturn(List.of(category(1, "20000")));
+
+        PricingSnapshot before = pricingService.getSnapshot();
+        pricingService.onPricingConfigChanged(new PricingConfigChangedEvent("vehicle_category_pricing"));
+        PricingSnapshot after = pricingService.getSnapshot();
+
+        assertThat(after).isNotSameAs(before);
+        assertThat(before.price(List.of(1), List.of(1), 10.0, false, 1, false, false, null, null))
+                .isEqualTo(new BigDecimal("100000.00"));
+        assertThat(after.price(List.of(1), List.of(1), 10.0, false, 1, false, false, null, null))
+                .isEqualTo(new BigDecimal("200000.00"));
+    }
+
+    @Test
+    void rebuild_whenLoadFails_shouldKeepPreviousSnapshot() {
+        when(hireTypesRepository.findAll()).thenReturn(List.of(hireType(1, "ONE_WAY")));
+        when(vehicleCategoryRepository.findAll())
+                .thenReturn(List.of(category(1, "10000")))
+                .thenThrow(new RuntimeException("DB down"));
+
+        PricingSnapshot before = pricingService.getSnapshot();
+        pricingService.rebuild();
+
+        assertThat(pricingService.getSnapshot()).isSameAs(before);
+    }
+
+    private static SystemSetting setting(String key, String value, SettingStatus status) {
+        return SystemSetting.builder().settingKey(key).settingValue(value).status(status).build();
+    }
+
+    private static HireTypes hireType(int id, String code) {
+        HireTypes hireType = new HireTypes();
+        hireType.setId(id);
+        hireType.setCode(code);
+        return hireType;
+    }
+
+    private static VehicleCategoryPricing category(int id, String pricePerKm) {
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(id);
+        category.setStatus(VehicleCategoryStatus.ACTIVE);
+        category.setPricePerKm(new BigDecimal(pricePerKm));
+        return category;
+    }
+}
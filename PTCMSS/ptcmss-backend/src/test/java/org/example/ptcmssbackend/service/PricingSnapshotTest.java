@@ -0,0 +1,145 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.HireTypes;
+import org.example.ptcmssbackend.entity.VehicleCategoryPricing;
+import org.example.ptcmssbackend.enums.VehicleCategoryStatus;
+import org.example.ptcmssbackend.service.impl.PricingSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PricingSnapshotTest {
+
+    // 09:00 - 17:00 giờ Việt Nam cùng ngày
+    private static final Instant SAME_DAY_START = Instant.parse("2025-12-04T02:00:00Z");
+    private static final Instant SAME_DAY_END = Instant.parse("2025-12-04T10:00:00Z");
+
+    @Test
+    void price_oneWay_shouldUseDistanceAndBaseFee() {
+        PricingSnapshot snapshot = snapshot(category(1, "10000", "50000"));
+
+        BigDecimal price = snapshot.price(List.of(1), List.of(2), 100.0, false, 1,
+                false, false, SAME_DAY_START, SAME_DAY_END);
+
+        // (100 × 10.000 + 50.000) × 2 xe
+        assertThat(price).isEqualTo(new BigDecimal("2100000.00"));
+    }
+
+    @Test
+    void price_roundTrip_shouldApplyMultiplierOnlyForSameDayTrips() {
+        PricingSnapshot snapshot = snapshot(category(1, "10000", "50000"));
+
+        BigDecimal sameDay = snapshot.price(List.of(1), List.of(1), 100.0, false, 2,
+                false, false, SAME_DAY_START, SAME_DAY_END);
+        BigDecimal multiDay = snapshot.price(List.of(1), List.of(1), 100.0, false, 2,
+                false, false, SAME_DAY_START, SAME_DAY_END.plusSeconds(24 * 3600));
+
+        // Cùng ngày: 100 × 10.000 × 1.5 + 50.000; khác ngày: 2 × 100 × 10.000 + 50.000
+        assertThat(sameDay).isEqualTo(new BigDecimal("1550000.00"));
+        assertThat(multiDay).isEqualTo(new BigDecimal("2050000.00"));
+    }
+
+    @Test
+    void price_daily_shouldUseFixedPriceForShortSingleDayTrips() {
+        VehicleCategoryPricing category = category(1, "10000", "100000");
+        category.setSameDayFixedPrice(new BigDecimal("800000"));
+        PricingSnapshot snapshot = snapshot(category);
+
+        BigDecimal shortTrip = snapshot.price(List.of(1), List.of(1), 8.0, false, 3,
+                false, false, SAME_DAY_START, SAME_DAY_END);
+        BigDecimal twoDays = snapshot.price(List.of(1), List.of(1), 200.0, false, 3,
+                false, false, SAME_DAY_START, SAME_DAY_END.plusSeconds(24 * 3600));
+
+        assertThat(shortTrip).isEqualTo(new BigDecimal("900000.00"));
+        // 200 × 10.000 × 1.5 + 800.000 × 2 + 100.000
+        assertThat(twoDays).isEqualTo(new BigDecimal("4700000.00"));
+    }
+
+    @Test
+    void price_shouldAddHighwayPremiumAndSurcharges() {
+        VehicleCategoryPricing category = category(1, "10000", "50000");
+        category.setHighwayFee(new BigDecimal("100000"));
+        category.setIsPremium(true);
+        category.setPremiumSurcharge(new BigDecimal("50000"));
+        PricingSnapshot snapshot = snapshot(category);
+
+        BigDecimal price = snapshot.price(List.of(1), List.of(1), 100.0, true, 1,
+                true, true, SAME_DAY_START, SAME_DAY_END);
+
+        // (1.000.000 + 50.000 + 100.000 + 50.000) × (1 + 0.25 + 0.20)
+        assertThat(price).isEqualTo(new BigDecimal("1740000.00"));
+    }
+
+    @Test
+    void price_shouldSkipInactiveCategoriesAndRejectUnknownOnes() {
+        VehicleCategoryPricing inactive = category(2, "999999", "999999");
+        inactive.setStatus(VehicleCategoryStatus.INACTIVE);
+        PricingSnapshot snapshot = snapshot(category(1, "10000", "0"), inactive);
+
+        BigDecimal price = snapshot.price(List.of(1, 2), List.of(1, 1), 50.0, false, 1,
+                false, false, null, null);
+
+        assertThat(price).isEqualTo(new BigDecimal("500000.00"));
+        assertThatThrownBy(() -> snapshot.price(List.of(99), List.of(1), 50.0, false, 1,
+                false, false, null, null))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Không tìm thấy loại xe: 99");
+        assertThatThrownBy(() -> snapshot.price(List.of(1), List.of(1), 50.0, false, 42,
+                false, false, null, null))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("HireType not found: 42");
+    }
+
+    @Test
+    void price_whenNoCategories_shouldReturnZero() {
+        PricingSnapshot snapshot = snapshot(category(1, "10000", "0"));
+
+        assertThat(snapshot.price(List.of(), List.of(), 10.0, false, 1, false, false, null, null))
+                .isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void isSameDayTrip_shouldRespectConfiguredHours() {
+        PricingSnapshot snapshot = new PricingSnapshot(new BigDecimal("0.25"), new BigDecimal("0.20"),
+                new BigDecimal("1.5"), 10, 6, 20, List.of(), List.of());
+
+        // 09:00 - 17:00 nằm trong khung 06:00 - 20:59
+        assertThat(snapshot.isSameDayTrip(SAME_DAY_START, SAME_DAY_END)).isTrue();
+        // Về lúc 22:00 giờ Việt Nam
+        assertThat(snapshot.isSameDayTrip(SAME_DAY_START, Instant.parse("2025-12-04T15:00:00Z"))).isFalse();
+        assertThat(snapshot.isSameDayTrip(null, SAME_DAY_END)).isFalse();
+    }
+
+    private static PricingSnapshot snapshot(VehicleCategoryPricing... categories) {
+        return new PricingSnapshot(
+                PricingSnapshot.DEFAULT_HOLIDAY_SURCHARGE_RATE,
+                PricingSnapshot.DEFAULT_WEEKEND_SURCHARGE_RATE,
+                PricingSnapshot.DEFAULT_ROUND_TRIP_MULTIPLIER,
+                PricingSnapshot.DEFAULT_INTER_PROVINCE_DISTANCE_KM,
+                PricingSnapshot.DEFAULT_SAME_DAY_TRIP_START_HOUR,
+                PricingSnapshot.DEFAULT_SAME_DAY_TRIP_END_HOUR,
+                List.of(hireType(1, "ONE_WAY"), hireType(2, "ROUND_TRIP"), hireType(3, "DAILY")),
+                List.of(categories));
+    }
+
+    private static HireTypes hireType(int id, String code) {
+        HireTypes hireType = new HireTypes();
+        hireType.setId(id);
+        hireType.setCode(code);
+        return hireType;
+    }
+
+    private static VehicleCategoryPricing category(int id, String pricePerKm, String baseFare) {
+        VehicleCategoryPricing category = new VehicleCategoryPricing();
+        category.setId(id);
+        category.setStatus(VehicleCategoryStatus.ACTIVE);
+        category.setPricePerKm(new BigDecimal(pricePerKm));
+        category.setBaseFare(new BigDecimal(baseFare));
+        return category;
+    }
+}
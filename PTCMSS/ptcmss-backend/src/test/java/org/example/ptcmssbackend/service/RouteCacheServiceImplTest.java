@@ -0,0 +1,270 @@
+package org.example.ptcmssbackend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ptcmssbackend.entity.RouteDistanceCache;
+import org.example.ptcmssbackend.repository.RouteDistanceCacheRepository;
+import org.example.ptcmssbackend.service.impl.RouteCacheServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RouteCacheServiceImplTest {
+
+    private static final String KEY = "car|21.02850,105.85420|20.95110,107.07340";
+
+    @Mock
+    private RouteDistanceCacheRepository routeDistanceCacheRepository;
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private RouteCacheServiceImpl routeCacheService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(routeCacheService, "maxAgeHours", 24L);
+        ReflectionTestUtils.setField(routeCacheService, "serveStaleOnError", true);
+    }
+
+    @Test
+    void routeKey_shouldRoundCoordinates() {
+        assertThat(RouteCacheServiceImpl.routeKey(21.028501, 105.854199, 20.9511, 107.0734, "car")).isEqualTo(KEY);
+    }
+
+    @Test
+    void getOrFetch_whenFresh_shouldNotCallProvider() {
+        when(routeDistanceCacheRepository.findByRouteKey(KEY))
+                .thenReturn(Optional.of(cached(160.5, 150.0, Instant.now().minus(Duration.ofHours(1)))));
+
+        RouteCacheService.RouteLeg leg = get(() -> {
+            throw new AssertionError("Không được gọi API");
+        });
+
+        assertThat(leg).isEqualTo(new RouteCacheService.RouteLeg(160.5, 150.0));
+        verify(routeDistanceCacheRepository, never()).save(any());
+        assertThat(count("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void getOrFetch_whenMissing_shouldFetchAndStore() {
+        when(routeDistanceCacheRepository.findByRouteKey(KEY)).thenReturn(Optional.empty());
+
+        RouteCacheService.RouteLeg leg = get(() -> new RouteCacheService.RouteLeg(161.0, 148.0));
+
+        assertThat(leg.distanceKm()).isEqualTo(161.0);
+        ArgumentCaptor<RouteDistanceCache> saved = ArgumentCaptor.forClass(RouteDistanceCache.class);
+        verify(routeDistanceCacheRepository).save(saved.capture());
+        assertThat(saved.getValue().getRouteKey()).isEqualTo(KEY);
+        assertThat(saved.getValue().getProfile()).isEqualTo("car");
+        assertThat(saved.getValue().getDurationMinutes()).isEqualTo(148.0);
+        assertThat(count("miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    void getOrFetch_whenStale_shouldRefreshExistingRow() {
+        RouteDistanceCache old = cached(150.0, 140.0, Instant.now().minus(Duration.ofDays(3)));
+        when(routeDistanceCacheRepository.findByRouteKey(KEY)).thenReturn(Optional.of(old));
+
+        RouteCacheService.RouteLeg leg = get(() -> new RouteCacheService.RouteLeg(162.0, 155.0));
+
+        assertThat(leg.distanceKm()).isEqualTo(162.0);
+        verify(routeDistanceCacheRepository).save(old);
+        assertThat(old.getDistanceKm()).isEqualTo(162.0);
+        assertThat(old.getFetchedAt()).isAfter(Instant.now().minusSeconds(60));
+    }
+
+    @Test
+    void getOrFetch_whenProviderFails_shouldServeStaleRouteOrRethrow() {
+        when(routeDistanceCacheRepository.findByRouteKey(KEY))
+                .thenReturn(Optional.of(cached(150.0, 140.0, Instant.now().minus(Duration.ofDays(3)))))
+                .thenReturn(Optional.empty());
+
+        RouteCacheService.RouteLeg stale = get(() -> {
+            throw new RuntimeException("GraphHopper timeout");
+        });
+
+        assertThat(stale.distanceKm()).isEqualTo(150.0);
+        assertThat(count("stale")).isEqualTo(1.0);
+        assertThatThrownBy(() -> get(() -> {
+            throw new RuntimeException("GraphHopper timeout");
+        })).hasMessage("GraphHopper timeout");
+        verify(routeDistanceCacheRepository, never()).save(any());
+    }
+
+    @Test
+    void getOrFetch_concurrentIdenticalLookups_shouldShareOneProviderCall() throws Exception {
+        when(routeDistanceCacheRepository.findByRouteKey(anyString())).thenReturn(Optional.empty());
+        CountDownLatch providerStarted = new CountDownLatch(1);
+        CountDownLatch releaseProvider = new CountDownLatch(1);
+        AtomicInteger providerCalls = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<RouteCacheService.RouteLeg>> results = new ArrayList<>();
+            results.add(executor.submit(() -> get(() -> {
+                providerCalls.incrementAndGet();
+                providerStarted.countDown();
+                await(releaseProvider);
+                return new RouteCacheService.RouteLeg(161.0, 148.0);
+            })));
+            assertThat(providerStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> get(() -> {
+                    providerCalls.incrementAndGet();
+                    return new RouteCacheService.RouteLeg(0, 0);
+                })));
+            }
+            // Chờ cả 3 request sau vào hàng đợi chung rồi mới cho API trả kết quả
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (count("coalesced") < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            releaseProvider.countDown();
+
+            for (Future<RouteCacheService.RouteLeg> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).distanceKm()).isEqualTo(161.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(providerCalls.get()).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(3.0);
+        verify(routeDistanceCacheRepository, times(1)).save(any());
+    }
+
+    @Test
+    void getOrFetch_whenRouteStoredBeforeWinningLoad_shouldNotCallProvider() {
+        // Lần đọc đầu chưa có, request khác lưu xong trước khi request này giữ được lượt tải
+        when(routeDistanceCacheRepository.findByRouteKey(KEY))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(cached(160.5, 150.0, Instant.now())));
+
+        RouteCacheService.RouteLeg leg = get(() -> {
+            throw new AssertionError("Không được gọi API");
+        });
+
+        assertThat(leg).isEqualTo(new RouteCacheService.RouteLeg(160.5, 150.0));
+        verify(routeDistanceCacheRepository, never()).save(any());
+        assertThat(count("hit")).isEqualTo(1.0);
+        assertThat(count("miss")).isZero();
+    }
+
+    @Test
+    void getOrFetch_whenLoaderThrowsError_shouldReleaseWaiters() throws Exception {
+        when(routeDistanceCacheRepository.findByRouteKey(anyString())).thenReturn(Optional.empty());
+        CountDownLatch providerStarted = new CountDownLatch(1);
+        CountDownLatch releaseProvider = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<RouteCacheService.RouteLeg> loading = executor.submit(() -> get(() -> {
+                providerStarted.countDown();
+                await(releaseProvider);
+                throw new StackOverflowError("loader");
+            }));
+            assertThat(providerStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<RouteCacheService.RouteLeg> waiting = executor.submit(() -> get(() -> new RouteCacheService.RouteLeg(0, 0)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (count("coalesced") < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            releaseProvider.countDown();
+
+            assertThatThrownBy(() -> loading.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+            assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void findFresh_shouldReturnOnlyFreshRoutes() {
+        RouteDistanceCache fresh = cached(160.5, 150.0, Instant.now().minus(Duration.ofHours(1)));
+        RouteDistanceCache old = cached(90.0, 80.0, Instant.now().minus(Duration.ofDays(3)));
+        old.setRouteKey("car|old");
+        when(routeDistanceCacheRepository.findByRouteKeyIn(List.of(KEY, "car|old", "car|none")))
+                .thenReturn(List.of(fresh, old));
+
+        Map<String, RouteCacheService.RouteLeg> found = routeCacheService.findFresh(List.of(KEY, "car|old", "car|none", KEY));
+
+        assertThat(found).containsOnlyKeys(KEY);
+        assertThat(count("hit")).isEqualTo(1.0);
+        assertThat(count("miss")).isEqualTo(2.0);
+        when(routeDistanceCacheRepository.findByRouteKeyIn(List.of("car|old"))).thenReturn(List.of(old));
+        assertThat(routeCacheService.findFallback(List.of("car|old")))
+                .containsEntry("car|old", new RouteCacheService.RouteLeg(90.0, 80.0));
+    }
+
+    @Test
+    void putAll_shouldUpdateExistingRowsAndInsertNewOnes() {
+        RouteDistanceCache old = cached(150.0, 140.0, Instant.now().minus(Duration.ofDays(3)));
+        when(routeDistanceCacheRepository.findByRouteKeyIn(anyCollection())).thenReturn(List.of(old));
+
+        routeCacheService.putAll("car", List.of(
+                new RouteCacheService.RouteEntry(21.0285, 105.8542, 20.9511, 107.0734, new RouteCacheService.RouteLeg(161.0, 148.0)),
+                new RouteCacheService.RouteEntry(21.0285, 105.8542, 18.6796, 105.6813, new RouteCacheService.RouteLeg(290.0, 300.0))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RouteDistanceCache>> saved = ArgumentCaptor.forClass(List.class);
+        verify(routeDistanceCacheRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).hasSize(2);
+        assertThat(saved.getValue().get(0)).isSameAs(old);
+        assertThat(old.getDistanceKm()).isEqualTo(161.0);
+        assertThat(saved.getValue().get(1).getRouteKey()).isEqualTo("car|21.02850,105.85420|18.67960,105.68130");
+    }
+
+    private RouteCacheService.RouteLeg get(java.util.function.Supplier<RouteCacheService.RouteLeg> loader) {
+        return routeCacheService.getOrFetch(21.0285, 105.8542, 20.9511, 107.0734, "car", loader);
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("graphhopper.route.cache", "result", result).count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static RouteDistanceCache cached(double distanceKm, double durationMinutes, Instant fetchedAt) {
+        RouteDistanceCache cached = new RouteDistanceCache();
+        cached.setRouteKey(KEY);
+        cached.setProfile("car");
+        cached.setDistanceKm(distanceKm);
+        cached.setDurationMinutes(durationMinutes);
+        cached.setFetchedAt(fetchedAt);
+        return cached;
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.ptcmssbackend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ptcmssbackend.entity.RouteDistanceCache;
+import org.example.ptcmssbackend.repository.RouteDistanceCacheRepository;
+import org.example.ptcmssbackend.service.impl.RouteEstimateServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RouteEstimateServiceImplTest {
+
+    @Mock
+    private RouteDistanceCacheRepository routeDistanceCacheRepository;
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private RouteEstimateServiceImpl routeEstimateService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(routeEstimateService, "defaultRoadFactor", 1.3);
+        ReflectionTestUtils.setField(routeEstimateService, "defaultSpeedKmph", 50.0);
+    }
+
+    @Test
+    void haversineKm_shouldMatchKnownDistance() {
+        // Hồ Gươm (Hà Nội) - Bãi Cháy (Hạ Long), chim bay khoảng 124 km
+        assertThat(RouteEstimateServiceImpl.haversineKm(21.0285, 105.8542, 20.9565, 107.0475))
+                .isCloseTo(124.0, within(5.0));
+        assertThat(RouteEstimateServiceImpl.haversineKm(21.0, 105.8, 21.0, 105.8)).isZero();
+    }
+
+    @Test
+    void estimate_withoutEnoughCachedRoutes_shouldUseDefaults() {
+        when(routeDistanceCacheRepository.findAllByOrderByFetchedAtDesc(any(Pageable.class)))
+                .thenReturn(List.of(route(1.5, 60.0)));
+
+        RouteCacheService.RouteLeg leg = routeEstimateService.estimate(21.0, 105.8, 21.0, 106.8);
+        double straightKm = RouteEstimateServiceImpl.haversineKm(21.0, 105.8, 21.0, 106.8);
+
+        assertThat(leg.distanceKm()).isCloseTo(straightKm * 1.3, within(0.001));
+        assertThat(leg.durationMinutes()).isCloseTo(leg.distanceKm() / 50.0 * 60.0, within(0.001));
+        // Hiệu chỉnh một lần, các lượt sau dùng lại
+        routeEstimateService.estimate(21.0, 105.8, 21.0, 106.8);
+        verify(routeDistanceCacheRepository, times(1)).findAllByOrderByFetchedAtDesc(any(Pageable.class));
+        assertThat(meterRegistry.counter("graphhopper.route.estimate").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void calibrate_shouldUseMedianOfCachedRoutes() {
+        List<RouteDistanceCache> routes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            routes.add(route(1.4, 60.0));
+        }
+        routes.add(route(6.0, 5.0));      // tuyến bất thường không làm lệch trung vị
+        routes.add(shortRoute());         // dưới 1 km bị bỏ qua
+        when(routeDistanceCacheRepository.findAllByOrderByFetchedAtDesc(any(Pageable.class))).thenReturn(routes);
+
+        routeEstimateService.calibrate();
+        RouteCacheService.RouteLeg leg = routeEstimateService.estimate(21.0, 105.8, 21.0, 106.8);
+        double straightKm = RouteEstimateServiceImpl.haversineKm(21.0, 105.8, 21.0, 106.8);
+
+        assertThat(leg.distanceKm()).isCloseTo(straightKm * 1.4, within(0.01));
+        assertThat(leg.durationMinutes()).isCloseTo(leg.distanceKm(), within(0.5)); // 60 km/h
+    }
+
+    private static RouteDistanceCache route(double roadFactor, double speedKmph) {
+        RouteDistanceCache route = new RouteDistanceCache();
+        route.setFromLat(21.0285);
+        route.setFromLng(105.8542);
+        route.setToLat(20.9565);
+        route.setToLng(107.0475);
+        double distanceKm = RouteEstimateServiceImpl.haversineKm(21.0285, 105.8542, 20.9565, 107.0475) * roadFactor;
+        route.setDistanceKm(distanceKm);
+        route.setDurationMinutes(distanceKm / speedKmph * 60.0);
+        route.setFetchedAt(Instant.now());
+        return route;
+    }
+
+    private static RouteDistanceCache shortRoute() {
+        RouteDistanceCache route = new RouteDistanceCache();
+        route.setFromLat(21.0285);
+        route.setFromLng(105.8542);
+        route.setToLat(21.0286);
+        route.setToLng(105.8543);
+        route.setDistanceKm(5.0);
+        route.setDurationMinutes(1.0);
+        route.setFetchedAt(Instant.now());
+        return route;
+    }
+}
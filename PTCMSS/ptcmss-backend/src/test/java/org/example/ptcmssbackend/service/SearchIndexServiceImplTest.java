@@ -0,0 +1,101 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.CustomerSearchTokens;
+import org.example.ptcmssbackend.entity.Customers;
+import org.example.ptcmssbackend.repository.CustomerSearchTokenRepository;
+import org.example.ptcmssbackend.service.impl.SearchIndexServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchIndexServiceImplTest {
+
+    @Mock
+    private CustomerSearchTokenRepository tokenRepository;
+
+    @InjectMocks
+    private SearchIndexServiceImpl searchIndexService;
+
+    @Test
+    void indexCustomer_shouldOnlyReplaceChangedTokens() {
+        Customers customer = customer(100, "Trần An", "0987");
+        CustomerSearchTokens keep = new CustomerSearchTokens(100, "n:an");
+        CustomerSearchTokens stale = new CustomerSearchTokens(100, "n:nguyen");
+        when(tokenRepository.findByCustomerId(100)).thenReturn(List.of(keep, stale));
+
+        searchIndexService.indexCustomer(customer);
+
+        verify(tokenRepository).deleteAll(List.of(stale));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CustomerSearchTokens>> saved = ArgumentCaptor.forClass(List.class);
+        verify(tokenRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(CustomerSearchTokens::getToken)
+                .containsExactly("n:tran", "p:0987", "p:987");
+    }
+
+    @Test
+    void match_shouldPassLongestTermsToQueryWithoutLoadingCustomers() {
+        SearchIndexService.KeywordMatch match = searchIndexService.match("Nguyễn Thị Minh An");
+
+        assertThat(match.exactId()).isNull();
+        assertThat(match.terms()).containsExactly("n:nguyen%", "n:minh%", "n:thi%");
+        assertThat(match.term(2)).isEqualTo("n:thi%");
+        assertThat(match.emailTerm()).isNull();
+        verifyNoInteractions(tokenRepository);
+    }
+
+    @Test
+    void match_whenPartialEmailWithoutAt_shouldAlsoMatchEmails() {
+        SearchIndexService.KeywordMatch match = searchIndexService.match("gmail");
+
+        assertThat(match.terms()).containsExactly("n:gmail%");
+        assertThat(match.term(1)).isNull();
+        assertThat(match.emailTerm()).isEqualTo("e:gmail%");
+    }
+
+    @Test
+    void match_whenNumber_shouldKeepExactIdAndPhoneTerm() {
+        SearchIndexService.KeywordMatch match = searchIndexService.match("555");
+
+        assertThat(match.exactId()).isEqualTo(555);
+        assertThat(match.terms()).containsExactly("p:555%");
+        assertThat(match.matchesNothing()).isFalse();
+        assertThat(searchIndexService.match("--").matchesNothing()).isTrue();
+        assertThat(searchIndexService.match(" ")).isNull();
+    }
+
+    @Test
+    void backfill_shouldWalkCustomersByIdAndStopOnShortBatch() {
+        Customers legacy = customer(42, "Lê Bình", null);
+        legacy.setEmail("binh@gmail.com");
+        when(tokenRepository.findCustomersToIndex(eq(0), any())).thenReturn(List.of(legacy));
+        when(tokenRepository.findByCustomerId(42)).thenReturn(List.of(new CustomerSearchTokens(42, "n:le")));
+
+        searchIndexService.backfill();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CustomerSearchTokens>> saved = ArgumentCaptor.forClass(List.class);
+        verify(tokenRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(CustomerSearchTokens::getToken)
+                .containsExactly("n:binh", "e:binh@gmail.com", "e:gmail.com");
+        verify(tokenRepository, times(1)).findCustomersToIndex(any(), any());
+    }
+
+    private static Customers customer(int id, String name, String phone) {
+        Customers customer = new Customers();
+        customer.setId(id);
+        customer.setFullName(name);
+        customer.setPhone(phone);
+        return customer;
+    }
+}
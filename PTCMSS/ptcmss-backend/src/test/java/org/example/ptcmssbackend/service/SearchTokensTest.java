@@ -0,0 +1,66 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.entity.Customers;
+import org.example.ptcmssbackend.service.impl.SearchTokens;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchTokensTest {
+
+    @Test
+    void tokens_shouldStripAccentsAndIndexPhoneSuffixes() {
+        Customers customer = new Customers();
+        customer.setFullName("Đỗ Thị Hồng  Nhung");
+        customer.setPhone("0912.345-678");
+        customer.setEmail(" An.Nguyen@Gmail.com ");
+
+        List<String> tokens = SearchTokens.tokens(customer);
+
+        assertThat(tokens).contains("n:do", "n:thi", "n:hong", "n:nhung",
+                "p:0912345678", "p:912345678", "p:678", "e:an.nguyen@gmail.com", "e:gmail.com");
+        assertThat(tokens).doesNotContain("p:78");
+        assertThat(tokens.stream().filter(t -> t.startsWith("p:"))).hasSize(8);
+    }
+
+    @Test
+    void parse_numericKeyword_shouldMatchIdExactlyAndPhoneSubstring() {
+        SearchTokens.Query query = SearchTokens.parse(" 2345 ");
+
+        assertThat(query.exactId()).isEqualTo(2345);
+        assertThat(query.prefixes()).containsExactly("p:2345%");
+    }
+
+    @Test
+    void parse_shouldBuildPrefixesForNamesAndEmails() {
+        assertThat(SearchTokens.parse("Nguyễn văn").prefixes()).containsExactly("n:nguyen%", "n:van%");
+        assertThat(SearchTokens.parse("Nguyễn văn").exactId()).isNull();
+        assertThat(SearchTokens.parse("Nguyễn văn").emailPrefix()).isNull();
+        assertThat(SearchTokens.parse("an_nguyen@").prefixes()).containsExactly("e:an!_nguyen@%");
+        assertThat(SearchTokens.parse("50%!@").prefixes()).containsExactly("e:50!%!!@%");
+        // SĐT có dấu cách / dấu +: không phải mã đơn
+        SearchTokens.Query phone = SearchTokens.parse("+84 912");
+        assertThat(phone.exactId()).isNull();
+        assertThat(phone.prefixes()).containsExactly("p:84912%");
+    }
+
+    @Test
+    void parse_partialEmailWithoutAt_shouldAlsoSearchEmails() {
+        SearchTokens.Query domain = SearchTokens.parse("Gmail.com");
+        assertThat(domain.prefixes()).containsExactly("n:gmail%", "n:com%");
+        assertThat(domain.emailPrefix()).isEqualTo("e:gmail.com%");
+        assertThat(SearchTokens.parse("an_nguyen").emailPrefix()).isEqualTo("e:an!_nguyen%");
+        assertThat(SearchTokens.parse("0912").emailPrefix()).isNull();
+    }
+
+    @Test
+    void parse_whenBlankOrTooShort_shouldNotSearchPhones() {
+        assertThat(SearchTokens.parse("   ")).isNull();
+        SearchTokens.Query shortId = SearchTokens.parse("12");
+        assertThat(shortId.exactId()).isEqualTo(12);
+        assertThat(shortId.prefixes()).isEmpty();
+        assertThat(SearchTokens.parse("%%").isEmpty()).isTrue();
+    }
+}
@@ -31,6 +31,8 @@ class SystemSettingServiceImplTest {
 
     @Mock
     private EmployeeRepository employeeRepository;
+    @Mock
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private SystemSettingServiceImpl systemSettingService;
@@ -183,6 +185,7 @@ class SystemSettingServiceImplTest {
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Khóa cài đặt đã tồn tại");
         verify(systemSettingRepository, never()).save(any(SystemSetting.class));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -234,6 +237,7 @@ class SystemSettingServiceImplTest {
         assertThat(existingSetting.getStatus()).isEqualTo(SettingStatus.INACTIVE);
         verify(systemSettingRepository).findById(id);
         verify(systemSettingRepository).save(existingSetting);
+        verify(eventPublisher).publishEvent(any(org.example.ptcmssbackend.event.PricingConfigChangedEvent.class));
     }
 
     @Test
@@ -0,0 +1,100 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.service.impl.TopKPairs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKPairsTest {
+
+    @Test
+    void select_shouldConsiderEveryRowAndColumn() {
+        int[] rows = {1, 1, 1, 1, 1, 1, 1};
+        int[] cols = {0, 0, 0, 0, 0, 0, 0};
+
+        List<int[]> result = TopKPairs.select(rows, cols, 100);
+
+        // Không giới hạn 5×5: trả đủ 7×7 cặp, cặp cuối là (6, 6)
+        assertThat(result).hasSize(49);
+        assertThat(result.get(48)).containsExactly(6, 6);
+    }
+
+    @Test
+    void select_shouldOrderTiesByRowThenColumn() {
+        int[] rows = {0, 0};
+        int[] cols = {0, 0};
+
+        List<int[]> result = TopKPairs.select(rows, cols, 4);
+
+        assertThat(result).containsExactly(new int[]{0, 0}, new int[]{0, 1}, new int[]{1, 0}, new int[]{1, 1});
+    }
+
+    @Test
+    void select_whenNoCandidates_shouldReturnEmpty() {
+        assertThat(TopKPairs.select(new int[0], new int[]{1, 2}, 5)).isEmpty();
+        assertThat(TopKPairs.select(new int[]{1}, new int[0], 5)).isEmpty();
+        assertThat(TopKPairs.select(new int[]{1}, new int[]{1}, 0)).isEmpty();
+    }
+
+    @Test
+    void select_shouldMatchBruteForceOnRandomScores() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int[] rows = sortedScores(random, 1 + random.nextInt(12));
+            int[] cols = sortedScores(random, 1 + random.nextInt(12));
+            int k = 1 + random.nextInt(30);
+
+            List<int[]> expected = bruteForce(rows, cols, k);
+
+            List<int[]> actual = TopKPairs.select(rows, cols, k);
+
+            assertThat(actual).hasSameSizeAs(expected);
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i)).containsExactly(expected.get(i));
+            }
+        }
+    }
+
+    @Test
+    void select_onLargeFleet_shouldReturnExactTopK() {
+        Random random = new Random(42);
+        int[] rows = sortedScores(random, 200);
+        int[] cols = sortedScores(random, 200);
+
+        List<int[]> result = TopKPairs.select(rows, cols, 100);
+
+        assertThat(result).hasSize(100);
+        // Đúng bằng 100 cặp đầu của toàn bộ 200×200 cặp sắp theo (tổng điểm, hàng, cột)
+        List<int[]> expected = bruteForce(rows, cols, 100);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(result.get(i)).containsExactly(expected.get(i));
+        }
+    }
+
+    private static List<int[]> bruteForce(int[] rows, int[] cols, int k) {
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < cols.length; j++) {
+                pairs.add(new int[]{i, j});
+            }
+        }
+        // Sắp ổn định theo tổng điểm: trùng điểm giữ thứ tự (hàng, cột) như cách ghép cũ
+        pairs.sort(Comparator.comparingInt(p -> rows[p[0]] + cols[p[1]]));
+        return pairs.subList(0, Math.min(k, pairs.size()));
+    }
+
+    private static int[] sortedScores(Random random, int n) {
+        int[] scores = new int[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = random.nextInt(20);
+        }
+        Arrays.sort(scores);
+        return scores;
+    }
+}
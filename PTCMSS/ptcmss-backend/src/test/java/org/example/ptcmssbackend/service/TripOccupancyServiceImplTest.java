@@ -0,0 +1,146 @@
+package org.example.ptcmssbackend.service;
+
+import org.example.ptcmssbackend.dto.response.GraphHopper.DistanceResult;
+import org.example.ptcmssbackend.dto.response.SystemSetting.SystemSettingResponse;
+import org.example.ptcmssbackend.entity.Bookings;
+import org.example.ptcmssbackend.entity.HireTypes;
+import org.example.ptcmssbackend.entity.Trips;
+import org.example.ptcmssbackend.service.impl.TripOccupancyServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripOccupancyServiceImplTest {
+
+    private static final Instant START = Instant.parse("2025-12-04T01:00:00Z");
+
+    @Mock
+    private SystemSettingService systemSettingService;
+    @Mock
+    private GraphHopperService graphHopperService;
+
+    @InjectMocks
+    private TripOccupancyServiceImpl tripOccupancyService;
+
+    // ==================== computeBusyUntil(Trips) Tests ====================
+
+    @Test
+    void computeBusyUntil_shouldMatchRawComputationAndReuseCachedValue() {
+        stubSpeed("60");
+        Trips trip = createTrip(100, "ONE_WAY", new BigDecimal("120"));
+
+        Instant first = tripOccupancyService.computeBusyUntil(trip);
+        Instant second = tripOccupancyService.computeBusyUntil(trip);
+
+        // 120km / 60km/h = 2h + 10 phút buffer
+        assertThat(first).isEqualTo(START.plus(Duration.ofMinutes(130)));
+        assertThat(second).isEqualTo(first);
+        assertThat(first).isEqualTo(tripOccupancyService.computeBusyUntil(
+                "ONE_WAY", START, null, 120.0, "Hà Nội", "Hải Phòng"));
+        // Vận tốc chỉ đọc một lần trong thời gian TTL
+        verify(systemSettingService, times(1)).getByKey("AVG_VEHICLE_SPEED_KMPH");
+    }
+
+    @Test
+    void computeBusyUntil_whenTripInputsChange_shouldRecompute() {
+        stubSpeed("60");
+        Trips trip = createTrip(100, "ONE_WAY", new BigDecimal("120"));
+        Instant before = tripOccupancyService.computeBusyUntil(trip);
+
+        trip.setDistance(new BigDecimal("60"));
+        Instant afterDistance = tripOccupancyService.computeBusyUntil(trip);
+        trip.setStartTime(START.plusSeconds(3600));
+        Instant afterStart = tripOccupancyService.computeBusyUntil(trip);
+        trip.getBooking().getHireType().setCode("DAILY");
+        Instant afterHireType = tripOccupancyService.computeBusyUntil(trip);
+
+        assertThat(before).isEqualTo(START.plus(Duration.ofMinutes(130)));
+        assertThat(afterDistance).isEqualTo(START.plus(Duration.ofMinutes(70)));
+        assertThat(afterStart).isEqualTo(START.plus(Duration.ofMinutes(130)));
+        assertThat(afterHireType).isAfter(afterStart);
+    }
+
+    @Test
+    void computeBusyUntil_whenDistanceMissing_shouldCallGraphHopperOnlyOnce() {
+        stubSpeed("60");
+        Trips trip = createTrip(100, "ONE_WAY", null);
+        when(graphHopperService.calculateDistance("Hà Nội", "Hải Phòng"))
+                .thenReturn(DistanceResult.builder().distanceKm(60.0).build());
+
+        Instant first = tripOccupancyService.computeBusyUntil(trip);
+        Instant second = tripOccupancyService.computeBusyUntil(trip);
+
+        assertThat(first).isEqualTo(START.plus(Duration.ofMinutes(70)));
+        assertThat(second).isEqualTo(first);
+        verify(graphHopperService, times(1)).calculateDistance(anyString(), anyString());
+    }
+
+    @Test
+    void computeBusyUntil_whenGraphHopperFails_shouldAssumeLongTripWithoutCaching() {
+        stubSpeed("60");
+        Trips trip = createTrip(100, "ONE_WAY", null);
+        when(graphHopperService.calculateDistance(anyString(), anyString()))
+                .thenThrow(new RuntimeException("timeout"))
+                .thenReturn(DistanceResult.builder().distanceKm(60.0).build());
+
+        Instant degraded = tripOccupancyService.computeBusyUntil(trip);
+        Instant retried = tripOccupancyService.computeBusyUntil(trip);
+
+        // Giả định 300km / 60km/h = 5h thay vì 0km: xe không bị coi là rảnh ngay sau giờ đi
+        assertThat(degraded).isEqualTo(START.plus(Duration.ofMinutes(310)));
+        assertThat(retried).isEqualTo(START.plus(Duration.ofMinutes(70)));
+    }
+
+    @Test
+    void computeBusyUntil_whenNoStartTime_shouldReturnNull() {
+        Trips trip = createTrip(100, "ONE_WAY", new BigDecimal("120"));
+        trip.setStartTime(null);
+
+        assertThat(tripOccupancyService.computeBusyUntil(trip)).isNull();
+        assertThat(tripOccupancyService.computeBusyUntil((Trips) null)).isNull();
+        verifyNoInteractions(systemSettingService, graphHopperService);
+    }
+
+    // ==================== getAverageSpeedKmph() Tests ====================
+
+    @Test
+    void getAverageSpeedKmph_whenSettingInvalid_shouldUseDefault() {
+        stubSpeed("abc");
+
+        assertThat(tripOccupancyService.getAverageSpeedKmph()).isEqualTo(60);
+    }
+
+    private void stubSpeed(String value) {
+        SystemSettingResponse setting = new SystemSettingResponse();
+        setting.setSettingKey("AVG_VEHICLE_SPEED_KMPH");
+        setting.setSettingValue(value);
+        when(systemSettingService.getByKey("AVG_VEHICLE_SPEED_KMPH")).thenReturn(setting);
+    }
+
+    private Trips createTrip(Integer id, String hireTypeCode, BigDecimal distance) {
+        HireTypes hireType = new HireTypes();
+        hireType.setCode(hireTypeCode);
+        Bookings booking = new Bookings();
+        booking.setId(10);
+        booking.setHireType(hireType);
+        Trips trip = new Trips();
+        trip.setId(id);
+        trip.setBooking(booking);
+        trip.setStartTime(START);
+        trip.setDistance(distance);
+        trip.setStartLocation("Hà Nội");
+        trip.setEndLocation("Hải Phòng");
+        return trip;
+    }
+}
@@ -31,6 +31,8 @@ class VehicleCategoryServiceImplTest {
     private VehicleCategoryPricingRepository categoryRepository;
     @Mock
     private VehicleRepository vehicleRepository;
+    @Mock
+    private org.springframework.context.ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private VehicleCategoryServiceImpl vehicleCategoryService;
@@ -160,6 +162,7 @@ class VehicleCategoryServiceImplTest {
         assertThat(result.getCategoryName()).isEqualTo("Xe 4 chỗ Premium");
         assertThat(result.getSeats()).isEqualTo(4);
         verify(categoryRepository).save(any());
+        verify(eventPublisher).publishEvent(any(org.example.ptcmssbackend.event.PricingConfigChangedEvent.class));
     }
 
     @Test
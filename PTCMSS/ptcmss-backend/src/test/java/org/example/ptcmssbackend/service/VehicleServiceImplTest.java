@@ -4,14 +4,17 @@ import org.example.ptcmssbackend.dto.request.Vehicle.VehicleRequest;
 import org.example.ptcmssbackend.dto.response.Vehicle.VehicleTripResponse;
 import org.example.ptcmssbackend.entity.*;
 import org.example.ptcmssbackend.enums.VehicleStatus;
+import org.example.ptcmssbackend.event.VehicleFleetChangedEvent;
 import org.example.ptcmssbackend.repository.*;
 import org.example.ptcmssbackend.service.impl.VehicleServiceImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -43,6 +46,8 @@ class VehicleServiceImplTest {
     private TripDriverRepository tripDriverRepository;
     @Mock
     private InvoiceRepository invoiceRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private VehicleServiceImpl vehicleService;
@@ -74,6 +79,7 @@ class VehicleServiceImplTest {
         assertThat(response.getBranchName()).isEqualTo("Chi nhánh ĐN");
         assertThat(response.getCategoryName()).isEqualTo("Xe 45 chỗ");
         verify(vehicleRepository).save(any(Vehicles.class));
+        verify(eventPublisher).publishEvent(any(VehicleFleetChangedEvent.class));
     }
 
     @Test
@@ -87,6 +93,31 @@ class VehicleServiceImplTest {
                 .hasMessageContaining("Biển số xe đã tồn tại");
 
         verify(vehicleRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void update_whenVehicleMovesBranch_shouldNotifyBothBranches() {
+        mockAuth("ROLE_MANAGER");
+
+        VehicleRequest request = buildRequest();
+        request.setStatus("MAINTENANCE");
+
+        Vehicles existing = new Vehicles();
+        existing.setId(5);
+        existing.setStatus(VehicleStatus.AVAILABLE);
+        existing.setBranch(buildBranch(3, "Chi nhánh HN"));
+        existing.setCategory(buildCategory(2, "Xe 45 chỗ"));
+
+        when(vehicleRepository.findById(5)).thenReturn(Optional.of(existing));
+        when(branchRepository.findById(1)).thenReturn(Optional.of(buildBranch(1, "Chi nhánh ĐN")));
+        when(categoryRepository.findById(2)).thenReturn(Optional.of(buildCategory(2, "Xe 45 chỗ")));
+
+        vehicleService.update(5, request);
+
+        ArgumentCaptor<VehicleFleetChangedEvent> event = ArgumentCaptor.forClass(VehicleFleetChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getBranchIds()).containsExactly(3, 1);
     }
 
     @Test